@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.common.util;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jupiter.common.util.internal.UnsafeUtil;
+
+/**
+ * 对象深拷贝, 用于进程内调用跳过序列化时隔离consumer与provider之间的对象引用.
+ *
+ * 只支持:
+ * 1. 不可变对象(String, 包装类型, 枚举, BigInteger/BigDecimal, UUID, java.time.*等), 直接返回原对象;
+ * 2. 数组以及常用的 {@link java.util} 集合(ArrayList, LinkedList, HashMap, LinkedHashMap, TreeMap,
+ *    HashSet, LinkedHashSet, TreeSet, ConcurrentHashMap), 以及 {@link Date};
+ * 3. 继承链上不包含JDK类(Object除外)的普通对象, 通过 {@code sun.misc.Unsafe} 逐个字段拷贝.
+ *
+ * 遇到其他类型(比如Throwable, JDK内部的集合实现等)抛出 {@link UnsupportedOperationException},
+ * 调用方应该退回到序列化的方式.
+ *
+ * jupiter
+ * org.jupiter.common.util
+ *
+ * @author jiachun.fjc
+ */
+public final class DeepCopier {
+
+    private static final sun.misc.Unsafe unsafe =
+            UnsafeUtil.hasUnsafe() ? UnsafeUtil.getUnsafeAccessor().getUnsafe() : null;
+
+    private static final Set<Class<?>> immutableTypes = new HashSet<>();
+
+    static {
+        Collections.addAll(immutableTypes,
+                String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class,
+                Long.class, Float.class, Double.class, BigInteger.class, BigDecimal.class, UUID.class, Class.class);
+    }
+
+    private static final FieldCopier[] UNSUPPORTED = new FieldCopier[0];
+
+    private static final ClassValue<FieldCopier[]> fieldCopiers = new ClassValue<FieldCopier[]>() {
+
+        @Override
+        protected FieldCopier[] computeValue(Class<?> type) {
+            return newFieldCopiers(type);
+        }
+    };
+
+    /**
+     * Returns a deep copy of the given object.
+     *
+     * @throws UnsupportedOperationException if the object graph contains a type which can't be copied
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T copy(T obj) {
+        if (obj == null || isImmutable(obj.getClass())) {
+            return obj;
+        }
+        return (T) copy(obj, Maps.newIdentityHashMap());
+    }
+
+    private static Object copy(Object obj, IdentityHashMap<Object, Object> copies) {
+        if (obj == null) {
+            return null;
+        }
+
+        Class<?> clazz = obj.getClass();
+        if (isImmutable(clazz)) {
+            return obj;
+        }
+
+        Object copy = copies.get(obj);
+        if (copy != null) {
+            return copy;
+        }
+
+        if (clazz.isArray()) {
+            return copyArray(obj, clazz, copies);
+        }
+        if (obj instanceof Collection) {
+            return copyCollection((Collection<?>) obj, clazz, copies);
+        }
+        if (obj instanceof Map) {
+            return copyMap((Map<?, ?>) obj, clazz, copies);
+        }
+        if (clazz == Date.class) {
+            copy = new Date(((Date) obj).getTime());
+            copies.put(obj, copy);
+            return copy;
+        }
+        if (clazz == Object.class) {
+            copy = new Object();
+            copies.put(obj, copy);
+            return copy;
+        }
+
+        return copyFields(obj, clazz, copies);
+    }
+
+    private static Object copyArray(Object array, Class<?> clazz, IdentityHashMap<Object, Object> copies) {
+        Class<?> componentType = clazz.getComponentType();
+        int length = Array.getLength(array);
+        Object copy = Array.newInstance(componentType, length);
+        copies.put(array, copy);
+        if (componentType.isPrimitive()) {
+            System.arraycopy(array, 0, copy, 0, length);
+        } else {
+            Object[] src = (Object[]) array;
+            Object[] dst = (Object[]) copy;
+            for (int i = 0; i < length; i++) {
+                dst[i] = copy(src[i], copies);
+            }
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object copyCollection(Collection<?> c, Class<?> clazz, IdentityHashMap<Object, Object> copies) {
+        Collection<Object> copy;
+        if (clazz == ArrayList.class) {
+            copy = new ArrayList<>(c.size());
+        } else if (clazz == LinkedList.class) {
+            copy = new LinkedList<>();
+        } else if (clazz == HashSet.class) {
+            copy = new HashSet<>(Maps.capacity(c.size()));
+        } else if (clazz == LinkedHashSet.class) {
+            copy = new LinkedHashSet<>(Maps.capacity(c.size()));
+        } else if (clazz == TreeSet.class) {
+            copy = new TreeSet<>(((TreeSet<Object>) c).comparator());
+        } else if (c == Collections.EMPTY_LIST || c == Collections.EMPTY_SET) {
+            return c;
+        } else {
+            throw new UnsupportedOperationException("unsupported type: " + clazz.getName());
+        }
+        copies.put(c, copy);
+        for (Object e : c) {
+            copy.add(copy(e, copies));
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object copyMap(Map<?, ?> m, Class<?> clazz, IdentityHashMap<Object, Object> copies) {
+        Map<Object, Object> copy;
+        if (clazz == HashMap.class) {
+            copy = new HashMap<>(Maps.capacity(m.size()));
+        } else if (clazz == LinkedHashMap.class) {
+            copy = new LinkedHashMap<>(Maps.capacity(m.size()));
+        } else if (clazz == TreeMap.class) {
+            copy = new TreeMap<>(((TreeMap<Object, Object>) m).comparator());
+        } else if (clazz == ConcurrentHashMap.class) {
+            copy = new ConcurrentHashMap<>(m.size());
+        } else if (m == Collections.EMPTY_MAP) {
+            return m;
+        } else {
+            throw new UnsupportedOperationException("unsupported type: " + clazz.getName());
+        }
+        copies.put(m, copy);
+        for (Map.Entry<?, ?> e : m.entrySet()) {
+            copy.put(copy(e.getKey(), copies), copy(e.getValue(), copies));
+        }
+        return copy;
+    }
+
+    private static Object copyFields(Object obj, Class<?> clazz, IdentityHashMap<Object, Object> copies) {
+        FieldCopier[] copiers = fieldCopiers.get(clazz);
+        if (copiers == UNSUPPORTED) {
+            throw new UnsupportedOperationException("unsupported type: " + clazz.getName());
+        }
+
+        Object copy;
+        try {
+            copy = unsafe.allocateInstance(clazz);
+        } catch (InstantiationException e) {
+            throw new UnsupportedOperationException("unsupported type: " + clazz.getName(), e);
+        }
+        copies.put(obj, copy);
+
+        for (FieldCopier c : copiers) {
+            c.copy(obj, copy, copies);
+        }
+        return copy;
+    }
+
+    private static boolean isImmutable(Class<?> clazz) {
+        return immutableTypes.contains(clazz)
+                || Enum.class.isAssignableFrom(clazz)
+                || clazz.getName().startsWith("java.time.");
+    }
+
+    private static boolean isJdkType(Class<?> clazz) {
+        String name = clazz.getName();
+        return name.startsWith("java.")
+                || name.startsWith("javax.")
+                || name.startsWith("jdk.")
+                || name.startsWith("sun.")
+                || name.startsWith("com.sun.");
+    }
+
+    private static FieldCopier[] newFieldCopiers(Class<?> type) {
+        if (unsafe == null || type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return UNSUPPORTED;
+        }
+
+        List<FieldCopier> copiers = Lists.newArrayList();
+        try {
+            for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+                if (isJdkType(c)) {
+                    return UNSUPPORTED;
+                }
+                for (Field f : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(f.getModifiers())) {
+                        continue;
+                    }
+                    // hidden class 或 record 的字段会抛出 UnsupportedOperationException
+                    copiers.add(new FieldCopier(f.getType(), unsafe.objectFieldOffset(f)));
+                }
+            }
+        } catch (Throwable ignored) {
+            return UNSUPPORTED;
+        }
+        return copiers.toArray(new FieldCopier[0]);
+    }
+
+    private static final class FieldCopier {
+
+        private final Class<?> type;
+        private final long offset;
+
+        FieldCopier(Class<?> type, long offset) {
+            this.type = type;
+            this.offset = offset;
+        }
+
+        void copy(Object src, Object dst, IdentityHashMap<Object, Object> copies) {
+            if (!type.isPrimitive()) {
+                unsafe.putObject(dst, offset, DeepCopier.copy(unsafe.getObject(src, offset), copies));
+            } else if (type == int.class) {
+                unsafe.putInt(dst, offset, unsafe.getInt(src, offset));
+            } else if (type == long.class) {
+                unsafe.putLong(dst, offset, unsafe.getLong(src, offset));
+            } else if (type == boolean.class) {
+                unsafe.putBoolean(dst, offset, unsafe.getBoolean(src, offset));
+            } else if (type == byte.class) {
+                unsafe.putByte(dst, offset, unsafe.getByte(src, offset));
+            } else if (type == short.class) {
+                unsafe.putShort(dst, offset, unsafe.getShort(src, offset));
+            } else if (type == char.class) {
+                unsafe.putChar(dst, offset, unsafe.getChar(src, offset));
+            } else if (type == float.class) {
+                unsafe.putFloat(dst, offset, unsafe.getFloat(src, offset));
+            } else {
+                unsafe.putDouble(dst, offset, unsafe.getDouble(src, offset));
+            }
+        }
+    }
+
+    private DeepCopier() {}
+}
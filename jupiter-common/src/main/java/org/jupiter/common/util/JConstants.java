@@ -67,6 +67,12 @@ public final class JConstants {
     /** Whether use low copy strategy for serialization */
     public static final boolean CODEC_LOW_COPY =
             SystemPropertyUtil.getBoolean("jupiter.io.codec.low_copy", true);
+    /** 同一进程内的consumer/provider是否自动走in-JVM的local transport */
+    public static final boolean LOCAL_TRANSPORT =
+            SystemPropertyUtil.getBoolean("jupiter.io.local", true);
+    /** Whether skip serialization on the local transport, the arguments and result are deep-copied instead */
+    public static final boolean LOCAL_SKIP_SERIALIZATION =
+            SystemPropertyUtil.getBoolean("jupiter.io.local.skip_serialization", false);
 
     /** Load balancer 默认预热时间 **/
     public static final int DEFAULT_WARM_UP =
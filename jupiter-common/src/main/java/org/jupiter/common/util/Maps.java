@@ -124,7 +124,7 @@ public final class Maps {
      * long as it grows no larger than expectedSize and the load factor is >= its
      * default (0.75).
      */
-    private static int capacity(int expectedSize) {
+    static int capacity(int expectedSize) {
         if (expectedSize < 3) {
             Requires.requireTrue(expectedSize >= 0, "expectedSize cannot be negative but was: " + expectedSize);
             return expectedSize + 1;
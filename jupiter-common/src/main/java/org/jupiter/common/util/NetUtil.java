@@ -51,6 +51,27 @@ public final class NetUtil {
         return LOCAL_IP_ADDRESS;
     }
 
+    /**
+     * 判断host是否指向本机(loopback, 通配地址或者本机任意网卡上的地址)
+     */
+    public static boolean isLocalAddress(String host) {
+        if (host == null) {
+            return false;
+        }
+        if (host.equals(LOCAL_IP_ADDRESS)) {
+            return true;
+        }
+
+        try {
+            InetAddress address = InetAddress.getByName(host);
+            return address.isAnyLocalAddress()
+                    || address.isLoopbackAddress()
+                    || NetworkInterface.getByInetAddress(address) != null;
+        } catch (Throwable ignored) {
+            return false;
+        }
+    }
+
     /**
      * 获取网卡中第一个有效IP
      */
@@ -0,0 +1,563 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.common.util.timer;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import org.jupiter.common.util.Pow2;
+import org.jupiter.common.util.Reflects;
+import org.jupiter.common.util.internal.InternalThreadLocal;
+import org.jupiter.common.util.internal.Platform;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+
+/**
+ * 多层时间轮, 与 {@link HashedWheelTimer} 相比:
+ *
+ * 1. 每个生产者线程独占一个无锁的SPSC队列(节点就是timeout本身), 生产者之间没有任何竞争;
+ * 2. {@link Timeout#cancel()} 只是一次CAS, 被取消的timeout在它所在的bucket到期(或降级)时被顺带丢弃,
+ *    不需要额外的cancel队列, 所以大部分在超时之前就完成的RPC调用, 超时检测的代价几乎为零;
+ * 3. 每一层时间轮有 {@code ticksPerWheel} 个bucket, 第n层每个bucket的跨度是 tickDuration * ticksPerWheel^n,
+ *    高层bucket到期时整体降级(cascade)到低层, 第0层bucket到期时整个bucket一次批量过期.
+ *
+ * 所有bucket只会被worker线程访问, 因此bucket是没有任何同步的单链表.
+ *
+ * <a href="http://cseweb.ucsd.edu/users/varghese/PAPERS/twheel.ps.Z">'Hashed and Hierarchical Timing
+ * Wheels: data structures to efficiently implement a timer facility'</a>.
+ *
+ * jupiter
+ * org.jupiter.common.util.timer
+ *
+ * @author jiachun.fjc
+ */
+public class HierarchicalWheelTimer implements Timer {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(HierarchicalWheelTimer.class);
+
+    private static final AtomicIntegerFieldUpdater<HierarchicalWheelTimer> workerStateUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(HierarchicalWheelTimer.class, "workerState");
+
+    public static final int WORKER_STATE_INIT = 0;
+    public static final int WORKER_STATE_STARTED = 1;
+    public static final int WORKER_STATE_SHUTDOWN = 2;
+    @SuppressWarnings({"unused", "FieldMayBeFinal"})
+    private volatile int workerState; // 0 - init, 1 - started, 2 - shut down
+
+    // 每一轮最多从一个生产者队列中转移的timeout数量, 防止worker线程被饿死
+    private static final int MAX_TRANSFER_PER_TICK = 100000;
+
+    private final Worker worker = new Worker();
+    private final Thread workerThread;
+
+    private final long tickDuration;
+    private final int wheelBits;
+    private final int wheelMask;
+    private final int levels;
+    private final WheelTimeout[][] wheels;
+    private final long startTime = System.nanoTime();
+
+    private final CopyOnWriteArrayList<Producer> producers = new CopyOnWriteArrayList<>();
+    private final InternalThreadLocal<Producer> localProducer = new InternalThreadLocal<Producer>() {
+
+        @Override
+        protected Producer initialValue() throws Exception {
+            Producer producer = new Producer(Thread.currentThread());
+            producers.add(producer);
+            return producer;
+        }
+    };
+
+    // 只由worker线程更新, 不包含还在生产者队列中的timeout
+    private volatile long pendingTimeouts;
+
+    /**
+     * Creates a new timer with 64 ticks per wheel and 4 levels of wheels.
+     *
+     * @param threadFactory a {@link ThreadFactory} that creates a
+     *                      background {@link Thread} which is dedicated to
+     *                      {@link TimerTask} execution.
+     * @param tickDuration  the duration between tick
+     * @param unit          the time unit of the {@code tickDuration}
+     */
+    public HierarchicalWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit) {
+        this(threadFactory, tickDuration, unit, 64, 4);
+    }
+
+    /**
+     * Creates a new timer.
+     *
+     * @param threadFactory a {@link ThreadFactory} that creates a
+     *                      background {@link Thread} which is dedicated to
+     *                      {@link TimerTask} execution.
+     * @param tickDuration  the duration between tick
+     * @param unit          the time unit of the {@code tickDuration}
+     * @param ticksPerWheel the size of each level of wheel
+     * @param levels        the number of levels of wheel
+     * @throws NullPointerException     if either of {@code threadFactory} and {@code unit} is {@code null}
+     * @throws IllegalArgumentException if either of {@code tickDuration}, {@code ticksPerWheel}
+     *                                  and {@code levels} is &lt;= 0
+     */
+    public HierarchicalWheelTimer(
+            ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int ticksPerWheel, int levels) {
+
+        if (threadFactory == null) {
+            throw new NullPointerException("threadFactory");
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be greater than 0: " + tickDuration);
+        }
+        if (ticksPerWheel <= 1 || ticksPerWheel > (1 << 16)) {
+            throw new IllegalArgumentException("ticksPerWheel must be in (1, 65536]: " + ticksPerWheel);
+        }
+        if (levels <= 0) {
+            throw new IllegalArgumentException("levels must be greater than 0: " + levels);
+        }
+
+        int wheelSize = Pow2.roundToPowerOfTwo(ticksPerWheel);
+        this.wheelBits = Integer.numberOfTrailingZeros(wheelSize);
+        this.wheelMask = wheelSize - 1;
+        // 超出 63 位的层级没有意义
+        this.levels = Math.min(levels, 63 / wheelBits);
+        this.wheels = new WheelTimeout[this.levels][wheelSize];
+        this.tickDuration = unit.toNanos(tickDuration);
+        this.workerThread = threadFactory.newThread(worker);
+    }
+
+    /**
+     * Starts the background thread explicitly.  The background thread will
+     * start automatically on demand even if you did not call this method.
+     *
+     * @throws IllegalStateException if this timer has been
+     *                               {@linkplain #stop() stopped} already
+     */
+    public void start() {
+        switch (workerStateUpdater.get(this)) {
+            case WORKER_STATE_INIT:
+                if (workerStateUpdater.compareAndSet(this, WORKER_STATE_INIT, WORKER_STATE_STARTED)) {
+                    workerThread.start();
+                }
+                break;
+            case WORKER_STATE_STARTED:
+                break;
+            case WORKER_STATE_SHUTDOWN:
+                throw new IllegalStateException("cannot be started once stopped");
+            default:
+                throw new Error("Invalid WorkerState");
+        }
+    }
+
+    @Override
+    public Set<Timeout> stop() {
+        if (Thread.currentThread() == workerThread) {
+            throw new IllegalStateException(
+                    HierarchicalWheelTimer.class.getSimpleName() +
+                            ".stop() cannot be called from " +
+                            TimerTask.class.getSimpleName());
+        }
+
+        if (!workerStateUpdater.compareAndSet(this, WORKER_STATE_STARTED, WORKER_STATE_SHUTDOWN)) {
+            workerStateUpdater.set(this, WORKER_STATE_SHUTDOWN);
+            return Collections.emptySet();
+        }
+
+        boolean interrupted = false;
+        while (workerThread.isAlive()) {
+            workerThread.interrupt();
+            try {
+                workerThread.join(100);
+            } catch (InterruptedException ignored) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return worker.unprocessedTimeouts();
+    }
+
+    @Override
+    public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+
+        start();
+
+        long deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+
+        // Guard against overflow.
+        if (delay > 0 && deadline < 0) {
+            deadline = Long.MAX_VALUE;
+        }
+        WheelTimeout timeout = new WheelTimeout(this, task, deadline);
+        localProducer.get().offer(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns the number of pending timeouts which have been transferred to
+     * the wheels of this {@link Timer}, cancelled timeouts are counted until
+     * their buckets expire.
+     */
+    public long pendingTimeouts() {
+        return pendingTimeouts;
+    }
+
+    @Override
+    public String toString() {
+        return "HierarchicalWheelTimer{" +
+                "tickDuration=" + tickDuration +
+                ", ticksPerWheel=" + (wheelMask + 1) +
+                ", levels=" + levels +
+                ", producers=" + producers.size() +
+                ", pendingTimeouts=" + pendingTimeouts +
+                '}';
+    }
+
+    private final class Worker implements Runnable {
+
+        private final Set<Timeout> unprocessedTimeouts = new HashSet<>();
+
+        private long tick;
+        private long pending;
+
+        @Override
+        public void run() {
+            // 可能是延迟启动的, 之前的tick都不需要处理
+            tick = (System.nanoTime() - startTime) / tickDuration;
+
+            do {
+                final long currentTime = waitForNextTick();
+                if (currentTime == Long.MIN_VALUE) {
+                    break;
+                }
+                // 如果worker被耽误了(GC或者task执行过慢), 需要把错过的tick都补上
+                while (tickDuration * (tick + 1) <= currentTime) {
+                    processTick(tick);
+                    tick++;
+                }
+                pendingTimeouts = pending;
+            } while (workerStateUpdater.get(HierarchicalWheelTimer.this) == WORKER_STATE_STARTED);
+
+            // Fill the unprocessedTimeouts so we can return them from stop() method.
+            for (WheelTimeout[] wheel : wheels) {
+                for (int i = 0; i < wheel.length; i++) {
+                    WheelTimeout head = wheel[i];
+                    wheel[i] = null;
+                    addUnprocessed(head);
+                }
+            }
+            for (Producer producer : producers) {
+                for (;;) {
+                    WheelTimeout timeout = producer.poll();
+                    if (timeout == null) {
+                        break;
+                    }
+                    addUnprocessed(timeout);
+                }
+            }
+        }
+
+        private void processTick(long tick) {
+            // 高层bucket到期, 整体降级到低层
+            for (int level = levels - 1; level > 0; level--) {
+                int shift = wheelBits * level;
+                if ((tick & ((1L << shift) - 1)) == 0) {
+                    int index = (int) ((tick >>> shift) & wheelMask);
+                    WheelTimeout timeout = wheels[level][index];
+                    wheels[level][index] = null;
+                    while (timeout != null) {
+                        WheelTimeout next = timeout.next;
+                        timeout.next = null;
+                        if (timeout.isCancelled()) {
+                            pending--;
+                        } else {
+                            schedule(timeout, tick);
+                        }
+                        timeout = next;
+                    }
+                }
+            }
+
+            transferTimeoutsToBuckets(tick);
+
+            // 第0层bucket到期, 整个bucket批量过期
+            int index = (int) (tick & wheelMask);
+            WheelTimeout timeout = wheels[0][index];
+            wheels[0][index] = null;
+            while (timeout != null) {
+                WheelTimeout next = timeout.next;
+                timeout.next = null;
+                pending--;
+                timeout.expire();
+                timeout = next;
+            }
+        }
+
+        private void transferTimeoutsToBuckets(long tick) {
+            for (Producer producer : producers) {
+                for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+                    WheelTimeout timeout = producer.poll();
+                    if (timeout == null) {
+                        // all processed
+                        break;
+                    }
+                    if (timeout.isCancelled()) {
+                        // Was cancelled in the meantime.
+                        continue;
+                    }
+                    pending++;
+                    schedule(timeout, tick);
+                }
+
+                // 生产者线程已经终止, 并且它的队列已经被取空
+                if (!producer.thread.isAlive() && producer.isEmpty()) {
+                    producers.remove(producer);
+                }
+            }
+        }
+
+        /**
+         * 根据deadline与当前tick最高的不同位所在的层级来选择bucket, 这样bucket的到期时间
+         * 一定晚于当前tick并且不晚于deadline.
+         */
+        private void schedule(WheelTimeout timeout, long tick) {
+            long deadlineTick = timeout.deadline / tickDuration;
+
+            int level;
+            int index;
+            if (deadlineTick <= tick) {
+                // Ensure we don't schedule for past.
+                level = 0;
+                index = (int) (tick & wheelMask);
+            } else {
+                level = (63 - Long.numberOfLeadingZeros(deadlineTick ^ tick)) / wheelBits;
+                if (level < levels) {
+                    index = (int) ((deadlineTick >>> (wheelBits * level)) & wheelMask);
+                } else {
+                    // 超出了时间轮的范围, 放在最高层最后到期的bucket, 降级时会重新计算
+                    level = levels - 1;
+                    index = (int) (((tick >>> (wheelBits * level)) + wheelMask) & wheelMask);
+                }
+            }
+
+            WheelTimeout[] wheel = wheels[level];
+            timeout.next = wheel[index];
+            wheel[index] = timeout;
+        }
+
+        private void addUnprocessed(WheelTimeout timeout) {
+            while (timeout != null) {
+                WheelTimeout next = timeout.next;
+                timeout.next = null;
+                if (!timeout.isCancelled() && !timeout.isExpired()) {
+                    unprocessedTimeouts.add(timeout);
+                }
+                timeout = next;
+            }
+        }
+
+        /**
+         * calculate goal nanoTime from startTime and current tick number,
+         * then wait until that goal has been reached.
+         *
+         * @return Long.MIN_VALUE if received a shutdown request,
+         * current time otherwise
+         */
+        private long waitForNextTick() {
+            long deadline = tickDuration * (tick + 1);
+
+            for (;;) {
+                final long currentTime = System.nanoTime() - startTime;
+                long sleepTimeMs = (deadline - currentTime + 999999) / 1000000;
+
+                if (sleepTimeMs <= 0) {
+                    return currentTime == Long.MIN_VALUE ? -Long.MAX_VALUE : currentTime;
+                }
+
+                // See https://github.com/netty/netty/issues/356
+                if (Platform.isWindows()) {
+                    sleepTimeMs = sleepTimeMs / 10 * 10;
+                }
+
+                try {
+                    Thread.sleep(sleepTimeMs);
+                } catch (InterruptedException ignored) {
+                    if (workerStateUpdater.get(HierarchicalWheelTimer.this) == WORKER_STATE_SHUTDOWN) {
+                        return Long.MIN_VALUE;
+                    }
+                }
+            }
+        }
+
+        Set<Timeout> unprocessedTimeouts() {
+            return Collections.unmodifiableSet(unprocessedTimeouts);
+        }
+    }
+
+    /**
+     * 单生产者(owner线程)单消费者(worker线程)的无锁队列, timeout本身就是队列节点, 不需要额外分配对象.
+     */
+    private static final class Producer {
+
+        private final Thread thread;
+
+        private WheelTimeout head; // 只被worker线程访问
+        private WheelTimeout tail; // 只被owner线程访问
+
+        Producer(Thread thread) {
+            this.thread = thread;
+            head = tail = new WheelTimeout(null, null, 0); // stub
+        }
+
+        void offer(WheelTimeout timeout) {
+            WheelTimeout prev = tail;
+            tail = timeout;
+            WheelTimeout.QUEUE_NEXT_UPDATER.lazySet(prev, timeout);
+        }
+
+        WheelTimeout poll() {
+            WheelTimeout next = head.queueNext;
+            if (next == null) {
+                return null;
+            }
+            head.queueNext = null; // help gc
+            head = next;
+            return next;
+        }
+
+        boolean isEmpty() {
+            return head.queueNext == null;
+        }
+    }
+
+    private static final class WheelTimeout implements Timeout {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(WheelTimeout.class, "state");
+        static final AtomicReferenceFieldUpdater<WheelTimeout, WheelTimeout> QUEUE_NEXT_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(WheelTimeout.class, WheelTimeout.class, "queueNext");
+
+        private final HierarchicalWheelTimer timer;
+        private final long deadline;
+        // 取消之后置为null, 尽早释放task引用的对象
+        private TimerTask task;
+
+        @SuppressWarnings({"unused", "FieldMayBeFinal", "RedundantFieldInitialization"})
+        private volatile int state = ST_INIT;
+
+        // 生产者队列中的下一个节点
+        volatile WheelTimeout queueNext;
+        // bucket链表中的下一个节点, 只被worker线程访问
+        WheelTimeout next;
+
+        WheelTimeout(HierarchicalWheelTimer timer, TimerTask task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public Timer timer() {
+            return timer;
+        }
+
+        @Override
+        public TimerTask task() {
+            return task;
+        }
+
+        @Override
+        public boolean cancel() {
+            // 只是更新状态, 在bucket到期或者降级时才会被移除
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            task = null;
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        void expire() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+
+            try {
+                task.run(this);
+            } catch (Throwable t) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("An exception was thrown by " + TimerTask.class.getSimpleName() + '.', t);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            final long currentTime = System.nanoTime();
+            long remaining = deadline - currentTime + timer.startTime;
+
+            StringBuilder buf = new StringBuilder(192)
+                    .append(Reflects.simpleClassName(this))
+                    .append('(')
+                    .append("deadline: ");
+            if (remaining > 0) {
+                buf.append(remaining)
+                        .append(" ns later");
+            } else if (remaining < 0) {
+                buf.append(-remaining)
+                        .append(" ns ago");
+            } else {
+                buf.append("now");
+            }
+
+            if (isCancelled()) {
+                buf.append(", cancelled");
+            }
+
+            return buf.append(", task: ")
+                    .append(task())
+                    .append(')')
+                    .toString();
+        }
+    }
+}
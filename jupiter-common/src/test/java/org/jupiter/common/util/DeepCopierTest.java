@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.common.util;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * jupiter
+ * org.jupiter.common.util
+ *
+ * @author jiachun.fjc
+ */
+public class DeepCopierTest {
+
+    @Test
+    public void testImmutable() {
+        String s = "jupiter";
+        assertSame(s, DeepCopier.copy(s));
+        Long l = 1024L;
+        assertSame(l, DeepCopier.copy(l));
+        assertSame(TimeUnit.SECONDS, DeepCopier.copy(TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPojo() {
+        User user = new User();
+        user.id = 1;
+        user.name = "jupiter";
+        user.birthday = new Date();
+        user.scores = new int[] { 1, 2, 3 };
+        user.tags = new ArrayList<>();
+        user.tags.add("a");
+        user.attributes = new HashMap<>();
+        user.attributes.put("k", new Address("hz"));
+        user.self = user;
+
+        User copy = DeepCopier.copy(user);
+
+        assertNotSame(user, copy);
+        assertEquals(user.id, copy.id);
+        assertSame(user.name, copy.name);
+        assertNotSame(user.birthday, copy.birthday);
+        assertEquals(user.birthday, copy.birthday);
+        assertNotSame(user.scores, copy.scores);
+        assertArrayEquals(user.scores, copy.scores);
+        assertNotSame(user.tags, copy.tags);
+        assertEquals(user.tags, copy.tags);
+        assertNotSame(user.attributes.get("k"), copy.attributes.get("k"));
+        assertEquals("hz", ((Address) copy.attributes.get("k")).city);
+        assertSame(copy, copy.self); // cycle
+
+        copy.scores[0] = 100;
+        copy.tags.add("b");
+        assertEquals(1, user.scores[0]);
+        assertEquals(1, user.tags.size());
+    }
+
+    @Test
+    public void testSharedReference() {
+        Address address = new Address("hz");
+        Object[] args = new Object[] { address, address };
+
+        Object[] copy = DeepCopier.copy(args);
+
+        assertNotSame(address, copy[0]);
+        assertSame(copy[0], copy[1]);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnsupported() {
+        DeepCopier.copy(new Object[] { new RuntimeException() });
+    }
+
+    static class User {
+        int id;
+        String name;
+        Date birthday;
+        int[] scores;
+        List<String> tags;
+        Map<String, Object> attributes;
+        User self;
+    }
+
+    static class Address {
+        final String city;
+
+        Address(String city) {
+            this.city = city;
+        }
+    }
+}
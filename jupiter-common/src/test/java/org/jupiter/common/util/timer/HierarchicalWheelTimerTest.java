@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.common.util.timer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import org.jupiter.common.concurrent.NamedThreadFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * jupiter
+ * org.jupiter.common.util.timer
+ *
+ * @author jiachun.fjc
+ */
+public class HierarchicalWheelTimerTest {
+
+    @Test
+    public void testExpireAcrossLevels() throws Exception {
+        // 4 ticks per wheel, 3 levels, the delays below cover every level and the overflow bucket
+        HierarchicalWheelTimer timer = new HierarchicalWheelTimer(
+                new NamedThreadFactory("test.timer", true), 5, TimeUnit.MILLISECONDS, 4, 3);
+        try {
+            long[] delays = { 0, 3, 12, 40, 170, 420 };
+            CountDownLatch latch = new CountDownLatch(delays.length);
+            AtomicInteger early = new AtomicInteger();
+            for (long delay : delays) {
+                long start = System.nanoTime();
+                timer.newTimeout(timeout -> {
+                    if (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(delay)) {
+                        early.incrementAndGet();
+                    }
+                    latch.countDown();
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(0, early.get());
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        HierarchicalWheelTimer timer = new HierarchicalWheelTimer(
+                new NamedThreadFactory("test.timer", true), 5, TimeUnit.MILLISECONDS);
+        try {
+            AtomicInteger fired = new AtomicInteger();
+            CountDownLatch latch = new CountDownLatch(1);
+            Timeout cancelled = timer.newTimeout(timeout -> fired.incrementAndGet(), 20, TimeUnit.MILLISECONDS);
+            timer.newTimeout(timeout -> latch.countDown(), 60, TimeUnit.MILLISECONDS);
+
+            assertTrue(cancelled.cancel());
+            assertFalse(cancelled.cancel());
+            assertTrue(cancelled.isCancelled());
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(0, fired.get());
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Test
+    public void testMultiProducers() throws Exception {
+        HierarchicalWheelTimer timer = new HierarchicalWheelTimer(
+                new NamedThreadFactory("test.timer", true), 1, TimeUnit.MILLISECONDS);
+        try {
+            int threads = 8;
+            int perThread = 10000;
+            CountDownLatch latch = new CountDownLatch(threads * perThread);
+            for (int i = 0; i < threads; i++) {
+                new Thread(() -> {
+                    for (int j = 0; j < perThread; j++) {
+                        timer.newTimeout(timeout -> latch.countDown(), j % 100, TimeUnit.MILLISECONDS);
+                    }
+                }).start();
+            }
+
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            timer.stop();
+        }
+    }
+}
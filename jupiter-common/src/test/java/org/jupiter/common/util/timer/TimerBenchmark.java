@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.common.util.timer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import org.jupiter.common.concurrent.NamedThreadFactory;
+
+/**
+ * 模拟RPC调用的超时检测: 1M个pending timeouts, 每次调用注册一个3秒的timeout,
+ * 调用在超时之前就完成了, 然后取消它.
+ *
+ * jupiter
+ * org.jupiter.common.util.timer
+ *
+ * @author jiachun.fjc
+ */
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class TimerBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(TimerBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    private static final TimerTask NOOP = timeout -> {};
+
+    @Param({ "1000000" })
+    int pending;
+
+    private HashedWheelTimer hashedWheelTimer;
+    private HierarchicalWheelTimer hierarchicalWheelTimer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        hashedWheelTimer = new HashedWheelTimer(
+                new NamedThreadFactory("hashed.wheel.timer", true), 50, TimeUnit.MILLISECONDS, 4096);
+        hierarchicalWheelTimer = new HierarchicalWheelTimer(
+                new NamedThreadFactory("hierarchical.wheel.timer", true), 50, TimeUnit.MILLISECONDS, 64, 4);
+
+        for (int i = 0; i < pending; i++) {
+            long delay = TimeUnit.MINUTES.toMillis(10) + i % 60000;
+            hashedWheelTimer.newTimeout(NOOP, delay, TimeUnit.MILLISECONDS);
+            hierarchicalWheelTimer.newTimeout(NOOP, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        hashedWheelTimer.stop();
+        hierarchicalWheelTimer.stop();
+    }
+
+    @Benchmark
+    public boolean hashedWheelTimer() {
+        return hashedWheelTimer.newTimeout(NOOP, 3000, TimeUnit.MILLISECONDS).cancel();
+    }
+
+    @Benchmark
+    public boolean hierarchicalWheelTimer() {
+        return hierarchicalWheelTimer.newTimeout(NOOP, 3000, TimeUnit.MILLISECONDS).cancel();
+    }
+}
@@ -20,8 +20,10 @@ import java.util.Map;
 import org.jupiter.common.util.Maps;
 import org.jupiter.monitor.handler.AddressHandler;
 import org.jupiter.monitor.handler.AuthHandler;
+import org.jupiter.monitor.handler.BreakerHandler;
 import org.jupiter.monitor.handler.ByAddressHandler;
 import org.jupiter.monitor.handler.ByServiceHandler;
+import org.jupiter.monitor.handler.CoDelHandler;
 import org.jupiter.monitor.handler.CommandHandler;
 import org.jupiter.monitor.handler.HelpHandler;
 import org.jupiter.monitor.handler.JStackHandler;
@@ -47,6 +49,9 @@ public enum Command {
     LS("List all provider and consumer info", new LsHandler()),
     METRICS("Performance metrics", new MetricsHandler(),
             ChildCommand.REPORT),
+    BREAKER("List the circuit breaker state of all providers", new BreakerHandler()),
+    CODEL("Show or tune the provider load shedding, usage: codel [on|off] or codel [target_ms] [interval_ms]",
+            new CoDelHandler()),
     REGISTRY("Registry info(P/S command must follow behind ADDRESS)", new RegistryHandler(),
             ChildCommand.ADDRESS,
             ChildCommand.P,
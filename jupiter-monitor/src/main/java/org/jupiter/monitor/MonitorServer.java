@@ -36,6 +36,8 @@ import org.jupiter.common.util.StackTraceUtil;
 import org.jupiter.common.util.Strings;
 import org.jupiter.common.util.internal.logging.InternalLogger;
 import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+import org.jupiter.monitor.handler.BreakerHandler;
+import org.jupiter.monitor.handler.CoDelHandler;
 import org.jupiter.monitor.handler.CommandHandler;
 import org.jupiter.monitor.handler.LsHandler;
 import org.jupiter.monitor.handler.RegistryHandler;
@@ -177,6 +179,16 @@ public class MonitorServer extends NettyTcpAcceptor {
                         ((LsHandler) handler).setClientRegisterService(clientRegisterService);
                     }
                 }
+                if (handler instanceof BreakerHandler) {
+                    if (((BreakerHandler) handler).getJupiterClient() != jupiterClient) {
+                        ((BreakerHandler) handler).setJupiterClient(jupiterClient);
+                    }
+                }
+                if (handler instanceof CoDelHandler) {
+                    if (((CoDelHandler) handler).getJupiterServer() != jupiterServer) {
+                        ((CoDelHandler) handler).setJupiterServer(jupiterServer);
+                    }
+                }
                 handler.handle(ch, command, args);
             } else {
                 logger.warn("Unexpected message type received: {}, channel: {}.", msg.getClass(), ch);
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.monitor.handler;
+
+import io.netty.channel.Channel;
+
+import org.jupiter.common.util.JConstants;
+import org.jupiter.monitor.Command;
+import org.jupiter.rpc.JClient;
+import org.jupiter.transport.channel.JChannelGroup;
+
+/**
+ * 查询consumer端每个provider的熔断器状态
+ *
+ * jupiter
+ * org.jupiter.monitor.handler
+ *
+ * @author jiachun.fjc
+ */
+public class BreakerHandler implements CommandHandler {
+
+    private volatile JClient jupiterClient;
+
+    public JClient getJupiterClient() {
+        return jupiterClient;
+    }
+
+    public void setJupiterClient(JClient jupiterClient) {
+        this.jupiterClient = jupiterClient;
+    }
+
+    @Override
+    public void handle(Channel channel, Command command, String... args) {
+        if (AuthHandler.checkAuth(channel)) {
+            JClient client = jupiterClient;
+            if (client == null) {
+                channel.writeAndFlush("No jupiter client!" + JConstants.NEWLINE);
+                return;
+            }
+
+            channel.writeAndFlush("Consumer side: " + JConstants.NEWLINE);
+            channel.writeAndFlush("--------------------------------------------------------------------------------"
+                    + JConstants.NEWLINE);
+            for (JChannelGroup group : client.connector().groups()) {
+                channel.writeAndFlush(group.remoteAddress() + " | " + group.circuitBreaker() + JConstants.NEWLINE);
+            }
+        }
+    }
+}
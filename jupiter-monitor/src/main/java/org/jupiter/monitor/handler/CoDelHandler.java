@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.monitor.handler;
+
+import io.netty.channel.Channel;
+
+import org.jupiter.common.util.JConstants;
+import org.jupiter.monitor.Command;
+import org.jupiter.rpc.JServer;
+import org.jupiter.rpc.provider.processor.CoDelController;
+import org.jupiter.rpc.provider.processor.DefaultProviderProcessor;
+import org.jupiter.transport.processor.ProviderProcessor;
+
+/**
+ * 查询/调整provider端基于排队时延的过载保护参数:
+ *
+ * codel                          查询当前状态
+ * codel on|off                   开启/关闭
+ * codel [target] [interval]      调整target及interval(毫秒)
+ *
+ * jupiter
+ * org.jupiter.monitor.handler
+ *
+ * @author jiachun.fjc
+ */
+public class CoDelHandler implements CommandHandler {
+
+    private volatile JServer jupiterServer;
+
+    public JServer getJupiterServer() {
+        return jupiterServer;
+    }
+
+    public void setJupiterServer(JServer jupiterServer) {
+        this.jupiterServer = jupiterServer;
+    }
+
+    @Override
+    public void handle(Channel channel, Command command, String... args) {
+        if (AuthHandler.checkAuth(channel)) {
+            JServer server = jupiterServer;
+            ProviderProcessor processor = server == null ? null : server.acceptor().processor();
+            if (!(processor instanceof DefaultProviderProcessor)) {
+                channel.writeAndFlush("No jupiter server!" + JConstants.NEWLINE);
+                return;
+            }
+
+            CoDelController controller = ((DefaultProviderProcessor) processor).coDelController();
+            if (args.length >= 2) {
+                try {
+                    if ("on".equalsIgnoreCase(args[1])) {
+                        controller.setEnabled(true);
+                    } else if ("off".equalsIgnoreCase(args[1])) {
+                        controller.setEnabled(false);
+                    } else {
+                        controller.setTargetMillis(Long.parseLong(args[1]));
+                        if (args.length >= 3) {
+                            controller.setIntervalMillis(Long.parseLong(args[2]));
+                        }
+                    }
+                } catch (IllegalArgumentException e) {
+                    channel.writeAndFlush("Wrong args denied!" + JConstants.NEWLINE);
+                    return;
+                }
+            }
+
+            channel.writeAndFlush(controller + JConstants.NEWLINE);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Per-method bulkhead annotation.
+ *
+ * 标注在服务接口或者服务实现的方法上, 该方法的请求在一个独立的有界线程池中执行, 不再与其他方法共享
+ * provider线程池, 一个慢方法(比如报表查询)最多只会耗尽自己的线程及队列.
+ *
+ * 线程池满了之后请求被直接拒绝(SERVER_BUSY), 不会关闭连接, 也不影响同一连接上其他方法的请求.
+ *
+ * jupiter
+ * org.jupiter.rpc
+ *
+ * @author jiachun.fjc
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Bulkhead {
+
+    /**
+     * 线程池实现, {@link org.jupiter.rpc.executor.ExecutorFactory} SPI 的名称, 比如 threadPool, disruptor
+     */
+    String factory() default "threadPool";
+
+    /**
+     * 核心线程数
+     */
+    int coreWorkers() default 4;
+
+    /**
+     * 最大线程数, 小于 coreWorkers 时等于 coreWorkers
+     */
+    int maxWorkers() default 0;
+
+    /**
+     * 队列容量
+     */
+    int queueCapacity() default 256;
+}
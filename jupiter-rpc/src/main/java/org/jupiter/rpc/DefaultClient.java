@@ -16,6 +16,7 @@
 package org.jupiter.rpc;
 
 import java.util.Collection;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -24,6 +25,7 @@ import java.util.concurrent.locks.ReentrantLock;
 
 import org.jupiter.common.util.JConstants;
 import org.jupiter.common.util.JServiceLoader;
+import org.jupiter.common.util.Maps;
 import org.jupiter.common.util.Requires;
 import org.jupiter.common.util.Strings;
 import org.jupiter.common.util.ThrowUtil;
@@ -33,6 +35,7 @@ import org.jupiter.registry.OfflineListener;
 import org.jupiter.registry.RegisterMeta;
 import org.jupiter.registry.RegistryService;
 import org.jupiter.rpc.consumer.processor.DefaultConsumerProcessor;
+import org.jupiter.rpc.flow.control.ConcurrencyLimiterMetrics;
 import org.jupiter.rpc.model.metadata.ServiceMetadata;
 import org.jupiter.transport.Directory;
 import org.jupiter.transport.JConnection;
@@ -40,7 +43,10 @@ import org.jupiter.transport.JConnectionManager;
 import org.jupiter.transport.JConnector;
 import org.jupiter.transport.UnresolvedAddress;
 import org.jupiter.transport.UnresolvedSocketAddress;
+import org.jupiter.transport.channel.ConcurrencyLimiter;
 import org.jupiter.transport.channel.JChannelGroup;
+import org.jupiter.transport.local.JLocalAcceptor;
+import org.jupiter.transport.local.JLocalConnector;
 
 /**
  * Jupiter默认客户端实现.
@@ -57,6 +63,8 @@ public class DefaultClient implements JClient {
     private final String appName;
 
     private JConnector<JConnection> connector;
+    // 同一进程内的provider走local transport, 与IO connector共享同一个processor
+    private volatile JLocalConnector localConnector;
 
     public DefaultClient() {
         this(JConstants.UNKNOWN_APP_NAME, RegistryService.RegistryType.DEFAULT);
@@ -91,6 +99,9 @@ public class DefaultClient implements JClient {
         if (connector.processor() == null) {
             connector.withProcessor(new DefaultConsumerProcessor());
         }
+        if (ConcurrencyLimiter.ENABLED) {
+            connector.directoryGroup().addListener(ConcurrencyLimiterMetrics.INSTANCE);
+        }
         this.connector = connector;
         return this;
     }
@@ -129,6 +140,10 @@ public class DefaultClient implements JClient {
 
             private final JConnectionManager connectionManager = connector.connectionManager();
 
+            // CHILD_ADDED时为每个地址选定的connector(local或IO), CHILD_REMOVED时使用同一个,
+            // 期间JLocalAcceptor绑定/解绑不会导致移除一个从未添加过的group
+            private final ConcurrentMap<UnresolvedAddress, JConnector<JConnection>> connectors = Maps.newConcurrentMap();
+
             private final ReentrantLock lock = new ReentrantLock();
             private final Condition notifyCondition = lock.newCondition();
             // attempts to elide conditional wake-ups when the lock is uncontended.
@@ -141,8 +156,16 @@ public class DefaultClient implements JClient {
                     @Override
                     public void notify(RegisterMeta registerMeta, NotifyEvent event) {
                         UnresolvedAddress address = new UnresolvedSocketAddress(registerMeta.getHost(), registerMeta.getPort());
-                        final JChannelGroup group = connector.group(address);
                         if (event == NotifyEvent.CHILD_ADDED) {
+                            JConnector<JConnection> _connector = connectors.get(address);
+                            if (_connector == null) {
+                                JConnector<JConnection> newConnector = connector(address);
+                                _connector = connectors.putIfAbsent(address, newConnector);
+                                if (_connector == null) {
+                                    _connector = newConnector;
+                                }
+                            }
+                            final JChannelGroup group = _connector.group(address);
                             if (group.isAvailable()) {
                                 onSucceed(group, signalNeeded.getAndSet(false));
                             } else {
@@ -150,7 +173,7 @@ public class DefaultClient implements JClient {
                                     group.onAvailable(() -> onSucceed(group, signalNeeded.getAndSet(false)));
                                 } else {
                                     group.setConnecting(true);
-                                    JConnection[] connections = connectTo(address, group, registerMeta, true);
+                                    JConnection[] connections = connectTo(_connector, address, group, registerMeta, true);
                                     final AtomicInteger countdown = new AtomicInteger(connections.length);
                                     for (JConnection c : connections) {
                                         c.operationComplete(isSuccess -> {
@@ -166,6 +189,11 @@ public class DefaultClient implements JClient {
                             }
                             group.putWeight(directory, registerMeta.getWeight());
                         } else if (event == NotifyEvent.CHILD_REMOVED) {
+                            JConnector<JConnection> _connector = connectors.remove(address);
+                            if (_connector == null) {
+                                return;
+                            }
+                            final JChannelGroup group = _connector.group(address);
                             connector.removeChannelGroup(directory, group);
                             group.removeWeight(directory);
                             if (connector.directoryGroup().getRefCount(group) <= 0) {
@@ -175,14 +203,15 @@ public class DefaultClient implements JClient {
                     }
 
                     @SuppressWarnings("SameParameterValue")
-                    private JConnection[] connectTo(final UnresolvedAddress address, final JChannelGroup group, RegisterMeta registerMeta, boolean async) {
+                    private JConnection[] connectTo(
+                            JConnector<JConnection> _connector, final UnresolvedAddress address, final JChannelGroup group, RegisterMeta registerMeta, boolean async) {
                         int connCount = registerMeta.getConnCount(); // global value from single client
                         connCount = connCount < 1 ? 1 : connCount;
 
                         JConnection[] connections = new JConnection[connCount];
                         group.setCapacity(connCount);
                         for (int i = 0; i < connCount; i++) {
-                            JConnection connection = connector.connect(address, async);
+                            JConnection connection = _connector.connect(address, async);
                             connections[i] = connection;
                             connectionManager.manage(connection);
                         }
@@ -281,6 +310,9 @@ public class DefaultClient implements JClient {
     @Override
     public void shutdownGracefully() {
         registryService.shutdownGracefully();
+        if (localConnector != null) {
+            localConnector.disconnectAll();
+        }
         connector.shutdownGracefully();
     }
 
@@ -294,6 +326,31 @@ public class DefaultClient implements JClient {
         withConnector(connector);
     }
 
+    /**
+     * 注册中心返回的provider地址如果是本机地址, 并且当前JVM中有 {@link JLocalAcceptor} 绑定在相同的端口上,
+     * 就使用进程内的local transport, 否则使用IO connector.
+     */
+    private JConnector<JConnection> connector(UnresolvedAddress address) {
+        if (JConstants.LOCAL_TRANSPORT && JLocalAcceptor.isBound(address)) {
+            return localConnector();
+        }
+        return connector;
+    }
+
+    private JLocalConnector localConnector() {
+        JLocalConnector c = localConnector;
+        if (c == null) {
+            synchronized (this) {
+                if ((c = localConnector) == null) {
+                    c = new JLocalConnector();
+                    c.withProcessor(connector.processor());
+                    localConnector = c;
+                }
+            }
+        }
+        return c;
+    }
+
     private static RegisterMeta.ServiceMeta toServiceMeta(Directory directory) {
         RegisterMeta.ServiceMeta serviceMeta = new RegisterMeta.ServiceMeta();
         serviceMeta.setGroup(Requires.requireNotNull(directory.getGroup(), "group"));
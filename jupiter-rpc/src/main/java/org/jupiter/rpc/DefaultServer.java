@@ -16,6 +16,7 @@
 package org.jupiter.rpc;
 
 import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +31,7 @@ import org.jupiter.common.util.Pair;
 import org.jupiter.common.util.Requires;
 import org.jupiter.common.util.StackTraceUtil;
 import org.jupiter.common.util.Strings;
+import org.jupiter.common.util.SystemPropertyUtil;
 import org.jupiter.common.util.internal.logging.InternalLogger;
 import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
 import org.jupiter.registry.RegisterMeta;
@@ -39,9 +41,11 @@ import org.jupiter.rpc.flow.control.FlowController;
 import org.jupiter.rpc.model.metadata.ServiceMetadata;
 import org.jupiter.rpc.model.metadata.ServiceWrapper;
 import org.jupiter.rpc.provider.ProviderInterceptor;
+import org.jupiter.rpc.provider.processor.BulkheadExecutor;
 import org.jupiter.rpc.provider.processor.DefaultProviderProcessor;
 import org.jupiter.transport.Directory;
 import org.jupiter.transport.JAcceptor;
+import org.jupiter.transport.local.JLocalAcceptor;
 
 /**
  * Jupiter默认服务端实现.
@@ -55,6 +59,8 @@ public class DefaultServer implements JServer {
 
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(DefaultServer.class);
 
+    private static final boolean METRIC_NEEDED = SystemPropertyUtil.getBoolean("jupiter.metric.needed", false);
+
     // provider本地容器
     private final ServiceProviderContainer providerContainer = new DefaultServiceProviderContainer();
     // 服务发布(SPI)
@@ -67,6 +73,8 @@ public class DefaultServer implements JServer {
 
     // IO acceptor
     private JAcceptor acceptor;
+    // 进程内的acceptor, 与IO acceptor绑定相同的端口并共享同一个processor, 同一进程内的consumer不经过网络
+    private JLocalAcceptor localAcceptor;
 
     public DefaultServer() {
         this(RegistryService.RegistryType.DEFAULT);
@@ -100,6 +108,13 @@ public class DefaultServer implements JServer {
                     }
                     return globalFlowController.flowControl(request);
                 }
+
+                @Override
+                public void release(JRequest request) {
+                    if (globalFlowController != null) {
+                        globalFlowController.release(request);
+                    }
+                }
             });
         }
         this.acceptor = acceptor;
@@ -143,7 +158,11 @@ public class DefaultServer implements JServer {
 
     @Override
     public ServiceWrapper removeService(Directory directory) {
-        return providerContainer.removeService(directory.directoryString());
+        ServiceWrapper wrapper = providerContainer.removeService(directory.directoryString());
+        if (wrapper != null) {
+            shutdownBulkheads(wrapper);
+        }
+        return wrapper;
     }
 
     @Override
@@ -227,24 +246,82 @@ public class DefaultServer implements JServer {
 
     @Override
     public void start() throws InterruptedException {
-        acceptor.start();
+        start(true);
     }
 
     @Override
     public void start(boolean sync) throws InterruptedException {
-        acceptor.start(sync);
+        // sync模式下IO acceptor会一直阻塞到server socket关闭, 所以local acceptor只能先绑定,
+        // IO acceptor绑定失败(或者sync模式下已经关闭)时再解绑, 不会残留一个只有local transport的provider
+        bindLocalAcceptor();
+        boolean started = false;
+        try {
+            acceptor.start(sync);
+            started = !sync;
+        } finally {
+            if (!started) {
+                unbindLocalAcceptor();
+            }
+        }
     }
 
     @Override
     public void shutdownGracefully() {
         registryService.shutdownGracefully();
+        unbindLocalAcceptor();
         acceptor.shutdownGracefully();
+        for (ServiceWrapper wrapper : providerContainer.getAllServices()) {
+            shutdownBulkheads(wrapper);
+        }
     }
 
     public void setAcceptor(JAcceptor acceptor) {
         withAcceptor(acceptor);
     }
 
+    private void bindLocalAcceptor() throws InterruptedException {
+        if (!JConstants.LOCAL_TRANSPORT
+                || acceptor instanceof JLocalAcceptor
+                || !(acceptor.localAddress() instanceof InetSocketAddress)) {
+            return;
+        }
+
+        JLocalAcceptor local = new JLocalAcceptor(acceptor.boundPort());
+        local.withProcessor(acceptor.processor());
+        try {
+            local.start(false);
+        } catch (IllegalStateException e) {
+            logger.warn("Binds local acceptor failed: {}.", StackTraceUtil.stackTrace(e));
+            return;
+        }
+        localAcceptor = local;
+    }
+
+    private void unbindLocalAcceptor() {
+        JLocalAcceptor local = localAcceptor;
+        if (local != null) {
+            localAcceptor = null;
+            local.unbind();
+        }
+    }
+
+    private static Bulkhead findBulkhead(Class<?> providerClass, Method ifMethod) {
+        try {
+            Method implMethod = providerClass.getMethod(ifMethod.getName(), ifMethod.getParameterTypes());
+            Bulkhead bulkhead = implMethod.getAnnotation(Bulkhead.class);
+            if (bulkhead != null) {
+                return bulkhead;
+            }
+        } catch (NoSuchMethodException ignored) {}
+        return ifMethod.getAnnotation(Bulkhead.class);
+    }
+
+    private static void shutdownBulkheads(ServiceWrapper wrapper) {
+        for (BulkheadExecutor bulkhead : wrapper.getBulkheads().values()) {
+            bulkhead.shutdown();
+        }
+    }
+
     ServiceWrapper registerService(
             String group,
             String providerName,
@@ -254,7 +331,8 @@ public class DefaultServer implements JServer {
             Map<String, List<Pair<Class<?>[], Class<?>[]>>> extensions,
             int weight,
             Executor executor,
-            FlowController<JRequest> flowController) {
+            FlowController<JRequest> flowController,
+            Map<String, Bulkhead> bulkheads) {
 
         ProviderInterceptor[] allInterceptors = null;
         List<ProviderInterceptor> tempList = Lists.newArrayList();
@@ -274,7 +352,23 @@ public class DefaultServer implements JServer {
         wrapper.setWeight(weight);
         wrapper.setExecutor(executor);
         wrapper.setFlowController(flowController);
+        if (!bulkheads.isEmpty()) {
+            Map<String, BulkheadExecutor> executors = Maps.newHashMapWithExpectedSize(bulkheads.size());
+            for (Map.Entry<String, Bulkhead> entry : bulkheads.entrySet()) {
+                String name = "jupiter-bulkhead-" + providerName + "#" + entry.getKey();
+                BulkheadExecutor bulkhead = BulkheadExecutor.create(name, entry.getValue());
+                if (METRIC_NEEDED) {
+                    bulkhead.registerMetrics();
+                }
+                executors.put(entry.getKey(), bulkhead);
+            }
+            wrapper.setBulkheads(executors);
+        }
 
+        ServiceWrapper old = providerContainer.lookupService(wrapper.getMetadata().directoryString());
+        if (old != null) {
+            shutdownBulkheads(old);
+        }
         providerContainer.registerService(wrapper.getMetadata().directoryString(), wrapper);
 
         return wrapper;
@@ -412,10 +506,18 @@ public class DefaultServer implements JServer {
             // value:   pair.first:  方法参数类型(用于根据JLS规则实现方法调用的静态分派)
             //          pair.second: 方法显式声明抛出的异常类型
             Map<String, List<Pair<Class<?>[], Class<?>[]>>> extensions = Maps.newHashMap();
+            // key:     method name
+            // value:   方法的隔离线程池配置, 实现类方法上的注解优先; 重载的方法共享第一个找到的配置
+            Map<String, Bulkhead> bulkheads = Maps.newHashMap();
             for (Method method : interfaceClass.getMethods()) {
                 String methodName = method.getName();
                 List<Pair<Class<?>[], Class<?>[]>> list = extensions.computeIfAbsent(methodName, k -> Lists.newArrayList());
                 list.add(Pair.of(method.getParameterTypes(), method.getExceptionTypes()));
+
+                Bulkhead bulkhead = findBulkhead(providerClass, method);
+                if (bulkhead != null) {
+                    bulkheads.putIfAbsent(methodName, bulkhead);
+                }
             }
 
             return registerService(
@@ -427,7 +529,8 @@ public class DefaultServer implements JServer {
                     extensions,
                     weight,
                     executor,
-                    flowController
+                    flowController,
+                    bulkheads
             );
         }
     }
@@ -57,6 +57,10 @@ public class JRequest {
         return payload.timestamp();
     }
 
+    public long deadline() {
+        return payload.deadline();
+    }
+
     public byte serializerCode() {
         return payload.serializerCode();
     }
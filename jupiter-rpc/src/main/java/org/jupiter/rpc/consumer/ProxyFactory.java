@@ -89,6 +89,8 @@ public class ProxyFactory<I> {
     private ClusterInvoker.Strategy strategy = ClusterInvoker.Strategy.getDefault();
     // failover重试次数
     private int retries = 2;
+    // forking并行调用的provider数
+    private int forks = 2;
 
     public static <I> ProxyFactory<I> factory(Class<I> interfaceClass) {
         ProxyFactory<I> factory = new ProxyFactory<>(interfaceClass);
@@ -195,6 +197,11 @@ public class ProxyFactory<I> {
         return this;
     }
 
+    public ProxyFactory<I> forks(int forks) {
+        this.forks = forks;
+        return this;
+    }
+
     public I newProxyInstance() {
         // check arguments
         Requires.requireNotNull(interfaceClass, "interfaceClass");
@@ -243,7 +250,7 @@ public class ProxyFactory<I> {
                 .timeoutMillis(timeoutMillis)
                 .methodSpecialConfigs(methodSpecialConfigs);
 
-        ClusterStrategyConfig strategyConfig = ClusterStrategyConfig.of(strategy, retries);
+        ClusterStrategyConfig strategyConfig = ClusterStrategyConfig.of(strategy, retries, forks);
         Object handler;
         switch (invokeType) {
             case SYNC:
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.consumer.cache;
+
+import org.jupiter.common.util.Pow2;
+
+/**
+ * 4-bit count-min sketch, 用于估算key的访问频率(TinyLFU的admission策略).
+ *
+ * 计数器总的增加次数达到 sampleSize 时所有计数器减半, 使得频率随时间衰减.
+ *
+ * 非线程安全, 调用方需要加锁.
+ *
+ * jupiter
+ * org.jupiter.rpc.consumer.cache
+ *
+ * @author jiachun.fjc
+ */
+final class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = { 0x97cb3127, 0xb492b66f, 0x9ae16a3b, 0x2f9bcd3d };
+
+    private final byte[] table;
+    private final int mask;
+    private final int sampleSize;
+
+    private int additions;
+
+    FrequencySketch(int width) {
+        width = Pow2.roundToPowerOfTwo(Math.max(width, 16));
+        table = new byte[width * DEPTH];
+        mask = width - 1;
+        sampleSize = 10 * width;
+    }
+
+    int frequency(int hash) {
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, table[indexOf(hash, i)]);
+        }
+        return frequency;
+    }
+
+    void increment(int hash) {
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, i);
+            if (table[index] < MAX_COUNT) {
+                table[index]++;
+                added = true;
+            }
+        }
+
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] >>>= 1;
+        }
+        additions >>>= 1;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = hash * SEEDS[row];
+        h ^= h >>> 16;
+        return row * (mask + 1) + (h & mask);
+    }
+}
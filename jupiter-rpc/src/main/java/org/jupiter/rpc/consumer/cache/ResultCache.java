@@ -0,0 +1,497 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.consumer.cache;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jupiter.common.util.Maps;
+import org.jupiter.common.util.SystemPropertyUtil;
+import org.jupiter.serialization.Serializer;
+
+/**
+ * Consumer端的方法级结果缓存, 命中时不再经过 {@link org.jupiter.rpc.consumer.cluster.ClusterInvoker}.
+ *
+ * 1. key为序列化后的参数, 参数类型不需要实现equals/hashCode;
+ * 2. 每个entry有固定的TTL, 过期后在下次访问时移除;
+ * 3. 容量按照字节计算(序列化后的key + result), 淘汰策略为W-TinyLFU:
+ *    新entry先进入1%的window LRU, 从window淘汰出来的entry与main区(SLRU, probation + protected)
+ *    的LRU victim比较访问频率(count-min sketch), 频率更高者留下.
+ *
+ * 读操作只有在拿到锁时才更新访问顺序和频率(tryLock), 竞争时丢弃这些信息, 不阻塞调用线程.
+ *
+ * 所有的调用方共享同一个结果对象, 只适用于幂等方法且调用方不应修改结果.
+ * 每次invalidate都会递增generation, 调用方在未命中时记录 {@link #generation()} 并在写入时带上,
+ * 如果期间发生过invalidate则丢弃这次写入, 避免失效之前发出的请求把旧结果重新放回缓存.
+ * 服务端数据变更时可以通过 {@link #find(String, String)} 找到对应的缓存并调用 {@link #invalidateAll()}
+ * (例如由provider广播通知驱动).
+ *
+ * jupiter
+ * org.jupiter.rpc.consumer.cache
+ *
+ * @author jiachun.fjc
+ */
+public final class ResultCache {
+
+    // 单个方法缓存的默认字节上限
+    public static final long DEFAULT_MAX_BYTES =
+            SystemPropertyUtil.getLong("jupiter.rpc.consumer.result_cache.max_bytes", 16 * 1024 * 1024);
+    // 用于估算sketch的宽度
+    private static final int AVERAGE_ENTRY_BYTES =
+            SystemPropertyUtil.getInt("jupiter.rpc.consumer.result_cache.average_entry_bytes", 1024);
+    // 对象头及引用等额外开销的估算值
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int DEAD = -1;
+
+    // directory#methodName --> cache
+    private static final ConcurrentMap<String, ResultCache> caches = Maps.newConcurrentMap();
+
+    private final String name;
+    private final long ttlNanos;
+    private final long windowMaxBytes;
+    private final long mainMaxBytes;
+    private final long protectedMaxBytes;
+    private final Serializer serializer;
+
+    private final ConcurrentMap<Key, Node> data = Maps.newConcurrentMap();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final AccessOrderDeque window = new AccessOrderDeque();
+    private final AccessOrderDeque probation = new AccessOrderDeque();
+    private final AccessOrderDeque protectedDeque = new AccessOrderDeque();
+
+    private long windowBytes;
+    private long mainBytes;
+    private long protectedBytes;
+
+    // 写操作持有锁, 读操作无锁
+    private volatile long generation;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * Returns the cache of the given method, creates it if absent, the first
+     * config wins when several proxies of the same service share a cache.
+     */
+    public static ResultCache of(
+            String directory, String methodName, long ttlMillis, long maxBytes, Serializer serializer) {
+
+        String name = directory + '#' + methodName;
+        ResultCache cache = caches.get(name);
+        if (cache == null) {
+            ResultCache newCache = new ResultCache(name, ttlMillis, maxBytes > 0 ? maxBytes : DEFAULT_MAX_BYTES, serializer);
+            cache = caches.putIfAbsent(name, newCache);
+            if (cache == null) {
+                cache = newCache;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the cache of the given method, or {@code null} if absent.
+     */
+    public static ResultCache find(String directory, String methodName) {
+        return caches.get(directory + '#' + methodName);
+    }
+
+    ResultCache(String name, long ttlMillis, long maxBytes, Serializer serializer) {
+        this.name = name;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.windowMaxBytes = Math.max(1, maxBytes / 100);
+        this.mainMaxBytes = maxBytes - windowMaxBytes;
+        this.protectedMaxBytes = mainMaxBytes * 80 / 100;
+        this.serializer = serializer;
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, maxBytes / AVERAGE_ENTRY_BYTES));
+    }
+
+    public Key newKey(Object[] args) {
+        return new Key(serializer.writeObject(new Holder(args)));
+    }
+
+    /**
+     * Returns the cached result, or {@code null} if absent or expired.
+     */
+    public Object get(Key key) {
+        Node node = data.get(key);
+        if (node != null && System.nanoTime() - node.expireNanos >= 0) {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                remove(node);
+            } finally {
+                lock.unlock();
+            }
+            node = null;
+        }
+
+        if (node == null) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+
+        final ReentrantLock lock = this.lock;
+        if (lock.tryLock()) {
+            try {
+                sketch.increment(key.hash);
+                if (node != null) {
+                    onHit(node);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Returns the current invalidation generation, callers capture it on a miss
+     * and pass it to {@link #put(Key, Object, long)}.
+     */
+    public long generation() {
+        return generation;
+    }
+
+    /**
+     * Caches a successful result, a {@code null} result is never cached.
+     */
+    public void put(Key key, Object result) {
+        put(key, result, generation);
+    }
+
+    /**
+     * Caches a successful result unless the cache has been invalidated since
+     * {@code generation} was captured.
+     */
+    public void put(Key key, Object result, long generation) {
+        if (result == null || generation != this.generation) {
+            return;
+        }
+
+        long weight = (long) key.bytes.length + serializer.writeObject(new Holder(result)).length + ENTRY_OVERHEAD_BYTES;
+        if (weight > mainMaxBytes) {
+            return;
+        }
+
+        Node node = new Node(key, result, (int) weight, System.nanoTime() + ttlNanos);
+
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (generation != this.generation) {
+                return;
+            }
+            Node old = data.put(key, node);
+            if (old != null) {
+                unlink(old);
+            }
+            node.queue = WINDOW;
+            window.addLast(node);
+            windowBytes += weight;
+
+            evictFromWindow();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(Object[] args) {
+        Key key = newKey(args);
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            // 即使当前没有缓存也要递增generation, 正在进行中的请求可能马上写入旧结果
+            generation++;
+            Node node = data.get(key);
+            if (node != null) {
+                remove(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            generation++;
+            data.clear();
+            window.clear();
+            probation.clear();
+            protectedDeque.clear();
+            windowBytes = 0;
+            mainBytes = 0;
+            protectedBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public long weightedSize() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return windowBytes + mainBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long hitCount() {
+        return hitCount.sum();
+    }
+
+    public long missCount() {
+        return missCount.sum();
+    }
+
+    // 以下方法需要持有锁
+
+    private void onHit(Node node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToBack(node);
+                break;
+            case PROBATION:
+                // 晋升到protected区, 超出容量时将protected区最久未访问的entry降级到probation区
+                probation.remove(node);
+                node.queue = PROTECTED;
+                protectedDeque.addLast(node);
+                protectedBytes += node.weight;
+                while (protectedBytes > protectedMaxBytes) {
+                    Node demoted = protectedDeque.pollFirst();
+                    protectedBytes -= demoted.weight;
+                    demoted.queue = PROBATION;
+                    probation.addLast(demoted);
+                }
+                break;
+            case PROTECTED:
+                protectedDeque.moveToBack(node);
+                break;
+            default:
+                // 已被移除
+        }
+    }
+
+    private void evictFromWindow() {
+        while (windowBytes > windowMaxBytes) {
+            Node candidate = window.pollFirst();
+            windowBytes -= candidate.weight;
+            candidate.queue = DEAD;
+            admit(candidate);
+        }
+    }
+
+    private void admit(Node candidate) {
+        long now = System.nanoTime();
+        while (mainBytes + candidate.weight > mainMaxBytes) {
+            Node victim = probation.peekFirst();
+            if (victim == null) {
+                victim = protectedDeque.peekFirst();
+            }
+            if (victim == null) {
+                data.remove(candidate.key, candidate);
+                return;
+            }
+            if (now - victim.expireNanos >= 0
+                    || sketch.frequency(candidate.key.hash) > sketch.frequency(victim.key.hash)) {
+                remove(victim);
+            } else {
+                data.remove(candidate.key, candidate);
+                return;
+            }
+        }
+        candidate.queue = PROBATION;
+        probation.addLast(candidate);
+        mainBytes += candidate.weight;
+    }
+
+    private void remove(Node node) {
+        if (data.remove(node.key, node)) {
+            unlink(node);
+        }
+    }
+
+    private void unlink(Node node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.remove(node);
+                windowBytes -= node.weight;
+                break;
+            case PROBATION:
+                probation.remove(node);
+                mainBytes -= node.weight;
+                break;
+            case PROTECTED:
+                protectedDeque.remove(node);
+                mainBytes -= node.weight;
+                protectedBytes -= node.weight;
+                break;
+            default:
+                // 已被移除
+        }
+        node.queue = DEAD;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultCache{" +
+                "name='" + name + '\'' +
+                ", size=" + size() +
+                ", hitCount=" + hitCount() +
+                ", missCount=" + missCount() +
+                '}';
+    }
+
+    public static final class Key {
+
+        private final byte[] bytes;
+        private final int hash;
+
+        Key(byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key that = (Key) o;
+
+            return hash == that.hash && Arrays.equals(bytes, that.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // 序列化参数及结果时的包装, 使得所有的序列化方式都可以处理数组和基本类型
+    static final class Holder implements Serializable {
+
+        private static final long serialVersionUID = 4087126574380712917L;
+
+        Object value;
+
+        Holder(Object value) {
+            this.value = value;
+        }
+    }
+
+    static final class Node {
+
+        final Key key;
+        final Object value;
+        final int weight;
+        final long expireNanos;
+
+        int queue = DEAD;
+        Node prev;
+        Node next;
+
+        Node(Key key, Object value, int weight, long expireNanos) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.expireNanos = expireNanos;
+        }
+    }
+
+    static final class AccessOrderDeque {
+
+        private Node head;
+        private Node tail;
+
+        void addLast(Node node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        Node peekFirst() {
+            return head;
+        }
+
+        Node pollFirst() {
+            Node node = head;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+        void remove(Node node) {
+            Node prev = node.prev;
+            Node next = node.next;
+            if (prev == null) {
+                head = next;
+            } else {
+                prev.next = next;
+            }
+            if (next == null) {
+                tail = prev;
+            } else {
+                next.prev = prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToBack(Node node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void clear() {
+            Node node = head;
+            while (node != null) {
+                Node next = node.next;
+                node.prev = null;
+                node.next = null;
+                node.queue = DEAD;
+                node = next;
+            }
+            head = null;
+            tail = null;
+        }
+    }
+}
@@ -33,8 +33,9 @@ public interface ClusterInvoker {
         FAIL_FAST,  // 快速失败
         FAIL_OVER,  // 失败重试
         FAIL_SAFE,  // 失败安全
+        HEDGING,    // 对冲请求
+        FORKING,    // 并行调用, 第一个成功的结果生效
         // FAIL_BACK,  没想到合适场景, 暂不支持
-        // FORKING,    消耗资源太多, 暂不支持
         ;
 
         public static Strategy parse(String name) {
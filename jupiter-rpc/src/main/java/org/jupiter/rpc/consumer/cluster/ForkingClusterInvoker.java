@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.consumer.cluster;
+
+import org.jupiter.common.util.Reflects;
+import org.jupiter.common.util.Requires;
+import org.jupiter.common.util.StackTraceUtil;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+import org.jupiter.rpc.JRequest;
+import org.jupiter.rpc.consumer.dispatcher.DefaultRoundDispatcher;
+import org.jupiter.rpc.consumer.dispatcher.Dispatcher;
+import org.jupiter.rpc.consumer.future.DefaultInvokeFuture;
+import org.jupiter.rpc.consumer.future.ForkingInvokeFuture;
+import org.jupiter.rpc.consumer.future.InvokeFuture;
+import org.jupiter.transport.channel.JChannelGroup;
+
+/**
+ * 并行调用, 同时向K个不同的provider发送相同的请求, 第一个成功的结果生效, 全部失败才报错.
+ *
+ * 通常用于对延迟要求很高的读操作, 只能用于幂等性操作, 要注意的是会消耗K倍的资源.
+ *
+ * 注意forking不能支持广播的调用方式.
+ *
+ * jupiter
+ * org.jupiter.rpc.consumer.cluster
+ *
+ * @author jiachun.fjc
+ */
+public class ForkingClusterInvoker implements ClusterInvoker {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ForkingClusterInvoker.class);
+
+    private final DefaultRoundDispatcher dispatcher;
+    private final int forks; // 并行调用的provider数, 包含第一个
+
+    public ForkingClusterInvoker(Dispatcher dispatcher, int forks) {
+        Requires.requireTrue(
+                dispatcher instanceof DefaultRoundDispatcher,
+                Reflects.simpleClassName(dispatcher) + " is unsupported [ForkingClusterInvoker]"
+        );
+
+        this.dispatcher = (DefaultRoundDispatcher) dispatcher;
+        if (forks > 0) {
+            this.forks = forks;
+        } else {
+            this.forks = 2;
+        }
+    }
+
+    @Override
+    public Strategy strategy() {
+        return Strategy.FORKING;
+    }
+
+    @Override
+    public <T> InvokeFuture<T> invoke(JRequest request, Class<T> returnType) throws Exception {
+        ForkingInvokeFuture<T> future = ForkingInvokeFuture.with(returnType, forks);
+        JChannelGroup[] dispatched = new JChannelGroup[forks];
+
+        for (int i = 0; i < forks; i++) {
+            JRequest forkRequest = request;
+            if (i > 0) {
+                // 每个请求独立的payload(发送成功后会被clear)
+                forkRequest = new JRequest();
+                forkRequest.message(request.message());
+            }
+
+            InvokeFuture<T> f;
+            try {
+                f = dispatcher.dispatch(forkRequest, returnType, dispatched);
+            } catch (RuntimeException e) {
+                if (i == 0) {
+                    throw e;
+                }
+                // 没有更多可用的provider
+                if (logger.isDebugEnabled()) {
+                    logger.debug("[Forking] {} of {} forked, [method: {}], {}.",
+                            i, forks, request.message().getMethodName(), StackTraceUtil.stackTrace(e));
+                }
+                break;
+            }
+
+            future.add(f);
+            if (f instanceof DefaultInvokeFuture) {
+                dispatched[i] = ((DefaultInvokeFuture<T>) f).group();
+            }
+        }
+
+        future.listen();
+
+        return future;
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.consumer.cluster;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.jupiter.common.concurrent.NamedThreadFactory;
+import org.jupiter.common.util.JConstants;
+import org.jupiter.common.util.Maps;
+import org.jupiter.common.util.Reflects;
+import org.jupiter.common.util.Requires;
+import org.jupiter.common.util.StackTraceUtil;
+import org.jupiter.common.util.SystemPropertyUtil;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+import org.jupiter.common.util.timer.HierarchicalWheelTimer;
+import org.jupiter.common.util.timer.Timeout;
+import org.jupiter.rpc.JRequest;
+import org.jupiter.rpc.consumer.dispatcher.DefaultRoundDispatcher;
+import org.jupiter.rpc.consumer.dispatcher.Dispatcher;
+import org.jupiter.rpc.consumer.future.DefaultInvokeFuture;
+import org.jupiter.rpc.consumer.future.HedgingInvokeFuture;
+import org.jupiter.rpc.consumer.future.InvokeFuture;
+import org.jupiter.transport.channel.JChannelGroup;
+
+/**
+ * 对冲请求, 第一次调用在一定时间(该方法实时延迟分布的某个百分位, 缺省p95)内没有返回时,
+ * 向另一个provider再发送一次相同的请求, 以先返回的结果为准.
+ *
+ * 用于降低长尾延迟, 只能用于幂等性操作. 额外的请求数受预算限制, 缺省不超过总请求数的10%.
+ *
+ * 注意hedging不能支持广播的调用方式.
+ *
+ * 对冲请求的派发(序列化, 选择channel时可能等待连接)在独立的线程池中执行, timer线程只负责提交任务,
+ * 一个慢的对冲请求不会推迟其他对冲请求的触发; 线程池满时放弃这次对冲.
+ *
+ * https://research.google/pubs/pub40801/ (The Tail at Scale)
+ *
+ * jupiter
+ * org.jupiter.rpc.consumer.cluster
+ *
+ * @author jiachun.fjc
+ */
+public class HedgingClusterInvoker implements ClusterInvoker {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(HedgingClusterInvoker.class);
+
+    // 以第几百分位的延迟作为对冲请求的等待时间
+    private static final double PERCENTILE =
+            SystemPropertyUtil.getInt("jupiter.rpc.hedging.percentile", 95) / 100.0;
+    // 对冲请求数不超过总请求数的百分比
+    private static final int BUDGET_PERCENT =
+            SystemPropertyUtil.getInt("jupiter.rpc.hedging.budget_percent", 10);
+    // 延迟样本数不足时不发送对冲请求
+    private static final int MIN_SAMPLES =
+            SystemPropertyUtil.getInt("jupiter.rpc.hedging.min_samples", 100);
+    private static final long TIMER_TICK_MILLIS =
+            SystemPropertyUtil.getLong("jupiter.rpc.hedging.timer_tick_millis", 1);
+
+    private static final HierarchicalWheelTimer hedgingTimer =
+            new HierarchicalWheelTimer(
+                    new NamedThreadFactory("hedging.timer", true),
+                    TIMER_TICK_MILLIS, TimeUnit.MILLISECONDS,
+                    512, 4
+            );
+
+    private static final int DISPATCH_WORKERS =
+            SystemPropertyUtil.getInt("jupiter.rpc.hedging.dispatch_workers", JConstants.AVAILABLE_PROCESSORS);
+    private static final int DISPATCH_QUEUE_CAPACITY =
+            SystemPropertyUtil.getInt("jupiter.rpc.hedging.dispatch_queue_capacity", 1024);
+
+    private static final ThreadPoolExecutor hedgingExecutor;
+
+    static {
+        hedgingExecutor = new ThreadPoolExecutor(
+                DISPATCH_WORKERS,
+                DISPATCH_WORKERS,
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(DISPATCH_QUEUE_CAPACITY),
+                new NamedThreadFactory("hedging.dispatcher", true));
+        hedgingExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    private final DefaultRoundDispatcher dispatcher;
+    private final ConcurrentMap<String, MethodStats> methodStatsMapping = Maps.newConcurrentMap();
+
+    public HedgingClusterInvoker(Dispatcher dispatcher) {
+        Requires.requireTrue(
+                dispatcher instanceof DefaultRoundDispatcher,
+                Reflects.simpleClassName(dispatcher) + " is unsupported [HedgingClusterInvoker]"
+        );
+
+        this.dispatcher = (DefaultRoundDispatcher) dispatcher;
+    }
+
+    @Override
+    public Strategy strategy() {
+        return Strategy.HEDGING;
+    }
+
+    @Override
+    public <T> InvokeFuture<T> invoke(JRequest request, Class<T> returnType) throws Exception {
+        MethodStats stats = methodStats(request.message().getMethodName());
+        stats.budget.onRequest();
+
+        HedgingInvokeFuture<T> future = HedgingInvokeFuture.with(returnType);
+        InvokeFuture<T> primary = dispatcher.dispatch(request, returnType);
+
+        long hedgeDelay = stats.histogram.percentileNanos();
+        Timeout timeout = null;
+        if (hedgeDelay > 0) {
+            timeout = hedgingTimer.newTimeout(
+                    t -> submitHedge(request, returnType, primary, stats, future), hedgeDelay, TimeUnit.NANOSECONDS);
+        }
+
+        attach(primary, stats, future, timeout);
+
+        return future;
+    }
+
+    // 在timer线程中执行, 只提交任务
+    private <T> void submitHedge(JRequest request,
+                                 Class<T> returnType,
+                                 InvokeFuture<T> primary,
+                                 MethodStats stats,
+                                 HedgingInvokeFuture<T> future) {
+
+        if (future.isDone()) {
+            return;
+        }
+
+        try {
+            hedgingExecutor.execute(() -> hedge(request, returnType, primary, stats, future));
+        } catch (RejectedExecutionException e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("[Hedging] give up since the dispatcher is busy, [method: {}].",
+                        request.message().getMethodName());
+            }
+        }
+    }
+
+    private <T> void hedge(JRequest request,
+                           Class<T> returnType,
+                           InvokeFuture<T> primary,
+                           MethodStats stats,
+                           HedgingInvokeFuture<T> future) {
+
+        if (future.isDone() || !stats.budget.tryAcquire()) {
+            return;
+        }
+
+        if (!future.tryAddAttempt()) {
+            return;
+        }
+
+        // 发往另一个provider, 使用新的invokeId
+        JRequest hedgeRequest = new JRequest();
+        hedgeRequest.message(request.message());
+        JChannelGroup[] excluded = primary instanceof DefaultInvokeFuture
+                ? new JChannelGroup[] { ((DefaultInvokeFuture<T>) primary).group() }
+                : null;
+
+        InvokeFuture<T> hedged;
+        try {
+            hedged = dispatcher.dispatch(hedgeRequest, returnType, excluded);
+        } catch (Throwable t) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("[Hedging] give up, [method: {}], {}.",
+                        request.message().getMethodName(), StackTraceUtil.stackTrace(t));
+            }
+            future.onAttemptComplete(null, t);
+            return;
+        }
+
+        attach(hedged, stats, future, null);
+    }
+
+    private <T> void attach(InvokeFuture<T> attempt,
+                            MethodStats stats,
+                            HedgingInvokeFuture<T> future,
+                            Timeout timeout) {
+
+        long startTime = System.nanoTime();
+        attempt.whenComplete((result, throwable) -> {
+            if (timeout != null) {
+                timeout.cancel();
+            }
+            if (throwable == null) {
+                // 每次尝试各自的延迟, 不受对冲结果影响
+                stats.histogram.record(System.nanoTime() - startTime);
+            }
+            future.onAttemptComplete(result, throwable);
+        });
+    }
+
+    private MethodStats methodStats(String methodName) {
+        MethodStats stats = methodStatsMapping.get(methodName);
+        if (stats == null) {
+            MethodStats newStats = new MethodStats();
+            stats = methodStatsMapping.putIfAbsent(methodName, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
+    static final class MethodStats {
+
+        final LatencyHistogram histogram = new LatencyHistogram(PERCENTILE, MIN_SAMPLES);
+        final Budget budget = new Budget(BUDGET_PERCENT);
+    }
+
+    /**
+     * 每个请求积累 percent 个单位, 每个对冲请求消耗100个单位, 最多积累 {@link #MAX_BURST} 个对冲请求的预算.
+     */
+    static final class Budget {
+
+        private static final AtomicIntegerFieldUpdater<Budget> tokensUpdater =
+                AtomicIntegerFieldUpdater.newUpdater(Budget.class, "tokens");
+
+        private static final int COST = 100;
+        private static final int MAX_BURST = 10;
+
+        private final int percent;
+
+        @SuppressWarnings("unused")
+        private volatile int tokens = 0;
+
+        Budget(int percent) {
+            this.percent = percent;
+        }
+
+        void onRequest() {
+            for (;;) {
+                int t = tokens;
+                if (t >= COST * MAX_BURST) {
+                    return;
+                }
+                if (tokensUpdater.compareAndSet(this, t, Math.min(t + percent, COST * MAX_BURST))) {
+                    return;
+                }
+            }
+        }
+
+        boolean tryAcquire() {
+            for (;;) {
+                int t = tokens;
+                if (t < COST) {
+                    return false;
+                }
+                if (tokensUpdater.compareAndSet(this, t, t - COST)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
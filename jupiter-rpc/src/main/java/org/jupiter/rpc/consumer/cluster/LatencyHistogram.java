@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.consumer.cluster;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * 无锁的对数分桶延迟直方图, 每个2的幂区间再分为4个子桶, 相对误差不超过25%.
+ *
+ * record是O(1)的, 每记录 {@link #REFRESH_INTERVAL} 个样本由记录线程重新计算一次百分位数并缓存,
+ * 样本总数超过 {@link #DECAY_THRESHOLD} 时所有桶减半, 使直方图跟随最近的流量变化.
+ *
+ * jupiter
+ * org.jupiter.rpc.consumer.cluster
+ *
+ * @author jiachun.fjc
+ */
+final class LatencyHistogram {
+
+    private static final AtomicLongFieldUpdater<LatencyHistogram> countUpdater =
+            AtomicLongFieldUpdater.newUpdater(LatencyHistogram.class, "count");
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    static final int REFRESH_INTERVAL = 256;
+    static final long DECAY_THRESHOLD = 8192;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final double percentile;
+    private final long minSamples;
+
+    @SuppressWarnings("unused")
+    private volatile long count = 0;
+    // 样本不足时为0
+    private volatile long percentileNanos = 0;
+
+    LatencyHistogram(double percentile, long minSamples) {
+        this.percentile = percentile;
+        this.minSamples = minSamples;
+    }
+
+    void record(long nanos) {
+        buckets.getAndIncrement(indexOf(nanos));
+        if ((countUpdater.incrementAndGet(this) & (REFRESH_INTERVAL - 1)) == 0) {
+            refresh();
+        }
+    }
+
+    /**
+     * Returns the cached percentile latency in nanoseconds, or {@code 0} if
+     * there are not enough samples yet.
+     */
+    long percentileNanos() {
+        return percentileNanos;
+    }
+
+    void refresh() {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += (snapshot[i] = buckets.get(i));
+        }
+
+        if (total < minSamples) {
+            return;
+        }
+
+        long target = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                percentileNanos = upperBoundOf(i);
+                break;
+            }
+        }
+
+        if (total > DECAY_THRESHOLD) {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.getAndAdd(i, -(snapshot[i] >>> 1));
+            }
+        }
+    }
+
+    static int indexOf(long nanos) {
+        long v = Math.max(nanos, 0);
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (msb - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int msb = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = index & (SUB_BUCKETS - 1);
+        long lower = (long) (SUB_BUCKETS + sub) << (msb - SUB_BUCKET_BITS);
+        return lower + (1L << (msb - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -22,6 +22,7 @@ import org.jupiter.common.util.JConstants;
 import org.jupiter.common.util.Maps;
 import org.jupiter.common.util.StackTraceUtil;
 import org.jupiter.common.util.SystemClock;
+import org.jupiter.common.util.SystemPropertyUtil;
 import org.jupiter.common.util.internal.logging.InternalLogger;
 import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
 import org.jupiter.rpc.DispatchType;
@@ -30,7 +31,9 @@ import org.jupiter.rpc.JRequest;
 import org.jupiter.rpc.JResponse;
 import org.jupiter.rpc.consumer.ConsumerInterceptor;
 import org.jupiter.rpc.consumer.future.DefaultInvokeFuture;
+import org.jupiter.rpc.exception.JupiterFlowControlException;
 import org.jupiter.rpc.exception.JupiterRemoteException;
+import org.jupiter.rpc.flow.control.ConcurrencyLimiterMetrics;
 import org.jupiter.rpc.load.balance.LoadBalancer;
 import org.jupiter.rpc.model.metadata.MessageWrapper;
 import org.jupiter.rpc.model.metadata.MethodSpecialConfig;
@@ -39,7 +42,10 @@ import org.jupiter.rpc.model.metadata.ServiceMetadata;
 import org.jupiter.serialization.Serializer;
 import org.jupiter.serialization.SerializerFactory;
 import org.jupiter.serialization.SerializerType;
+import org.jupiter.transport.Priority;
 import org.jupiter.transport.Status;
+import org.jupiter.transport.channel.CircuitBreaker;
+import org.jupiter.transport.channel.ConcurrencyLimiter;
 import org.jupiter.transport.channel.CopyOnWriteGroupList;
 import org.jupiter.transport.channel.JChannel;
 import org.jupiter.transport.channel.JChannelGroup;
@@ -56,6 +62,10 @@ abstract class AbstractDispatcher implements Dispatcher {
 
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(AbstractDispatcher.class);
 
+    // 同一连接上一个方法的第一次调用之后只发送provider分配的方法id, 不再发送service/method字符串
+    private static final boolean METHOD_ID_INTERNING =
+            SystemPropertyUtil.getBoolean("jupiter.rpc.consumer.method_id_interning", true);
+
     private final JClient client;
     private final LoadBalancer loadBalancer;                    // 软负载均衡
     private final Serializer serializerImpl;                    // 序列化/反序列化impl
@@ -63,6 +73,8 @@ abstract class AbstractDispatcher implements Dispatcher {
     private long timeoutMillis = JConstants.DEFAULT_TIMEOUT;    // 调用超时时间设置
     // 针对指定方法单独设置的超时时间, 方法名为key, 方法参数类型不做区别对待
     private Map<String, Long> methodSpecialTimeoutMapping = Maps.newHashMap();
+    // 针对指定方法单独设置的优先级, 方法名为key
+    private Map<String, Byte> methodSpecialPriorityMapping = Maps.newHashMap();
 
     public AbstractDispatcher(JClient client, SerializerType serializerType) {
         this(client, null, serializerType);
@@ -74,6 +86,7 @@ abstract class AbstractDispatcher implements Dispatcher {
         this.serializerImpl = SerializerFactory.getSerializer(serializerType.value());
     }
 
+    @Override
     public Serializer serializer() {
         return serializerImpl;
     }
@@ -106,6 +119,10 @@ abstract class AbstractDispatcher implements Dispatcher {
                 if (timeoutMillis > 0) {
                     methodSpecialTimeoutMapping.put(config.getMethodName(), timeoutMillis);
                 }
+                Priority priority = config.getPriority();
+                if (priority != null && priority != Priority.NORMAL) {
+                    methodSpecialPriorityMapping.put(config.getMethodName(), priority.value());
+                }
             }
         }
         return this;
@@ -119,25 +136,45 @@ abstract class AbstractDispatcher implements Dispatcher {
         return timeoutMillis;
     }
 
-    protected JChannel select(ServiceMetadata metadata) {
+    protected byte getMethodSpecialPriority(String methodName) {
+        if (methodSpecialPriorityMapping.isEmpty()) {
+            return Priority.NORMAL.value();
+        }
+        Byte priority = methodSpecialPriorityMapping.get(methodName);
+        return priority == null ? Priority.NORMAL.value() : priority;
+    }
+
+    protected JChannelGroup select(MessageWrapper message) {
+        return select(message, null);
+    }
+
+    /**
+     * 选择一个provider, 但不会选择 {@code excluded} 中的任何一个, 用于把重复的请求发往另外的provider.
+     */
+    protected JChannelGroup select(MessageWrapper message, JChannelGroup[] excluded) {
+        ServiceMetadata metadata = message.getMetadata();
         CopyOnWriteGroupList groups = client
                 .connector()
                 .directory(metadata);
-        JChannelGroup group = loadBalancer.select(groups, metadata);
+        JChannelGroup group = loadBalancer.select(groups, metadata, message);
 
         if (group != null) {
             if (group.isAvailable()) {
-                return group.next();
-            }
-
-            // to the deadline (no available channel), the time exceeded the predetermined limit
-            long deadline = group.deadlineMillis();
-            if (deadline > 0 && SystemClock.millisClock().now() > deadline) {
-                boolean removed = groups.remove(group);
-                if (removed) {
-                    if (logger.isWarnEnabled()) {
-                        logger.warn("Removed channel group: {} in directory: {} on [select].",
-                                group, metadata.directoryString());
+                if (!contains(excluded, group)
+                        && ConcurrencyLimiter.isAllowed(group)
+                        && group.circuitBreaker().allowRequest()) {
+                    return group;
+                }
+            } else {
+                // to the deadline (no available channel), the time exceeded the predetermined limit
+                long deadline = group.deadlineMillis();
+                if (deadline > 0 && SystemClock.millisClock().now() > deadline) {
+                    boolean removed = groups.remove(group);
+                    if (removed) {
+                        if (logger.isWarnEnabled()) {
+                            logger.warn("Removed channel group: {} in directory: {} on [select].",
+                                    group, metadata.directoryString());
+                        }
                     }
                 }
             }
@@ -148,14 +185,84 @@ abstract class AbstractDispatcher implements Dispatcher {
             }
         }
 
-        JChannelGroup[] snapshot = groups.getSnapshot();
+        return selectFallback(groups.getSnapshot(), excluded, metadata.directoryString());
+    }
+
+    /**
+     * 负载均衡选中的provider不可用(超过并发限制或者被熔断)时的兜底选择.
+     *
+     * 只选择熔断器关闭的provider, 半开状态的provider几乎没有流量, 余量通常最多, 如果参与兜底选择会绕过探测请求的配额,
+     * 把流量全部压到刚刚恢复的provider上; 没有熔断器关闭的provider时, 才按顺序尝试半开状态的provider,
+     * 并且只消耗最终选中的那一个的探测配额.
+     */
+    static JChannelGroup selectFallback(JChannelGroup[] snapshot, JChannelGroup[] excluded, String directory) {
+        JChannelGroup selected = null;
+        int maxHeadroom = Integer.MIN_VALUE;
         for (JChannelGroup g : snapshot) {
-            if (g.isAvailable()) {
-                return g.next();
+            if (contains(excluded, g)
+                    || !g.isAvailable()
+                    || g.circuitBreaker().state() != CircuitBreaker.State.CLOSED) {
+                continue;
+            }
+            if (!ConcurrencyLimiter.ENABLED) {
+                return g;
+            }
+            // 负载均衡选中的provider超过了并发限制, 改为选择余量最多的provider
+            int headroom = g.concurrencyLimiter().headroom();
+            if (headroom > maxHeadroom) {
+                maxHeadroom = headroom;
+                selected = g;
             }
         }
 
-        throw new IllegalStateException("No channel");
+        if (selected == null) {
+            for (JChannelGroup g : snapshot) {
+                if (!contains(excluded, g)
+                        && g.isAvailable()
+                        && ConcurrencyLimiter.isAllowed(g)
+                        && g.circuitBreaker().allowRequest()) {
+                    return g;
+                }
+            }
+            throw new IllegalStateException("No channel");
+        }
+
+        if (maxHeadroom <= 0) {
+            // 所有provider都超过了并发限制, 在本地快速失败
+            ConcurrencyLimiterMetrics.markRejected();
+            throw new JupiterFlowControlException(
+                    "All providers of " + directory + " exceed the concurrency limit",
+                    Status.CLIENT_FLOW_CONTROL);
+        }
+
+        return selected;
+    }
+
+    private static boolean contains(JChannelGroup[] groups, JChannelGroup group) {
+        if (groups != null) {
+            for (JChannelGroup g : groups) {
+                if (g == group) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the message to write on the given channel, only the method id
+     * and args are sent if the provider has assigned an id for this method.
+     */
+    protected static MessageWrapper wireMessage(JChannel channel, MessageWrapper message) {
+        if (!METHOD_ID_INTERNING) {
+            return message;
+        }
+        int methodId = channel.methodIdTable().get(message.getMetadata(), message.getMethodName());
+        if (methodId > 0) {
+            return message.intern(methodId);
+        }
+        // 每次尝试各自的拷贝, request.message()被failover/hedging/forking的多次尝试共享
+        return message.requireMethodId();
     }
 
     protected JChannelGroup[] groups(ServiceMetadata metadata) {
@@ -166,21 +273,51 @@ abstract class AbstractDispatcher implements Dispatcher {
 
     @SuppressWarnings("all")
     protected <T> DefaultInvokeFuture<T> write(
-            final JChannel channel, final JRequest request, final Class<T> returnType, final DispatchType dispatchType) {
+            final JChannelGroup group,
+            final JChannel channel,
+            final JRequest request,
+            final Class<T> returnType,
+            final DispatchType dispatchType) {
+        return write(group, channel, request, returnType, dispatchType, false);
+    }
+
+    /**
+     * @param methodIdRequired whether the message written on the wire asks
+     *                         the provider to assign a method id
+     */
+    @SuppressWarnings("all")
+    protected <T> DefaultInvokeFuture<T> write(
+            final JChannelGroup group,
+            final JChannel channel,
+            final JRequest request,
+            final Class<T> returnType,
+            final DispatchType dispatchType,
+            final boolean methodIdRequired) {
         final MessageWrapper message = request.message();
         final long timeoutMillis = getMethodSpecialTimeoutMillis(message.getMethodName());
         final ConsumerInterceptor[] interceptors = interceptors();
         final DefaultInvokeFuture<T> future = DefaultInvokeFuture
-                .with(request.invokeId(), channel, timeoutMillis, returnType, dispatchType)
+                .with(request.invokeId(), channel, timeoutMillis, returnType,
+                        ConcurrencyLimiter.ENABLED ? group.concurrencyLimiter() : null)
+                .group(group)
                 .interceptors(interceptors);
 
+        if (methodIdRequired) {
+            future.methodIdRequired(message);
+        }
+
+        final JRequestPayload payload = request.payload();
+        // 拦截器可以按照调用覆盖方法的优先级
+        payload.priority(getMethodSpecialPriority(message.getMethodName()));
+
         if (interceptors != null) {
             for (int i = 0; i < interceptors.length; i++) {
                 interceptors[i].beforeInvoke(request, channel);
             }
         }
 
-        final JRequestPayload payload = request.payload();
+        // 截止时间随请求一起发送给provider, provider不再处理consumer已经放弃等待的请求
+        payload.deadline(SystemClock.millisClock().now() + timeoutMillis);
 
         channel.write(payload, new JFutureListener<JChannel>() {
 
@@ -211,7 +348,7 @@ abstract class AbstractDispatcher implements Dispatcher {
                 response.status(Status.CLIENT_ERROR);
                 response.result(result);
 
-                DefaultInvokeFuture.fakeReceived(channel, response, dispatchType);
+                DefaultInvokeFuture.fakeReceived(channel, response);
             }
         });
 
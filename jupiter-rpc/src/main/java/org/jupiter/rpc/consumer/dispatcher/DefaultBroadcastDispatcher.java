@@ -28,6 +28,7 @@ import org.jupiter.serialization.io.OutputBuf;
 import org.jupiter.transport.CodecConfig;
 import org.jupiter.transport.channel.JChannel;
 import org.jupiter.transport.channel.JChannelGroup;
+import org.jupiter.transport.local.LocalChannel;
 
 /**
  * 组播方式派发消息.
@@ -67,12 +68,13 @@ public class DefaultBroadcastDispatcher extends AbstractDispatcher {
         DefaultInvokeFuture<T>[] futures = new DefaultInvokeFuture[channels.length];
         for (int i = 0; i < channels.length; i++) {
             JChannel channel = channels[i];
-            if (isLowCopy) {
+            // 进程内的local channel可以跳过序列化, 每个channel一份深拷贝的参数
+            if (!LocalChannel.writeObject(channel, request.payload(), s_code, message) && isLowCopy) {
                 OutputBuf outputBuf =
                         _serializer.writeObject(channel.allocOutputBuf(), message);
                 request.outputBuf(s_code, outputBuf);
             }
-            futures[i] = write(channel, request, returnType, DispatchType.BROADCAST);
+            futures[i] = write(groups[i], channel, request, returnType, DispatchType.BROADCAST);
         }
 
         return DefaultInvokeFutureGroup.with(futures);
@@ -26,6 +26,8 @@ import org.jupiter.serialization.SerializerType;
 import org.jupiter.serialization.io.OutputBuf;
 import org.jupiter.transport.CodecConfig;
 import org.jupiter.transport.channel.JChannel;
+import org.jupiter.transport.channel.JChannelGroup;
+import org.jupiter.transport.local.LocalChannel;
 
 /**
  * 单播方式派发消息.
@@ -44,24 +46,38 @@ public class DefaultRoundDispatcher extends AbstractDispatcher {
 
     @Override
     public <T> InvokeFuture<T> dispatch(JRequest request, Class<T> returnType) {
+        return dispatch(request, returnType, null);
+    }
+
+    /**
+     * 派发消息, 但不会发往 {@code excluded} 中的任何一个provider.
+     */
+    public <T> InvokeFuture<T> dispatch(JRequest request, Class<T> returnType, JChannelGroup[] excluded) {
         // stack copy
         final Serializer _serializer = serializer();
         final MessageWrapper message = request.message();
 
         // 通过软负载均衡选择一个channel
-        JChannel channel = select(message.getMetadata());
+        JChannelGroup group = select(message, excluded);
+        JChannel channel = group.next();
 
         byte s_code = _serializer.code();
-        // 在业务线程中序列化, 减轻IO线程负担
-        if (CodecConfig.isCodecLowCopy()) {
-            OutputBuf outputBuf =
-                    _serializer.writeObject(channel.allocOutputBuf(), message);
-            request.outputBuf(s_code, outputBuf);
-        } else {
-            byte[] bytes = _serializer.writeObject(message);
-            request.bytes(s_code, bytes);
+        boolean methodIdRequired = false;
+        // 进程内的local channel可以跳过序列化, 只深拷贝参数
+        if (!LocalChannel.writeObject(channel, request.payload(), s_code, message)) {
+            MessageWrapper wireMessage = wireMessage(channel, message);
+            methodIdRequired = wireMessage.getMethodId() == MessageWrapper.METHOD_ID_REQUIRED;
+            // 在业务线程中序列化, 减轻IO线程负担
+            if (CodecConfig.isCodecLowCopy()) {
+                OutputBuf outputBuf =
+                        _serializer.writeObject(channel.allocOutputBuf(), wireMessage);
+                request.outputBuf(s_code, outputBuf);
+            } else {
+                byte[] bytes = _serializer.writeObject(wireMessage);
+                request.bytes(s_code, bytes);
+            }
         }
 
-        return write(channel, request, returnType, DispatchType.ROUND);
+        return write(group, channel, request, returnType, DispatchType.ROUND, methodIdRequired);
     }
 }
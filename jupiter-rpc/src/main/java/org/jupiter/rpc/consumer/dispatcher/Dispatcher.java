@@ -21,6 +21,7 @@ import org.jupiter.rpc.JRequest;
 import org.jupiter.rpc.consumer.ConsumerInterceptor;
 import org.jupiter.rpc.consumer.future.InvokeFuture;
 import org.jupiter.rpc.model.metadata.MethodSpecialConfig;
+import org.jupiter.serialization.Serializer;
 
 /**
  * jupiter
@@ -32,6 +33,8 @@ public interface Dispatcher {
 
     <T> InvokeFuture<T> dispatch(JRequest request, Class<T> returnType);
 
+    Serializer serializer();
+
     Dispatcher interceptors(List<ConsumerInterceptor> interceptors);
 
     Dispatcher timeoutMillis(long timeoutMillis);
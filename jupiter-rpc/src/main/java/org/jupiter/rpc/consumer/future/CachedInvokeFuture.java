@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.consumer.future;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.jupiter.rpc.consumer.cache.ResultCache;
+
+/**
+ * 命中 {@link ResultCache} 时返回的已完成的 {@link InvokeFuture}.
+ *
+ * jupiter
+ * org.jupiter.rpc.consumer.future
+ *
+ * @author jiachun.fjc
+ */
+public class CachedInvokeFuture<V> extends CompletableFuture<V> implements InvokeFuture<V> {
+
+    private final Class<V> returnType;
+
+    public static <T> CachedInvokeFuture<T> with(Class<T> returnType, T result) {
+        return new CachedInvokeFuture<>(returnType, result);
+    }
+
+    private CachedInvokeFuture(Class<V> returnType, V result) {
+        this.returnType = returnType;
+        complete(result);
+    }
+
+    @Override
+    public Class<V> returnType() {
+        return returnType;
+    }
+
+    @Override
+    public V getResult() throws Throwable {
+        return get();
+    }
+}
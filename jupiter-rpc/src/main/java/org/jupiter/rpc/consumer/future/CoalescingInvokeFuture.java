@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.consumer.future;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 合并调用(single-flight)时重复的调用方拿到的 {@link InvokeFuture},
+ * 与正在进行中的那次调用同时结束, 并共享同一个结果对象.
+ *
+ * jupiter
+ * org.jupiter.rpc.consumer.future
+ *
+ * @author jiachun.fjc
+ */
+public class CoalescingInvokeFuture<V> extends CompletableFuture<V> implements InvokeFuture<V> {
+
+    private final Class<V> returnType;
+
+    public static <T> CoalescingInvokeFuture<T> with(Class<T> returnType) {
+        return new CoalescingInvokeFuture<>(returnType);
+    }
+
+    private CoalescingInvokeFuture(Class<V> returnType) {
+        this.returnType = returnType;
+    }
+
+    @Override
+    public Class<V> returnType() {
+        return returnType;
+    }
+
+    @Override
+    public V getResult() throws Throwable {
+        return get();
+    }
+
+    /**
+     * Completes this future with the result of the in-flight call.
+     */
+    public void onComplete(V result, Throwable cause) {
+        if (cause == null) {
+            complete(result);
+        } else {
+            completeExceptionally(cause);
+        }
+    }
+}
@@ -16,29 +16,32 @@
 package org.jupiter.rpc.consumer.future;
 
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.jupiter.common.concurrent.NamedThreadFactory;
 import org.jupiter.common.util.JConstants;
-import org.jupiter.common.util.Maps;
 import org.jupiter.common.util.SystemPropertyUtil;
 import org.jupiter.common.util.internal.logging.InternalLogger;
 import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
-import org.jupiter.common.util.timer.HashedWheelTimer;
+import org.jupiter.common.util.timer.HierarchicalWheelTimer;
 import org.jupiter.common.util.timer.Timeout;
 import org.jupiter.common.util.timer.TimerTask;
-import org.jupiter.rpc.DispatchType;
 import org.jupiter.rpc.JResponse;
 import org.jupiter.rpc.consumer.ConsumerInterceptor;
 import org.jupiter.rpc.exception.JupiterBizException;
 import org.jupiter.rpc.exception.JupiterRemoteException;
 import org.jupiter.rpc.exception.JupiterSerializationException;
 import org.jupiter.rpc.exception.JupiterTimeoutException;
+import org.jupiter.rpc.model.metadata.MessageWrapper;
+import org.jupiter.rpc.model.metadata.MethodIdResult;
 import org.jupiter.rpc.model.metadata.ResultWrapper;
 import org.jupiter.transport.Status;
+import org.jupiter.transport.channel.CircuitBreaker;
+import org.jupiter.transport.channel.ConcurrencyLimiter;
+import org.jupiter.transport.channel.InFlightRequest;
 import org.jupiter.transport.channel.JChannel;
+import org.jupiter.transport.channel.JChannelGroup;
 
 /**
  * jupiter
@@ -46,30 +49,25 @@ import org.jupiter.transport.channel.JChannel;
  *
  * @author jiachun.fjc
  */
-public class DefaultInvokeFuture<V> extends CompletableFuture<V> implements InvokeFuture<V> {
+public class DefaultInvokeFuture<V> extends CompletableFuture<V>
+        implements InvokeFuture<V>, InFlightRequest, TimerTask {
 
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(DefaultInvokeFuture.class);
 
     private static final long DEFAULT_TIMEOUT_NANOSECONDS = TimeUnit.MILLISECONDS.toNanos(JConstants.DEFAULT_TIMEOUT);
 
-    private static final int FUTURES_CONTAINER_INITIAL_CAPACITY =
-            SystemPropertyUtil.getInt("jupiter.rpc.invoke.futures_container_initial_capacity", 1024);
     private static final long TIMEOUT_SCANNER_INTERVAL_MILLIS =
             SystemPropertyUtil.getLong("jupiter.rpc.invoke.timeout_scanner_interval_millis", 50);
 
-    private static final ConcurrentMap<Long, DefaultInvokeFuture<?>> roundFutures =
-            Maps.newConcurrentMapLong(FUTURES_CONTAINER_INITIAL_CAPACITY);
-    private static final ConcurrentMap<String, DefaultInvokeFuture<?>> broadcastFutures =
-            Maps.newConcurrentMap(FUTURES_CONTAINER_INITIAL_CAPACITY);
-
-    private static final HashedWheelTimer timeoutScanner =
-            new HashedWheelTimer(
+    private static final HierarchicalWheelTimer timeoutScanner =
+            new HierarchicalWheelTimer(
                     new NamedThreadFactory("futures.timeout.scanner", true),
                     TIMEOUT_SCANNER_INTERVAL_MILLIS, TimeUnit.MILLISECONDS,
-                    4096
+                    64, 4
             );
 
-    private final long invokeId; // request.invokeId, 广播的场景可以重复
+    // request.invokeId, 广播的场景可以重复, 但每个channel有独立的InFlightTable, 所以在channel内是唯一的
+    private final long invokeId;
     private final JChannel channel;
     private final Class<V> returnType;
     private final long timeout;
@@ -77,39 +75,56 @@ public class DefaultInvokeFuture<V> extends CompletableFuture<V> implements Invo
 
     private volatile boolean sent = false;
 
+    // 正常返回时取消超时检测, 被取消的timeout会在它的bucket到期时被丢弃
+    private Timeout timeoutHandle;
+
     private ConsumerInterceptor[] interceptors;
+    // 用于统计延迟, 可以为null
+    private JChannelGroup group;
+    // 自适应并发限制, 可以为null
+    private final ConcurrencyLimiter limiter;
+    // 请求provider分配方法id的消息, 收到响应后记录到channel的MethodIdTable, 可以为null
+    private MessageWrapper methodIdRequired;
 
     public static <T> DefaultInvokeFuture<T> with(
-            long invokeId, JChannel channel, long timeoutMillis, Class<T> returnType, DispatchType dispatchType) {
+            long invokeId, JChannel channel, long timeoutMillis, Class<T> returnType) {
 
-        return new DefaultInvokeFuture<>(invokeId, channel, timeoutMillis, returnType, dispatchType);
+        return new DefaultInvokeFuture<>(invokeId, channel, timeoutMillis, returnType, null);
     }
 
-    private DefaultInvokeFuture(
-            long invokeId, JChannel channel, long timeoutMillis, Class<V> returnType, DispatchType dispatchType) {
+    public static <T> DefaultInvokeFuture<T> with(
+            long invokeId, JChannel channel, long timeoutMillis, Class<T> returnType, ConcurrencyLimiter limiter) {
 
+        return new DefaultInvokeFuture<>(invokeId, channel, timeoutMillis, returnType, limiter);
+    }
+
+    private DefaultInvokeFuture(
+            long invokeId, JChannel channel, long timeoutMillis, Class<V> returnType, ConcurrencyLimiter limiter) {
         this.invokeId = invokeId;
         this.channel = channel;
         this.timeout = timeoutMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : DEFAULT_TIMEOUT_NANOSECONDS;
         this.returnType = returnType;
+        this.limiter = limiter;
+
+        // 在放入InFlightTable之前占用, doReceived中释放
+        if (limiter != null) {
+            limiter.acquire();
+        }
 
-        TimeoutTask timeoutTask;
-
-        switch (dispatchType) {
-            case ROUND:
-                roundFutures.put(invokeId, this);
-                timeoutTask = new TimeoutTask(invokeId);
-                break;
-            case BROADCAST:
-                String channelId = channel.id();
-                broadcastFutures.put(subInvokeId(channelId, invokeId), this);
-                timeoutTask = new TimeoutTask(channelId, invokeId);
-                break;
-            default:
-                throw new IllegalArgumentException("Unsupported " + dispatchType);
+        // 单播和广播都注册到channel自己的InFlightTable, 不需要拼接 <channelId + invokeId> 字符串作为key
+        if (!channel.inFlightTable().put(this)) {
+            // channel已经断开
+            onChannelInactive(channel);
+            return;
         }
 
-        timeoutScanner.newTimeout(timeoutTask, timeout, TimeUnit.NANOSECONDS);
+        // future本身就是TimerTask, 不需要再额外创建对象
+        timeoutHandle = timeoutScanner.newTimeout(this, timeout, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public long invokeId() {
+        return invokeId;
     }
 
     public JChannel channel() {
@@ -144,12 +159,96 @@ public class DefaultInvokeFuture<V> extends CompletableFuture<V> implements Invo
         return this;
     }
 
+    public JChannelGroup group() {
+        return group;
+    }
+
+    public DefaultInvokeFuture<V> methodIdRequired(MessageWrapper message) {
+        this.methodIdRequired = message;
+        return this;
+    }
+
+    public DefaultInvokeFuture<V> group(JChannelGroup group) {
+        this.group = group;
+        return this;
+    }
+
+    @Override
+    public void onChannelInactive(JChannel channel) {
+        ResultWrapper result = new ResultWrapper();
+        result.setError(new JupiterRemoteException("Channel inactive: " + channel, channel.remoteAddress()));
+
+        JResponse response = new JResponse(invokeId);
+        response.status(Status.CLIENT_ERROR);
+        response.result(result);
+
+        doReceived(response);
+    }
+
+    /**
+     * 不再需要这个请求的结果(比如forking中其他的请求已经成功返回), 立即从InFlightTable中移除,
+     * 而不是等到超时被扫描出来, 迟到的响应会被直接丢弃.
+     */
+    public void abandon() {
+        if (channel.inFlightTable().remove(invokeId) == null) {
+            return; // 已经结束
+        }
+
+        ResultWrapper result = new ResultWrapper();
+        result.setError(new JupiterRemoteException("Abandoned", channel.remoteAddress()));
+
+        JResponse response = new JResponse(invokeId);
+        response.status(Status.CLIENT_ERROR);
+        response.result(result);
+
+        doReceived(response);
+    }
+
+    @Override
+    public void run(Timeout timeout) throws Exception {
+        DefaultInvokeFuture<?> future = (DefaultInvokeFuture<?>) channel.inFlightTable().remove(invokeId);
+
+        if (future != null) {
+            processTimeout(future);
+        }
+    }
+
     @SuppressWarnings("all")
     private void doReceived(JResponse response) {
+        Timeout t = timeoutHandle;
+        if (t != null) {
+            t.cancel();
+        }
+
         byte status = response.status();
 
+        long elapsed = System.nanoTime() - startTime;
+
+        JChannelGroup g = group;
+        if (g != null) {
+            if (status != Status.CLIENT_ERROR.value()) {
+                // 超时也计入, 以超时时间作为延迟样本
+                g.recordLatency(elapsed);
+            }
+            recordOutcome(g.circuitBreaker(), status, elapsed);
+        }
+
+        ConcurrencyLimiter l = limiter;
+        if (l != null) {
+            l.release(elapsed, status);
+        }
+
         if (status == Status.OK.value()) {
             ResultWrapper wrapper = response.result();
+            MessageWrapper message = methodIdRequired;
+            if (message != null && wrapper.getResult() instanceof MethodIdResult) {
+                // provider分配了方法id, 拆掉包装, 拦截器及调用方看到的仍然是真实的结果
+                MethodIdResult assigned = (MethodIdResult) wrapper.getResult();
+                if (assigned.getMethodId() > 0) {
+                    channel.methodIdTable().put(message.getMetadata(), message.getMethodName(), assigned.getMethodId());
+                }
+                wrapper.setResult(assigned.getResult());
+            }
             complete((V) wrapper.getResult());
         } else {
             setException(status, response);
@@ -163,6 +262,20 @@ public class DefaultInvokeFuture<V> extends CompletableFuture<V> implements Invo
         }
     }
 
+    // 熔断器只统计provider的问题, 业务异常和consumer自身的问题不计入
+    static void recordOutcome(CircuitBreaker breaker, byte status, long elapsed) {
+        if (status == Status.OK.value() || status == Status.SERVICE_EXPECTED_ERROR.value()) {
+            breaker.record(false, breaker.isSlowCall(elapsed));
+        } else if (status == Status.SERVER_TIMEOUT.value() || status == Status.CLIENT_TIMEOUT.value()) {
+            // 挂起或者黑洞的provider只会表现为超时, 按慢调用计入, 半开状态的探测请求超时也必须有结果
+            breaker.record(false, true);
+        } else if (status != Status.CLIENT_ERROR.value()
+                && status != Status.BAD_REQUEST.value()
+                && status != Status.DESERIALIZATION_FAIL.value()) {
+            breaker.record(true, breaker.isSlowCall(elapsed));
+        }
+    }
+
     private void setException(byte status, JResponse response) {
         Throwable cause;
         if (status == Status.SERVER_TIMEOUT.value()) {
@@ -194,31 +307,23 @@ public class DefaultInvokeFuture<V> extends CompletableFuture<V> implements Invo
     public static void received(JChannel channel, JResponse response) {
         long invokeId = response.id();
 
-        DefaultInvokeFuture<?> future = roundFutures.remove(invokeId);
+        DefaultInvokeFuture<?> future = (DefaultInvokeFuture<?>) channel.inFlightTable().remove(invokeId);
 
         if (future == null) {
-            // 广播场景下做出了一点让步, 多查询了一次roundFutures
-            future = broadcastFutures.remove(subInvokeId(channel.id(), invokeId));
-        }
-
-        if (future == null) {
-            logger.warn("A timeout response [{}] finally returned on {}.", response, channel);
+            // 超时或者已经被放弃(abandon)的请求
+            if (logger.isDebugEnabled()) {
+                logger.debug("A timeout response [{}] finally returned on {}.", response, channel);
+            }
             return;
         }
 
         future.doReceived(response);
     }
 
-    public static void fakeReceived(JChannel channel, JResponse response, DispatchType dispatchType) {
+    public static void fakeReceived(JChannel channel, JResponse response) {
         long invokeId = response.id();
 
-        DefaultInvokeFuture<?> future = null;
-
-        if (dispatchType == DispatchType.ROUND) {
-            future = roundFutures.remove(invokeId);
-        } else if (dispatchType == DispatchType.BROADCAST) {
-            future = broadcastFutures.remove(subInvokeId(channel.id(), invokeId));
-        }
+        DefaultInvokeFuture<?> future = (DefaultInvokeFuture<?>) channel.inFlightTable().remove(invokeId);
 
         if (future == null) {
             return; // 正确结果在超时被处理之前返回
@@ -227,49 +332,12 @@ public class DefaultInvokeFuture<V> extends CompletableFuture<V> implements Invo
         future.doReceived(response);
     }
 
-    private static String subInvokeId(String channelId, long invokeId) {
-        return channelId + invokeId;
-    }
-
-    static final class TimeoutTask implements TimerTask {
-
-        private final String channelId;
-        private final long invokeId;
-
-        public TimeoutTask(long invokeId) {
-            this.channelId = null;
-            this.invokeId = invokeId;
-        }
-
-        public TimeoutTask(String channelId, long invokeId) {
-            this.channelId = channelId;
-            this.invokeId = invokeId;
-        }
-
-        @Override
-        public void run(Timeout timeout) throws Exception {
-            DefaultInvokeFuture<?> future;
+    private static void processTimeout(DefaultInvokeFuture<?> future) {
+        if (System.nanoTime() - future.startTime > future.timeout) {
+            JResponse response = new JResponse(future.invokeId);
+            response.status(future.sent ? Status.SERVER_TIMEOUT : Status.CLIENT_TIMEOUT);
 
-            if (channelId == null) {
-                // round
-                future = roundFutures.remove(invokeId);
-            } else {
-                // broadcast
-                future = broadcastFutures.remove(subInvokeId(channelId, invokeId));
-            }
-
-            if (future != null) {
-                processTimeout(future);
-            }
-        }
-
-        private void processTimeout(DefaultInvokeFuture<?> future) {
-            if (System.nanoTime() - future.startTime > future.timeout) {
-                JResponse response = new JResponse(future.invokeId);
-                response.status(future.sent ? Status.SERVER_TIMEOUT : Status.CLIENT_TIMEOUT);
-
-                future.doReceived(response);
-            }
+            future.doReceived(response);
         }
     }
 }
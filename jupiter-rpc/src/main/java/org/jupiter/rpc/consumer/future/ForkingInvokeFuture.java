@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.consumer.future;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.jupiter.rpc.consumer.cluster.ForkingClusterInvoker;
+
+/**
+ * 用于实现forking集群容错方案的 {@link InvokeFuture}, 第一个成功的结果生效,
+ * 其余还未返回的请求立即被放弃(从InFlightTable中移除); 所有的请求都失败时才以最后一个失败原因结束.
+ *
+ * jupiter
+ * org.jupiter.rpc.consumer.future
+ *
+ * @see ForkingClusterInvoker
+ *
+ * @author jiachun.fjc
+ */
+public class ForkingInvokeFuture<V> extends CompletableFuture<V> implements InvokeFuture<V> {
+
+    private static final AtomicIntegerFieldUpdater<ForkingInvokeFuture> remainingUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(ForkingInvokeFuture.class, "remaining");
+
+    private final Class<V> returnType;
+    private final InvokeFuture<V>[] futures;
+    private int count;
+
+    // 还未结束的请求数
+    private volatile int remaining;
+
+    public static <T> ForkingInvokeFuture<T> with(Class<T> returnType, int forks) {
+        return new ForkingInvokeFuture<>(returnType, forks);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ForkingInvokeFuture(Class<V> returnType, int forks) {
+        this.returnType = returnType;
+        this.futures = new InvokeFuture[forks];
+    }
+
+    @Override
+    public Class<V> returnType() {
+        return returnType;
+    }
+
+    @Override
+    public V getResult() throws Throwable {
+        return get();
+    }
+
+    /**
+     * Adds a forked future, must be called before {@link #listen()}.
+     */
+    public void add(InvokeFuture<V> future) {
+        futures[count++] = future;
+    }
+
+    /**
+     * Returns the number of forked futures.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Starts to listen all of the forked futures.
+     */
+    public void listen() {
+        remaining = count;
+        for (int i = 0; i < count; i++) {
+            futures[i].whenComplete(this::onComplete);
+        }
+    }
+
+    private void onComplete(V result, Throwable cause) {
+        if (cause == null) {
+            if (complete(result)) {
+                abandonOthers();
+            }
+        } else if (remainingUpdater.decrementAndGet(this) == 0) {
+            completeExceptionally(cause);
+        }
+    }
+
+    private void abandonOthers() {
+        for (int i = 0; i < count; i++) {
+            InvokeFuture<V> f = futures[i];
+            if (f instanceof DefaultInvokeFuture && !((DefaultInvokeFuture<V>) f).isDone()) {
+                ((DefaultInvokeFuture<V>) f).abandon();
+            }
+        }
+    }
+}
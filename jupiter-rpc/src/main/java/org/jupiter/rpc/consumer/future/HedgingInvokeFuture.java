@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.consumer.future;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.jupiter.rpc.consumer.cluster.HedgingClusterInvoker;
+
+/**
+ * 用于实现hedging集群容错方案的 {@link InvokeFuture}, 第一个成功的结果生效,
+ * 所有的尝试都失败时才以最后一个失败原因结束.
+ *
+ * jupiter
+ * org.jupiter.rpc.consumer.future
+ *
+ * @see HedgingClusterInvoker
+ *
+ * @author jiachun.fjc
+ */
+public class HedgingInvokeFuture<V> extends CompletableFuture<V> implements InvokeFuture<V> {
+
+    private static final AtomicIntegerFieldUpdater<HedgingInvokeFuture> attemptsUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(HedgingInvokeFuture.class, "attempts");
+
+    private final Class<V> returnType;
+
+    // 还未结束的尝试次数, 第一次调用在创建时就已计入
+    private volatile int attempts = 1;
+
+    public static <T> HedgingInvokeFuture<T> with(Class<T> returnType) {
+        return new HedgingInvokeFuture<>(returnType);
+    }
+
+    private HedgingInvokeFuture(Class<V> returnType) {
+        this.returnType = returnType;
+    }
+
+    @Override
+    public Class<V> returnType() {
+        return returnType;
+    }
+
+    @Override
+    public V getResult() throws Throwable {
+        return get();
+    }
+
+    /**
+     * Adds an attempt, returns {@code false} if all of the previous attempts
+     * were already completed.
+     */
+    public boolean tryAddAttempt() {
+        for (;;) {
+            int n = attempts;
+            if (n == 0 || isDone()) {
+                return false;
+            }
+            if (attemptsUpdater.compareAndSet(this, n, n + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Be called when an attempt was completed.
+     */
+    public void onAttemptComplete(V result, Throwable cause) {
+        if (cause == null) {
+            complete(result);
+        } else if (attemptsUpdater.decrementAndGet(this) == 0) {
+            completeExceptionally(cause);
+        }
+    }
+}
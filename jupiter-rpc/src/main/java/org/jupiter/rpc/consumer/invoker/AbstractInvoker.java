@@ -16,15 +16,21 @@
 package org.jupiter.rpc.consumer.invoker;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
 
+import org.jupiter.common.util.Maps;
 import org.jupiter.rpc.DefaultFilterChain;
 import org.jupiter.rpc.JFilter;
 import org.jupiter.rpc.JFilterChain;
 import org.jupiter.rpc.JFilterContext;
 import org.jupiter.rpc.JFilterLoader;
 import org.jupiter.rpc.JRequest;
+import org.jupiter.rpc.consumer.cache.ResultCache;
 import org.jupiter.rpc.consumer.cluster.ClusterInvoker;
 import org.jupiter.rpc.consumer.dispatcher.Dispatcher;
+import org.jupiter.rpc.consumer.future.CachedInvokeFuture;
+import org.jupiter.rpc.consumer.future.FailsafeInvokeFuture;
 import org.jupiter.rpc.consumer.future.InvokeFuture;
 import org.jupiter.rpc.model.metadata.ClusterStrategyConfig;
 import org.jupiter.rpc.model.metadata.MessageWrapper;
@@ -42,6 +48,8 @@ public abstract class AbstractInvoker {
     private final String appName;
     private final ServiceMetadata metadata; // 目标服务元信息
     private final ClusterStrategyBridging clusterStrategyBridging;
+    private final Map<String, SingleFlight> singleFlights; // 开启了调用合并的方法
+    private final Map<String, ResultCache> resultCaches;   // 开启了结果缓存的方法
 
     public AbstractInvoker(String appName,
                            ServiceMetadata metadata,
@@ -51,13 +59,30 @@ public abstract class AbstractInvoker {
         this.appName = appName;
         this.metadata = metadata;
         clusterStrategyBridging = new ClusterStrategyBridging(dispatcher, defaultStrategy, methodSpecialConfigs);
+        singleFlights = Maps.newHashMap();
+        resultCaches = Maps.newHashMap();
+        for (MethodSpecialConfig config : methodSpecialConfigs) {
+            String methodName = config.getMethodName();
+            if (config.isCoalescing()) {
+                singleFlights.put(methodName, new SingleFlight());
+            }
+            if (config.getCacheTtlMillis() > 0) {
+                resultCaches.put(methodName, ResultCache.of(
+                        metadata.directoryString(),
+                        methodName,
+                        config.getCacheTtlMillis(),
+                        config.getCacheMaxBytes(),
+                        dispatcher.serializer()));
+            }
+        }
     }
 
     protected Object doInvoke(String methodName, Object[] args, Class<?> returnType, boolean sync) throws Throwable {
         JRequest request = createRequest(methodName, args);
         ClusterInvoker invoker = clusterStrategyBridging.findClusterInvoker(methodName);
 
-        Context invokeCtx = new Context(invoker, returnType, sync);
+        Context invokeCtx = new Context(
+                invoker, singleFlights.get(methodName), resultCaches.get(methodName), returnType, sync);
         Chains.invoke(request, invokeCtx);
 
         return invokeCtx.getResult();
@@ -76,16 +101,35 @@ public abstract class AbstractInvoker {
         return request;
     }
 
+    /**
+     * {@link FailsafeInvokeFuture} 本身不会被complete, 需要监听它包装的future.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> CompletionStage<T> completionStageOf(InvokeFuture<T> future) {
+        if (future instanceof FailsafeInvokeFuture) {
+            return ((FailsafeInvokeFuture<T>) future).future();
+        }
+        return future;
+    }
+
     static class Context implements JFilterContext {
 
         private final ClusterInvoker invoker;
+        private final SingleFlight singleFlight;
+        private final ResultCache resultCache;
         private final Class<?> returnType;
         private final boolean sync;
 
         private Object result;
 
-        Context(ClusterInvoker invoker, Class<?> returnType, boolean sync) {
+        Context(ClusterInvoker invoker,
+                SingleFlight singleFlight,
+                ResultCache resultCache,
+                Class<?> returnType,
+                boolean sync) {
             this.invoker = invoker;
+            this.singleFlight = singleFlight;
+            this.resultCache = resultCache;
             this.returnType = returnType;
             this.sync = sync;
         }
@@ -99,6 +143,14 @@ public abstract class AbstractInvoker {
             return invoker;
         }
 
+        public SingleFlight getSingleFlight() {
+            return singleFlight;
+        }
+
+        public ResultCache getResultCache() {
+            return resultCache;
+        }
+
         public Class<?> getReturnType() {
             return returnType;
         }
@@ -123,13 +175,47 @@ public abstract class AbstractInvoker {
             return JFilter.Type.CONSUMER;
         }
 
+        @SuppressWarnings("unchecked")
         @Override
         public <T extends JFilterContext> void doFilter(JRequest request, T filterCtx, JFilterChain next) throws Throwable {
             Context invokeCtx = (Context) filterCtx;
             ClusterInvoker invoker = invokeCtx.getInvoker();
             Class<?> returnType = invokeCtx.getReturnType();
+
+            ResultCache cache = invokeCtx.getResultCache();
+            ResultCache.Key cacheKey = null;
+            long cacheGeneration = 0;
+            if (cache != null) {
+                cacheKey = cache.newKey(request.message().getArgs());
+                // 在未命中之前记录generation, 请求期间发生invalidate时丢弃写入
+                cacheGeneration = cache.generation();
+                Object result = cache.get(cacheKey);
+                if (result != null) {
+                    // 命中缓存, 不再经过ClusterInvoker
+                    if (invokeCtx.isSync()) {
+                        invokeCtx.setResult(result);
+                    } else {
+                        invokeCtx.setResult(CachedInvokeFuture.with((Class<Object>) returnType, result));
+                    }
+                    return;
+                }
+            }
+
+            SingleFlight singleFlight = invokeCtx.getSingleFlight();
             // invoke
-            InvokeFuture<?> future = invoker.invoke(request, returnType);
+            InvokeFuture<?> future = singleFlight == null
+                    ? invoker.invoke(request, returnType)
+                    : singleFlight.invoke(invoker, request, returnType);
+
+            if (cache != null) {
+                final ResultCache.Key key = cacheKey;
+                final long generation = cacheGeneration;
+                completionStageOf(future).whenComplete((result, cause) -> {
+                    if (cause == null) {
+                        cache.put(key, result, generation);
+                    }
+                });
+            }
 
             if (invokeCtx.isSync()) {
                 invokeCtx.setResult(future.getResult());
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.consumer.invoker;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jupiter.common.util.Maps;
+import org.jupiter.rpc.JRequest;
+import org.jupiter.rpc.consumer.cluster.ClusterInvoker;
+import org.jupiter.rpc.consumer.future.CoalescingInvokeFuture;
+import org.jupiter.rpc.consumer.future.FailsafeInvokeFuture;
+import org.jupiter.rpc.consumer.future.InvokeFuture;
+import org.jupiter.rpc.model.metadata.MessageWrapper;
+
+/**
+ * 合并相同方法相同参数的并发调用(single-flight), 同一时刻只有一个请求在网络上,
+ * 其余的调用方挂在这个请求上等待同一个结果.
+ *
+ * 只适用于幂等方法, 并且所有调用方共享同一个结果对象, 调用方不应修改它.
+ * 参数按照 {@link Arrays#deepEquals(Object[], Object[])} 比较, 所以参数类型需要正确实现equals/hashCode.
+ *
+ * jupiter
+ * org.jupiter.rpc.consumer.invoker
+ *
+ * @author jiachun.fjc
+ */
+final class SingleFlight {
+
+    private final ConcurrentMap<Key, CoalescingInvokeFuture<?>> inFlight = Maps.newConcurrentMap();
+
+    @SuppressWarnings("unchecked")
+    <T> InvokeFuture<T> invoke(ClusterInvoker invoker, JRequest request, Class<T> returnType) throws Exception {
+        MessageWrapper message = request.message();
+        Key key = new Key(message.getMethodName(), message.getArgs());
+
+        CoalescingInvokeFuture<T> shared = CoalescingInvokeFuture.with(returnType);
+        CoalescingInvokeFuture<?> existing = inFlight.putIfAbsent(key, shared);
+        if (existing != null) {
+            // 已经有相同的调用在进行中, 不再发送请求
+            InvokeFuture<T> f = (InvokeFuture<T>) existing;
+            return invoker.strategy() == ClusterInvoker.Strategy.FAIL_SAFE ? FailsafeInvokeFuture.with(f) : f;
+        }
+
+        InvokeFuture<T> future;
+        try {
+            future = invoker.invoke(request, returnType);
+        } catch (Throwable t) {
+            inFlight.remove(key, shared);
+            shared.onComplete(null, t);
+            throw t;
+        }
+
+        AbstractInvoker.completionStageOf(future).whenComplete((result, cause) -> {
+            // 先移除, 之后到达的调用会发送新的请求
+            inFlight.remove(key, shared);
+            shared.onComplete(result, cause);
+        });
+
+        return future;
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    static final class Key {
+
+        private final String methodName;
+        private final Object[] args;
+        private final int hash;
+
+        Key(String methodName, Object[] args) {
+            this.methodName = methodName;
+            this.args = args;
+            this.hash = 31 * methodName.hashCode() + Arrays.deepHashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key that = (Key) o;
+
+            return hash == that.hash && methodName.equals(that.methodName) && Arrays.deepEquals(args, that.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
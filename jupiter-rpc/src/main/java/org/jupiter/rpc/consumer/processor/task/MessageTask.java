@@ -59,7 +59,10 @@ public class MessageTask implements Runnable {
         Serializer serializer = SerializerFactory.getSerializer(s_code);
         ResultWrapper wrapper;
         try {
-            if (CodecConfig.isCodecLowCopy()) {
+            if (_responsePayload.object() != null) {
+                // local transport跳过了序列化, 对象已经是provider端深拷贝过的
+                wrapper = (ResultWrapper) _responsePayload.object();
+            } else if (CodecConfig.isCodecLowCopy()) {
                 InputBuf inputBuf = _responsePayload.inputBuf();
                 wrapper = serializer.readObject(inputBuf, ResultWrapper.class);
             } else {
@@ -15,8 +15,11 @@
  */
 package org.jupiter.rpc.exception;
 
+import org.jupiter.transport.Status;
+
 /**
- * Traffic restrictions by server.
+ * Traffic restrictions by server, or by the consumer itself when {@link #status()}
+ * is {@link Status#CLIENT_FLOW_CONTROL}.
  *
  * For efficiency this exception will not have a stack trace.
  *
@@ -29,18 +32,35 @@ public class JupiterFlowControlException extends JupiterRemoteException {
 
     private static final long serialVersionUID = 3478741195763320940L;
 
-    public JupiterFlowControlException() {}
+    // 服务端限流时为null, 限流状态已经在response中返回
+    private final Status status;
+
+    public JupiterFlowControlException() {
+        this.status = null;
+    }
 
     public JupiterFlowControlException(String message) {
         super(message);
+        this.status = null;
+    }
+
+    public JupiterFlowControlException(String message, Status status) {
+        super(message);
+        this.status = status;
     }
 
     public JupiterFlowControlException(String message, Throwable cause) {
         super(message, cause);
+        this.status = null;
     }
 
     public JupiterFlowControlException(Throwable cause) {
         super(cause);
+        this.status = null;
+    }
+
+    public Status status() {
+        return status;
     }
 
     @Override
@@ -37,11 +37,16 @@ public class DisruptorExecutorFactory extends AbstractExecutorFactory {
 
     @Override
     public CloseableExecutor newExecutor(Target target, String name) {
+        return newExecutor(target, name, coreWorkers(target), maxWorkers(target), queueCapacity(target));
+    }
+
+    @Override
+    public CloseableExecutor newExecutor(Target target, String name, int coreWorkers, int maxWorkers, int queueCapacity) {
         final TaskDispatcher executor = new TaskDispatcher(
-                coreWorkers(target),
+                coreWorkers,
                 threadFactory(name),
-                queueCapacity(target),
-                maxWorkers(target),
+                queueCapacity,
+                maxWorkers,
                 waitStrategyType(target, WaitStrategyType.LITE_BLOCKING_WAIT),
                 "jupiter");
 
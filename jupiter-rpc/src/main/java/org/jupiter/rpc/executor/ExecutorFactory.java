@@ -30,6 +30,16 @@ public interface ExecutorFactory extends ConsumerExecutorFactory, ProviderExecut
 
     CloseableExecutor newExecutor(Target target, String name);
 
+    /**
+     * Creates an executor with the given sizes instead of the ones
+     * configured by system properties, used by the per-method bulkheads.
+     *
+     * The default implementation ignores the sizes.
+     */
+    default CloseableExecutor newExecutor(Target target, String name, int coreWorkers, int maxWorkers, int queueCapacity) {
+        return newExecutor(target, name);
+    }
+
     enum Target {
         CONSUMER,
         PROVIDER
@@ -48,4 +58,5 @@ public interface ExecutorFactory extends ConsumerExecutorFactory, ProviderExecut
     String CONSUMER_THREAD_POOL_REJECTED_HANDLER    = "jupiter.executor.factory.consumer.thread.pool.rejected.handler";
     String PROVIDER_THREAD_POOL_REJECTED_HANDLER    = "jupiter.executor.factory.provider.thread.pool.rejected.handler";
     String EXECUTOR_AFFINITY_THREAD                 = "jupiter.executor.factory.affinity.thread";
+    String PRIORITY_LANE_WEIGHTS                    = "jupiter.executor.factory.priority.lane.weights";
 }
@@ -40,8 +40,14 @@ public class ForkJoinPoolExecutorFactory extends AbstractExecutorFactory {
 
     @Override
     public CloseableExecutor newExecutor(Target target, String name) {
+        return newExecutor(target, name, coreWorkers(target), maxWorkers(target), queueCapacity(target));
+    }
+
+    @Override
+    public CloseableExecutor newExecutor(Target target, String name, int coreWorkers, int maxWorkers, int queueCapacity) {
+        // ForkJoinPool的队列是无界的, 只使用coreWorkers作为并行度
         final ForkJoinPool executor = new ForkJoinPool(
-                coreWorkers(target),
+                coreWorkers,
                 new DefaultForkJoinWorkerThreadFactory(name),
                 new DefaultUncaughtExceptionHandler(), true);
 
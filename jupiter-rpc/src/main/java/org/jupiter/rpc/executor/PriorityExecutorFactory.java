@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.executor;
+
+import org.jupiter.common.util.SpiMetadata;
+import org.jupiter.common.util.Strings;
+import org.jupiter.common.util.SystemPropertyUtil;
+import org.jupiter.transport.Priority;
+
+/**
+ * Provide a {@link PriorityLaneExecutor} implementation of executor.
+ *
+ * 每个 {@link Priority} 一个队列, 按照权重(默认 HIGH:NORMAL:LOW = 8:4:1)加权公平地出队,
+ * 批量调用打满provider时, 健康检查及交互式调用仍然可以低延迟地得到处理, 而低优先级的请求也不会被饿死.
+ *
+ * jupiter
+ * org.jupiter.rpc.executor
+ *
+ * @author jiachun.fjc
+ */
+@SpiMetadata(name = "priority")
+public class PriorityExecutorFactory extends AbstractExecutorFactory {
+
+    @Override
+    public CloseableExecutor newExecutor(Target target, String name) {
+        return newExecutor(target, name, coreWorkers(target), maxWorkers(target), queueCapacity(target));
+    }
+
+    @Override
+    public CloseableExecutor newExecutor(Target target, String name, int coreWorkers, int maxWorkers, int queueCapacity) {
+        // 固定coreWorkers个线程, 每个队列的容量为queueCapacity
+        return new PriorityLaneExecutor(coreWorkers, threadFactory(name), queueCapacity, laneWeights());
+    }
+
+    private static int[] laneWeights() {
+        int[] weights = { 8, 4, 1 };
+        String value = SystemPropertyUtil.get(PRIORITY_LANE_WEIGHTS);
+        if (Strings.isNotBlank(value)) {
+            String[] array = Strings.split(value, ',');
+            for (int i = 0; i < weights.length && i < array.length; i++) {
+                weights[i] = Integer.parseInt(array[i].trim());
+            }
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.executor;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jupiter.common.concurrent.RejectedRunnable;
+import org.jupiter.common.util.Requires;
+import org.jupiter.common.util.StackTraceUtil;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+import org.jupiter.transport.Priority;
+
+/**
+ * 多队列(lane)的线程池, 每个 {@link Priority} 一个有界队列, 任务通过 {@link PriorityRunnable} 指定优先级,
+ * 其他任务按照 {@link Priority#NORMAL} 处理.
+ *
+ * 出队时按照 smooth weighted round-robin 预先生成的调度序列(比如 8:4:1 时为长度13的序列)轮流选择队列,
+ * 选中的队列为空时按照优先级从高到低选择其他非空的队列, 所以:
+ *  1. 所有队列都有积压时, 每个队列分到的处理能力与权重成正比, 低优先级的请求不会被饿死;
+ *  2. 高优先级的请求最多等待一个调度周期, 而不是排在所有批量请求的后面;
+ *  3. 只要有任务就不会空闲(work-conserving).
+ *
+ * 调度序列的游标是一个全局的计数器, 出队不需要加锁.
+ *
+ * shutdown时不中断worker, 已经入队的任务仍然会被执行完(每个请求都会得到响应), 之后worker退出;
+ * shutdown之后提交的任务交给 {@link RejectedRunnable#rejected()}.
+ *
+ * jupiter
+ * org.jupiter.rpc.executor
+ *
+ * @author jiachun.fjc
+ */
+public final class PriorityLaneExecutor implements CloseableExecutor {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(PriorityLaneExecutor.class);
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final Lane[] lanes;
+    private final int[] schedule;
+    private final AtomicInteger cursor = new AtomicInteger();
+    // 所有队列中的任务总数, worker拿到许可之后一定能取到一个任务
+    private final Semaphore available = new Semaphore(0);
+    private final Thread[] workers;
+
+    private volatile boolean shutdown;
+
+    public PriorityLaneExecutor(int numWorkers, ThreadFactory threadFactory, int laneCapacity, int[] weights) {
+        Requires.requireTrue(numWorkers > 0, "numWorkers must be positive");
+        Requires.requireTrue(laneCapacity > 0, "laneCapacity must be positive");
+        Requires.requireTrue(weights.length == PRIORITIES.length, "weights.length must be " + PRIORITIES.length);
+
+        lanes = new Lane[PRIORITIES.length];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(laneCapacity);
+        }
+        schedule = schedule(weights);
+
+        workers = new Thread[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            workers[i] = threadFactory.newThread(this::work);
+        }
+        for (Thread t : workers) {
+            t.start();
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Priority priority = task instanceof PriorityRunnable ? ((PriorityRunnable) task).priority() : Priority.NORMAL;
+        Lane lane = lanes[priority.ordinal()];
+        if (shutdown || !lane.offer(task)) {
+            if (task instanceof RejectedRunnable) {
+                ((RejectedRunnable) task).rejected(); // 交给用户来处理
+                return;
+            }
+            throw new RejectedExecutionException("Lane [" + priority + "] is full");
+        }
+        available.release();
+
+        if (shutdown) {
+            // 与shutdown竞争, worker可能已经退出, 剩余的任务不会再被执行
+            rejectAll();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        logger.warn("PriorityLaneExecutor#{} shutdown.", this);
+        shutdown = true;
+        // 每个worker一个额外的许可, 队列排空之后取不到任务的worker退出, 不会中断正在执行的任务
+        available.release(workers.length);
+    }
+
+    /**
+     * Returns the number of queued tasks of the given priority.
+     */
+    public int queuedCount(Priority priority) {
+        return lanes[priority.ordinal()].size.get();
+    }
+
+    private void work() {
+        for (;;) {
+            try {
+                available.acquire();
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            Runnable task = poll();
+            if (task == null) {
+                return; // shutdown并且队列已经排空
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.error("An exception was caught while executing task: {}, {}.", task, StackTraceUtil.stackTrace(t));
+            }
+        }
+    }
+
+    private void rejectAll() {
+        for (Lane lane : lanes) {
+            Runnable task;
+            while ((task = lane.poll()) != null) {
+                if (task instanceof RejectedRunnable) {
+                    try {
+                        ((RejectedRunnable) task).rejected();
+                    } catch (Throwable t) {
+                        logger.error("An exception was caught while rejecting task: {}, {}.", task, StackTraceUtil.stackTrace(t));
+                    }
+                } else {
+                    logger.warn("Task {} discarded since PriorityLaneExecutor#{} has been shutdown.", task, this);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the next task, or {@code null} if this executor has been
+     * shutdown and all of the lanes are empty.
+     */
+    Runnable poll() {
+        int first = schedule[(cursor.getAndIncrement() & Integer.MAX_VALUE) % schedule.length];
+        for (;;) {
+            Runnable task = lanes[first].poll();
+            if (task != null) {
+                return task;
+            }
+            // 按照优先级从高到低选择其他队列
+            for (Lane lane : lanes) {
+                task = lane.poll();
+                if (task != null) {
+                    return task;
+                }
+            }
+            if (shutdown) {
+                return null;
+            }
+            // 任务已经计入许可但还没有对其他线程可见, 很快就会出现
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Smooth weighted round-robin, e.g. weights {5, 1, 1} generate
+     * [0, 0, 1, 0, 2, 0, 0] instead of [0, 0, 0, 0, 0, 1, 2].
+     */
+    static int[] schedule(int[] weights) {
+        int total = 0;
+        for (int w : weights) {
+            Requires.requireTrue(w > 0, "weight must be positive");
+            total += w;
+        }
+
+        int[] schedule = new int[total];
+        int[] current = new int[weights.length];
+        for (int n = 0; n < total; n++) {
+            int selected = 0;
+            for (int i = 0; i < weights.length; i++) {
+                current[i] += weights[i];
+                if (current[i] > current[selected]) {
+                    selected = i;
+                }
+            }
+            current[selected] -= total;
+            schedule[n] = selected;
+        }
+        return schedule;
+    }
+
+    @Override
+    public String toString() {
+        return "PriorityLaneExecutor{" +
+                "workers=" + workers.length +
+                ", high=" + queuedCount(Priority.HIGH) +
+                ", normal=" + queuedCount(Priority.NORMAL) +
+                ", low=" + queuedCount(Priority.LOW) +
+                '}';
+    }
+
+    private static final class Lane {
+
+        final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+        final int capacity;
+
+        Lane(int capacity) {
+            this.capacity = capacity;
+        }
+
+        boolean offer(Runnable task) {
+            if (size.incrementAndGet() > capacity) {
+                size.decrementAndGet();
+                return false;
+            }
+            queue.offer(task);
+            return true;
+        }
+
+        Runnable poll() {
+            Runnable task = queue.poll();
+            if (task != null) {
+                size.decrementAndGet();
+            }
+            return task;
+        }
+    }
+}
@@ -47,12 +47,17 @@ public class ThreadPoolExecutorFactory extends AbstractExecutorFactory {
 
     @Override
     public CloseableExecutor newExecutor(Target target, String name) {
+        return newExecutor(target, name, coreWorkers(target), maxWorkers(target), queueCapacity(target));
+    }
+
+    @Override
+    public CloseableExecutor newExecutor(Target target, String name, int coreWorkers, int maxWorkers, int queueCapacity) {
         final ThreadPoolExecutor executor = new ThreadPoolExecutor(
-                coreWorkers(target),
-                maxWorkers(target),
+                coreWorkers,
+                maxWorkers,
                 120L,
                 TimeUnit.SECONDS,
-                workQueue(target),
+                workQueue(target, queueCapacity),
                 threadFactory(name),
                 createRejectedPolicy(target, name, new RejectedTaskPolicyWithReport(name, "jupiter")));
 
@@ -71,10 +76,9 @@ public class ThreadPoolExecutorFactory extends AbstractExecutorFactory {
         };
     }
 
-    private BlockingQueue<Runnable> workQueue(Target target) {
+    private BlockingQueue<Runnable> workQueue(Target target, int queueCapacity) {
         BlockingQueue<Runnable> workQueue = null;
         WorkQueueType queueType = queueType(target, WorkQueueType.ARRAY_BLOCKING_QUEUE);
-        int queueCapacity = queueCapacity(target);
         switch (queueType) {
             case LINKED_BLOCKING_QUEUE:
                 workQueue = new LinkedBlockingQueue<>(queueCapacity);
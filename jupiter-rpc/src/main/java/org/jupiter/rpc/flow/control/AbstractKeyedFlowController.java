@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.flow.control;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import org.jupiter.common.util.Maps;
+import org.jupiter.common.util.Requires;
+import org.jupiter.common.util.SystemPropertyUtil;
+import org.jupiter.rpc.JRequest;
+
+/**
+ * 按照key(appName, method, attachment等, 见 {@link FlowControlKeys})分别计数的限流器.
+ *
+ * key的数量超过上限之后, 新出现的key共享 {@link FlowControlKeys#DEFAULT_KEY} 的配额,
+ * 避免attachment这类由consumer决定的key无限制地占用内存.
+ *
+ * jupiter
+ * org.jupiter.rpc.flow.control
+ *
+ * @author jiachun.fjc
+ */
+public abstract class AbstractKeyedFlowController<S> implements FlowController<JRequest> {
+
+    private static final int MAX_KEYS = SystemPropertyUtil.getInt("jupiter.rpc.flow_control.max_keys", 10000);
+
+    private final Function<JRequest, String> keyFunction;
+    private final ConcurrentMap<String, S> states = Maps.newConcurrentMap();
+
+    // 全局限流器只有一个key, 不需要查表
+    private final S singleState;
+
+    protected AbstractKeyedFlowController(Function<JRequest, String> keyFunction) {
+        this.keyFunction = Requires.requireNotNull(keyFunction, "keyFunction");
+        this.singleState = keyFunction == FlowControlKeys.global() ? newState() : null;
+    }
+
+    @Override
+    public ControlResult flowControl(JRequest request) {
+        if (singleState != null) {
+            return doFlowControl(FlowControlKeys.DEFAULT_KEY, singleState);
+        }
+        String key = keyFunction.apply(request);
+        return doFlowControl(key, stateOf(key));
+    }
+
+    @Override
+    public void release(JRequest request) {
+        if (singleState != null) {
+            doRelease(singleState);
+            return;
+        }
+        doRelease(stateOf(keyFunction.apply(request)));
+    }
+
+    protected abstract S newState();
+
+    protected abstract ControlResult doFlowControl(String key, S state);
+
+    protected void doRelease(S state) {}
+
+    private S stateOf(String key) {
+        S state = states.get(key);
+        if (state == null) {
+            if (states.size() >= MAX_KEYS) {
+                key = FlowControlKeys.DEFAULT_KEY;
+                state = states.get(key);
+                if (state != null) {
+                    return state;
+                }
+            }
+            S newState = newState();
+            state = states.putIfAbsent(key, newState);
+            if (state == null) {
+                state = newState;
+            }
+        }
+        return state;
+    }
+}
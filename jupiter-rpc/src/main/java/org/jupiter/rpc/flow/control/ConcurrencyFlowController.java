@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.flow.control;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.jupiter.common.util.Requires;
+import org.jupiter.rpc.JRequest;
+
+/**
+ * 并发数限流, 同一个key正在处理中的请求数最多为 maxConcurrency, 请求处理完成(响应发出或失败)时
+ * 通过 {@link #release(JRequest)} 归还.
+ *
+ * 与 {@link org.jupiter.transport.channel.ConcurrencyLimiter} 不同, 这里是provider端的固定上限, 用于保护下游资源(比如数据库连接池).
+ *
+ * jupiter
+ * org.jupiter.rpc.flow.control
+ *
+ * @author jiachun.fjc
+ */
+public class ConcurrencyFlowController extends AbstractKeyedFlowController<AtomicInteger> {
+
+    private final int maxConcurrency;
+
+    public ConcurrencyFlowController(int maxConcurrency) {
+        this(maxConcurrency, FlowControlKeys.global());
+    }
+
+    public ConcurrencyFlowController(int maxConcurrency, Function<JRequest, String> keyFunction) {
+        super(keyFunction);
+        Requires.requireTrue(maxConcurrency > 0, "maxConcurrency must be positive");
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    @Override
+    protected AtomicInteger newState() {
+        return new AtomicInteger();
+    }
+
+    @Override
+    protected ControlResult doFlowControl(String key, AtomicInteger inFlight) {
+        for (;;) {
+            int n = inFlight.get();
+            if (n >= maxConcurrency) {
+                return new ControlResult(false, "max concurrency exceeded, key=" + key);
+            }
+            if (inFlight.compareAndSet(n, n + 1)) {
+                return ControlResult.ALLOWED;
+            }
+        }
+    }
+
+    @Override
+    protected void doRelease(AtomicInteger inFlight) {
+        inFlight.decrementAndGet();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.flow.control;
+
+import org.jupiter.rpc.metric.Metrics;
+import org.jupiter.transport.channel.ConcurrencyLimiter;
+import org.jupiter.transport.channel.DirectoryJChannelGroup;
+import org.jupiter.transport.channel.JChannelGroup;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+
+/**
+ * 把每个provider的 {@link ConcurrencyLimiter} 的limit和在途请求数以Gauge的形式注册到 {@link Metrics},
+ * 可以通过monitor的 metrics -report 查看.
+ *
+ * group不再被任何服务引用时注销对应的Gauge, 同一个地址重新上线之后注册的是新group的limiter.
+ *
+ * jupiter
+ * org.jupiter.rpc.flow.control
+ *
+ * @author jiachun.fjc
+ */
+public final class ConcurrencyLimiterMetrics implements DirectoryJChannelGroup.GroupListener {
+
+    public static final ConcurrencyLimiterMetrics INSTANCE = new ConcurrencyLimiterMetrics();
+
+    /**
+     * Marks a request rejected by the local limit.
+     */
+    public static void markRejected() {
+        MetricsHolder.rejectionMeter.mark();
+    }
+
+    @Override
+    public void onAdded(JChannelGroup group) {
+        ConcurrencyLimiter limiter = group.concurrencyLimiter();
+        String address = String.valueOf(group.remoteAddress());
+        Metrics.gauge(ConcurrencyLimiter.class, (Gauge<Integer>) limiter::limit, address, "limit");
+        Metrics.gauge(ConcurrencyLimiter.class, (Gauge<Integer>) limiter::inFlight, address, "inFlight");
+    }
+
+    @Override
+    public void onRemoved(JChannelGroup group) {
+        String address = String.valueOf(group.remoteAddress());
+        Metrics.remove(ConcurrencyLimiter.class, address, "limit");
+        Metrics.remove(ConcurrencyLimiter.class, address, "inFlight");
+    }
+
+    private ConcurrencyLimiterMetrics() {}
+
+    // - Metrics -------------------------------------------------------------------------------------------------------
+    static class MetricsHolder {
+        // 本地快速失败的请求数统计
+        static final Meter rejectionMeter = Metrics.meter(ConcurrencyLimiter.class, "rejection");
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.flow.control;
+
+import java.util.Map;
+import java.util.function.Function;
+
+import org.jupiter.rpc.JRequest;
+import org.jupiter.rpc.model.metadata.MessageWrapper;
+
+/**
+ * 内置限流器的key, 用于决定哪些请求共享同一份配额.
+ *
+ * jupiter
+ * org.jupiter.rpc.flow.control
+ *
+ * @author jiachun.fjc
+ */
+public final class FlowControlKeys {
+
+    // 无法得到key的请求(比如没有对应的attachment)共享这个key
+    public static final String DEFAULT_KEY = "*";
+
+    private static final Function<JRequest, String> GLOBAL = request -> DEFAULT_KEY;
+
+    private static final Function<JRequest, String> APP_NAME = request -> {
+        MessageWrapper msg = request.message();
+        return msg == null ? DEFAULT_KEY : nullToDefault(msg.getAppName());
+    };
+
+    private static final Function<JRequest, String> METHOD = request -> {
+        MessageWrapper msg = request.message();
+        return msg == null ? DEFAULT_KEY : msg.getOperationName();
+    };
+
+    /**
+     * All of the requests share one quota.
+     */
+    public static Function<JRequest, String> global() {
+        return GLOBAL;
+    }
+
+    /**
+     * One quota for each consumer application.
+     */
+    public static Function<JRequest, String> appName() {
+        return APP_NAME;
+    }
+
+    /**
+     * One quota for each service method.
+     */
+    public static Function<JRequest, String> method() {
+        return METHOD;
+    }
+
+    /**
+     * One quota for each value of the given attachment.
+     */
+    public static Function<JRequest, String> attachment(String name) {
+        return request -> {
+            MessageWrapper msg = request.message();
+            Map<String, String> attachments = msg == null ? null : msg.getAttachments();
+            return attachments == null ? DEFAULT_KEY : nullToDefault(attachments.get(name));
+        };
+    }
+
+    private static String nullToDefault(String key) {
+        return key == null ? DEFAULT_KEY : key;
+    }
+
+    private FlowControlKeys() {}
+}
@@ -21,6 +21,9 @@ package org.jupiter.rpc.flow.control;
  * 1. 每个 {@link org.jupiter.rpc.JServer} 都可设置一个App级别的全局限流器;
  * 2. 每个Provide也可以设置更细粒度的Provider级别限流器.
  *
+ * 内置实现: {@link TokenBucketFlowController}, {@link SlidingWindowFlowController},
+ * {@link ConcurrencyFlowController}, 都可以按照 {@link FlowControlKeys} 区分配额.
+ *
  * jupiter
  * org.jupiter.rpc.flow.control
  *
@@ -29,4 +32,12 @@ package org.jupiter.rpc.flow.control;
 public interface FlowController<T> {
 
     ControlResult flowControl(T t);
+
+    /**
+     * Be called when a request allowed by {@link #flowControl(Object)}
+     * has completed (response sent, failed or dropped), controllers which
+     * hold a permit for the whole processing (e.g. concurrency limit)
+     * release it here.
+     */
+    default void release(T t) {}
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.flow.control;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.jupiter.common.util.Requires;
+import org.jupiter.common.util.SystemClock;
+import org.jupiter.rpc.JRequest;
+
+/**
+ * 滑动窗口限流, 任意 windowMillis 时间内最多允许 limit 个请求.
+ *
+ * 只保留当前和上一个固定窗口的计数, 滑动窗口内的请求数按照上一个窗口与滑动窗口重叠的比例估算:
+ *
+ *   estimate = previous * (1 - elapsed / window) + current
+ *
+ * 计数使用 {@link LongAdder}, 多线程同时计数时分散到不同的cell上, 不会在同一个cache line上竞争;
+ * 只有切换窗口时才需要加锁, 每个窗口一次.
+ *
+ * jupiter
+ * org.jupiter.rpc.flow.control
+ *
+ * @author jiachun.fjc
+ */
+public class SlidingWindowFlowController extends AbstractKeyedFlowController<SlidingWindowFlowController.Window> {
+
+    private final long limit;
+    private final long windowMillis;
+
+    public SlidingWindowFlowController(long limit, long windowMillis) {
+        this(limit, windowMillis, FlowControlKeys.global());
+    }
+
+    public SlidingWindowFlowController(long limit, long windowMillis, Function<JRequest, String> keyFunction) {
+        super(keyFunction);
+        Requires.requireTrue(limit > 0, "limit must be positive");
+        Requires.requireTrue(windowMillis > 0, "windowMillis must be positive");
+        this.limit = limit;
+        this.windowMillis = windowMillis;
+    }
+
+    @Override
+    protected Window newState() {
+        return new Window(SystemClock.millisClock().now());
+    }
+
+    @Override
+    protected ControlResult doFlowControl(String key, Window window) {
+        long now = SystemClock.millisClock().now();
+
+        Bucket current = window.current;
+        if (now - current.start >= windowMillis) {
+            current = window.rotate(now, windowMillis);
+        }
+
+        long estimate = current.count.sum();
+        Bucket previous = window.previous;
+        if (previous.start == current.start - windowMillis) {
+            long elapsed = Math.max(0L, now - current.start);
+            estimate += (long) (previous.count.sum() * (double) (windowMillis - elapsed) / windowMillis);
+        }
+
+        if (estimate >= limit) {
+            return new ControlResult(false, "sliding window limit exceeded, key=" + key);
+        }
+
+        current.count.increment();
+        return ControlResult.ALLOWED;
+    }
+
+    static final class Window {
+
+        volatile Bucket current;
+        volatile Bucket previous;
+
+        Window(long now) {
+            current = new Bucket(now);
+            previous = new Bucket(Long.MIN_VALUE);
+        }
+
+        synchronized Bucket rotate(long now, long windowMillis) {
+            Bucket c = current;
+            long elapsed = now - c.start;
+            if (elapsed < windowMillis) {
+                // 其他线程已经切换过了
+                return c;
+            }
+
+            Bucket next = new Bucket(now - elapsed % windowMillis);
+            // 超过两个窗口没有请求, 上一个窗口的计数已经没有意义
+            previous = elapsed < 2 * windowMillis ? c : new Bucket(Long.MIN_VALUE);
+            current = next;
+            return next;
+        }
+    }
+
+    static final class Bucket {
+
+        final long start;
+        final LongAdder count = new LongAdder();
+
+        Bucket(long start) {
+            this.start = start;
+        }
+    }
+}
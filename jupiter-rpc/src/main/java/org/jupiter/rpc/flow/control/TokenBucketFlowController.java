@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.flow.control;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.jupiter.common.util.Requires;
+import org.jupiter.rpc.JRequest;
+
+/**
+ * 令牌桶限流, 每秒生成 permitsPerSecond 个令牌, 最多积攒 burst 个.
+ *
+ * 不保存令牌数量, 而是按照 GCRA(Generic Cell Rate Algorithm) 只保存一个"理论到达时间"(tat),
+ * 每个请求把tat向后推一个令牌的生成间隔, tat超出当前时间 burst 个间隔时拒绝.
+ * 一次CAS即可完成, 也不需要定时补充令牌.
+ *
+ * jupiter
+ * org.jupiter.rpc.flow.control
+ *
+ * @author jiachun.fjc
+ */
+public class TokenBucketFlowController extends AbstractKeyedFlowController<AtomicLong> {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+
+    public TokenBucketFlowController(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, FlowControlKeys.global());
+    }
+
+    public TokenBucketFlowController(double permitsPerSecond, int burst, Function<JRequest, String> keyFunction) {
+        super(keyFunction);
+        Requires.requireTrue(permitsPerSecond > 0, "permitsPerSecond must be positive");
+        Requires.requireTrue(burst > 0, "burst must be positive");
+        this.intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.toleranceNanos = intervalNanos * burst;
+    }
+
+    @Override
+    protected AtomicLong newState() {
+        // tat不晚于当前时间, 桶是满的
+        return new AtomicLong(System.nanoTime());
+    }
+
+    @Override
+    protected ControlResult doFlowControl(String key, AtomicLong tat) {
+        long now = System.nanoTime();
+        for (;;) {
+            long t = tat.get();
+            long newTat = Math.max(t, now) + intervalNanos;
+            if (newTat - now > toleranceNanos) {
+                return new ControlResult(false, "token bucket exhausted, key=" + key);
+            }
+            if (tat.compareAndSet(t, newTat)) {
+                return ControlResult.ALLOWED;
+            }
+        }
+    }
+}
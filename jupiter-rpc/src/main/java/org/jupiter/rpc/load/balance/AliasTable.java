@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.load.balance;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Vose's alias method, 加权随机选择, 构建 O(n), 选择 O(1) 并且不分配内存.
+ *
+ * <pre>
+ * 每一列的高度都是 sumWeight, 第i列下半部分属于i, 上半部分属于alias[i]:
+ *
+ *   ┌─────┬─────┬─────┬─────┐
+ *   │  2  │     │  1  │  1  │  ← alias
+ *   ├─────┤  1  ├─────┤     │
+ *   │     │     │     │     │
+ *   │  0  │     │  2  │  3  │  ← threshold
+ *   └─────┴─────┴─────┴─────┘
+ *
+ *   index = random(n), 再以 random(sumWeight) < threshold[index] 决定取 index 还是 alias[index]
+ * </pre>
+ *
+ * 全部使用整数运算, 构建结果是精确的.
+ *
+ * jupiter
+ * org.jupiter.rpc.load.balance
+ *
+ * @author jiachun.fjc
+ */
+final class AliasTable {
+
+    private final int[] thresholds;
+    private final int[] alias;
+    private final int sumWeight;
+
+    AliasTable(int[] weights) {
+        int n = weights.length;
+        long sum = 0;
+        for (int w : weights) {
+            sum += w;
+        }
+        if (sum <= 0 || sum * n > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("illegal sum of weights: " + sum + ", length: " + n);
+        }
+
+        sumWeight = (int) sum;
+        thresholds = new int[n];
+        alias = new int[n];
+
+        // 每个元素的概率放大 n * sumWeight 倍, 平均值正好是sumWeight
+        int[] scaled = new int[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallSize = 0;
+        int largeSize = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n;
+            if (scaled[i] < sumWeight) {
+                small[smallSize++] = i;
+            } else {
+                large[largeSize++] = i;
+            }
+        }
+
+        while (smallSize > 0 && largeSize > 0) {
+            int l = small[--smallSize];
+            int g = large[--largeSize];
+            thresholds[l] = scaled[l];
+            alias[l] = g;
+            scaled[g] -= (sumWeight - scaled[l]);
+            if (scaled[g] < sumWeight) {
+                small[smallSize++] = g;
+            } else {
+                large[largeSize++] = g;
+            }
+        }
+        while (largeSize > 0) {
+            int g = large[--largeSize];
+            thresholds[g] = sumWeight;
+            alias[g] = g;
+        }
+        // 整数运算下不会出现, 保险起见
+        while (smallSize > 0) {
+            int l = small[--smallSize];
+            thresholds[l] = sumWeight;
+            alias[l] = l;
+        }
+    }
+
+    int next(ThreadLocalRandom random) {
+        int index = random.nextInt(thresholds.length);
+        return random.nextInt(sumWeight) < thresholds[index] ? index : alias[index];
+    }
+
+    int length() {
+        return thresholds.length;
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.load.balance;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.jupiter.common.util.JConstants;
+import org.jupiter.common.util.SystemPropertyUtil;
+import org.jupiter.rpc.model.metadata.MessageWrapper;
+import org.jupiter.transport.Directory;
+import org.jupiter.transport.channel.CopyOnWriteGroupList;
+import org.jupiter.transport.channel.JChannelGroup;
+
+/**
+ * 有界负载的一致性hash负载均衡(consistent hashing with bounded loads).
+ *
+ * <pre>
+ * *****************************************************************************
+ *
+ *                    hash(key)
+ *                        │
+ *                        ▼  顺时针找到第一个虚拟节点, 负载超过上限时继续往后找
+ *          ┌──────┬──────┬──────┬──────┬──────┬──────┬──────┐
+ *   ring:  │ g1#0 │ g0#3 │ g2#1 │ g1#2 │ g0#0 │ g2#5 │ ...  │
+ *          └──────┴──────┴──────┴──────┴──────┴──────┴──────┘
+ *
+ * *****************************************************************************
+ * </pre>
+ *
+ * hash key 优先取attachment {@link #HASH_KEY}, 其次取第 {@code argIndex} 个参数(默认第0个), 都没有则随机.
+ * 作为key的参数必须是值语义的toString(String, 基本类型的包装类, 重写了toString的类型), 数组按
+ * {@link Arrays#deepToString} 的结果计算; 没有重写toString的类型每次的结果都不同, 会丢失亲和性,
+ * 所以直接抛出 {@link IllegalArgumentException}. 参数为null时等同于没有key, 随机选择.
+ *
+ * 每个节点的虚拟节点数与它的权重成正比; ring与 {@link CopyOnWriteGroupList} 的快照数组绑定缓存,
+ * 只有节点变化(快照数组不再是同一个对象)时才会重建.
+ *
+ * 负载为节点上在途请求数({@link JChannelGroup#inFlight()}), 一个节点的负载不会超过平均值的
+ * (1 + ε) 倍({@code jupiter.rpc.load_balancer.consistent_hash.epsilon}, 默认0.25),
+ * 所以热点key只会溢出到ring上相邻的节点, 而不是打垮一个节点.
+ *
+ * jupiter
+ * org.jupiter.rpc.load.balance
+ *
+ * @author jiachun.fjc
+ */
+public class ConsistentHashLoadBalancer implements LoadBalancer {
+
+    /**
+     * The attachment key of the hash key.
+     */
+    public static final String HASH_KEY = "jupiter.hash.key";
+
+    private static final int VIRTUAL_NODES = SystemPropertyUtil
+            .getInt("jupiter.rpc.load_balancer.consistent_hash.virtual_nodes", 160);
+    private static final double EPSILON = Double.parseDouble(SystemPropertyUtil
+            .get("jupiter.rpc.load_balancer.consistent_hash.epsilon", "0.25"));
+
+    // 与WeightArray共享CopyOnWriteGroupList中的缓存, 用不同的key区分
+    private static final String RING_KEY_SUFFIX = "#consistent_hash_ring";
+
+    private static final ConsistentHashLoadBalancer instance = new ConsistentHashLoadBalancer(0);
+
+    // 参数类型是否有值语义的toString
+    private static final ClassValue<Boolean> valueBasedToString = new ClassValue<Boolean>() {
+
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("toString").getDeclaringClass() != Object.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
+    public static ConsistentHashLoadBalancer instance() {
+        return instance;
+    }
+
+    private final int argIndex;
+
+    /**
+     * @param argIndex the index of the argument which is used as hash key
+     *                 if there is no {@link #HASH_KEY} attachment
+     */
+    public ConsistentHashLoadBalancer(int argIndex) {
+        this.argIndex = argIndex;
+    }
+
+    @Override
+    public JChannelGroup select(CopyOnWriteGroupList groups, Directory directory) {
+        return select(groups, directory, null);
+    }
+
+    @Override
+    public JChannelGroup select(CopyOnWriteGroupList groups, Directory directory, MessageWrapper message) {
+        JChannelGroup[] elements = groups.getSnapshot();
+        int length = elements.length;
+
+        if (length == 0) {
+            return null;
+        }
+
+        if (length == 1) {
+            return elements[0];
+        }
+
+        String ringKey = directory.directoryString() + RING_KEY_SUFFIX;
+        Ring ring = (Ring) groups.getWeightArray(elements, ringKey);
+        if (ring == null) {
+            ring = Ring.build(elements, directory);
+            groups.setWeightArray(elements, ringKey, ring);
+        }
+
+        String key = hashKey(message);
+        long hash = key == null ? ThreadLocalRandom.current().nextLong() : hash(key);
+
+        return ring.select(elements, hash);
+    }
+
+    private String hashKey(MessageWrapper message) {
+        if (message == null) {
+            return null;
+        }
+        Map<String, String> attachments = message.getAttachments();
+        if (attachments != null) {
+            String key = attachments.get(HASH_KEY);
+            if (key != null) {
+                return key;
+            }
+        }
+        Object[] args = message.getArgs();
+        if (args != null && args.length > argIndex) {
+            return keyOf(args[argIndex]);
+        }
+        return null;
+    }
+
+    static String keyOf(Object arg) {
+        if (arg == null) {
+            return null;
+        }
+        Class<?> type = arg.getClass();
+        if (type.isArray()) {
+            String key = Arrays.deepToString(new Object[] { arg });
+            // 去掉外层的 "[" 和 "]"
+            return key.substring(1, key.length() - 1);
+        }
+        if (!valueBasedToString.get(type)) {
+            throw new IllegalArgumentException(
+                    "the hash key argument must have a value-based toString(): " + type.getName());
+        }
+        return arg.toString();
+    }
+
+    // FNV-1a + murmur3 finalizer
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    static final class Ring {
+
+        private final long[] hashes;    // sorted
+        private final int[] indexes;    // 虚拟节点对应的elements下标
+
+        private Ring(long[] hashes, int[] indexes) {
+            this.hashes = hashes;
+            this.indexes = indexes;
+        }
+
+        static Ring build(JChannelGroup[] elements, Directory directory) {
+            int length = elements.length;
+            int[] replicas = new int[length];
+            int total = 0;
+            for (int i = 0; i < length; i++) {
+                int weight = elements[i].getWeight(directory);
+                replicas[i] = Math.max(1, (int) ((long) VIRTUAL_NODES * weight / JConstants.DEFAULT_WEIGHT));
+                total += replicas[i];
+            }
+
+            long[] hashes = new long[total];
+            int[] owners = new int[total];
+            int n = 0;
+            for (int i = 0; i < length; i++) {
+                String address = String.valueOf(elements[i].remoteAddress());
+                for (int r = 0; r < replicas[i]; r++) {
+                    hashes[n] = hash(address + "#" + r);
+                    owners[n] = i;
+                    n++;
+                }
+            }
+
+            // 按hash排序, 节点下标跟随
+            Integer[] order = new Integer[total];
+            for (int i = 0; i < total; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+
+            long[] sortedHashes = new long[total];
+            int[] indexes = new int[total];
+            for (int i = 0; i < total; i++) {
+                sortedHashes[i] = hashes[order[i]];
+                indexes[i] = owners[order[i]];
+            }
+            return new Ring(sortedHashes, indexes);
+        }
+
+        JChannelGroup select(JChannelGroup[] elements, long hash) {
+            int size = hashes.length;
+            int pos = Arrays.binarySearch(hashes, hash);
+            if (pos < 0) {
+                pos = -pos - 1;
+            }
+            if (pos == size) {
+                pos = 0;
+            }
+
+            JChannelGroup first = elements[indexes[pos]];
+            int firstLoad = first.inFlight();
+            if (firstLoad == 0) {
+                return first; // fast path, 空闲的节点不会超过上限
+            }
+
+            // 上限 = ceil((总负载 + 本次请求) * (1 + ε) / 节点数)
+            int length = elements.length;
+            int[] loads = new int[length];
+            long total = 1;
+            for (int i = 0; i < length; i++) {
+                total += (loads[i] = elements[i].inFlight());
+            }
+            long capacity = (long) Math.ceil(total * (1 + EPSILON) / length);
+
+            for (int i = 0; i < size; i++) {
+                int index = indexes[(pos + i) % size];
+                if (loads[index] + 1 <= capacity) {
+                    return elements[index];
+                }
+            }
+            return first;
+        }
+    }
+}
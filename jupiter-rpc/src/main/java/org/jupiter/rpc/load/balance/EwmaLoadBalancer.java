@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.load.balance;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.jupiter.transport.Directory;
+import org.jupiter.transport.channel.CopyOnWriteGroupList;
+import org.jupiter.transport.channel.JChannelGroup;
+
+/**
+ * 基于延迟的负载均衡(power of two choices + peak EWMA).
+ *
+ * 随机选出两个不同的候选, 取负载较低的一个:
+ *
+ * <pre>
+ * cost = (latency + 1) * (inFlight + 1) / weight
+ * </pre>
+ *
+ * latency 是 {@link JChannelGroup#latency()} 按时间衰减的平均延迟, 变慢时立即生效; inFlight 是还没有返回的请求数,
+ * 所以即使一个节点还没有返回任何响应(比如正在GC), 请求的堆积也会使它很快被避开.
+ * weight 包含了预热逻辑, 见 {@link WeightSupport#getWeight(JChannelGroup, Directory)}.
+ *
+ * jupiter
+ * org.jupiter.rpc.load.balance
+ *
+ * @author jiachun.fjc
+ */
+public class EwmaLoadBalancer implements LoadBalancer {
+
+    private static final EwmaLoadBalancer instance = new EwmaLoadBalancer();
+
+    public static EwmaLoadBalancer instance() {
+        return instance;
+    }
+
+    @Override
+    public JChannelGroup select(CopyOnWriteGroupList groups, Directory directory) {
+        JChannelGroup[] elements = groups.getSnapshot();
+        int length = elements.length;
+
+        if (length == 0) {
+            return null;
+        }
+
+        if (length == 1) {
+            return elements[0];
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(length);
+        int second = random.nextInt(length - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        JChannelGroup a = elements[first];
+        JChannelGroup b = elements[second];
+        return cost(b, directory) < cost(a, directory) ? b : a;
+    }
+
+    private static double cost(JChannelGroup group, Directory directory) {
+        int weight = WeightSupport.getWeight(group, directory);
+        if (weight <= 0) {
+            return Double.MAX_VALUE;
+        }
+        return (group.latency() + 1.0) * (group.inFlight() + 1) / weight;
+    }
+}
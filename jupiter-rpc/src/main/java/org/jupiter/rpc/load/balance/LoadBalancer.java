@@ -15,6 +15,7 @@
  */
 package org.jupiter.rpc.load.balance;
 
+import org.jupiter.rpc.model.metadata.MessageWrapper;
 import org.jupiter.transport.Directory;
 import org.jupiter.transport.channel.CopyOnWriteGroupList;
 import org.jupiter.transport.channel.JChannelGroup;
@@ -36,4 +37,16 @@ public interface LoadBalancer {
      * @param directory service directory
      */
     JChannelGroup select(CopyOnWriteGroupList groups, Directory directory);
+
+    /**
+     * Select one in elements list, the message which is going to be sent
+     * can be used to route by its content (arguments, attachments).
+     *
+     * @param groups    elements for select
+     * @param directory service directory
+     * @param message   the message which is going to be sent
+     */
+    default JChannelGroup select(CopyOnWriteGroupList groups, Directory directory, MessageWrapper message) {
+        return select(groups, directory);
+    }
 }
@@ -34,6 +34,14 @@ public final class LoadBalancerFactory {
             return RoundRobinLoadBalancer.instance();
         }
 
+        if (type == LoadBalancerType.EWMA) {
+            return EwmaLoadBalancer.instance();
+        }
+
+        if (type == LoadBalancerType.CONSISTENT_HASH) {
+            return ConsistentHashLoadBalancer.instance();
+        }
+
         if (type == LoadBalancerType.EXT_SPI) {
             return ExtSpiFactoryHolder.factory.getInstance(name);
         }
@@ -24,6 +24,8 @@ package org.jupiter.rpc.load.balance;
 public enum LoadBalancerType {
     ROUND_ROBIN,                // 加权轮询
     RANDOM,                     // 加权随机
+    EWMA,                       // 两次随机选择中取 延迟 * 在途请求数 较小的
+    CONSISTENT_HASH,            // 有界负载的一致性hash
     EXT_SPI;                    // 用户自行扩展, SPI方式加载
 
     public static LoadBalancerType parse(String name) {
@@ -65,7 +65,7 @@ public class RandomLoadBalancer implements LoadBalancer {
         }
 
         WeightArray weightArray = (WeightArray) groups.getWeightArray(elements, directory.directoryString());
-        if (weightArray == null || weightArray.length() != length) {
+        if (weightArray == null || weightArray.length() != length || weightArray.isExpired()) {
             weightArray = WeightSupport.computeWeights(groups, elements, directory);
         }
 
@@ -75,7 +75,10 @@ public class RandomLoadBalancer implements LoadBalancer {
             return elements[random.nextInt(length)];
         }
 
-        int nextIndex = getNextServerIndex(weightArray, length, random);
+        // 被缓存的权重会被多次使用, 构建alias table
+        int nextIndex = weightArray.isCached()
+                ? weightArray.aliasTable().next(random)
+                : getNextServerIndex(weightArray, length, random);
 
         return elements[nextIndex];
     }
@@ -85,7 +85,7 @@ public class RoundRobinLoadBalancer implements LoadBalancer {
         }
 
         WeightArray weightArray = (WeightArray) groups.getWeightArray(elements, directory.directoryString());
-        if (weightArray == null || weightArray.length() != length) {
+        if (weightArray == null || weightArray.length() != length || weightArray.isExpired()) {
             weightArray = WeightSupport.computeWeights(groups, elements, directory);
         }
 
@@ -95,7 +95,10 @@ public class RoundRobinLoadBalancer implements LoadBalancer {
             return elements[rrIndex % length];
         }
 
-        int nextIndex = getNextServerIndex(weightArray, length, rrIndex);
+        // 被缓存的权重会被多次使用, 构建平滑加权调度表
+        int nextIndex = weightArray.isCached()
+                ? weightArray.schedule().get(rrIndex)
+                : getNextServerIndex(weightArray, length, rrIndex);
 
         return elements[nextIndex];
     }
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.load.balance;
+
+/**
+ * 平滑加权轮询的调度表, 一个周期内每个元素出现的次数等于它的权重(约去最大公约数之后),
+ * 并且尽量均匀地交错排列, 而不是连续出现.
+ *
+ * <pre>
+ * weights: a=5, b=1, c=1
+ * 非平滑: a a a a a b c
+ * 平滑:   a a b a c a a
+ * </pre>
+ *
+ * 第i个元素的第k次出现排在 (k + 0.5) / weight(i) 的位置, 用一个最小堆按位置归并所有元素,
+ * 构建 O(sumWeight * log(n)), 选择 O(1) 并且不分配内存.
+ *
+ * jupiter
+ * org.jupiter.rpc.load.balance
+ *
+ * @author jiachun.fjc
+ */
+final class SmoothWeightSchedule {
+
+    private final int[] schedule;
+
+    SmoothWeightSchedule(int[] weights) {
+        int n = weights.length;
+        int gcd = 0;
+        long sum = 0;
+        for (int w : weights) {
+            gcd = WeightSupport.gcd(gcd, w);
+            sum += w;
+        }
+        if (sum <= 0) {
+            throw new IllegalArgumentException("illegal sum of weights: " + sum);
+        }
+        sum /= gcd;
+        if (sum > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too large sum of weights: " + sum);
+        }
+
+        int[] reduced = new int[n];
+        int[] counts = new int[n];
+        double[] positions = new double[n];
+        int[] heap = new int[n];
+        int heapSize = 0;
+        for (int i = 0; i < n; i++) {
+            reduced[i] = weights[i] / gcd;
+            if (reduced[i] > 0) {
+                positions[i] = 0.5 / reduced[i];
+                heap[heapSize] = i;
+                siftUp(heap, heapSize++, positions);
+            }
+        }
+
+        schedule = new int[(int) sum];
+        for (int s = 0; s < schedule.length; s++) {
+            int i = heap[0];
+            schedule[s] = i;
+            if (++counts[i] < reduced[i]) {
+                positions[i] = (counts[i] + 0.5) / reduced[i];
+            } else {
+                heap[0] = heap[--heapSize];
+            }
+            siftDown(heap, heapSize, positions);
+        }
+    }
+
+    int get(int index) {
+        return schedule[index % schedule.length];
+    }
+
+    int length() {
+        return schedule.length;
+    }
+
+    // 位置相同时下标小的优先, 保证结果是确定的
+    private static boolean less(int a, int b, double[] positions) {
+        return positions[a] < positions[b] || (positions[a] == positions[b] && a < b);
+    }
+
+    private static void siftUp(int[] heap, int k, double[] positions) {
+        int x = heap[k];
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            int e = heap[parent];
+            if (!less(x, e, positions)) {
+                break;
+            }
+            heap[k] = e;
+            k = parent;
+        }
+        heap[k] = x;
+    }
+
+    private static void siftDown(int[] heap, int size, double[] positions) {
+        if (size == 0) {
+            return;
+        }
+        int k = 0;
+        int x = heap[0];
+        int half = size >>> 1;
+        while (k < half) {
+            int child = (k << 1) + 1;
+            int right = child + 1;
+            if (right < size && less(heap[right], heap[child], positions)) {
+                child = right;
+            }
+            if (!less(heap[child], x, positions)) {
+                break;
+            }
+            heap[k] = heap[child];
+            k = child;
+        }
+        heap[k] = x;
+    }
+}
@@ -15,7 +15,13 @@
  */
 package org.jupiter.rpc.load.balance;
 
+import org.jupiter.common.util.SystemClock;
+
 /**
+ * 权重的前缀和数组, 与 {@link org.jupiter.transport.channel.CopyOnWriteGroupList} 的快照绑定缓存
+ * (有节点在预热时只缓存一小段时间), 被缓存的还会延迟构建 O(1) 的选择结构:
+ * {@link AliasTable} 和 {@link SmoothWeightSchedule}.
+ *
  * jupiter
  * org.jupiter.rpc.load.balance
  *
@@ -25,11 +31,24 @@ final class WeightArray {
 
     private final int[] array;
     private final int length;
+    private final long expireMillis;
     private int gcd;
 
+    // 没有被缓存(并发竞争放弃了缓存)的只用一次, 不值得构建选择结构
+    private volatile boolean cached = false;
+
+    // 延迟构建, 并发时可能重复构建, 结果是一样的
+    private volatile AliasTable aliasTable;
+    private volatile SmoothWeightSchedule schedule;
+
     WeightArray(int[] array, int length) {
+        this(array, length, Long.MAX_VALUE);
+    }
+
+    WeightArray(int[] array, int length, long expireMillis) {
         this.array = array;
         this.length = (array != null ? array.length : length);
+        this.expireMillis = expireMillis;
     }
 
     int get(int index) {
@@ -54,4 +73,42 @@ final class WeightArray {
     boolean isAllSameWeight() {
         return array == null;
     }
+
+    boolean isCached() {
+        return cached;
+    }
+
+    void markCached() {
+        cached = true;
+    }
+
+    boolean isExpired() {
+        return expireMillis != Long.MAX_VALUE && SystemClock.millisClock().now() > expireMillis;
+    }
+
+    AliasTable aliasTable() {
+        AliasTable t = aliasTable;
+        if (t == null) {
+            aliasTable = t = new AliasTable(weights());
+        }
+        return t;
+    }
+
+    SmoothWeightSchedule schedule() {
+        SmoothWeightSchedule s = schedule;
+        if (s == null) {
+            schedule = s = new SmoothWeightSchedule(weights());
+        }
+        return s;
+    }
+
+    // 前缀和还原为每个元素的权重
+    private int[] weights() {
+        int[] weights = new int[length];
+        weights[0] = array[0];
+        for (int i = 1; i < length; i++) {
+            weights[i] = array[i] - array[i - 1];
+        }
+        return weights;
+    }
 }
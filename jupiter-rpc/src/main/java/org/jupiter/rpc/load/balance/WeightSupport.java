@@ -16,6 +16,7 @@
 package org.jupiter.rpc.load.balance;
 
 import org.jupiter.common.util.SystemClock;
+import org.jupiter.common.util.SystemPropertyUtil;
 import org.jupiter.transport.Directory;
 import org.jupiter.transport.channel.CopyOnWriteGroupList;
 import org.jupiter.transport.channel.JChannelGroup;
@@ -30,6 +31,9 @@ import static java.lang.Math.min;
  */
 final class WeightSupport {
 
+    private static final long WARM_UP_REFRESH_MILLIS =
+            SystemPropertyUtil.getLong("jupiter.rpc.load_balancer.warm_up.refresh.millis", 1000);
+
     static int binarySearchIndex(WeightArray weightArray, int length, int value) {
         int low = 0;
         int high = length - 1;
@@ -72,12 +76,18 @@ final class WeightSupport {
                 // [curVal += preVal] for binary search
                 weights[i] += weights[i - 1];
             }
+            if (weights[length - 1] == 0) {
+                // 全部都刚开始预热
+                weights = null;
+            }
         }
 
-        WeightArray weightArray = new WeightArray(weights, length);
+        // 预热期间权重随时间变化, 缓存一小段时间之后重新计算
+        long expireMillis = allWarmUpComplete ? Long.MAX_VALUE : SystemClock.millisClock().now() + WARM_UP_REFRESH_MILLIS;
+        WeightArray weightArray = new WeightArray(weights, length, expireMillis);
 
-        if (allWarmUpComplete) {
-            groups.setWeightArray(elements, directory.directoryString(), weightArray);
+        if (groups.setWeightArray(elements, directory.directoryString(), weightArray)) {
+            weightArray.markCached();
         }
 
         return weightArray;
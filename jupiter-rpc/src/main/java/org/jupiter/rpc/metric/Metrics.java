@@ -24,6 +24,7 @@ import org.jupiter.common.util.JConstants;
 import com.codahale.metrics.ConsoleReporter;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.CsvReporter;
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Metric;
@@ -142,5 +143,30 @@ public class Metrics {
         return metricRegistry.histogram(MetricRegistry.name(clazz, names));
     }
 
+    /**
+     * Return the {@link Gauge} registered under this name; or register the given
+     * {@link Gauge} if none is registered.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Gauge<T> gauge(String name, Gauge<T> gauge) {
+        return metricRegistry.gauge(requireNotNull(name, "name"), () -> gauge);
+    }
+
+    /**
+     * Return the {@link Gauge} registered under this name; or register the given
+     * {@link Gauge} if none is registered.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Gauge<T> gauge(Class<?> clazz, Gauge<T> gauge, String... names) {
+        return metricRegistry.gauge(MetricRegistry.name(clazz, names), () -> gauge);
+    }
+
+    /**
+     * Removes the metric with the given name.
+     */
+    public static boolean remove(Class<?> clazz, String... names) {
+        return metricRegistry.remove(MetricRegistry.name(clazz, names));
+    }
+
     private Metrics() {}
 }
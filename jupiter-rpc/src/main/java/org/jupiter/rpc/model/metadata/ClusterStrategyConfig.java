@@ -31,20 +31,35 @@ public class ClusterStrategyConfig implements Serializable {
 
     private ClusterInvoker.Strategy strategy;
     private int failoverRetries;
+    private int forks;
 
     public static ClusterStrategyConfig of(String strategy, String failoverRetries) {
+        return of(strategy, failoverRetries, null);
+    }
+
+    public static ClusterStrategyConfig of(String strategy, String failoverRetries, String forks) {
         int retries = 0;
         try {
             retries = Integer.parseInt(failoverRetries);
         } catch (Exception ignored) {}
 
-        return of(ClusterInvoker.Strategy.parse(strategy), retries);
+        int k = 0;
+        try {
+            k = Integer.parseInt(forks);
+        } catch (Exception ignored) {}
+
+        return of(ClusterInvoker.Strategy.parse(strategy), retries, k);
     }
 
     public static ClusterStrategyConfig of(ClusterInvoker.Strategy strategy, int failoverRetries) {
+        return of(strategy, failoverRetries, 0);
+    }
+
+    public static ClusterStrategyConfig of(ClusterInvoker.Strategy strategy, int failoverRetries, int forks) {
         ClusterStrategyConfig s = new ClusterStrategyConfig();
         s.setStrategy(strategy);
         s.setFailoverRetries(failoverRetries);
+        s.setForks(forks);
         return s;
     }
 
@@ -63,4 +78,12 @@ public class ClusterStrategyConfig implements Serializable {
     public void setFailoverRetries(int failoverRetries) {
         this.failoverRetries = failoverRetries;
     }
+
+    public int getForks() {
+        return forks;
+    }
+
+    public void setForks(int forks) {
+        this.forks = forks;
+    }
 }
@@ -17,6 +17,7 @@ package org.jupiter.rpc.model.metadata;
 
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.jupiter.common.util.Maps;
@@ -40,6 +41,15 @@ public class MessageWrapper implements Serializable {
     public static final boolean ALLOW_NULL_ARRAY_ARG =
             SystemPropertyUtil.getBoolean("jupiter.message.args.allow_null_array_arg", false);
 
+    // 方法id通过attachment携带, 不改变消息本身的字段, 老版本的provider会忽略它(Kryo等不带tag的序列化方式也能正确解码):
+    //  没有这个attachment: 携带完整的service/method字符串;
+    //  METHOD_ID_REQUIRED: 携带完整的字符串, 同时请求provider分配id(通过 MethodIdResult 返回);
+    //  > 0: 只携带id和参数, appName/metadata/methodName都为null, provider根据id还原.
+    // 只有provider分配过id之后consumer才会发送 > 0 的id, 相当于一次能力协商.
+    public static final String METHOD_ID_KEY = "jupiter.method.id";
+    // 请求provider为这个方法分配id
+    public static final int METHOD_ID_REQUIRED = -1;
+
     private String appName;                 // 应用名称
     private final ServiceMetadata metadata; // 目标服务元数据
     private String methodName;              // 目标方法名称
@@ -119,6 +129,67 @@ public class MessageWrapper implements Serializable {
         attachments.put(key, value);
     }
 
+    public String removeAttachment(String key) {
+        return attachments == null ? null : attachments.remove(key);
+    }
+
+    /**
+     * Returns the method id carried by the {@link #METHOD_ID_KEY} attachment,
+     * or 0 if absent.
+     */
+    public int getMethodId() {
+        String methodId = attachments == null ? null : attachments.get(METHOD_ID_KEY);
+        return methodId == null ? 0 : Integer.parseInt(methodId);
+    }
+
+    public boolean isInterned() {
+        return metadata == null && getMethodId() > 0;
+    }
+
+    /**
+     * Returns a copy of this message which asks the provider to assign a
+     * method id, used to write on the wire. This message is not modified
+     * since it is shared by the attempts of failover/hedging/forking.
+     */
+    public MessageWrapper requireMethodId() {
+        MessageWrapper copy = new MessageWrapper(metadata);
+        copy.appName = appName;
+        copy.methodName = methodName;
+        copy.args = args;
+        copy.attachments = attachmentsWithMethodId(METHOD_ID_REQUIRED);
+        return copy;
+    }
+
+    /**
+     * Returns a copy of this message which only carries the method id,
+     * the args and the attachments, used to write on the wire.
+     */
+    public MessageWrapper intern(int methodId) {
+        MessageWrapper interned = new MessageWrapper(null);
+        interned.args = args;
+        interned.attachments = attachmentsWithMethodId(methodId);
+        return interned;
+    }
+
+    /**
+     * Restores an interned message with the strings resolved from the method id.
+     */
+    public MessageWrapper restore(String appName, ServiceMetadata metadata, String methodName) {
+        MessageWrapper restored = new MessageWrapper(metadata);
+        restored.appName = appName;
+        restored.methodName = methodName;
+        restored.args = args;
+        restored.attachments = attachments;
+        restored.removeAttachment(METHOD_ID_KEY);
+        return restored;
+    }
+
+    private Map<String, String> attachmentsWithMethodId(int methodId) {
+        Map<String, String> copy = attachments == null ? Maps.<String, String>newHashMap() : new HashMap<>(attachments);
+        copy.put(METHOD_ID_KEY, String.valueOf(methodId));
+        return copy;
+    }
+
     public String getOperationName() {
         return metadata.directoryString() + "." + methodName;
     }
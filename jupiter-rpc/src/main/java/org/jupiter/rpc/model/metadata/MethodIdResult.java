@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.model.metadata;
+
+import java.io.Serializable;
+
+/**
+ * Provider为请求的方法分配了id时, 用它包装 {@link ResultWrapper#getResult()} 的结果对象.
+ *
+ * 只有在请求的attachment中携带了 {@link MessageWrapper#METHOD_ID_KEY} 时才会返回, 也就是只发给支持方法id的consumer,
+ * {@link ResultWrapper} 本身的字段保持不变, 新老版本混合部署时所有的序列化方式(包括不带tag的Kryo)都可以正确解码.
+ *
+ * jupiter
+ * org.jupiter.rpc.model.metadata
+ *
+ * @author jiachun.fjc
+ */
+public class MethodIdResult implements Serializable {
+
+    private static final long serialVersionUID = 2817356230982311174L;
+
+    private int methodId;  // provider为请求的方法分配的id
+    private Object result; // 真实的响应结果对象
+
+    public MethodIdResult() {}
+
+    public MethodIdResult(int methodId, Object result) {
+        this.methodId = methodId;
+        this.result = result;
+    }
+
+    public int getMethodId() {
+        return methodId;
+    }
+
+    public Object getResult() {
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "MethodIdResult{" +
+                "methodId=" + methodId +
+                ", result=" + result +
+                '}';
+    }
+}
@@ -17,6 +17,8 @@ package org.jupiter.rpc.model.metadata;
 
 import java.io.Serializable;
 
+import org.jupiter.transport.Priority;
+
 /**
  * Jupiter
  * org.jupiter.rpc.model.metadata
@@ -31,6 +33,10 @@ public class MethodSpecialConfig implements Serializable {
 
     private long timeoutMillis;
     private ClusterStrategyConfig strategy;
+    private boolean coalescing; // 合并相同参数的并发调用, 只适用于幂等方法
+    private long cacheTtlMillis; // 大于0时在consumer端缓存成功的结果, 只适用于幂等方法
+    private long cacheMaxBytes;  // 结果缓存的字节上限, 小于等于0时使用默认值
+    private Priority priority;   // 请求的优先级, 为null时使用默认的 Priority.NORMAL
 
     public static MethodSpecialConfig of(String methodName) {
         return new MethodSpecialConfig(methodName);
@@ -50,6 +56,26 @@ public class MethodSpecialConfig implements Serializable {
         return this;
     }
 
+    public MethodSpecialConfig coalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+        return this;
+    }
+
+    public MethodSpecialConfig cacheTtlMillis(long cacheTtlMillis) {
+        this.cacheTtlMillis = cacheTtlMillis;
+        return this;
+    }
+
+    public MethodSpecialConfig cacheMaxBytes(long cacheMaxBytes) {
+        this.cacheMaxBytes = cacheMaxBytes;
+        return this;
+    }
+
+    public MethodSpecialConfig priority(Priority priority) {
+        this.priority = priority;
+        return this;
+    }
+
     public String getMethodName() {
         return methodName;
     }
@@ -69,4 +95,36 @@ public class MethodSpecialConfig implements Serializable {
     public void setStrategy(ClusterStrategyConfig strategy) {
         this.strategy = strategy;
     }
+
+    public boolean isCoalescing() {
+        return coalescing;
+    }
+
+    public void setCoalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    public long getCacheTtlMillis() {
+        return cacheTtlMillis;
+    }
+
+    public void setCacheTtlMillis(long cacheTtlMillis) {
+        this.cacheTtlMillis = cacheTtlMillis;
+    }
+
+    public long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+
+    public void setCacheMaxBytes(long cacheMaxBytes) {
+        this.cacheMaxBytes = cacheMaxBytes;
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(Priority priority) {
+        this.priority = priority;
+    }
 }
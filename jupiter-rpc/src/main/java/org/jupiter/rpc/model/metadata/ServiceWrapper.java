@@ -17,15 +17,19 @@ package org.jupiter.rpc.model.metadata;
 
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executor;
 
 import org.jupiter.common.util.JConstants;
+import org.jupiter.common.util.Maps;
 import org.jupiter.common.util.Pair;
 import org.jupiter.rpc.JRequest;
 import org.jupiter.rpc.flow.control.FlowController;
+import org.jupiter.rpc.provider.MethodInvoker;
 import org.jupiter.rpc.provider.ProviderInterceptor;
+import org.jupiter.rpc.provider.processor.BulkheadExecutor;
 
 import static org.jupiter.common.util.Requires.requireNotNull;
 
@@ -53,6 +57,9 @@ public class ServiceWrapper implements Serializable {
     // value:   pair.first:  方法参数类型(用于根据JLS规则实现方法调用的静态分派)
     //          pair.second: 方法显式声明抛出的异常类型
     private final Map<String, List<Pair<Class<?>[], Class<?>[]>>> extensions;
+    // key:     method name
+    // value:   发布时预先创建的方法调用入口
+    private final transient Map<String, MethodInvoker> methodInvokers;
 
     // 权重 hashCode() 与 equals() 不把weight计算在内
     private int weight = JConstants.DEFAULT_WEIGHT;
@@ -60,6 +67,9 @@ public class ServiceWrapper implements Serializable {
     private Executor executor;
     // provider私有流量控制器
     private FlowController<JRequest> flowController;
+    // key:     method name
+    // value:   方法私有的隔离线程池, 见 {@link org.jupiter.rpc.Bulkhead}
+    private transient Map<String, BulkheadExecutor> bulkheads = Collections.emptyMap();
 
     public ServiceWrapper(String group,
                           String providerName,
@@ -73,6 +83,12 @@ public class ServiceWrapper implements Serializable {
         this.interceptors = interceptors;
         this.extensions = requireNotNull(extensions, "extensions");
         this.serviceProvider = requireNotNull(serviceProvider, "serviceProvider");
+
+        methodInvokers = Maps.newHashMapWithExpectedSize(extensions.size());
+        for (Map.Entry<String, List<Pair<Class<?>[], Class<?>[]>>> entry : extensions.entrySet()) {
+            String methodName = entry.getKey();
+            methodInvokers.put(methodName, new MethodInvoker(serviceProvider, methodName, entry.getValue()));
+        }
     }
 
     public ServiceMetadata getMetadata() {
@@ -111,10 +127,26 @@ public class ServiceWrapper implements Serializable {
         this.flowController = flowController;
     }
 
+    public BulkheadExecutor getBulkhead(String methodName) {
+        return bulkheads.get(methodName);
+    }
+
+    public Map<String, BulkheadExecutor> getBulkheads() {
+        return bulkheads;
+    }
+
+    public void setBulkheads(Map<String, BulkheadExecutor> bulkheads) {
+        this.bulkheads = requireNotNull(bulkheads, "bulkheads");
+    }
+
     public List<Pair<Class<?>[], Class<?>[]>> getMethodExtension(String methodName) {
         return extensions.get(methodName);
     }
 
+    public MethodInvoker getMethodInvoker(String methodName) {
+        return methodInvokers.get(methodName);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -140,6 +172,7 @@ public class ServiceWrapper implements Serializable {
                 ", weight=" + weight +
                 ", executor=" + executor +
                 ", flowController=" + flowController +
+                ", bulkheads=" + bulkheads.keySet() +
                 '}';
     }
 }
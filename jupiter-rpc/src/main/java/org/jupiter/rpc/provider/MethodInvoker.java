@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.provider;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.jupiter.common.util.FastMethodAccessor;
+import org.jupiter.common.util.Lists;
+import org.jupiter.common.util.Pair;
+import org.jupiter.common.util.Reflects;
+
+/**
+ * 同名方法(包括所有重载)的预编译调用入口, 在服务发布时由 {@link org.jupiter.rpc.model.metadata.ServiceWrapper} 创建.
+ *
+ * 每个重载方法预先绑定 {@link FastMethodAccessor} 中的方法下标, 调用时不再按照方法名及参数类型查找;
+ * 存在重载时根据JLS规则选择最匹配的方法, 并以参数的运行时类型为key缓存选择结果(inline cache),
+ * 稳定状态下只需要一次缓存探测和一次直接调用.
+ *
+ * jupiter
+ * org.jupiter.rpc.provider
+ *
+ * @author jiachun.fjc
+ */
+public final class MethodInvoker {
+
+    private static final int INLINE_CACHE_SIZE = 8;
+    private static final CacheEntry[] EMPTY_CACHE = new CacheEntry[0];
+    private static final Class<?>[] EMPTY_CLASSES = new Class<?>[0];
+
+    private final String methodName;
+    private final Overload[] overloads;
+    private final List<Pair<Class<?>[], Overload>> candidates;
+
+    // 参数类型 --> 重载方法, 每次更新都复制一个新数组, 并发更新时丢失一个entry也没关系
+    private volatile CacheEntry[] inlineCache = EMPTY_CACHE;
+
+    /**
+     * @param provider      the service provider
+     * @param methodName    the method name
+     * @param extensions    pair.first:  parameter types of each overload
+     *                      pair.second: the declared exception types
+     */
+    public MethodInvoker(Object provider, String methodName, List<Pair<Class<?>[], Class<?>[]>> extensions) {
+        FastMethodAccessor accessor = null;
+        try {
+            accessor = FastMethodAccessor.get(provider.getClass());
+        } catch (Throwable ignored) {
+            // 退化为调用时按照方法名查找
+        }
+
+        this.methodName = methodName;
+        overloads = new Overload[extensions.size()];
+        candidates = Lists.newArrayListWithCapacity(extensions.size());
+        for (int i = 0; i < overloads.length; i++) {
+            Pair<Class<?>[], Class<?>[]> ext = extensions.get(i);
+            overloads[i] = new Overload(accessor, methodName, ext.getFirst(), ext.getSecond());
+            candidates.add(Pair.of(ext.getFirst(), overloads[i]));
+        }
+    }
+
+    public String methodName() {
+        return methodName;
+    }
+
+    /**
+     * Selects the most specific overload for the given args, returns
+     * {@code null} if there is no applicable one.
+     */
+    public Overload select(Object[] args) {
+        Overload[] overloads = this.overloads;
+        if (overloads.length == 1) {
+            return overloads[0];
+        }
+
+        int length = args == null ? 0 : args.length;
+        CacheEntry[] cache = inlineCache;
+        for (CacheEntry e : cache) {
+            if (e.matches(args, length)) {
+                return e.overload;
+            }
+        }
+
+        Class<?>[] argClasses = length == 0 ? EMPTY_CLASSES : new Class<?>[length];
+        for (int i = 0; i < length; i++) {
+            Object arg = args[i];
+            argClasses[i] = arg == null ? null : arg.getClass();
+        }
+
+        Pair<Class<?>[], Overload> bestMatch = Reflects.findMatchingParameterTypesExt(candidates, args);
+        if (bestMatch == null) {
+            return null;
+        }
+
+        if (cache.length < INLINE_CACHE_SIZE) {
+            CacheEntry[] newCache = Arrays.copyOf(cache, cache.length + 1);
+            newCache[cache.length] = new CacheEntry(argClasses, bestMatch.getSecond());
+            inlineCache = newCache;
+        }
+        return bestMatch.getSecond();
+    }
+
+    public static final class Overload {
+
+        private final FastMethodAccessor accessor;
+        private final int methodIndex;
+        private final String methodName;
+        private final Class<?>[] parameterTypes;
+        private final Class<?>[] exceptionTypes;
+
+        Overload(FastMethodAccessor accessor, String methodName, Class<?>[] parameterTypes, Class<?>[] exceptionTypes) {
+            int index = -1;
+            if (accessor != null) {
+                try {
+                    index = accessor.getIndex(methodName, parameterTypes);
+                } catch (Throwable ignored) {
+                    // 退化为调用时按照方法名查找
+                }
+            }
+            this.accessor = accessor;
+            this.methodIndex = index;
+            this.methodName = methodName;
+            this.parameterTypes = parameterTypes;
+            this.exceptionTypes = exceptionTypes;
+        }
+
+        public Class<?>[] parameterTypes() {
+            return parameterTypes;
+        }
+
+        public Class<?>[] exceptionTypes() {
+            return exceptionTypes;
+        }
+
+        public Object invoke(Object provider, Object[] args) {
+            if (methodIndex >= 0) {
+                return accessor.invoke(provider, methodIndex, args);
+            }
+            return Reflects.fastInvoke(provider, methodName, parameterTypes, args);
+        }
+    }
+
+    static final class CacheEntry {
+
+        final Class<?>[] argClasses;
+        final Overload overload;
+
+        CacheEntry(Class<?>[] argClasses, Overload overload) {
+            this.argClasses = argClasses;
+            this.overload = overload;
+        }
+
+        boolean matches(Object[] args, int length) {
+            Class<?>[] classes = argClasses;
+            if (classes.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                Object arg = args[i];
+                if ((arg == null ? null : arg.getClass()) != classes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.provider.processor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jupiter.common.concurrent.RejectedRunnable;
+import org.jupiter.common.util.JServiceLoader;
+import org.jupiter.common.util.Requires;
+import org.jupiter.common.util.StackTraceUtil;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+import org.jupiter.rpc.Bulkhead;
+import org.jupiter.rpc.executor.CloseableExecutor;
+import org.jupiter.rpc.executor.ExecutorFactory;
+import org.jupiter.rpc.executor.ThreadPoolExecutorFactory;
+import org.jupiter.rpc.metric.Metrics;
+
+import com.codahale.metrics.Gauge;
+
+/**
+ * 方法级别的隔离线程池(见 {@link Bulkhead}).
+ *
+ * 正在执行及排队中的任务数由这里计数, 超过 maxWorkers + queueCapacity 时直接拒绝.
+ * 计数在任务返回时就减少了, 这时worker可能还没有从队列中取走下一个任务, 所以底层线程池仍然可能拒绝,
+ * 提交给底层线程池的任务都是 {@link RejectedRunnable}, 拒绝策略不会丢弃队列中的任务, 而是回调
+ * {@link RejectedRunnable#rejected()}: 归还计数, 并转交给原始任务(如果它也是 {@link RejectedRunnable}).
+ *
+ * jupiter
+ * org.jupiter.rpc.provider.processor
+ *
+ * @author jiachun.fjc
+ */
+public final class BulkheadExecutor implements Executor {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(BulkheadExecutor.class);
+
+    private final String name;
+    private final CloseableExecutor executor;
+    private final int maxPending;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile boolean metricsRegistered = false;
+
+    public static BulkheadExecutor create(String name, Bulkhead bulkhead) {
+        int coreWorkers = bulkhead.coreWorkers();
+        int maxWorkers = Math.max(coreWorkers, bulkhead.maxWorkers());
+        int queueCapacity = bulkhead.queueCapacity();
+        Requires.requireTrue(coreWorkers > 0, "coreWorkers must be positive");
+        Requires.requireTrue(queueCapacity > 0, "queueCapacity must be positive");
+
+        ExecutorFactory factory;
+        try {
+            factory = (ExecutorFactory) JServiceLoader.load(ProviderExecutorFactory.class).find(bulkhead.factory());
+        } catch (Throwable t) {
+            logger.warn("Failed to load bulkhead's executor factory [{}], cause: {}, " +
+                    "[ThreadPoolExecutorFactory] will be used as default.", bulkhead.factory(), StackTraceUtil.stackTrace(t));
+
+            factory = new ThreadPoolExecutorFactory();
+        }
+
+        CloseableExecutor executor = factory.newExecutor(
+                ExecutorFactory.Target.PROVIDER, name, coreWorkers, maxWorkers, queueCapacity);
+        return new BulkheadExecutor(name, executor, maxWorkers + queueCapacity);
+    }
+
+    BulkheadExecutor(String name, CloseableExecutor executor, int maxPending) {
+        this.name = name;
+        this.executor = executor;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Executes the task if the bulkhead is not full, returns {@code false}
+     * if the task is rejected. If the underlying executor rejects the task,
+     * {@link RejectedRunnable#rejected()} of it is called instead.
+     */
+    public boolean tryExecute(Runnable task) {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+
+        try {
+            executor.execute(new BulkheadTask(task));
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!tryExecute(task)) {
+            throw new RejectedExecutionException("Bulkhead [" + name + "] is full");
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the number of running tasks.
+     */
+    public int activeCount() {
+        return active.get();
+    }
+
+    /**
+     * Returns the number of tasks waiting in the queue.
+     */
+    public int queuedCount() {
+        return Math.max(0, pending.get() - active.get());
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the ratio of the running and queued tasks to the capacity
+     * of this bulkhead, 1.0 means the following tasks will be rejected.
+     */
+    public double saturation() {
+        return Math.min(1.0, (double) pending.get() / maxPending);
+    }
+
+    /**
+     * Registers the saturation gauges of this bulkhead to {@link Metrics}.
+     */
+    public void registerMetrics() {
+        Metrics.gauge(BulkheadExecutor.class, (Gauge<Integer>) this::activeCount, name, "active");
+        Metrics.gauge(BulkheadExecutor.class, (Gauge<Integer>) this::queuedCount, name, "queued");
+        Metrics.gauge(BulkheadExecutor.class, (Gauge<Long>) this::rejectedCount, name, "rejected");
+        Metrics.gauge(BulkheadExecutor.class, (Gauge<Double>) this::saturation, name, "saturation");
+        metricsRegistered = true;
+    }
+
+    /**
+     * Shuts down the executor and removes the gauges, {@link Metrics#gauge}
+     * is get-or-add, a re-registered service would otherwise keep reading
+     * this shut-down bulkhead.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        if (metricsRegistered) {
+            Metrics.remove(BulkheadExecutor.class, name, "active");
+            Metrics.remove(BulkheadExecutor.class, name, "queued");
+            Metrics.remove(BulkheadExecutor.class, name, "rejected");
+            Metrics.remove(BulkheadExecutor.class, name, "saturation");
+            metricsRegistered = false;
+        }
+    }
+
+    final class BulkheadTask implements RejectedRunnable {
+
+        private final Runnable task;
+
+        BulkheadTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+                pending.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void rejected() {
+            pending.decrementAndGet();
+            rejected.increment();
+            if (task instanceof RejectedRunnable) {
+                ((RejectedRunnable) task).rejected();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BulkheadExecutor{" +
+                "name='" + name + '\'' +
+                ", active=" + activeCount() +
+                ", queued=" + queuedCount() +
+                ", rejected=" + rejectedCount() +
+                ", saturation=" + saturation() +
+                '}';
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.provider.processor;
+
+import org.jupiter.common.util.Requires;
+import org.jupiter.common.util.SystemPropertyUtil;
+
+/**
+ * Provider端基于排队时延(sojourn time)的过载保护, 参考 CoDel(Controlled Delay) 算法.
+ *
+ * 业务线程开始处理请求时, 用当前时间减去协议解析完成时打上的时间戳得到请求在队列中等待的时间:
+ *  1. 等待时间低于target, 一切正常;
+ *  2. 等待时间持续超过target达到一个interval之后进入dropping状态, 丢弃(回复SERVER_BUSY)当前请求;
+ *  3. dropping状态下按照 interval / sqrt(count) 的间隔继续丢弃, 直到等待时间重新回落到target以下.
+ *
+ * 与线程池/ring buffer满了之后的拒绝相比, 队列不会被撑到最大, 被接受的请求的时延是有上界的,
+ * 而短暂的突发流量(持续时间小于interval)不受影响.
+ *
+ * target/interval可以在运行时通过monitor的 codel 命令调整.
+ *
+ * jupiter
+ * org.jupiter.rpc.provider.processor
+ *
+ * @author jiachun.fjc
+ */
+public final class CoDelController {
+
+    private volatile boolean enabled =
+            SystemPropertyUtil.getBoolean("jupiter.rpc.provider.codel.enabled", true);
+    private volatile long targetMillis =
+            SystemPropertyUtil.getLong("jupiter.rpc.provider.codel.target_millis", 5);
+    private volatile long intervalMillis =
+            SystemPropertyUtil.getLong("jupiter.rpc.provider.codel.interval_millis", 100);
+
+    // 等待时间第一次超过target之后, 再过一个interval的时间点, 0表示等待时间低于target
+    private volatile long firstAboveTime = 0;
+    // 是否处于dropping状态
+    private volatile boolean dropping = false;
+    // dropping状态下下一次丢弃的时间点
+    private long dropNext = 0;
+    // 当前dropping状态下已经丢弃的请求数
+    private int count = 0;
+    private int lastCount = 0;
+
+    private long droppedCount = 0;
+
+    /**
+     * Returns {@code true} if the request dequeued at {@code now} should
+     * be dropped.
+     *
+     * @param enqueueTime the time when the request was decoded(enqueued)
+     * @param now         the current time
+     */
+    public boolean shouldDrop(long enqueueTime, long now) {
+        if (!enabled || enqueueTime <= 0) {
+            return false;
+        }
+
+        long sojourn = now - enqueueTime;
+        if (sojourn < targetMillis && firstAboveTime == 0 && !dropping) {
+            // fast path, 不需要加锁
+            return false;
+        }
+
+        synchronized (this) {
+            return doShouldDrop(sojourn, now);
+        }
+    }
+
+    private boolean doShouldDrop(long sojourn, long now) {
+        long interval = intervalMillis;
+
+        boolean okToDrop = false;
+        if (sojourn < targetMillis) {
+            firstAboveTime = 0;
+        } else if (firstAboveTime == 0) {
+            firstAboveTime = now + interval;
+        } else if (now >= firstAboveTime) {
+            okToDrop = true;
+        }
+
+        if (dropping) {
+            if (!okToDrop) {
+                dropping = false;
+                return false;
+            }
+            if (now >= dropNext) {
+                count++;
+                dropNext = controlLaw(dropNext, interval);
+                droppedCount++;
+                return true;
+            }
+            return false;
+        }
+
+        if (okToDrop) {
+            dropping = true;
+            // 如果刚刚离开dropping状态不久, 从上一次的丢弃频率附近继续, 而不是从头开始
+            int delta = count - lastCount;
+            count = delta > 1 && now - dropNext < 16 * interval ? delta : 1;
+            lastCount = count;
+            dropNext = controlLaw(now, interval);
+            droppedCount++;
+            return true;
+        }
+        return false;
+    }
+
+    private long controlLaw(long t, long interval) {
+        return t + (long) (interval / Math.sqrt(count));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getTargetMillis() {
+        return targetMillis;
+    }
+
+    public void setTargetMillis(long targetMillis) {
+        Requires.requireTrue(targetMillis > 0, "targetMillis must be positive");
+        this.targetMillis = targetMillis;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public void setIntervalMillis(long intervalMillis) {
+        Requires.requireTrue(intervalMillis > 0, "intervalMillis must be positive");
+        this.intervalMillis = intervalMillis;
+    }
+
+    public boolean isDropping() {
+        return dropping;
+    }
+
+    public synchronized long droppedCount() {
+        return droppedCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CoDelController{" +
+                "enabled=" + enabled +
+                ", targetMillis=" + targetMillis +
+                ", intervalMillis=" + intervalMillis +
+                ", dropping=" + dropping +
+                ", droppedCount=" + droppedCount +
+                '}';
+    }
+}
@@ -47,6 +47,8 @@ public abstract class DefaultProviderProcessor implements ProviderProcessor, Loo
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(DefaultProviderProcessor.class);
 
     private final CloseableExecutor executor;
+    private final MethodIdRegistry methodIdRegistry = new MethodIdRegistry();
+    private final CoDelController coDelController = new CoDelController();
 
     public DefaultProviderProcessor() {
         this(ProviderExecutors.executor());
@@ -56,6 +58,14 @@ public abstract class DefaultProviderProcessor implements ProviderProcessor, Loo
         this.executor = executor;
     }
 
+    public MethodIdRegistry methodIdRegistry() {
+        return methodIdRegistry;
+    }
+
+    public CoDelController coDelController() {
+        return coDelController;
+    }
+
     @Override
     public void handleRequest(JChannel channel, JRequestPayload requestPayload) throws Exception {
         MessageTask task = new MessageTask(this, channel, new JRequest(requestPayload));
@@ -99,6 +109,18 @@ public abstract class DefaultProviderProcessor implements ProviderProcessor, Loo
                 channel, request.invokeId(), request.serializerCode(), status.value(), cause, true);
     }
 
+    /**
+     * 过载时主动丢弃的请求, 只回复status而不关闭连接.
+     */
+    public void handleShed(JChannel channel, JRequest request, Status status, Throwable cause) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Request shed: {}, {}.", channel.remoteAddress(), request);
+        }
+
+        doHandleException(
+                channel, request.invokeId(), request.serializerCode(), status.value(), cause, false);
+    }
+
     private void doHandleException(
             JChannel channel, long invokeId, byte s_code, byte status, Throwable cause, boolean closeChannel) {
 
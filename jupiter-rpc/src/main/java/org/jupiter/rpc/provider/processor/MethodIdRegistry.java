@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.provider.processor;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jupiter.common.util.Maps;
+import org.jupiter.common.util.SystemPropertyUtil;
+import org.jupiter.rpc.model.metadata.MessageWrapper;
+import org.jupiter.rpc.model.metadata.ServiceMetadata;
+
+/**
+ * Provider端为 <appName, directory, methodName> 分配方法id, consumer在同一个连接上学习到id之后,
+ * 请求中只携带id和参数, provider通过数组下标还原出完整的消息.
+ *
+ * 还原出的消息复用这里缓存的 {@link ServiceMetadata} 及字符串实例, directoryString和hash都已缓存,
+ * 后续的服务查找不再需要拼接及计算字符串.
+ *
+ * 方法参数类型仍然由provider根据args按照JLS规则动态dispatch, 不参与id的分配.
+ *
+ * jupiter
+ * org.jupiter.rpc.provider.processor
+ *
+ * @author jiachun.fjc
+ */
+public final class MethodIdRegistry {
+
+    private static final int MAX_METHOD_IDS =
+            SystemPropertyUtil.getInt("jupiter.rpc.provider.max_method_ids", 65535);
+
+    private final ConcurrentMap<String, Entry> entries = Maps.newConcurrentMap();
+    // id --> entry, 下标0不使用; 每次分配都复制一个新数组, 读取时不需要加锁
+    private volatile Entry[] table = new Entry[1];
+
+    /**
+     * Returns the method id of the given message, assigns a new one if
+     * absent, returns 0 if the ids are exhausted.
+     */
+    public int assign(MessageWrapper message) {
+        String key = message.getAppName() + '#' + message.getOperationName();
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            return entry.id;
+        }
+
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null) {
+                return entry.id;
+            }
+
+            Entry[] t = table;
+            int id = t.length;
+            if (id > MAX_METHOD_IDS) {
+                return 0;
+            }
+
+            entry = new Entry(id, message.getAppName(), message.getMetadata(), message.getMethodName());
+            Entry[] newTable = Arrays.copyOf(t, id + 1);
+            newTable[id] = entry;
+            table = newTable;
+            entries.put(key, entry);
+            return id;
+        }
+    }
+
+    /**
+     * Returns the entry of the given method id, or {@code null} if absent.
+     */
+    public Entry lookup(int id) {
+        Entry[] t = table;
+        return id > 0 && id < t.length ? t[id] : null;
+    }
+
+    public int size() {
+        return table.length - 1;
+    }
+
+    public static final class Entry {
+
+        private final int id;
+        private final String appName;
+        private final ServiceMetadata metadata;
+        private final String methodName;
+
+        Entry(int id, String appName, ServiceMetadata metadata, String methodName) {
+            this.id = id;
+            this.appName = appName;
+            this.metadata = metadata;
+            this.methodName = methodName;
+        }
+
+        public int id() {
+            return id;
+        }
+
+        public MessageWrapper restore(MessageWrapper interned) {
+            return interned.restore(appName, metadata, methodName);
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" +
+                    "id=" + id +
+                    ", appName='" + appName + '\'' +
+                    ", metadata=" + metadata +
+                    ", methodName='" + methodName + '\'' +
+                    '}';
+        }
+    }
+}
@@ -15,13 +15,12 @@
  */
 package org.jupiter.rpc.provider.processor.task;
 
-import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import org.jupiter.common.concurrent.RejectedRunnable;
-import org.jupiter.common.util.Pair;
 import org.jupiter.common.util.Reflects;
 import org.jupiter.common.util.Requires;
 import org.jupiter.common.util.Signal;
@@ -41,22 +40,29 @@ import org.jupiter.rpc.exception.JupiterFlowControlException;
 import org.jupiter.rpc.exception.JupiterRemoteException;
 import org.jupiter.rpc.exception.JupiterServerBusyException;
 import org.jupiter.rpc.exception.JupiterServiceNotFoundException;
+import org.jupiter.rpc.executor.PriorityRunnable;
 import org.jupiter.rpc.flow.control.ControlResult;
 import org.jupiter.rpc.flow.control.FlowController;
 import org.jupiter.rpc.metric.Metrics;
 import org.jupiter.rpc.model.metadata.MessageWrapper;
+import org.jupiter.rpc.model.metadata.MethodIdResult;
 import org.jupiter.rpc.model.metadata.ResultWrapper;
 import org.jupiter.rpc.model.metadata.ServiceWrapper;
+import org.jupiter.rpc.provider.MethodInvoker;
 import org.jupiter.rpc.provider.ProviderInterceptor;
+import org.jupiter.rpc.provider.processor.BulkheadExecutor;
 import org.jupiter.rpc.provider.processor.DefaultProviderProcessor;
+import org.jupiter.rpc.provider.processor.MethodIdRegistry;
 import org.jupiter.serialization.Serializer;
 import org.jupiter.serialization.SerializerFactory;
 import org.jupiter.serialization.io.InputBuf;
 import org.jupiter.serialization.io.OutputBuf;
 import org.jupiter.transport.CodecConfig;
+import org.jupiter.transport.Priority;
 import org.jupiter.transport.Status;
 import org.jupiter.transport.channel.JChannel;
 import org.jupiter.transport.channel.JFutureListener;
+import org.jupiter.transport.local.LocalChannel;
 import org.jupiter.transport.payload.JRequestPayload;
 import org.jupiter.transport.payload.JResponsePayload;
 
@@ -70,7 +76,7 @@ import com.codahale.metrics.Timer;
  *
  * @author jiachun.fjc
  */
-public class MessageTask implements RejectedRunnable {
+public class MessageTask implements RejectedRunnable, PriorityRunnable {
 
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(MessageTask.class);
 
@@ -82,22 +88,47 @@ public class MessageTask implements RejectedRunnable {
     private final JChannel channel;
     private final JRequest request;
 
+    // 为这个请求的方法分配的id, 在响应中返回给consumer
+    private int assignedMethodId;
+
+    // 已经通过的限流器, 请求处理完成时归还
+    private boolean globalPermitted;
+    private FlowController<JRequest> childPermitted;
+
     public MessageTask(DefaultProviderProcessor processor, JChannel channel, JRequest request) {
         this.processor = processor;
         this.channel = channel;
         this.request = request;
     }
 
+    @Override
+    public Priority priority() {
+        // 请求头中的status字段, body还没有反序列化
+        return Priority.parse(request.payload().priority());
+    }
+
     @Override
     public void run() {
         // stack copy
         final DefaultProviderProcessor _processor = processor;
         final JRequest _request = request;
 
-        // 全局流量控制
-        ControlResult ctrl = _processor.flowControl(_request);
-        if (!ctrl.isAllowed()) {
-            rejected(Status.APP_FLOW_CONTROL, new JupiterFlowControlException(String.valueOf(ctrl)));
+        // consumer已经放弃等待的请求直接丢弃, 不必再反序列化
+        if (isExpired(_request)) {
+            JRequestPayload _requestPayload = _request.payload();
+            InputBuf inputBuf = _requestPayload.inputBuf();
+            if (inputBuf != null) {
+                inputBuf.release();
+            }
+            _requestPayload.clear();
+
+            expired();
+            return;
+        }
+
+        // 请求在队列中等待的时间持续超过阈值, 丢弃并回复SERVER_BUSY, 让consumer退避或选择其他provider
+        if (_processor.coDelController().shouldDrop(_request.timestamp(), SystemClock.millisClock().now())) {
+            shed();
             return;
         }
 
@@ -108,8 +139,11 @@ public class MessageTask implements RejectedRunnable {
             byte s_code = _requestPayload.serializerCode();
             Serializer serializer = SerializerFactory.getSerializer(s_code);
 
-            // 在业务线程中反序列化, 减轻IO线程负担
-            if (CodecConfig.isCodecLowCopy()) {
+            if (_requestPayload.object() != null) {
+                // local transport跳过了序列化, 对象已经是consumer端深拷贝过的
+                msg = (MessageWrapper) _requestPayload.object();
+            } else if (CodecConfig.isCodecLowCopy()) {
+                // 在业务线程中反序列化, 减轻IO线程负担
                 InputBuf inputBuf = _requestPayload.inputBuf();
                 msg = serializer.readObject(inputBuf, MessageWrapper.class);
             } else {
@@ -118,12 +152,32 @@ public class MessageTask implements RejectedRunnable {
             }
             _requestPayload.clear();
 
+            if (msg.isInterned()) {
+                // 只携带了方法id, 通过数组下标还原
+                MethodIdRegistry.Entry entry = _processor.methodIdRegistry().lookup(msg.getMethodId());
+                if (entry == null) {
+                    // 关闭连接, consumer重连后重新学习方法id
+                    rejected(Status.BAD_REQUEST,
+                            new JupiterBadRequestException("unknown method id: " + msg.getMethodId()));
+                    return;
+                }
+                msg = entry.restore(msg);
+            }
+
             _request.message(msg);
         } catch (Throwable t) {
             rejected(Status.BAD_REQUEST, new JupiterBadRequestException("reading request failed", t));
             return;
         }
 
+        // 全局流量控制, 在反序列化之后执行, 限流器可以按照appName/method/attachment区分配额
+        ControlResult ctrl = _processor.flowControl(_request);
+        if (!ctrl.isAllowed()) {
+            rejected(Status.APP_FLOW_CONTROL, new JupiterFlowControlException(String.valueOf(ctrl)));
+            return;
+        }
+        globalPermitted = true;
+
         // 查找服务
         final ServiceWrapper service = _processor.lookupService(msg.getMetadata());
         if (service == null) {
@@ -131,6 +185,12 @@ public class MessageTask implements RejectedRunnable {
             return;
         }
 
+        if (msg.getMethodId() == MessageWrapper.METHOD_ID_REQUIRED) {
+            // 只有支持方法id的consumer才会携带这个attachment, 业务代码不需要看到它
+            msg.removeAttachment(MessageWrapper.METHOD_ID_KEY);
+            assignedMethodId = _processor.methodIdRegistry().assign(msg);
+        }
+
         // provider私有流量控制
         FlowController<JRequest> childController = service.getFlowController();
         if (childController != null) {
@@ -139,15 +199,53 @@ public class MessageTask implements RejectedRunnable {
                 rejected(Status.PROVIDER_FLOW_CONTROL, new JupiterFlowControlException(String.valueOf(ctrl)));
                 return;
             }
+            childPermitted = childController;
         }
 
         // processing
+        BulkheadExecutor bulkhead = service.getBulkhead(msg.getMethodName());
+        if (bulkhead != null) {
+            // 方法私有的隔离线程池执行, 满了之后只拒绝这个请求
+            RejectedRunnable task = new RejectedRunnable() {
+
+                @Override
+                public void run() {
+                    process(service);
+                }
+
+                @Override
+                public void rejected() {
+                    serverBusy("bulkhead is full: " + bulkhead.name());
+                }
+            };
+            if (!bulkhead.tryExecute(task)) {
+                serverBusy("bulkhead is full: " + bulkhead.name());
+            }
+            return;
+        }
+
         Executor childExecutor = service.getExecutor();
         if (childExecutor == null) {
             process(service);
         } else {
-            // provider私有线程池执行
-            childExecutor.execute(() -> process(service));
+            // provider私有线程池执行, 被拒绝时必须归还限流许可并回复SERVER_BUSY, 否则许可永远不会归还
+            RejectedRunnable task = new RejectedRunnable() {
+
+                @Override
+                public void run() {
+                    process(service);
+                }
+
+                @Override
+                public void rejected() {
+                    serverBusy("provider executor is exhausted: " + service.getMetadata());
+                }
+            };
+            try {
+                childExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                serverBusy("provider executor is exhausted: " + service.getMetadata());
+            }
         }
     }
 
@@ -157,6 +255,8 @@ public class MessageTask implements RejectedRunnable {
     }
 
     private void rejected(Status status, JupiterRemoteException cause) {
+        releaseFlowControl();
+
         if (METRIC_NEEDED) {
             MetricsHolder.rejectionMeter.mark();
         }
@@ -167,8 +267,79 @@ public class MessageTask implements RejectedRunnable {
         processor.handleRejected(channel, request, status, cause);
     }
 
+    private void shed() {
+        JRequestPayload _requestPayload = request.payload();
+        InputBuf inputBuf = _requestPayload.inputBuf();
+        if (inputBuf != null) {
+            inputBuf.release();
+        }
+        _requestPayload.clear();
+
+        if (METRIC_NEEDED) {
+            MetricsHolder.shedMeter.mark();
+        }
+
+        processor.handleShed(channel, request, Status.SERVER_BUSY,
+                new JupiterServerBusyException("request shed since queuing delay exceeded the target"));
+    }
+
+    // 线程池满时只拒绝这个请求, 不关闭连接
+    private void serverBusy(String message) {
+        releaseFlowControl();
+
+        if (METRIC_NEEDED) {
+            MetricsHolder.rejectionMeter.mark();
+        }
+
+        processor.handleShed(channel, request, Status.SERVER_BUSY, new JupiterServerBusyException(message));
+    }
+
+    private void expired() {
+        releaseFlowControl();
+
+        if (METRIC_NEEDED) {
+            MetricsHolder.expiredMeter.mark();
+        }
+
+        // consumer端已经超时, 不需要再发送response
+        if (logger.isDebugEnabled()) {
+            logger.debug("Request expired and dropped: {}, {}.", channel, request);
+        }
+    }
+
+    private void releaseFlowControl() {
+        FlowController<JRequest> child = childPermitted;
+        if (child != null) {
+            childPermitted = null;
+            try {
+                child.release(request);
+            } catch (Throwable t) {
+                logger.error("Release provider flow control failed: {}.", StackTraceUtil.stackTrace(t));
+            }
+        }
+        if (globalPermitted) {
+            globalPermitted = false;
+            try {
+                processor.release(request);
+            } catch (Throwable t) {
+                logger.error("Release global flow control failed: {}.", StackTraceUtil.stackTrace(t));
+            }
+        }
+    }
+
+    private static boolean isExpired(JRequest request) {
+        long deadline = request.deadline();
+        return deadline > 0 && SystemClock.millisClock().now() > deadline;
+    }
+
     @SuppressWarnings("unchecked")
     private void process(ServiceWrapper service) {
+        // 在业务线程池中排队的过程中也可能已经过期
+        if (isExpired(request)) {
+            expired();
+            return;
+        }
+
         final Context invokeCtx = new Context(service);
         try {
             final Object invokeResult = Chains.invoke(request, invokeCtx)
@@ -204,19 +375,23 @@ public class MessageTask implements RejectedRunnable {
 
     private void doProcess(Object realResult) {
         ResultWrapper result = new ResultWrapper();
-        result.setResult(realResult);
+        // 分配了方法id时包装一层返回, ResultWrapper的字段保持不变
+        result.setResult(assignedMethodId > 0 ? new MethodIdResult(assignedMethodId, realResult) : realResult);
         byte s_code = request.serializerCode();
         Serializer serializer = SerializerFactory.getSerializer(s_code);
 
         JResponsePayload responsePayload = new JResponsePayload(request.invokeId());
 
-        if (CodecConfig.isCodecLowCopy()) {
-            OutputBuf outputBuf =
-                    serializer.writeObject(channel.allocOutputBuf(), result);
-            responsePayload.outputBuf(s_code, outputBuf);
-        } else {
-            byte[] bytes = serializer.writeObject(result);
-            responsePayload.bytes(s_code, bytes);
+        // 进程内的local channel可以跳过序列化, 只深拷贝结果
+        if (!LocalChannel.writeObject(channel, responsePayload, s_code, result)) {
+            if (CodecConfig.isCodecLowCopy()) {
+                OutputBuf outputBuf =
+                        serializer.writeObject(channel.allocOutputBuf(), result);
+                responsePayload.outputBuf(s_code, outputBuf);
+            } else {
+                byte[] bytes = serializer.writeObject(result);
+                responsePayload.bytes(s_code, bytes);
+            }
         }
 
         responsePayload.status(Status.OK.value());
@@ -225,6 +400,8 @@ public class MessageTask implements RejectedRunnable {
     }
 
     private void handleFail(Context invokeCtx, Throwable t) {
+        releaseFlowControl();
+
         if (INVOKE_ERROR == t) {
             // handle biz exception
             handleException(invokeCtx.getExpectCauseTypes(), invokeCtx.getCause());
@@ -234,6 +411,8 @@ public class MessageTask implements RejectedRunnable {
     }
 
     private void handleWriteResponse(JResponsePayload response) {
+        releaseFlowControl();
+
         channel.write(response, new JFutureListener<JChannel>() {
 
             @Override
@@ -283,17 +462,19 @@ public class MessageTask implements RejectedRunnable {
 
         Class<?>[] expectCauseTypes = null;
         try {
-            List<Pair<Class<?>[], Class<?>[]>> methodExtension = service.getMethodExtension(methodName);
-            if (methodExtension == null) {
+            MethodInvoker invoker = service.getMethodInvoker(methodName);
+            if (invoker == null) {
                 throw new NoSuchMethodException(methodName);
             }
 
-            // 根据JLS方法调用的静态分派规则查找最匹配的方法parameterTypes
-            Pair<Class<?>[], Class<?>[]> bestMatch = Reflects.findMatchingParameterTypesExt(methodExtension, args);
-            Class<?>[] parameterTypes = bestMatch.getFirst();
-            expectCauseTypes = bestMatch.getSecond();
+            // 根据JLS方法调用的静态分派规则查找最匹配的方法, 选择结果按照参数类型缓存
+            MethodInvoker.Overload overload = invoker.select(args);
+            if (overload == null) {
+                throw new NoSuchMethodException(methodName);
+            }
+            expectCauseTypes = overload.exceptionTypes();
 
-            return Reflects.fastInvoke(provider, methodName, parameterTypes, args);
+            return overload.invoke(provider, args);
         } catch (Throwable t) {
             invokeCtx.setCauseAndExpectTypes(t, expectCauseTypes);
             throw INVOKE_ERROR;
@@ -453,5 +634,9 @@ public class MessageTask implements RejectedRunnable {
         static final Timer processingTimer              = Metrics.timer("processing");
         // 请求被拒绝次数统计
         static final Meter rejectionMeter               = Metrics.meter("rejection");
+        // consumer已经超时而被丢弃的请求数统计
+        static final Meter expiredMeter                 = Metrics.meter("expired");
+        // 排队时延过高而被主动丢弃的请求数统计
+        static final Meter shedMeter                    = Metrics.meter("shed");
     }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.consumer.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+
+import org.jupiter.serialization.Serializer;
+import org.jupiter.serialization.io.InputBuf;
+import org.jupiter.serialization.io.OutputBuf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.consumer.cache
+ *
+ * @author jiachun.fjc
+ */
+public class ResultCacheTest {
+
+    private static final Serializer serializer = new JavaSerializer();
+
+    @Test
+    public void testGetAndExpire() throws InterruptedException {
+        ResultCache cache = new ResultCache("test#get", 100, 1024 * 1024, serializer);
+
+        assertNull(cache.get(cache.newKey(new Object[] { "a", 1 })));
+        cache.put(cache.newKey(new Object[] { "a", 1 }), "value");
+        // 不同的参数数组实例, 序列化结果相同
+        assertEquals("value", cache.get(cache.newKey(new Object[] { "a", 1 })));
+        assertNull(cache.get(cache.newKey(new Object[] { "a", 2 })));
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+
+        Thread.sleep(150);
+        assertNull(cache.get(cache.newKey(new Object[] { "a", 1 })));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    public void testInvalidate() {
+        ResultCache cache = ResultCache.of("test", "invalidate", 60000, 0, serializer);
+        assertSame(cache, ResultCache.find("test", "invalidate"));
+        assertNull(ResultCache.find("test", "absent"));
+
+        for (int i = 0; i < 10; i++) {
+            cache.put(cache.newKey(new Object[] { i }), "value" + i);
+        }
+        assertEquals(10, cache.size());
+
+        cache.invalidate(new Object[] { 3 });
+        assertNull(cache.get(cache.newKey(new Object[] { 3 })));
+        assertEquals("value4", cache.get(cache.newKey(new Object[] { 4 })));
+        assertEquals(9, cache.size());
+
+        ResultCache.find("test", "invalidate").invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weightedSize());
+        assertNull(cache.get(cache.newKey(new Object[] { 4 })));
+    }
+
+    @Test
+    public void testStalePutAfterInvalidate() {
+        ResultCache cache = new ResultCache("test#stale", 60000, 1024 * 1024, serializer);
+
+        // 未命中时记录generation, 请求返回之前数据被修改并invalidate
+        ResultCache.Key key = cache.newKey(new Object[] { "a" });
+        assertNull(cache.get(key));
+        long generation = cache.generation();
+        cache.invalidate(new Object[] { "a" });
+        cache.put(key, "stale", generation);
+        assertNull(cache.get(key));
+        assertEquals(0, cache.size());
+
+        generation = cache.generation();
+        cache.invalidateAll();
+        cache.put(key, "stale", generation);
+        assertNull(cache.get(key));
+
+        // invalidate之后发出的请求正常写入
+        generation = cache.generation();
+        cache.put(key, "fresh", generation);
+        assertEquals("fresh", cache.get(key));
+    }
+
+    @Test
+    public void testByteBudget() {
+        long maxBytes = 64 * 1024;
+        ResultCache cache = new ResultCache("test#budget", 60000, maxBytes, serializer);
+
+        Object[] hotArgs = { "hot" };
+        for (int i = 0; i < 20; i++) {
+            cache.get(cache.newKey(hotArgs));
+        }
+        cache.put(cache.newKey(hotArgs), "hot-value");
+
+        // 一次性访问的entry扫描整个缓存
+        for (int i = 0; i < 10000; i++) {
+            ResultCache.Key key = cache.newKey(new Object[] { "cold", i });
+            assertNull(cache.get(key));
+            cache.put(key, new byte[512]);
+            assertTrue(cache.weightedSize() <= maxBytes);
+            if (i % 100 == 0) {
+                assertNotNull(cache.get(cache.newKey(hotArgs)));
+            }
+        }
+
+        assertEquals("hot-value", cache.get(cache.newKey(hotArgs)));
+        assertTrue(cache.size() > 0);
+    }
+
+    static class JavaSerializer extends Serializer {
+
+        @Override
+        public byte code() {
+            return 0;
+        }
+
+        @Override
+        public <T> OutputBuf writeObject(OutputBuf outputBuf, T obj) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> byte[] writeObject(T obj) {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            try (ObjectOutputStream output = new ObjectOutputStream(buf)) {
+                output.writeObject(obj);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return buf.toByteArray();
+        }
+
+        @Override
+        public <T> T readObject(InputBuf inputBuf, Class<T> clazz) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> T readObject(byte[] bytes, int offset, int length, Class<T> clazz) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.consumer.cluster;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+
+import org.jupiter.rpc.JResponse;
+import org.jupiter.rpc.consumer.future.DefaultInvokeFuture;
+import org.jupiter.rpc.consumer.future.FailoverInvokeFuture;
+import org.jupiter.rpc.consumer.future.ForkingInvokeFuture;
+import org.jupiter.rpc.model.metadata.ResultWrapper;
+import org.jupiter.transport.Status;
+import org.jupiter.transport.channel.InFlightTable;
+import org.jupiter.transport.channel.JChannel;
+import org.jupiter.transport.channel.MethodIdTable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.consumer.cluster
+ *
+ * @author jiachun.fjc
+ */
+public class ForkingClusterInvokerTest {
+
+    @Test
+    public void testFirstSuccessAbandonsOthers() throws Exception {
+        JChannel[] channels = new JChannel[3];
+        ForkingInvokeFuture<String> future = ForkingInvokeFuture.with(String.class, channels.length);
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = newChannel();
+            future.add(DefaultInvokeFuture.with(1L, channels[i], 3000, String.class));
+        }
+        future.listen();
+        assertEquals(3, future.size());
+
+        ResultWrapper result = new ResultWrapper();
+        result.setResult("forked");
+        JResponse response = new JResponse(1L);
+        response.status(Status.OK);
+        response.result(result);
+        DefaultInvokeFuture.received(channels[1], response);
+
+        assertEquals("forked", future.get());
+        // 其余请求立即从InFlightTable中移除, 不等待超时
+        for (JChannel ch : channels) {
+            assertEquals(0, ch.inFlightTable().size());
+        }
+    }
+
+    @Test
+    public void testFailOnlyIfAllFailed() throws Exception {
+        ForkingInvokeFuture<String> future = ForkingInvokeFuture.with(String.class, 2);
+        FailoverInvokeFuture<String> f1 = FailoverInvokeFuture.with(String.class);
+        FailoverInvokeFuture<String> f2 = FailoverInvokeFuture.with(String.class);
+        future.add(f1);
+        future.add(f2);
+        future.listen();
+
+        f1.completeExceptionally(new RuntimeException("f1"));
+        assertFalse(future.isDone());
+
+        RuntimeException last = new RuntimeException("f2");
+        f2.completeExceptionally(last);
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(last, e.getCause());
+        }
+    }
+
+    private static JChannel newChannel() {
+        InFlightTable inFlightTable = new InFlightTable();
+        MethodIdTable methodIdTable = new MethodIdTable();
+        return (JChannel) Proxy.newProxyInstance(
+                JChannel.class.getClassLoader(),
+                new Class<?>[] { JChannel.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "inFlightTable":
+                            return inFlightTable;
+                        case "methodIdTable":
+                            return methodIdTable;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "TestChannel";
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
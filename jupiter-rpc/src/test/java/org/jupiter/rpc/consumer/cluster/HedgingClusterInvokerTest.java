@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.consumer.cluster;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import org.jupiter.rpc.consumer.future.HedgingInvokeFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.consumer.cluster
+ *
+ * @author jiachun.fjc
+ */
+public class HedgingClusterInvokerTest {
+
+    @Test
+    public void testHistogramBuckets() {
+        for (long v = 0; v < 100000; v++) {
+            int index = LatencyHistogram.indexOf(v);
+            assertTrue(v <= LatencyHistogram.upperBoundOf(index));
+            if (index > 0) {
+                assertTrue(v > LatencyHistogram.upperBoundOf(index - 1));
+            }
+        }
+        int last = LatencyHistogram.indexOf(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBoundOf(last));
+    }
+
+    @Test
+    public void testHistogramPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram(0.95, 100);
+        for (int i = 0; i < 99; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        histogram.refresh();
+        // 样本不足
+        assertEquals(0, histogram.percentileNanos());
+
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i % 1000 + 1));
+        }
+        long p95 = histogram.percentileNanos();
+        long expected = TimeUnit.MICROSECONDS.toNanos(950);
+        assertTrue(String.valueOf(p95), p95 >= expected && p95 <= expected * 5 / 4);
+
+        // 延迟整体变大之后, 衰减使百分位数跟随变化
+        for (int i = 1; i <= 50000; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertTrue(histogram.percentileNanos() >= TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    @Test
+    public void testBudget() {
+        HedgingClusterInvoker.Budget budget = new HedgingClusterInvoker.Budget(10);
+        int hedges = 0;
+        for (int i = 0; i < 1000; i++) {
+            budget.onRequest();
+            if (budget.tryAcquire()) {
+                hedges++;
+            }
+        }
+        assertEquals(100, hedges);
+
+        // 最多积累10个对冲请求的预算
+        for (int i = 0; i < 1000; i++) {
+            budget.onRequest();
+        }
+        hedges = 0;
+        while (budget.tryAcquire()) {
+            hedges++;
+        }
+        assertEquals(10, hedges);
+    }
+
+    @Test
+    public void testFirstSuccessWins() throws Exception {
+        HedgingInvokeFuture<String> future = HedgingInvokeFuture.with(String.class);
+        assertTrue(future.tryAddAttempt());
+        future.onAttemptComplete(null, new RuntimeException("primary"));
+        assertFalse(future.isDone());
+        future.onAttemptComplete("hedged", null);
+        assertEquals("hedged", future.get());
+        assertFalse(future.tryAddAttempt());
+    }
+
+    @Test
+    public void testAllAttemptsFailed() throws Exception {
+        HedgingInvokeFuture<String> future = HedgingInvokeFuture.with(String.class);
+        assertTrue(future.tryAddAttempt());
+        RuntimeException last = new RuntimeException("hedged");
+        future.onAttemptComplete(null, new RuntimeException("primary"));
+        future.onAttemptComplete(null, last);
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(last, e.getCause());
+        }
+        // 所有尝试都结束之后不能再发起
+        assertFalse(future.tryAddAttempt());
+    }
+}
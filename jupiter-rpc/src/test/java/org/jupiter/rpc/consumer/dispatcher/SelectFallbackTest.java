@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.consumer.dispatcher;
+
+import org.junit.Test;
+
+import org.jupiter.rpc.load.balance.ChannelGroup;
+import org.jupiter.transport.channel.CircuitBreaker;
+import org.jupiter.transport.channel.JChannelGroup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.consumer.dispatcher
+ *
+ * @author jiachun.fjc
+ */
+public class SelectFallbackTest {
+
+    @Test
+    public void testSkipHalfOpen() {
+        AvailableGroup picked = new AvailableGroup();
+        AvailableGroup closed = new AvailableGroup();
+        AvailableGroup halfOpen = new AvailableGroup();
+        HalfOpenBreaker breaker = new HalfOpenBreaker(1);
+        halfOpen.circuitBreaker = breaker;
+        // 半开的provider余量最多
+        for (int i = 0; i < 60; i++) {
+            closed.concurrencyLimiter.acquire();
+        }
+
+        JChannelGroup[] snapshot = { picked, halfOpen, closed };
+        JChannelGroup[] excluded = { picked };
+        for (int i = 0; i < 10; i++) {
+            assertSame(closed, AbstractDispatcher.selectFallback(snapshot, excluded, "test"));
+        }
+        assertEquals(0, breaker.allowed);
+    }
+
+    @Test
+    public void testOnlyHalfOpen() {
+        AvailableGroup picked = new AvailableGroup();
+        AvailableGroup halfOpen = new AvailableGroup();
+        HalfOpenBreaker breaker = new HalfOpenBreaker(1);
+        halfOpen.circuitBreaker = breaker;
+
+        JChannelGroup[] snapshot = { picked, halfOpen };
+        JChannelGroup[] excluded = { picked };
+        assertSame(halfOpen, AbstractDispatcher.selectFallback(snapshot, excluded, "test"));
+        assertEquals(1, breaker.allowed);
+
+        // 探测配额用完之后不再选择
+        try {
+            AbstractDispatcher.selectFallback(snapshot, excluded, "test");
+            fail();
+        } catch (IllegalStateException ignored) {}
+        assertEquals(1, breaker.allowed);
+    }
+
+    static class AvailableGroup extends ChannelGroup {
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+    }
+
+    static class HalfOpenBreaker extends CircuitBreaker {
+
+        int permits;
+        int allowed;
+
+        HalfOpenBreaker(int permits) {
+            this.permits = permits;
+        }
+
+        @Override
+        public State state() {
+            return State.HALF_OPEN;
+        }
+
+        @Override
+        public boolean allowRequest() {
+            if (permits > 0) {
+                permits--;
+                allowed++;
+                return true;
+            }
+            return false;
+        }
+    }
+}
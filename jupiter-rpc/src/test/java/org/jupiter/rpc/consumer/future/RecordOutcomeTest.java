@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.consumer.future;
+
+import org.junit.Test;
+
+import org.jupiter.transport.Status;
+import org.jupiter.transport.channel.CircuitBreaker;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.consumer.future
+ *
+ * @author jiachun.fjc
+ */
+public class RecordOutcomeTest {
+
+    @Test
+    public void testClientTimeoutOpensBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker();
+        // provider挂起, 每个请求都超时
+        for (int i = 0; i < 100; i++) {
+            DefaultInvokeFuture.recordOutcome(breaker, Status.CLIENT_TIMEOUT.value(), 0);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    public void testClientErrorIgnored() {
+        CircuitBreaker breaker = new CircuitBreaker();
+        for (int i = 0; i < 100; i++) {
+            DefaultInvokeFuture.recordOutcome(breaker, Status.CLIENT_ERROR.value(), 0);
+            DefaultInvokeFuture.recordOutcome(breaker, Status.BAD_REQUEST.value(), 0);
+            DefaultInvokeFuture.recordOutcome(breaker, Status.DESERIALIZATION_FAIL.value(), 0);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.consumer.invoker;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+
+import org.jupiter.common.util.Lists;
+import org.jupiter.rpc.JRequest;
+import org.jupiter.rpc.consumer.cluster.ClusterInvoker;
+import org.jupiter.rpc.consumer.future.CoalescingInvokeFuture;
+import org.jupiter.rpc.consumer.future.InvokeFuture;
+import org.jupiter.rpc.model.metadata.MessageWrapper;
+import org.jupiter.rpc.model.metadata.ServiceMetadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.consumer.invoker
+ *
+ * @author jiachun.fjc
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void testCoalesceIdenticalCalls() throws Throwable {
+        SingleFlight singleFlight = new SingleFlight();
+        TestClusterInvoker invoker = new TestClusterInvoker();
+
+        InvokeFuture<String> first = singleFlight.invoke(invoker, request("get", "key", new int[] { 1 }), String.class);
+        InvokeFuture<String> second = singleFlight.invoke(invoker, request("get", "key", new int[] { 1 }), String.class);
+        InvokeFuture<String> other = singleFlight.invoke(invoker, request("get", "other", new int[] { 1 }), String.class);
+        assertEquals(2, invoker.futures.size());
+        assertEquals(2, singleFlight.inFlightCount());
+        assertNotSame(first, second);
+
+        invoker.futures.get(0).onComplete("value", null);
+        assertEquals("value", first.getResult());
+        assertEquals("value", second.getResult());
+        assertEquals(1, singleFlight.inFlightCount());
+
+        // 上一次调用已经结束, 发送新的请求
+        singleFlight.invoke(invoker, request("get", "key", new int[] { 1 }), String.class);
+        assertEquals(3, invoker.futures.size());
+
+        invoker.futures.get(1).onComplete("other", null);
+        assertSame("other", other.getResult());
+    }
+
+    @Test
+    public void testCoalesceFailure() throws Throwable {
+        SingleFlight singleFlight = new SingleFlight();
+        TestClusterInvoker invoker = new TestClusterInvoker();
+
+        singleFlight.invoke(invoker, request("get", "key"), String.class);
+        InvokeFuture<String> second = singleFlight.invoke(invoker, request("get", "key"), String.class);
+
+        IllegalStateException cause = new IllegalStateException();
+        invoker.futures.get(0).onComplete(null, cause);
+        try {
+            second.getResult();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(cause, e.getCause());
+        }
+        assertEquals(0, singleFlight.inFlightCount());
+
+        invoker.fail = true;
+        try {
+            singleFlight.invoke(invoker, request("get", "key"), String.class);
+            fail();
+        } catch (UnsupportedOperationException ignored) {}
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    private static JRequest request(String methodName, Object... args) {
+        MessageWrapper message = new MessageWrapper(new ServiceMetadata("test", "SingleFlight", "1.0.0"));
+        message.setMethodName(methodName);
+        message.setArgs(args);
+        JRequest request = new JRequest();
+        request.message(message);
+        return request;
+    }
+
+    static class TestClusterInvoker implements ClusterInvoker {
+
+        final List<CoalescingInvokeFuture<String>> futures = Lists.newArrayList();
+
+        volatile boolean fail;
+
+        @Override
+        public Strategy strategy() {
+            return Strategy.FAIL_FAST;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T> InvokeFuture<T> invoke(JRequest request, Class<T> returnType) throws Exception {
+            if (fail) {
+                throw new UnsupportedOperationException();
+            }
+            CoalescingInvokeFuture<String> future = CoalescingInvokeFuture.with(String.class);
+            futures.add(future);
+            return (InvokeFuture<T>) future;
+        }
+    }
+}
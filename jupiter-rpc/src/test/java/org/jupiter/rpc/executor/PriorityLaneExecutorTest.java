@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.executor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import org.jupiter.common.concurrent.RejectedRunnable;
+import org.jupiter.transport.Priority;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.executor
+ *
+ * @author jiachun.fjc
+ */
+public class PriorityLaneExecutorTest {
+
+    @Test
+    public void testSchedule() {
+        assertArrayEquals(new int[] { 0, 0, 1, 0, 2, 0, 0 }, PriorityLaneExecutor.schedule(new int[] { 5, 1, 1 }));
+
+        int[] counts = new int[3];
+        for (int lane : PriorityLaneExecutor.schedule(new int[] { 8, 4, 1 })) {
+            counts[lane]++;
+        }
+        assertArrayEquals(new int[] { 8, 4, 1 }, counts);
+    }
+
+    @Test
+    public void testWeightedFair() throws Exception {
+        PriorityLaneExecutor executor =
+                new PriorityLaneExecutor(1, Executors.defaultThreadFactory(), 32, new int[] { 8, 4, 1 });
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            executor.execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {}
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            List<Priority> executed = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch done = new CountDownLatch(40);
+            for (int i = 0; i < 20; i++) {
+                executor.execute(task(Priority.LOW, executed, done));
+                executor.execute(task(Priority.HIGH, executed, done));
+            }
+            assertEquals(20, executor.queuedCount(Priority.HIGH));
+            assertEquals(20, executor.queuedCount(Priority.LOW));
+
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            // NORMAL为空时让给HIGH, 一个调度周期内LOW仍然能分到一次
+            assertEquals(12, Collections.frequency(executed.subList(0, 13), Priority.HIGH));
+            assertEquals(1, Collections.frequency(executed.subList(0, 13), Priority.LOW));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testShutdownDrainsLanes() throws Exception {
+        List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        PriorityLaneExecutor executor = new PriorityLaneExecutor(2, r -> {
+            Thread t = new Thread(r);
+            threads.add(t);
+            return t;
+        }, 128, new int[] { 8, 4, 1 });
+
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        for (int i = 0; i < 2; i++) {
+            executor.execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                }
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        AtomicInteger ran = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        for (int i = 0; i < 100; i++) {
+            executor.execute(new CountingTask(ran, rejected));
+        }
+
+        executor.shutdown();
+        // shutdown之后提交的任务被拒绝(响应SERVER_BUSY)
+        executor.execute(new CountingTask(ran, rejected));
+        assertEquals(1, rejected.get());
+
+        release.countDown();
+        for (Thread t : threads) {
+            t.join(5000);
+            assertFalse(t.isAlive());
+        }
+        // 正在执行的任务没有被中断, 队列中的任务全部执行完
+        assertFalse(interrupted.get());
+        assertEquals(100, ran.get());
+    }
+
+    static class CountingTask implements RejectedRunnable {
+
+        private final AtomicInteger ran;
+        private final AtomicInteger rejected;
+
+        CountingTask(AtomicInteger ran, AtomicInteger rejected) {
+            this.ran = ran;
+            this.rejected = rejected;
+        }
+
+        @Override
+        public void run() {
+            ran.incrementAndGet();
+        }
+
+        @Override
+        public void rejected() {
+            rejected.incrementAndGet();
+        }
+    }
+
+    private static PriorityRunnable task(Priority priority, List<Priority> executed, CountDownLatch done) {
+        return new PriorityRunnable() {
+
+            @Override
+            public Priority priority() {
+                return priority;
+            }
+
+            @Override
+            public void run() {
+                executed.add(priority);
+                done.countDown();
+            }
+        };
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.flow.control;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jupiter.rpc.JRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 64个线程竞争同一个key(以及同一个synchronized计数器作为对比), 配额足够大, 所有请求都会被放行.
+ *
+ * jupiter
+ * org.jupiter.rpc.flow.control
+ *
+ * @author jiachun.fjc
+ */
+@Fork(1)
+@Threads(64)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FlowControllerBenchmark {
+
+    static final JRequest request = FlowControllersTest.request("app", "hello", null);
+
+    static final FlowController<JRequest> synchronizedCounter = new FlowController<JRequest>() {
+
+        private long count;
+
+        @Override
+        public synchronized ControlResult flowControl(JRequest request) {
+            if (++count < 0) {
+                return new ControlResult(false);
+            }
+            return ControlResult.ALLOWED;
+        }
+    };
+    static final FlowController<JRequest> tokenBucket = new TokenBucketFlowController(1e9, 1000000);
+    static final FlowController<JRequest> tokenBucketByMethod =
+            new TokenBucketFlowController(1e9, 1000000, FlowControlKeys.method());
+    static final FlowController<JRequest> slidingWindow = new SlidingWindowFlowController(Long.MAX_VALUE, 1000);
+    static final FlowController<JRequest> slidingWindowByMethod =
+            new SlidingWindowFlowController(Long.MAX_VALUE, 1000, FlowControlKeys.method());
+    static final FlowController<JRequest> concurrency = new ConcurrencyFlowController(Integer.MAX_VALUE);
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(FlowControllerBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Benchmark
+    public ControlResult synchronizedCounter() {
+        return synchronizedCounter.flowControl(request);
+    }
+
+    @Benchmark
+    public ControlResult tokenBucket() {
+        return tokenBucket.flowControl(request);
+    }
+
+    @Benchmark
+    public ControlResult tokenBucketByMethod() {
+        return tokenBucketByMethod.flowControl(request);
+    }
+
+    @Benchmark
+    public ControlResult slidingWindow() {
+        return slidingWindow.flowControl(request);
+    }
+
+    @Benchmark
+    public ControlResult slidingWindowByMethod() {
+        return slidingWindowByMethod.flowControl(request);
+    }
+
+    @Benchmark
+    public ControlResult concurrency() {
+        ControlResult result = concurrency.flowControl(request);
+        concurrency.release(request);
+        return result;
+    }
+}
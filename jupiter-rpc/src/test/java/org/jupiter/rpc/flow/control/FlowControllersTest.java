@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.flow.control;
+
+import org.junit.Test;
+
+import org.jupiter.rpc.JRequest;
+import org.jupiter.rpc.model.metadata.MessageWrapper;
+import org.jupiter.rpc.model.metadata.ServiceMetadata;
+import org.jupiter.transport.payload.JRequestPayload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.flow.control
+ *
+ * @author jiachun.fjc
+ */
+public class FlowControllersTest {
+
+    @Test
+    public void testTokenBucket() {
+        // 每秒1个令牌, 1秒之内只能消耗掉桶里积攒的
+        FlowController<JRequest> controller = new TokenBucketFlowController(1, 10);
+        JRequest request = request("app", "hello", null);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(controller.flowControl(request).isAllowed());
+        }
+        assertFalse(controller.flowControl(request).isAllowed());
+    }
+
+    @Test
+    public void testTokenBucketByAppName() {
+        FlowController<JRequest> controller = new TokenBucketFlowController(1, 2, FlowControlKeys.appName());
+        JRequest app1 = request("app1", "hello", null);
+        JRequest app2 = request("app2", "hello", null);
+        assertTrue(controller.flowControl(app1).isAllowed());
+        assertTrue(controller.flowControl(app1).isAllowed());
+        assertFalse(controller.flowControl(app1).isAllowed());
+        assertTrue(controller.flowControl(app2).isAllowed());
+    }
+
+    @Test
+    public void testSlidingWindow() {
+        FlowController<JRequest> controller = new SlidingWindowFlowController(100, 60000, FlowControlKeys.method());
+        JRequest hello = request("app", "hello", null);
+        JRequest bye = request("app", "bye", null);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(controller.flowControl(hello).isAllowed());
+        }
+        assertFalse(controller.flowControl(hello).isAllowed());
+        assertTrue(controller.flowControl(bye).isAllowed());
+    }
+
+    @Test
+    public void testSlidingWindowRotate() {
+        SlidingWindowFlowController.Window window = new SlidingWindowFlowController.Window(1000);
+        window.current.count.add(10);
+
+        // 进入下一个窗口, 上一个窗口的计数按比例保留
+        SlidingWindowFlowController.Bucket current = window.rotate(1150, 100);
+        assertEquals(1100, current.start);
+        assertEquals(1000, window.previous.start);
+        assertEquals(10, window.previous.count.sum());
+
+        // 超过两个窗口, 上一个窗口的计数丢弃
+        current = window.rotate(1420, 100);
+        assertEquals(1400, current.start);
+        assertEquals(0, window.previous.count.sum());
+    }
+
+    @Test
+    public void testConcurrency() {
+        FlowController<JRequest> controller = new ConcurrencyFlowController(2, FlowControlKeys.attachment("tenant"));
+        JRequest a = request("app", "hello", "a");
+        JRequest b = request("app", "hello", "b");
+        JRequest none = request("app", "hello", null);
+        assertTrue(controller.flowControl(a).isAllowed());
+        assertTrue(controller.flowControl(a).isAllowed());
+        assertFalse(controller.flowControl(a).isAllowed());
+        assertTrue(controller.flowControl(b).isAllowed());
+        assertTrue(controller.flowControl(none).isAllowed());
+
+        controller.release(a);
+        assertTrue(controller.flowControl(a).isAllowed());
+        assertFalse(controller.flowControl(a).isAllowed());
+    }
+
+    static JRequest request(String appName, String methodName, String tenant) {
+        MessageWrapper message = new MessageWrapper(new ServiceMetadata("test", "FlowControlService", "1.0.0"));
+        message.setAppName(appName);
+        message.setMethodName(methodName);
+        if (tenant != null) {
+            message.putAttachment("tenant", tenant);
+        }
+        JRequest request = new JRequest(new JRequestPayload());
+        request.message(message);
+        return request;
+    }
+}
@@ -20,6 +20,8 @@ import java.util.List;
 import org.jupiter.common.util.SystemClock;
 import org.jupiter.transport.Directory;
 import org.jupiter.transport.UnresolvedAddress;
+import org.jupiter.transport.channel.CircuitBreaker;
+import org.jupiter.transport.channel.ConcurrencyLimiter;
 import org.jupiter.transport.channel.JChannel;
 import org.jupiter.transport.channel.JChannelGroup;
 
@@ -32,6 +34,12 @@ import org.jupiter.transport.channel.JChannelGroup;
 public class ChannelGroup implements JChannelGroup {
     public int index;
     public int weight;
+    public long latency;
+    public int inFlight;
+    public UnresolvedAddress address;
+    public int warmUp;
+    public CircuitBreaker circuitBreaker = new CircuitBreaker();
+    public ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter();
 
     public volatile long timestamp = SystemClock.millisClock().now();
 
@@ -45,7 +53,7 @@ public class ChannelGroup implements JChannelGroup {
 
     @Override
     public UnresolvedAddress remoteAddress() {
-        return null;
+        return address;
     }
 
     @Override
@@ -120,17 +128,17 @@ public class ChannelGroup implements JChannelGroup {
 
     @Override
     public int getWarmUp() {
-        return 0;
+        return warmUp;
     }
 
     @Override
     public void setWarmUp(int warmUp) {
-
+        this.warmUp = warmUp;
     }
 
     @Override
     public boolean isWarmUpComplete() {
-        return true;
+        return warmUp <= 0 || SystemClock.millisClock().now() - timestamp > warmUp;
     }
 
     @Override
@@ -142,4 +150,27 @@ public class ChannelGroup implements JChannelGroup {
     public long deadlineMillis() {
         return 0;
     }
+
+    @Override
+    public void recordLatency(long latencyNanos) {}
+
+    @Override
+    public long latency() {
+        return latency;
+    }
+
+    @Override
+    public int inFlight() {
+        return inFlight;
+    }
+
+    @Override
+    public CircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+
+    @Override
+    public ConcurrencyLimiter concurrencyLimiter() {
+        return concurrencyLimiter;
+    }
 }
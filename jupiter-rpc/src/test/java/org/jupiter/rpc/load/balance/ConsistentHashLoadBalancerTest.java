@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.load.balance;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.jupiter.rpc.model.metadata.MessageWrapper;
+import org.jupiter.rpc.model.metadata.ServiceMetadata;
+import org.jupiter.transport.UnresolvedSocketAddress;
+import org.jupiter.transport.channel.CopyOnWriteGroupList;
+import org.jupiter.transport.channel.DirectoryJChannelGroup;
+import org.jupiter.transport.channel.JChannelGroup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.load.balance
+ *
+ * @author jiachun.fjc
+ */
+public class ConsistentHashLoadBalancerTest {
+
+    private static final ServiceMetadata metadata = new ServiceMetadata("test", "test", "1.0.0");
+
+    @Test
+    public void testAffinity() {
+        CopyOnWriteGroupList groupList = newGroupList(5);
+        LoadBalancer lb = LoadBalancerFactory.getInstance(LoadBalancerType.CONSISTENT_HASH, null);
+
+        int[] counts = new int[5];
+        for (int i = 0; i < 1000; i++) {
+            JChannelGroup g = lb.select(groupList, metadata, message("key-" + i));
+            assertSame(g, lb.select(groupList, metadata, message("key-" + i)));
+            counts[((ChannelGroup) g).index]++;
+        }
+        for (int c : counts) {
+            assertTrue("unbalanced: " + c, c > 100 && c < 300);
+        }
+
+        // attachment优先于参数
+        MessageWrapper m1 = message("a");
+        m1.putAttachment(ConsistentHashLoadBalancer.HASH_KEY, "key-1");
+        assertSame(lb.select(groupList, metadata, message("key-1")), lb.select(groupList, metadata, m1));
+    }
+
+    @Test
+    public void testKeyOf() {
+        // 数组按内容计算key, 而不是identity hash
+        assertEquals(ConsistentHashLoadBalancer.keyOf(new byte[] { 1, 2 }),
+                ConsistentHashLoadBalancer.keyOf(new byte[] { 1, 2 }));
+        assertEquals("[[a, b], [c]]", ConsistentHashLoadBalancer.keyOf(new String[][] { { "a", "b" }, { "c" } }));
+        assertEquals("42", ConsistentHashLoadBalancer.keyOf(42));
+        assertNull(ConsistentHashLoadBalancer.keyOf(null));
+
+        CopyOnWriteGroupList groupList = newGroupList(5);
+        LoadBalancer lb = ConsistentHashLoadBalancer.instance();
+        for (int i = 0; i < 100; i++) {
+            assertSame(lb.select(groupList, metadata, message(new long[] { i, i + 1 })),
+                    lb.select(groupList, metadata, message(new long[] { i, i + 1 })));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeyWithoutValueBasedToString() {
+        ConsistentHashLoadBalancer.keyOf(new Object());
+    }
+
+    @Test
+    public void testRingCachedUntilSnapshotChanged() {
+        CopyOnWriteGroupList groupList = newGroupList(5);
+        LoadBalancer lb = ConsistentHashLoadBalancer.instance();
+        String ringKey = metadata.directoryString() + "#consistent_hash_ring";
+
+        lb.select(groupList, metadata, message("k"));
+        Object ring = groupList.getWeightArray(groupList.getSnapshot(), ringKey);
+        lb.select(groupList, metadata, message("k"));
+        assertSame(ring, groupList.getWeightArray(groupList.getSnapshot(), ringKey));
+
+        // 只有被移除节点上的key会重新映射
+        Map<String, JChannelGroup> before = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            before.put("key-" + i, lb.select(groupList, metadata, message("key-" + i)));
+        }
+        JChannelGroup removed = groupList.getSnapshot()[2];
+        groupList.remove(removed);
+        for (Map.Entry<String, JChannelGroup> e : before.entrySet()) {
+            JChannelGroup g = lb.select(groupList, metadata, message(e.getKey()));
+            if (e.getValue() != removed) {
+                assertSame(e.getValue(), g);
+            } else {
+                assertNotSame(removed, g);
+            }
+        }
+        assertNotSame(ring, groupList.getWeightArray(groupList.getSnapshot(), ringKey));
+    }
+
+    @Test
+    public void testBoundedLoad() {
+        CopyOnWriteGroupList groupList = newGroupList(4);
+        LoadBalancer lb = ConsistentHashLoadBalancer.instance();
+
+        ChannelGroup hot = (ChannelGroup) lb.select(groupList, metadata, message("hot"));
+        hot.inFlight = 100;
+        ChannelGroup g = (ChannelGroup) lb.select(groupList, metadata, message("hot"));
+        assertNotSame(hot, g);
+
+        // 负载在上限之内时仍然选择原来的节点
+        for (JChannelGroup e : groupList.getSnapshot()) {
+            ((ChannelGroup) e).inFlight = 100;
+        }
+        assertSame(hot, lb.select(groupList, metadata, message("hot")));
+        assertEquals(100, hot.inFlight());
+    }
+
+    private static CopyOnWriteGroupList newGroupList(int size) {
+        CopyOnWriteGroupList groupList = new CopyOnWriteGroupList(new DirectoryJChannelGroup());
+        for (int i = 0; i < size; i++) {
+            ChannelGroup c = new ChannelGroup();
+            c.index = i;
+            c.weight = 50;
+            c.address = new UnresolvedSocketAddress("127.0.0.1", 18090 + i);
+            groupList.addIfAbsent(c);
+        }
+        return groupList;
+    }
+
+    private static MessageWrapper message(Object key) {
+        MessageWrapper message = new MessageWrapper(metadata);
+        message.setArgs(new Object[] { key });
+        return message;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.load.balance;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import org.jupiter.transport.Directory;
+import org.jupiter.transport.channel.CopyOnWriteGroupList;
+import org.jupiter.transport.channel.DirectoryJChannelGroup;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.load.balance
+ *
+ * @author jiachun.fjc
+ */
+public class EwmaLoadBalancerTest {
+
+    private static final Directory directory = new Directory() {
+
+        @Override
+        public String getGroup() {
+            return "test";
+        }
+
+        @Override
+        public String getServiceProviderName() {
+            return "test";
+        }
+
+        @Override
+        public String getVersion() {
+            return "1.0.0";
+        }
+    };
+
+    @Test
+    public void testAvoidSlowNode() {
+        CopyOnWriteGroupList groupList = new CopyOnWriteGroupList(new DirectoryJChannelGroup());
+        int len = 10;
+        for (int i = 0; i < len; i++) {
+            ChannelGroup c = new ChannelGroup();
+            c.index = i;
+            c.weight = 50;
+            c.latency = TimeUnit.MILLISECONDS.toNanos(i == 5 ? 200 : 2);
+            groupList.addIfAbsent(c);
+        }
+
+        LoadBalancer lb = LoadBalancerFactory.getInstance(LoadBalancerType.EWMA, null);
+        int count = 0;
+        int total = 10000;
+        for (int i = 0; i < total; i++) {
+            ChannelGroup c = (ChannelGroup) lb.select(groupList, directory);
+            count += (c.index == 5 ? 1 : 0);
+        }
+        // 只有两个候选都是慢节点时才会选中它, 而两个候选总是不同的
+        assertTrue("slow node selected " + count + " times", count == 0);
+    }
+
+    @Test
+    public void testInFlight() {
+        CopyOnWriteGroupList groupList = new CopyOnWriteGroupList(new DirectoryJChannelGroup());
+        ChannelGroup busy = new ChannelGroup();
+        busy.index = 0;
+        busy.weight = 50;
+        busy.latency = TimeUnit.MILLISECONDS.toNanos(2);
+        busy.inFlight = 100;
+        ChannelGroup idle = new ChannelGroup();
+        idle.index = 1;
+        idle.weight = 50;
+        idle.latency = TimeUnit.MILLISECONDS.toNanos(10);
+        groupList.addIfAbsent(busy);
+        groupList.addIfAbsent(idle);
+
+        LoadBalancer lb = EwmaLoadBalancer.instance();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(lb.select(groupList, directory) == idle);
+        }
+    }
+}
@@ -101,8 +101,30 @@ public class LoadBalancerBenchmark {
         }
     }
 
+    // 500个节点, 权重各不相同, 其中一部分还在预热
+    static final CopyOnWriteGroupList largeGroupList = new CopyOnWriteGroupList(new DirectoryJChannelGroup());
+    static final CopyOnWriteGroupList warmingUpGroupList = new CopyOnWriteGroupList(new DirectoryJChannelGroup());
+
+    static {
+        int len = 500;
+        for (int i = 0; i < len; i++) {
+            ChannelGroup c = new ChannelGroup();
+            c.index = i;
+            c.weight = 1 + (i * 37) % 100;
+            largeGroupList.addIfAbsent(c);
+
+            ChannelGroup w = new ChannelGroup();
+            w.index = i;
+            w.weight = c.weight;
+            w.warmUp = (i % 10 == 0) ? (int) TimeUnit.HOURS.toMillis(1) : 0;
+            warmingUpGroupList.addIfAbsent(w);
+        }
+    }
+
     static final LoadBalancer rr = new RoundRobinLoadBalancer();
     static final LoadBalancer rm = new RandomLoadBalancer();
+    static final LoadBalancer largeRr = new RoundRobinLoadBalancer();
+    static final LoadBalancer warmingUpRr = new RoundRobinLoadBalancer();
 
     public static void main(String[] args) throws RunnerException {
         Options opt = new OptionsBuilder()
@@ -121,4 +143,24 @@ public class LoadBalancerBenchmark {
     public void random() {
         rm.select(groupList, directory);
     }
+
+    @Benchmark
+    public void roundRobin500() {
+        largeRr.select(largeGroupList, directory);
+    }
+
+    @Benchmark
+    public void random500() {
+        rm.select(largeGroupList, directory);
+    }
+
+    @Benchmark
+    public void roundRobin500WarmingUp() {
+        warmingUpRr.select(warmingUpGroupList, directory);
+    }
+
+    @Benchmark
+    public void random500WarmingUp() {
+        rm.select(warmingUpGroupList, directory);
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.load.balance;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import org.jupiter.common.util.SystemClock;
+import org.jupiter.rpc.model.metadata.ServiceMetadata;
+import org.jupiter.transport.channel.CopyOnWriteGroupList;
+import org.jupiter.transport.channel.DirectoryJChannelGroup;
+import org.jupiter.transport.channel.JChannelGroup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.load.balance
+ *
+ * @author jiachun.fjc
+ */
+public class WeightedSelectionTest {
+
+    private static final ServiceMetadata metadata = new ServiceMetadata("test", "test", "1.0.0");
+
+    @Test
+    public void testAliasTable() {
+        int[] weights = { 1, 0, 7, 2, 50, 40 };
+        AliasTable table = new AliasTable(weights);
+
+        int total = 1000000;
+        int[] counts = new int[weights.length];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < total; i++) {
+            counts[table.next(random)]++;
+        }
+
+        assertEquals(0, counts[1]);
+        for (int i = 0; i < weights.length; i++) {
+            double expected = total * weights[i] / 100.0;
+            assertEquals(expected, counts[i], Math.max(expected * 0.05, 100));
+        }
+    }
+
+    @Test
+    public void testSmoothSchedule() {
+        SmoothWeightSchedule schedule = new SmoothWeightSchedule(new int[] { 50, 10, 10 });
+        // 约去最大公约数
+        assertEquals(7, schedule.length());
+
+        int[] counts = new int[3];
+        int run = 0;
+        int maxRun = 0;
+        for (int i = 0; i < schedule.length(); i++) {
+            int index = schedule.get(i);
+            counts[index]++;
+            if (index == 0) {
+                maxRun = Math.max(maxRun, ++run);
+            } else {
+                run = 0;
+            }
+        }
+        assertEquals(5, counts[0]);
+        assertEquals(1, counts[1]);
+        assertEquals(1, counts[2]);
+        // 交错排列, 而不是连续5个
+        assertTrue("max run: " + maxRun, maxRun <= 3);
+    }
+
+    @Test
+    public void testRoundRobinCycle() {
+        CopyOnWriteGroupList groupList = new CopyOnWriteGroupList(new DirectoryJChannelGroup());
+        int[] weights = new int[500];
+        int sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            ChannelGroup c = new ChannelGroup();
+            c.index = i;
+            c.weight = weights[i] = 1 + (i * 37) % 100;
+            sum += c.weight;
+            groupList.addIfAbsent(c);
+        }
+
+        LoadBalancer lb = new RoundRobinLoadBalancer();
+        int[] counts = new int[weights.length];
+        for (int i = 0; i < sum; i++) {
+            counts[((ChannelGroup) lb.select(groupList, metadata)).index]++;
+        }
+        for (int i = 0; i < weights.length; i++) {
+            assertEquals(weights[i], counts[i]);
+        }
+
+        WeightArray weightArray = (WeightArray) groupList.getWeightArray(groupList.getSnapshot(), metadata.directoryString());
+        assertTrue(weightArray.isCached());
+        assertSame(weightArray.schedule(), weightArray.schedule());
+    }
+
+    @Test
+    public void testWarmingUpCachedWithExpiry() {
+        CopyOnWriteGroupList groupList = new CopyOnWriteGroupList(new DirectoryJChannelGroup());
+        for (int i = 0; i < 10; i++) {
+            ChannelGroup c = new ChannelGroup();
+            c.index = i;
+            c.weight = 10 * (i + 1);
+            c.warmUp = i == 0 ? (int) TimeUnit.HOURS.toMillis(1) : 0;
+            groupList.addIfAbsent(c);
+        }
+
+        JChannelGroup[] snapshot = groupList.getSnapshot();
+        WeightArray weightArray = WeightSupport.computeWeights(groupList, snapshot, metadata);
+        assertTrue(weightArray.isCached());
+        assertSame(weightArray, groupList.getWeightArray(snapshot, metadata.directoryString()));
+        // 预热期间只缓存一小段时间
+        assertFalse(weightArray.isExpired());
+        assertTrue(new WeightArray(null, 10, SystemClock.millisClock().now() - 1).isExpired());
+
+        // 预热期间仍然可以选择
+        for (int i = 0; i < 100; i++) {
+            new RandomLoadBalancer().select(groupList, metadata);
+            new RoundRobinLoadBalancer().select(groupList, metadata);
+        }
+    }
+}
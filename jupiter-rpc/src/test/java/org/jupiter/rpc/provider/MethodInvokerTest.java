@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.provider;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.jupiter.common.util.Lists;
+import org.jupiter.common.util.Pair;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.provider
+ *
+ * @author jiachun.fjc
+ */
+public class MethodInvokerTest {
+
+    @Test
+    public void testSingleMethod() {
+        MethodInvoker invoker = new MethodInvoker(new Service(), "hello", extensions(
+                new Class<?>[] { String.class }, new Class<?>[] { IOException.class }));
+
+        MethodInvoker.Overload overload = invoker.select(new Object[] { "jupiter" });
+        assertArrayEquals(new Class<?>[] { IOException.class }, overload.exceptionTypes());
+        assertEquals("hello jupiter", overload.invoke(new Service(), new Object[] { "jupiter" }));
+    }
+
+    @Test
+    public void testOverloads() {
+        Service service = new Service();
+        MethodInvoker invoker = new MethodInvoker(service, "say", extensions(
+                new Class<?>[] { Object.class }, new Class<?>[0],
+                new Class<?>[] { String.class }, new Class<?>[0],
+                new Class<?>[] { int.class }, new Class<?>[0]));
+
+        MethodInvoker.Overload string = invoker.select(new Object[] { "s" });
+        assertEquals("string", string.invoke(service, new Object[] { "s" }));
+        // inline cache
+        assertSame(string, invoker.select(new Object[] { "t" }));
+
+        MethodInvoker.Overload integer = invoker.select(new Object[] { 1 });
+        assertEquals("int", integer.invoke(service, new Object[] { 1 }));
+
+        MethodInvoker.Overload object = invoker.select(new Object[] { 1L });
+        assertEquals("object", object.invoke(service, new Object[] { 1L }));
+        assertSame(object, invoker.select(new Object[] { null }));
+
+        assertNull(invoker.select(new Object[] { "a", "b" }));
+        assertSame(string, invoker.select(new Object[] { "u" }));
+    }
+
+    private static List<Pair<Class<?>[], Class<?>[]>> extensions(Class<?>[]... types) {
+        List<Pair<Class<?>[], Class<?>[]>> list = Lists.newArrayList();
+        for (int i = 0; i < types.length; i += 2) {
+            list.add(Pair.of(types[i], types[i + 1]));
+        }
+        return list;
+    }
+
+    public static class Service {
+
+        public String hello(String name) throws IOException {
+            return "hello " + name;
+        }
+
+        public String say(Object o) {
+            return "object";
+        }
+
+        public String say(String s) {
+            return "string";
+        }
+
+        public String say(int i) {
+            return "int";
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.provider.processor;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import org.jupiter.common.concurrent.RejectedRunnable;
+import org.jupiter.common.concurrent.disruptor.WaitStrategyType;
+import org.jupiter.rpc.Bulkhead;
+import org.jupiter.rpc.executor.CloseableExecutor;
+import org.jupiter.rpc.executor.ExecutorFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.provider.processor
+ *
+ * @author jiachun.fjc
+ */
+public class BulkheadExecutorTest {
+
+    @Test
+    public void testThreadPool() throws Exception {
+        // 1个线程 + 1个排队
+        testSaturation(bulkhead("threadPoolReport"), 2);
+    }
+
+    @Test
+    public void testDisruptor() throws Exception {
+        // 默认的LiteBlockingWaitStrategy(disruptor 3.3.x中仍是实验性的)偶尔会丢失唤醒, 单核机器上尤其明显,
+        // 这里固定使用BlockingWaitStrategy, 避免测试结果随调度变化
+        String key = ExecutorFactory.PROVIDER_DISRUPTOR_WAIT_STRATEGY_TYPE;
+        String previous = System.getProperty(key);
+        System.setProperty(key, WaitStrategyType.BLOCKING_WAIT.name());
+        try {
+            // 1个线程 + 4个排队
+            testSaturation(bulkhead("disruptorReport"), 5);
+        } finally {
+            if (previous == null) {
+                System.clearProperty(key);
+            } else {
+                System.setProperty(key, previous);
+            }
+        }
+    }
+
+    @Test
+    public void testRejectedByExecutor() {
+        // 底层线程池已满(worker还没有从队列中取走任务), 通过拒绝策略回调
+        CloseableExecutor full = new CloseableExecutor() {
+
+            @Override
+            public void execute(Runnable task) {
+                ((RejectedRunnable) task).rejected();
+            }
+
+            @Override
+            public void shutdown() {}
+        };
+        BulkheadExecutor bulkhead = new BulkheadExecutor("test-bulkhead", full, 2);
+        AtomicInteger rejected = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(bulkhead.tryExecute(new CountingTask(new AtomicInteger(), rejected)));
+        }
+        assertEquals(10, rejected.get());
+        assertEquals(10, bulkhead.rejectedCount());
+        // 计数全部归还, 不会越用越少
+        assertEquals(0.0, bulkhead.saturation(), 0.0);
+    }
+
+    @Test
+    public void testEveryTaskAnswered() throws Exception {
+        BulkheadExecutor bulkhead = BulkheadExecutor.create("test-bulkhead", bulkhead("threadPoolReport"));
+        try {
+            int threads = 4;
+            int count = 2000;
+            AtomicInteger ran = new AtomicInteger();
+            AtomicInteger rejected = new AtomicInteger();
+            Thread[] submitters = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                submitters[t] = new Thread(() -> {
+                    for (int i = 0; i < count; i++) {
+                        RejectedRunnable task = new CountingTask(ran, rejected);
+                        if (!bulkhead.tryExecute(task)) {
+                            task.rejected();
+                        }
+                    }
+                });
+                submitters[t].start();
+            }
+            for (Thread t : submitters) {
+                t.join();
+            }
+
+            for (int i = 0; i < 500 && ran.get() + rejected.get() < threads * count; i++) {
+                Thread.sleep(10);
+            }
+            // 每个请求要么执行要么被拒绝(响应SERVER_BUSY), 不会被静默丢弃
+            assertEquals(threads * count, ran.get() + rejected.get());
+            for (int i = 0; i < 100 && bulkhead.saturation() > 0; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(0.0, bulkhead.saturation(), 0.0);
+        } finally {
+            bulkhead.shutdown();
+            deleteDumps();
+        }
+    }
+
+    private static void testSaturation(Bulkhead annotation, int capacity) throws Exception {
+        BulkheadExecutor bulkhead = BulkheadExecutor.create("test-bulkhead", annotation);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(capacity);
+            Runnable slow = () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {}
+                done.countDown();
+            };
+
+            for (int i = 0; i < capacity; i++) {
+                assertTrue(bulkhead.tryExecute(slow));
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertEquals(capacity, bulkhead.activeCount() + bulkhead.queuedCount());
+            assertEquals(1.0, bulkhead.saturation(), 0.0);
+
+            assertFalse(bulkhead.tryExecute(() -> {}));
+            assertEquals(1, bulkhead.rejectedCount());
+
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            CountDownLatch fast = new CountDownLatch(1);
+            assertTrue(bulkhead.tryExecute(fast::countDown));
+            assertTrue(fast.await(5, TimeUnit.SECONDS));
+            // pending计数在任务返回之后才减少
+            for (int i = 0; i < 100 && bulkhead.saturation() > 0; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(0.0, bulkhead.saturation(), 0.0);
+        } finally {
+            release.countDown();
+            bulkhead.shutdown();
+            deleteDumps();
+        }
+    }
+
+    // 线程池第一次拒绝时RejectedTaskPolicyWithReport会在工作目录下dump线程栈,
+    // disruptor的ring buffer满了之后溢出到reserve.processor线程池, 同样可能dump
+    private static void deleteDumps() {
+        File[] dumps = new File(".").listFiles((dir, name) ->
+                name.startsWith("jupiter_dump_test-bulkhead") || name.startsWith("jupiter_dump_reserve.processor"));
+        if (dumps != null) {
+            for (File f : dumps) {
+                //noinspection ResultOfMethodCallIgnored
+                f.delete();
+            }
+        }
+    }
+
+    static class CountingTask implements RejectedRunnable {
+
+        private final AtomicInteger ran;
+        private final AtomicInteger rejected;
+
+        CountingTask(AtomicInteger ran, AtomicInteger rejected) {
+            this.ran = ran;
+            this.rejected = rejected;
+        }
+
+        @Override
+        public void run() {
+            ran.incrementAndGet();
+        }
+
+        @Override
+        public void rejected() {
+            rejected.incrementAndGet();
+        }
+    }
+
+    private static Bulkhead bulkhead(String methodName) throws NoSuchMethodException {
+        return Service.class.getMethod(methodName).getAnnotation(Bulkhead.class);
+    }
+
+    public interface Service {
+
+        @Bulkhead(coreWorkers = 1, queueCapacity = 1)
+        void threadPoolReport();
+
+        @Bulkhead(factory = "disruptor", coreWorkers = 1, queueCapacity = 4)
+        void disruptorReport();
+    }
+}
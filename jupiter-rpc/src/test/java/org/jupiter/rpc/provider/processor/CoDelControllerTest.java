@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.provider.processor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.provider.processor
+ *
+ * @author jiachun.fjc
+ */
+public class CoDelControllerTest {
+
+    @Test
+    public void testBelowTarget() {
+        CoDelController controller = newController();
+        for (long now = 1000; now < 2000; now++) {
+            assertFalse(controller.shouldDrop(now - 4, now));
+        }
+        assertEquals(0, controller.droppedCount());
+    }
+
+    @Test
+    public void testBurstShorterThanInterval() {
+        CoDelController controller = newController();
+        long now = 1000;
+        for (; now < 1090; now++) {
+            assertFalse(controller.shouldDrop(now - 50, now));
+        }
+        // 回落到target以下
+        assertFalse(controller.shouldDrop(now - 1, now));
+        for (now++; now < 1180; now++) {
+            assertFalse(controller.shouldDrop(now - 50, now));
+        }
+        assertFalse(controller.isDropping());
+    }
+
+    @Test
+    public void testDropping() {
+        CoDelController controller = newController();
+        long now = 1000;
+        assertFalse(controller.shouldDrop(now - 50, now));
+        for (now++; now < 1100; now++) {
+            assertFalse(controller.shouldDrop(now - 50, now));
+        }
+        // 持续超过target一个interval
+        assertTrue(controller.shouldDrop(now - 50, now));
+        assertTrue(controller.isDropping());
+
+        // 下一次丢弃在一个interval之后, 之后间隔按 interval / sqrt(count) 缩短
+        assertFalse(controller.shouldDrop(now - 50, now + 99));
+        assertTrue(controller.shouldDrop(now - 50, now + 100));
+        assertFalse(controller.shouldDrop(now - 50, now + 100 + 69));
+        assertTrue(controller.shouldDrop(now - 50, now + 100 + 70));
+        assertEquals(3, controller.droppedCount());
+
+        // 等待时间回落, 退出dropping状态
+        assertFalse(controller.shouldDrop(now + 200, now + 201));
+        assertFalse(controller.isDropping());
+        assertFalse(controller.shouldDrop(now + 202 - 50, now + 202));
+    }
+
+    @Test
+    public void testDisabled() {
+        CoDelController controller = newController();
+        controller.setEnabled(false);
+        for (long now = 1000; now < 2000; now++) {
+            assertFalse(controller.shouldDrop(now - 500, now));
+        }
+        // 没有时间戳的请求
+        controller.setEnabled(true);
+        assertFalse(controller.shouldDrop(0, 2000));
+    }
+
+    private static CoDelController newController() {
+        CoDelController controller = new CoDelController();
+        controller.setEnabled(true);
+        controller.setTargetMillis(5);
+        controller.setIntervalMillis(100);
+        return controller;
+    }
+}
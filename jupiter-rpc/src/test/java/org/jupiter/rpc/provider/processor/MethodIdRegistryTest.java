@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.rpc.provider.processor;
+
+import org.junit.Test;
+
+import org.jupiter.rpc.model.metadata.MessageWrapper;
+import org.jupiter.rpc.model.metadata.ServiceMetadata;
+import org.jupiter.transport.channel.MethodIdTable;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * jupiter
+ * org.jupiter.rpc.provider.processor
+ *
+ * @author jiachun.fjc
+ */
+public class MethodIdRegistryTest {
+
+    @Test
+    public void testAssignAndRestore() {
+        MethodIdRegistry registry = new MethodIdRegistry();
+
+        MessageWrapper hello = newMessage("app", "hello", "world");
+        int helloId = registry.assign(hello);
+        assertTrue(helloId > 0);
+        assertEquals(helloId, registry.assign(newMessage("app", "hello", "again")));
+        int byeId = registry.assign(newMessage("app", "bye"));
+        assertNotEquals(helloId, byeId);
+        // 不同的应用分配不同的id
+        assertNotEquals(helloId, registry.assign(newMessage("other", "hello")));
+        assertEquals(3, registry.size());
+
+        assertNull(registry.lookup(0));
+        assertNull(registry.lookup(100));
+
+        // consumer端
+        MessageWrapper interned = hello.intern(helloId);
+        assertTrue(interned.isInterned());
+        assertNull(interned.getMetadata());
+        assertNull(interned.getMethodName());
+
+        // provider端
+        MethodIdRegistry.Entry entry = registry.lookup(interned.getMethodId());
+        MessageWrapper restored = entry.restore(interned);
+        assertEquals("app", restored.getAppName());
+        assertEquals(hello.getMetadata(), restored.getMetadata());
+        assertEquals("hello", restored.getMethodName());
+        assertArrayEquals(new Object[] { "world" }, restored.getArgs());
+        // 方法id只在wire上携带, 业务代码看不到
+        assertNull(restored.getAttachments().get(MessageWrapper.METHOD_ID_KEY));
+        // 复用缓存的metadata实例
+        assertSame(restored.getMetadata(), entry.restore(newMessage("app", "hello").intern(helloId)).getMetadata());
+    }
+
+    @Test
+    public void testSharedMessageNotModified() {
+        // failover/hedging/forking的多次尝试共享同一个message, 每次尝试使用各自的拷贝
+        MessageWrapper shared = new MessageWrapper(new ServiceMetadata("test", "MethodIdService", "1.0.0"));
+        shared.setMethodName("hello");
+        shared.putAttachment("user", "value");
+
+        MessageWrapper required = shared.requireMethodId();
+        assertEquals(MessageWrapper.METHOD_ID_REQUIRED, required.getMethodId());
+        assertFalse(required.isInterned());
+        MessageWrapper interned = shared.intern(7);
+        assertEquals(7, interned.getMethodId());
+        assertEquals("value", interned.getAttachments().get("user"));
+
+        assertEquals(0, shared.getMethodId());
+        assertNull(shared.getAttachments().get(MessageWrapper.METHOD_ID_KEY));
+    }
+
+    @Test
+    public void testMethodIdTable() {
+        MethodIdTable table = new MethodIdTable();
+        ServiceMetadata metadata = new ServiceMetadata("test", "MethodIdService", "1.0.0");
+        assertEquals(MethodIdTable.NONE, table.get(metadata, "hello"));
+
+        table.put(metadata, "hello", 7);
+        assertEquals(7, table.get(new ServiceMetadata("test", "MethodIdService", "1.0.0"), "hello"));
+        assertEquals(MethodIdTable.NONE, table.get(metadata, "bye"));
+
+        table.clear();
+        assertEquals(MethodIdTable.NONE, table.get(metadata, "hello"));
+    }
+
+    private static MessageWrapper newMessage(String appName, String methodName, Object... args) {
+        MessageWrapper message = new MessageWrapper(new ServiceMetadata("test", "MethodIdService", "1.0.0"));
+        message.setAppName(appName);
+        message.setMethodName(methodName);
+        message.setArgs(args);
+        return message.requireMethodId();
+    }
+}
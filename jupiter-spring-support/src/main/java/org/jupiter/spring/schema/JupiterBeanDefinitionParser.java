@@ -29,6 +29,7 @@ import org.jupiter.spring.support.JupiterSpringConsumerBean;
 import org.jupiter.spring.support.JupiterSpringProviderBean;
 import org.jupiter.spring.support.JupiterSpringServer;
 import org.jupiter.transport.JOption;
+import org.jupiter.transport.Priority;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.BeanDefinitionHolder;
 import org.springframework.beans.factory.config.RuntimeBeanReference;
@@ -218,6 +219,7 @@ public class JupiterBeanDefinitionParser implements BeanDefinitionParser {
                     addProperty(def, (Element) item, "providerAddresses", false);
                     addProperty(def, (Element) item, "clusterStrategy", false);
                     addProperty(def, (Element) item, "failoverRetries", false);
+                    addProperty(def, (Element) item, "forks", false);
                     addPropertyReferenceArray(
                             def,
                             (Element) item,
@@ -234,10 +236,25 @@ public class JupiterBeanDefinitionParser implements BeanDefinitionParser {
                                 String timeoutMillis = ((Element) configItem).getAttribute("timeoutMillis");
                                 String clusterStrategy = ((Element) configItem).getAttribute("clusterStrategy");
                                 String failoverRetries = ((Element) configItem).getAttribute("failoverRetries");
+                                String forks = ((Element) configItem).getAttribute("forks");
+                                String coalescing = ((Element) configItem).getAttribute("coalescing");
+                                String cacheTtlMillis = ((Element) configItem).getAttribute("cacheTtlMillis");
+                                String cacheMaxBytes = ((Element) configItem).getAttribute("cacheMaxBytes");
+                                String priority = ((Element) configItem).getAttribute("priority");
 
                                 MethodSpecialConfig config = MethodSpecialConfig.of(methodName)
                                         .timeoutMillis(Long.parseLong(timeoutMillis))
-                                        .strategy(ClusterStrategyConfig.of(clusterStrategy, failoverRetries));
+                                        .strategy(ClusterStrategyConfig.of(clusterStrategy, failoverRetries, forks))
+                                        .coalescing(Boolean.parseBoolean(coalescing));
+                                if (Strings.isNotBlank(cacheTtlMillis)) {
+                                    config.cacheTtlMillis(Long.parseLong(cacheTtlMillis));
+                                }
+                                if (Strings.isNotBlank(cacheMaxBytes)) {
+                                    config.cacheMaxBytes(Long.parseLong(cacheMaxBytes));
+                                }
+                                if (Strings.isNotBlank(priority)) {
+                                    config.priority(Priority.valueOf(priority));
+                                }
                                 methodSpecialConfigs.add(config);
                             }
                         }
@@ -64,6 +64,7 @@ public class JupiterSpringConsumerBean<T> implements FactoryBean<T>, Initializin
     private String providerAddresses;                           // provider地址列表, 逗号分隔(IP直连)
     private ClusterInvoker.Strategy clusterStrategy;            // 集群容错策略
     private int failoverRetries;                                // failover重试次数(只对ClusterInvoker.Strategy.FAIL_OVER有效)
+    private int forks;                                          // 并行调用的provider数(只对ClusterInvoker.Strategy.FORKING有效)
 
     @Override
     public T getObject() throws Exception {
@@ -158,6 +159,10 @@ public class JupiterSpringConsumerBean<T> implements FactoryBean<T>, Initializin
             factory.failoverRetries(failoverRetries);
         }
 
+        if (forks > 0) {
+            factory.forks(forks);
+        }
+
         proxy = factory
                 .client(client.getClient())
                 .newProxyInstance();
@@ -294,4 +299,12 @@ public class JupiterSpringConsumerBean<T> implements FactoryBean<T>, Initializin
     public void setFailoverRetries(int failoverRetries) {
         this.failoverRetries = failoverRetries;
     }
+
+    public int getForks() {
+        return forks;
+    }
+
+    public void setForks(int forks) {
+        this.forks = forks;
+    }
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jupiter.common.util.Maps;
+import org.jupiter.common.util.Requires;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+import org.jupiter.transport.channel.CopyOnWriteGroupList;
+import org.jupiter.transport.channel.DirectoryJChannelGroup;
+import org.jupiter.transport.channel.JChannelGroup;
+
+/**
+ * {@link JConnector} 中与具体transport无关的部分: 按地址管理 {@link JChannelGroup}, 按服务目录管理 group list.
+ *
+ * jupiter
+ * org.jupiter.transport
+ *
+ * @author jiachun.fjc
+ */
+public abstract class AbstractJConnector implements JConnector<JConnection> {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(AbstractJConnector.class);
+
+    private final ConcurrentMap<UnresolvedAddress, JChannelGroup> addressGroups = Maps.newConcurrentMap();
+    private final DirectoryJChannelGroup directoryGroup = new DirectoryJChannelGroup();
+    private final JConnectionManager connectionManager = new JConnectionManager();
+
+    @Override
+    public JChannelGroup group(UnresolvedAddress address) {
+        Requires.requireNotNull(address, "address");
+
+        JChannelGroup group = addressGroups.get(address);
+        if (group == null) {
+            JChannelGroup newGroup = channelGroup(address);
+            group = addressGroups.putIfAbsent(address, newGroup);
+            if (group == null) {
+                group = newGroup;
+            }
+        }
+        return group;
+    }
+
+    @Override
+    public Collection<JChannelGroup> groups() {
+        return addressGroups.values();
+    }
+
+    @Override
+    public boolean addChannelGroup(Directory directory, JChannelGroup group) {
+        CopyOnWriteGroupList groups = directory(directory);
+        boolean added = groups.addIfAbsent(group);
+        if (added) {
+            if (logger.isInfoEnabled()) {
+                logger.info("Added channel group: {} to {}.", group, directory.directoryString());
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public boolean removeChannelGroup(Directory directory, JChannelGroup group) {
+        CopyOnWriteGroupList groups = directory(directory);
+        boolean removed = groups.remove(group);
+        if (removed) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Removed channel group: {} in directory: {}.", group, directory.directoryString());
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public CopyOnWriteGroupList directory(Directory directory) {
+        return directoryGroup.find(directory);
+    }
+
+    @Override
+    public boolean isDirectoryAvailable(Directory directory) {
+        CopyOnWriteGroupList groups = directory(directory);
+        JChannelGroup[] snapshot = groups.getSnapshot();
+        for (JChannelGroup g : snapshot) {
+            if (g.isAvailable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public DirectoryJChannelGroup directoryGroup() {
+        return directoryGroup;
+    }
+
+    @Override
+    public JConnectionManager connectionManager() {
+        return connectionManager;
+    }
+
+    /**
+     * Creates the same address of the channel group.
+     */
+    protected abstract JChannelGroup channelGroup(UnresolvedAddress address);
+}
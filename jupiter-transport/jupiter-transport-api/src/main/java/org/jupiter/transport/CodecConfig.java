@@ -29,5 +29,9 @@ public final class CodecConfig {
         return JConstants.CODEC_LOW_COPY;
     }
 
+    public static boolean isLocalSkipSerialization() {
+        return JConstants.LOCAL_SKIP_SERIALIZATION;
+    }
+
     private CodecConfig() {}
 }
@@ -32,9 +32,13 @@ package org.jupiter.transport;
  * = 2 // magic = (short) 0xbabe
  * + 1 // 消息标志位, 低地址4位用来表示消息类型request/response/heartbeat等, 高地址4位用来表示序列化类型
  * + 1 // 状态位, 设置请求响应状态
- * + 8 // 消息 id, long 类型, 未来jupiter可能将id限制在48位, 留出高地址的16位作为扩展字段
+ * + 8 // 消息 id, long 类型, id限制在48位, 高地址的16位作为扩展字段
  * + 4 // 消息体 body 长度, int 类型
  *
+ * 消息id的高16位:
+ * request 中携带consumer端剩余的超时时间(单位毫秒, 最大65535), 0表示没有携带, provider据此丢弃consumer已经放弃等待的请求;
+ * response 中暂时保留, 始终为0.
+ *
  * jupiter
  * org.jupiter.transport
  *
@@ -57,6 +61,12 @@ public class JProtocolHeader {
     public static final byte ACK                        = 0x07;     // Acknowledge
     public static final byte HEARTBEAT                  = 0x0f;     // Heartbeat
 
+    /** 消息id的有效位数 */
+    public static final int ID_BITS = 48;
+    public static final long ID_MASK = (1L << ID_BITS) - 1;
+    /** request携带的剩余超时时间的最大值(毫秒), 超出则不携带 */
+    public static final int MAX_TIMEOUT_BUDGET = 0xffff;
+
     private byte messageCode;       // sign 低地址4位
 
     /** Serializer Code: 0x01 ~ 0x0f ================================================================================ */
@@ -69,7 +79,7 @@ public class JProtocolHeader {
     // XX1          = 0x0e
     // XX2          = 0x0f
     private byte serializerCode;    // sign 高地址4位
-    private byte status;            // 响应状态码
+    private byte status;            // 响应状态码, request中为请求的优先级(见 Priority)
     private long id;                // request.invokeId, 用于映射 <id, request, response> 三元组
     private int bodySize;           // 消息体长度
 
@@ -84,6 +94,27 @@ public class JProtocolHeader {
         this.serializerCode = (byte) ((((int) sign) & 0xff) >> 4);
     }
 
+    /**
+     * 将invokeId与剩余的超时时间合并为一个消息id.
+     */
+    public static long toId(long invokeId, int timeoutBudget) {
+        return ((long) (timeoutBudget & MAX_TIMEOUT_BUDGET) << ID_BITS) | (invokeId & ID_MASK);
+    }
+
+    /**
+     * 从消息id中取出invokeId.
+     */
+    public static long invokeId(long id) {
+        return id & ID_MASK;
+    }
+
+    /**
+     * 从消息id中取出剩余的超时时间, 0表示没有携带.
+     */
+    public static int timeoutBudget(long id) {
+        return (int) (id >>> ID_BITS);
+    }
+
     public byte messageCode() {
         return messageCode;
     }
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport;
+
+/**
+ * Request priority.
+ *
+ * 请求的协议头中没有响应状态码, request复用这个状态位携带优先级, 旧版本consumer发送的0即为 {@link #NORMAL}.
+ * provider端可以根据优先级选择不同的处理队列, 见 org.jupiter.rpc.executor.PriorityExecutorFactory.
+ *
+ * 枚举的声明顺序即为优先级从高到低的顺序.
+ *
+ * jupiter
+ * org.jupiter.transport
+ *
+ * @author jiachun.fjc
+ */
+public enum Priority {
+
+    HIGH    ((byte) 0x01),  // 健康检查, 交互式调用等对延迟敏感的请求
+    NORMAL  ((byte) 0x00),  // 默认
+    LOW     ((byte) 0x02);  // 批量任务等吞吐优先的请求
+
+    private static final Priority[] VALUES = values();
+
+    private final byte value;
+
+    Priority(byte value) {
+        this.value = value;
+    }
+
+    /**
+     * 未知的值(比如更新版本定义的优先级)按照 {@link #NORMAL} 处理.
+     */
+    public static Priority parse(byte value) {
+        for (Priority p : VALUES) {
+            if (p.value == value) {
+                return p;
+            }
+        }
+        return NORMAL;
+    }
+
+    public byte value() {
+        return value;
+    }
+}
@@ -34,6 +34,8 @@ public interface Transporter {
      */
     enum Protocol {
         TCP,
-        DOMAIN  // Unix domain socket
+        DOMAIN, // Unix domain socket
+        LOCAL,  // in-JVM
+        SHM     // shared memory, same host
     }
 }
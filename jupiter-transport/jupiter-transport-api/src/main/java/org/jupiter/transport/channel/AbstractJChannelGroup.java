@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.channel;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jupiter.common.atomic.AtomicUpdater;
+import org.jupiter.common.util.IntSequence;
+import org.jupiter.common.util.JConstants;
+import org.jupiter.common.util.Lists;
+import org.jupiter.common.util.Maps;
+import org.jupiter.common.util.Requires;
+import org.jupiter.common.util.SystemClock;
+import org.jupiter.common.util.SystemPropertyUtil;
+import org.jupiter.common.util.ThrowUtil;
+import org.jupiter.transport.Directory;
+import org.jupiter.transport.UnresolvedAddress;
+
+/**
+ * {@link JChannelGroup} 的通用实现, 与具体的transport无关, 子类只需要限定可以加入的 {@link JChannel} 类型,
+ * 并在连接断开时调用 {@link #remove(JChannel)}.
+ *
+ * 同一个地址有多个连接时, {@link #next()} 以 power of two choices 的方式优先选择可写的, 其次是在途请求
+ * ({@link JChannel#inFlightTable()})较少的连接, 避免一个慢连接上的请求排队.
+ *
+ * jupiter
+ * org.jupiter.transport.channel
+ *
+ * @author jiachun.fjc
+ */
+public abstract class AbstractJChannelGroup implements JChannelGroup {
+
+    private static long LOSS_INTERVAL = SystemPropertyUtil
+            .getLong("jupiter.io.channel.group.loss.interval.millis", TimeUnit.MINUTES.toMillis(5));
+
+    // 延迟的衰减时间常数, 越小对最近的延迟变化越敏感
+    private static final long LATENCY_DECAY_NANOS = TimeUnit.MILLISECONDS.toNanos(SystemPropertyUtil
+            .getLong("jupiter.io.channel.group.latency.decay.millis", 10000));
+
+    private static int DEFAULT_SEQUENCE_STEP = (JConstants.AVAILABLE_PROCESSORS << 3) + 1;
+
+    private static final AtomicReferenceFieldUpdater<CopyOnWriteArrayList, Object[]> channelsUpdater =
+            AtomicUpdater.newAtomicReferenceFieldUpdater(CopyOnWriteArrayList.class, Object[].class, "array");
+    private static final AtomicIntegerFieldUpdater<AbstractJChannelGroup> signalNeededUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(AbstractJChannelGroup.class, "signalNeeded");
+
+    private final ConcurrentLinkedQueue<Runnable> waitAvailableListeners = new ConcurrentLinkedQueue<>();
+
+    private final UnresolvedAddress address;
+
+    private final CopyOnWriteArrayList<JChannel> channels = new CopyOnWriteArrayList<>();
+
+    private final IntSequence sequence = new IntSequence(DEFAULT_SEQUENCE_STEP);
+
+    private final ConcurrentMap<String, Integer> weights = Maps.newConcurrentMap();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notifyCondition = lock.newCondition();
+    // attempts to elide conditional wake-ups when the lock is uncontended.
+    @SuppressWarnings("all")
+    private volatile int signalNeeded = 0; // 0: false, 1: true
+
+    private volatile boolean connecting = false;
+
+    private volatile int capacity = Integer.MAX_VALUE;
+    private volatile int warmUp = JConstants.DEFAULT_WARM_UP; // warm-up time
+    private volatile long timestamp = SystemClock.millisClock().now();
+    private volatile long deadlineMillis = -1;
+
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private final ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter();
+
+    // 并发更新时可能丢失个别样本, 对于估算来说无关紧要
+    private volatile double latency = 0;
+    private volatile long latencyTimestamp = System.nanoTime();
+
+    protected AbstractJChannelGroup(UnresolvedAddress address) {
+        this.address = address;
+    }
+
+    @Override
+    public UnresolvedAddress remoteAddress() {
+        return address;
+    }
+
+    @Override
+    public JChannel next() {
+        for (;;) {
+            // snapshot of channels array
+            Object[] elements = channelsUpdater.get(channels);
+            int length = elements.length;
+            if (length == 0) {
+                if (waitForAvailable(1000)) { // wait a moment
+                    continue;
+                }
+                throw new IllegalStateException("No channel");
+            }
+            if (length == 1) {
+                return (JChannel) elements[0];
+            }
+
+            // power of two choices: 轮询选出第一个, 随机选出另一个不同的, 再取其中可写并且在途请求较少的
+            int index = sequence.next() & Integer.MAX_VALUE;
+            int first = index % length;
+            int second = (first + 1 + ThreadLocalRandom.current().nextInt(length - 1)) % length;
+
+            return select((JChannel) elements[first], (JChannel) elements[second]);
+        }
+    }
+
+    private static JChannel select(JChannel first, JChannel second) {
+        boolean firstWritable = first.isWritable();
+        if (firstWritable != second.isWritable()) {
+            return firstWritable ? first : second;
+        }
+        return second.inFlightTable().size() < first.inFlightTable().size() ? second : first;
+    }
+
+    @Override
+    public List<? extends JChannel> channels() {
+        return Lists.newArrayList(channels);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return channels.isEmpty();
+    }
+
+    @Override
+    public boolean add(JChannel channel) {
+        boolean added = channels.add(channel);
+        if (added) {
+            timestamp = SystemClock.millisClock().now(); // reset timestamp
+            deadlineMillis = -1;
+
+            if (signalNeededUpdater.getAndSet(this, 0) != 0) { // signal needed: true
+                final ReentrantLock _look = lock;
+                _look.lock();
+                try {
+                    notifyCondition.signalAll(); // must signal all
+                } finally {
+                    _look.unlock();
+                }
+            }
+
+            notifyListeners();
+        }
+        return added;
+    }
+
+    @Override
+    public boolean remove(JChannel channel) {
+        boolean removed = channels.remove(channel);
+        if (removed) {
+            timestamp = SystemClock.millisClock().now(); // reset timestamp
+
+            if (channels.isEmpty()) {
+                deadlineMillis = SystemClock.millisClock().now() + LOSS_INTERVAL;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return channels.size();
+    }
+
+    @Override
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public boolean isConnecting() {
+        return connecting;
+    }
+
+    @Override
+    public void setConnecting(boolean connecting) {
+        this.connecting = connecting;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return !channels.isEmpty();
+    }
+
+    @Override
+    public boolean waitForAvailable(long timeoutMillis) {
+        boolean available = isAvailable();
+        if (available) {
+            return true;
+        }
+        long remains = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        final ReentrantLock _look = lock;
+        _look.lock();
+        try {
+            // avoid "spurious wakeup" occurs
+            while (!(available = isAvailable())) {
+                signalNeeded = 1; // set signal needed to true
+                if ((remains = notifyCondition.awaitNanos(remains)) <= 0) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            ThrowUtil.throwException(e);
+        } finally {
+            _look.unlock();
+        }
+
+        return available;
+    }
+
+    @Override
+    public void onAvailable(Runnable listener) {
+        waitAvailableListeners.add(listener);
+        if (isAvailable()) {
+            notifyListeners();
+        }
+    }
+
+    @Override
+    public int getWeight(Directory directory) {
+        Requires.requireNotNull(directory, "directory");
+
+        Integer weight = weights.get(directory.directoryString());
+        return weight == null ? JConstants.DEFAULT_WEIGHT : weight;
+    }
+
+    @Override
+    public void putWeight(Directory directory, int weight) {
+        Requires.requireNotNull(directory, "directory");
+
+        if (weight == JConstants.DEFAULT_WEIGHT) {
+            // the default value does not need to be stored
+            return;
+        }
+        weights.put(directory.directoryString(), weight > JConstants.MAX_WEIGHT ? JConstants.MAX_WEIGHT : weight);
+    }
+
+    @Override
+    public void removeWeight(Directory directory) {
+        Requires.requireNotNull(directory, "directory");
+
+        weights.remove(directory.directoryString());
+    }
+
+    @Override
+    public int getWarmUp() {
+        return warmUp > 0 ? warmUp : 0;
+    }
+
+    @Override
+    public void setWarmUp(int warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    @Override
+    public boolean isWarmUpComplete() {
+        return SystemClock.millisClock().now() - timestamp > warmUp;
+    }
+
+    @Override
+    public long timestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public long deadlineMillis() {
+        return deadlineMillis;
+    }
+
+    /**
+     * Peak EWMA: 比当前估算值大的样本直接生效, 以便尽快避开突然变慢(比如GC停顿)的节点;
+     * 较小的样本按距离上次更新的时间指数衰减地合并进来.
+     */
+    @Override
+    public void recordLatency(long latencyNanos) {
+        recordLatency(latencyNanos, System.nanoTime());
+    }
+
+    /**
+     * 读取时同样按距离上次更新的时间向0衰减, 否则一次慢请求(或超时)之后, 负载均衡不再选择这个节点,
+     * 也就没有新的样本, 它的延迟会一直停留在峰值上, 永远不会再被选中.
+     */
+    @Override
+    public long latency() {
+        return latency(System.nanoTime());
+    }
+
+    void recordLatency(long latencyNanos, long now) {
+        double current = latency;
+        if (latencyNanos > current) {
+            latency = latencyNanos;
+        } else {
+            double w = decayWeight(now);
+            latency = current * w + latencyNanos * (1 - w);
+        }
+        latencyTimestamp = now;
+    }
+
+    long latency(long now) {
+        return (long) (latency * decayWeight(now));
+    }
+
+    private double decayWeight(long now) {
+        return Math.exp(-(double) Math.max(now - latencyTimestamp, 0) / LATENCY_DECAY_NANOS);
+    }
+
+    @Override
+    public CircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+
+    @Override
+    public ConcurrencyLimiter concurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    @Override
+    public int inFlight() {
+        int inFlight = 0;
+        for (JChannel ch : channels) {
+            inFlight += ch.inFlightTable().size();
+        }
+        return inFlight;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        AbstractJChannelGroup that = (AbstractJChannelGroup) o;
+
+        return address.equals(that.address);
+    }
+
+    @Override
+    public int hashCode() {
+        return address.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+                "address=" + address +
+                ", channels=" + channels +
+                ", weights=" + weights +
+                ", warmUp=" + warmUp +
+                ", timestamp=" + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSSZ").format(new Date(timestamp)) +
+                ", deadlineMillis=" + deadlineMillis +
+                '}';
+    }
+
+    private void notifyListeners() {
+        for (;;) {
+            Runnable listener = waitAvailableListeners.poll();
+            if (listener == null) {
+                break;
+            }
+            listener.run();
+        }
+    }
+}
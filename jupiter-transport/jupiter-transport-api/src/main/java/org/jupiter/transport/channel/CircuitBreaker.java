@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.channel;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import org.jupiter.common.util.SystemClock;
+import org.jupiter.common.util.SystemPropertyUtil;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+
+/**
+ * 每个 {@link JChannelGroup} (即每个provider) 一个熔断器, 状态机: CLOSED -> OPEN -> HALF_OPEN -> CLOSED/OPEN.
+ *
+ * 1. CLOSED: 以秒为单位的滑动窗口统计失败率和慢调用率, 调用数达到 min_calls 并且任一比例超过阈值时熔断(OPEN);
+ * 2. OPEN: {@link CopyOnWriteGroupList#getSnapshot()} 不再包含这个group, 所以任何负载均衡都不会选择它,
+ *    经过 open_millis 之后进入HALF_OPEN;
+ * 3. HALF_OPEN: 只放行 half_open_probes 个探测请求, 探测请求全部返回后, 比例都低于阈值则恢复(CLOSED), 否则再次熔断.
+ *
+ * 任何一个熔断器的状态变化都会增加全局的 {@link #version()}, {@link CopyOnWriteGroupList} 据此重新计算可见的group.
+ *
+ * jupiter
+ * org.jupiter.transport.channel
+ *
+ * @author jiachun.fjc
+ */
+public class CircuitBreaker {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static final int WINDOW_SECONDS =
+            SystemPropertyUtil.getInt("jupiter.io.channel.group.breaker.window_seconds", 10);
+    private static final int MIN_CALLS =
+            SystemPropertyUtil.getInt("jupiter.io.channel.group.breaker.min_calls", 20);
+    private static final int FAILURE_RATE_THRESHOLD =
+            SystemPropertyUtil.getInt("jupiter.io.channel.group.breaker.failure_rate", 50);
+    private static final int SLOW_CALL_RATE_THRESHOLD =
+            SystemPropertyUtil.getInt("jupiter.io.channel.group.breaker.slow_call_rate", 80);
+    private static final long SLOW_CALL_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            SystemPropertyUtil.getLong("jupiter.io.channel.group.breaker.slow_call_millis", 1000));
+    private static final long OPEN_MILLIS =
+            SystemPropertyUtil.getLong("jupiter.io.channel.group.breaker.open_millis", 5000);
+    private static final int HALF_OPEN_PROBES =
+            SystemPropertyUtil.getInt("jupiter.io.channel.group.breaker.half_open_probes", 10);
+
+    private static final AtomicReferenceFieldUpdater<CircuitBreaker, State> stateUpdater =
+            AtomicReferenceFieldUpdater.newUpdater(CircuitBreaker.class, State.class, "state");
+    private static final AtomicIntegerFieldUpdater<CircuitBreaker> permitsUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(CircuitBreaker.class, "probePermits");
+    private static final AtomicIntegerFieldUpdater<CircuitBreaker> probeCallsUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(CircuitBreaker.class, "probeCalls");
+    private static final AtomicIntegerFieldUpdater<CircuitBreaker> probeFailuresUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(CircuitBreaker.class, "probeFailures");
+
+    // 所有熔断器的状态变化版本号
+    private static final AtomicInteger version = new AtomicInteger();
+
+    private final int windowSeconds;
+    private final int minCalls;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openMillis;
+    private final int halfOpenProbes;
+
+    // 滑动窗口, 每秒一个bucket
+    private final AtomicLongArray epochs;
+    private final AtomicIntegerArray calls;
+    private final AtomicIntegerArray failures;
+    private final AtomicIntegerArray slowCalls;
+
+    private volatile State state = State.CLOSED;
+    private volatile long openedMillis;
+    private volatile long halfOpenedMillis;
+
+    // HALF_OPEN
+    @SuppressWarnings("unused")
+    private volatile int probePermits;
+    @SuppressWarnings("unused")
+    private volatile int probeCalls;
+    @SuppressWarnings("unused")
+    private volatile int probeFailures;
+
+    /**
+     * Returns the version which is increased on every state transition of
+     * all the circuit breakers.
+     */
+    public static int version() {
+        return version.get();
+    }
+
+    public CircuitBreaker() {
+        this(WINDOW_SECONDS, MIN_CALLS, FAILURE_RATE_THRESHOLD, SLOW_CALL_RATE_THRESHOLD,
+                SLOW_CALL_NANOS, OPEN_MILLIS, HALF_OPEN_PROBES);
+    }
+
+    CircuitBreaker(int windowSeconds,
+                   int minCalls,
+                   int failureRateThreshold,
+                   int slowCallRateThreshold,
+                   long slowCallNanos,
+                   long openMillis,
+                   int halfOpenProbes) {
+        this.windowSeconds = windowSeconds;
+        this.minCalls = minCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallNanos;
+        this.openMillis = openMillis;
+        this.halfOpenProbes = halfOpenProbes;
+        epochs = new AtomicLongArray(windowSeconds);
+        calls = new AtomicIntegerArray(windowSeconds);
+        failures = new AtomicIntegerArray(windowSeconds);
+        slowCalls = new AtomicIntegerArray(windowSeconds);
+    }
+
+    /**
+     * Returns the current state, an OPEN breaker goes into HALF_OPEN after
+     * the open duration.
+     */
+    public State state() {
+        State s = state;
+        if (s == State.OPEN && SystemClock.millisClock().now() - openedMillis >= openMillis) {
+            if (transition(State.OPEN, State.HALF_OPEN)) {
+                resetProbes();
+            }
+            s = state;
+        }
+        return s;
+    }
+
+    /**
+     * Returns the time (millis) when an OPEN breaker goes into HALF_OPEN.
+     */
+    public long halfOpenMillis() {
+        return openedMillis + openMillis;
+    }
+
+    /**
+     * Returns {@code true} if a request is permitted, a HALF_OPEN breaker only
+     * permits a limited number of probes.
+     */
+    public boolean allowRequest() {
+        switch (state()) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                for (;;) {
+                    int p = probePermits;
+                    if (p <= 0) {
+                        // 有的探测请求没有结果(比如发送之前就失败了), 超过open_millis之后重新探测
+                        if (SystemClock.millisClock().now() - halfOpenedMillis >= openMillis) {
+                            resetProbes();
+                        }
+                        return false;
+                    }
+                    if (permitsUpdater.compareAndSet(this, p, p - 1)) {
+                        return true;
+                    }
+                }
+            default:
+                return false;
+        }
+    }
+
+    public boolean isSlowCall(long durationNanos) {
+        return durationNanos >= slowCallNanos;
+    }
+
+    /**
+     * Records the outcome of a completed request.
+     */
+    public void record(boolean failure, boolean slow) {
+        State s = state;
+        if (s == State.CLOSED) {
+            int index = bucketOf(SystemClock.millisClock().now() / 1000);
+            calls.getAndIncrement(index);
+            if (failure) {
+                failures.getAndIncrement(index);
+            }
+            if (slow) {
+                slowCalls.getAndIncrement(index);
+            }
+            if ((failure || slow) && isOverThreshold()) {
+                open(State.CLOSED);
+            }
+        } else if (s == State.HALF_OPEN) {
+            if (failure || slow) {
+                probeFailuresUpdater.getAndIncrement(this);
+            }
+            if (probeCallsUpdater.incrementAndGet(this) == halfOpenProbes) {
+                if (probeFailures * 100 >= Math.min(failureRateThreshold, slowCallRateThreshold) * halfOpenProbes) {
+                    open(State.HALF_OPEN);
+                } else {
+                    close();
+                }
+            }
+        }
+        // OPEN: 熔断之前发出的请求, 忽略
+    }
+
+    public int failureRate() {
+        long[] counts = windowCounts();
+        return counts[0] == 0 ? 0 : (int) (counts[1] * 100 / counts[0]);
+    }
+
+    public int slowCallRate() {
+        long[] counts = windowCounts();
+        return counts[0] == 0 ? 0 : (int) (counts[2] * 100 / counts[0]);
+    }
+
+    private void resetProbes() {
+        halfOpenedMillis = SystemClock.millisClock().now();
+        probeCallsUpdater.set(this, 0);
+        probeFailuresUpdater.set(this, 0);
+        permitsUpdater.set(this, halfOpenProbes);
+    }
+
+    private boolean isOverThreshold() {
+        long[] counts = windowCounts();
+        long total = counts[0];
+        return total >= minCalls
+                && (counts[1] * 100 >= failureRateThreshold * total || counts[2] * 100 >= slowCallRateThreshold * total);
+    }
+
+    // [calls, failures, slowCalls]
+    private long[] windowCounts() {
+        long second = SystemClock.millisClock().now() / 1000;
+        long[] counts = new long[3];
+        for (int i = 0; i < windowSeconds; i++) {
+            if (second - epochs.get(i) < windowSeconds) {
+                counts[0] += calls.get(i);
+                counts[1] += failures.get(i);
+                counts[2] += slowCalls.get(i);
+            }
+        }
+        return counts;
+    }
+
+    private int bucketOf(long second) {
+        int index = (int) (second % windowSeconds);
+        long epoch = epochs.get(index);
+        if (epoch != second && epochs.compareAndSet(index, epoch, second)) {
+            // 过期的bucket重新计数, 并发时可能丢失少量样本
+            calls.set(index, 0);
+            failures.set(index, 0);
+            slowCalls.set(index, 0);
+        }
+        return index;
+    }
+
+    private void open(State from) {
+        openedMillis = SystemClock.millisClock().now();
+        if (transition(from, State.OPEN)) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("Circuit breaker opened from {}, {}.", from, this);
+            }
+        }
+    }
+
+    private void close() {
+        for (int i = 0; i < windowSeconds; i++) {
+            epochs.set(i, 0);
+            calls.set(i, 0);
+            failures.set(i, 0);
+            slowCalls.set(i, 0);
+        }
+        if (transition(State.HALF_OPEN, State.CLOSED)) {
+            if (logger.isInfoEnabled()) {
+                logger.info("Circuit breaker closed, {}.", this);
+            }
+        }
+    }
+
+    private boolean transition(State from, State to) {
+        if (stateUpdater.compareAndSet(this, from, to)) {
+            version.getAndIncrement();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreaker{" +
+                "state=" + state +
+                ", failureRate=" + failureRate() + '%' +
+                ", slowCallRate=" + slowCallRate() + '%' +
+                '}';
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.channel;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.jupiter.common.util.SystemPropertyUtil;
+import org.jupiter.transport.Status;
+
+/**
+ * Consumer端针对每个provider({@link JChannelGroup})的自适应并发限制.
+ *
+ * 参考 Netflix concurrency-limits 的 Gradient 算法: 用长期的RTT均值与最新的RTT样本之比作为梯度,
+ * RTT变长(provider开始排队)时梯度小于1, limit随之收缩; RTT稳定时limit以 sqrt(limit) 的步长增长.
+ * 遇到超时/服务端拒绝(SERVER_BUSY, 限流)时直接按比例退避.
+ *
+ * 在途请求数超过limit时, consumer端的dispatcher会优先选择其他provider, 都超过limit时在本地快速失败
+ * {@link Status#CLIENT_FLOW_CONTROL}, 而不是等到provider端的 {@link Status#SERVER_BUSY}.
+ *
+ * 与 {@link CircuitBreaker} 一样, 每个 {@link JChannelGroup} 持有一个limiter, 随group一起回收.
+ *
+ * 默认关闭(-Djupiter.rpc.consumer.concurrency_limiter=true 开启), 开启之前需要确认initial_limit不会拒绝现有的流量,
+ * 例如多个线程共用一个连接并发调用同一个provider的场景.
+ *
+ * jupiter
+ * org.jupiter.transport.channel
+ *
+ * @author jiachun.fjc
+ */
+public final class ConcurrencyLimiter {
+
+    public static final boolean ENABLED =
+            SystemPropertyUtil.getBoolean("jupiter.rpc.consumer.concurrency_limiter", false);
+
+    private static final int INITIAL_LIMIT =
+            SystemPropertyUtil.getInt("jupiter.rpc.consumer.concurrency_limiter.initial_limit", 64);
+    private static final int MIN_LIMIT =
+            SystemPropertyUtil.getInt("jupiter.rpc.consumer.concurrency_limiter.min_limit", 8);
+    private static final int MAX_LIMIT =
+            SystemPropertyUtil.getInt("jupiter.rpc.consumer.concurrency_limiter.max_limit", 4096);
+
+    // 允许RTT在长期均值基础上波动的倍数, 超过之后才开始收缩limit
+    private static final double RTT_TOLERANCE = 1.5;
+    // 长期RTT均值的样本窗口
+    private static final double LONG_WINDOW = 600;
+    // 每次调整只采纳一部分新的估算值, 避免抖动
+    private static final double SMOOTHING = 0.2;
+    // 遇到超时或服务端拒绝时的退避比例
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private static final AtomicIntegerFieldUpdater<ConcurrencyLimiter> inFlightUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(ConcurrencyLimiter.class, "inFlight");
+    private static final AtomicIntegerFieldUpdater<ConcurrencyLimiter> updatingUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(ConcurrencyLimiter.class, "updating");
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private volatile double limit;
+    private volatile int inFlight = 0;
+
+    // 只在持有updating时读写
+    private volatile int updating = 0;
+    private double longRtt = 0;
+
+    /**
+     * Returns {@code true} if the in-flight requests on the group is under its limit.
+     */
+    public static boolean isAllowed(JChannelGroup group) {
+        return !ENABLED || group.concurrencyLimiter().isAllowed();
+    }
+
+    public ConcurrencyLimiter() {
+        this(INITIAL_LIMIT, MIN_LIMIT, MAX_LIMIT);
+    }
+
+    ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.min(Math.max(initialLimit, minLimit), maxLimit);
+    }
+
+    public boolean isAllowed() {
+        return inFlight < limit;
+    }
+
+    /**
+     * Remaining permits, may be negative.
+     */
+    public int headroom() {
+        return limit() - inFlight;
+    }
+
+    public int limit() {
+        return (int) limit;
+    }
+
+    public int inFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Be called before a request is sent.
+     */
+    public void acquire() {
+        inFlightUpdater.getAndIncrement(this);
+    }
+
+    /**
+     * Be called when the response of a request was received (or the request
+     * was failed/timeout), {@code rttNanos} is the round trip time of it.
+     */
+    public void release(long rttNanos, byte status) {
+        int inFlight = inFlightUpdater.getAndDecrement(this);
+
+        if (status == Status.CLIENT_ERROR.value()) {
+            return; // 请求没有到达provider, 不能说明provider的状态
+        }
+
+        // 并发时放弃这个样本, 不在响应的回调中竞争锁
+        if (!updatingUpdater.compareAndSet(this, 0, 1)) {
+            return;
+        }
+        try {
+            if (isDropped(status)) {
+                update(limit * BACKOFF_RATIO);
+            } else {
+                onSample(rttNanos, inFlight);
+            }
+        } finally {
+            updating = 0;
+        }
+    }
+
+    private void onSample(long rttNanos, int inFlight) {
+        double rtt = Math.max(rttNanos, 1);
+        double longRtt = this.longRtt;
+        if (longRtt == 0) {
+            longRtt = rtt;
+        } else {
+            longRtt += (rtt - longRtt) / LONG_WINDOW;
+        }
+        // provider恢复之后(比如GC结束)让长期均值尽快回落, 否则会一直容忍较高的RTT
+        if (longRtt / rtt > 2) {
+            longRtt *= 0.95;
+        }
+        this.longRtt = longRtt;
+
+        double limit = this.limit;
+        // 请求量远没有达到limit时RTT说明不了什么, 不调整
+        if (inFlight < limit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRtt / rtt));
+        update(limit * gradient + Math.sqrt(limit));
+    }
+
+    private void update(double newLimit) {
+        double limit = this.limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        this.limit = Math.min(Math.max(limit, minLimit), maxLimit);
+    }
+
+    private static boolean isDropped(byte status) {
+        return status == Status.SERVER_BUSY.value()
+                || status == Status.SERVER_TIMEOUT.value()
+                || status == Status.CLIENT_TIMEOUT.value()
+                || status == Status.APP_FLOW_CONTROL.value()
+                || status == Status.PROVIDER_FLOW_CONTROL.value();
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrencyLimiter{" +
+                "limit=" + limit() +
+                ", inFlight=" + inFlight +
+                '}';
+    }
+}
@@ -21,6 +21,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.jupiter.common.util.SystemClock;
 import org.jupiter.common.util.internal.UnsafeUtil;
 
 /**
@@ -29,6 +30,8 @@ import org.jupiter.common.util.internal.UnsafeUtil;
  *
  * update操作仅支持addIfAbsent/remove, update操作会同时更新对应服务节点(group)的引用计数.
  *
+ * {@link #getSnapshot()} 只返回熔断器({@link CircuitBreaker})没有打开的group, 其余方法针对所有的group.
+ *
  * jupiter
  * org.jupiter.transport.channel
  *
@@ -37,22 +40,36 @@ import org.jupiter.common.util.internal.UnsafeUtil;
 public class CopyOnWriteGroupList {
 
     private static final JChannelGroup[] EMPTY_GROUP = new JChannelGroup[0];
-    private static final Object[] EMPTY_ARRAY = new Object[] { EMPTY_GROUP, null };
+    private static final Object[] EMPTY_ARRAY = new Object[] { EMPTY_GROUP, null, EMPTY_GROUP };
 
     private transient final ReentrantLock lock = new ReentrantLock();
 
     private final DirectoryJChannelGroup parent;
 
-    // array[0]: JChannelGroup[]
+    // array[0]: JChannelGroup[], 可以被选择的group(排除熔断的)
     // array[1]: Map<DirectoryString, WeightArray>
+    // array[2]: JChannelGroup[], 所有的group
     private transient volatile Object[] array;
 
+    // array[0]是根据哪个版本的熔断器状态计算的
+    private volatile int breakerVersion;
+    // 最早一个熔断的group进入HALF_OPEN的时间
+    private volatile long nextHalfOpenMillis = Long.MAX_VALUE;
+
     public CopyOnWriteGroupList(DirectoryJChannelGroup parent) {
         this.parent = parent;
+        this.breakerVersion = CircuitBreaker.version();
         setArray(EMPTY_ARRAY);
     }
 
+    /**
+     * Returns the groups which can be selected, the groups whose {@link CircuitBreaker}
+     * is OPEN are excluded (unless all of them are OPEN).
+     */
     public final JChannelGroup[] getSnapshot() {
+        if (breakerVersion != CircuitBreaker.version() || SystemClock.millisClock().now() >= nextHalfOpenMillis) {
+            refreshAvailable();
+        }
         return tabAt0(array);
     }
 
@@ -88,9 +105,49 @@ public class CopyOnWriteGroupList {
         this.array = array;
     }
 
-    @SuppressWarnings("SameParameterValue")
-    private void setArray(JChannelGroup[] groups, Object weightArray) {
-        array = new Object[] { groups, weightArray };
+    private void refreshAvailable() {
+        final ReentrantLock lock = this.lock;
+        if (lock.tryLock()) { // 其他线程正在更新时使用当前的快照
+            try {
+                setGroups(tabAt2(array));
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 更新所有的group, 并重新计算可以被选择的group, 必须持有锁.
+     */
+    private void setGroups(JChannelGroup[] groups) {
+        // 先读取版本号, 计算过程中发生的状态变化会在下一次getSnapshot时重新计算
+        breakerVersion = CircuitBreaker.version();
+
+        long nextHalfOpen = Long.MAX_VALUE;
+        JChannelGroup[] available = new JChannelGroup[groups.length];
+        int n = 0;
+        for (JChannelGroup g : groups) {
+            CircuitBreaker breaker = g.circuitBreaker();
+            if (breaker.state() == CircuitBreaker.State.OPEN) {
+                nextHalfOpen = Math.min(nextHalfOpen, breaker.halfOpenMillis());
+            } else {
+                available[n++] = g;
+            }
+        }
+        nextHalfOpenMillis = nextHalfOpen;
+
+        if (n == groups.length || n == 0) {
+            // 全部熔断时不再排除, 避免无服务可用
+            available = groups;
+        } else {
+            available = Arrays.copyOf(available, n);
+        }
+
+        Object[] current = array;
+        if (tabAt2(current) == groups && Arrays.equals(tabAt0(current), available)) {
+            return; // 没有变化, 保留权重缓存
+        }
+        array = new Object[] { available, null, groups };
     }
 
     private void setWeightArray(String directory, Object weightArray) {
@@ -103,7 +160,7 @@ public class CopyOnWriteGroupList {
     }
 
     public int size() {
-        return tabAt0(array).length;
+        return tabAt2(array).length;
     }
 
     public boolean isEmpty() {
@@ -111,22 +168,22 @@ public class CopyOnWriteGroupList {
     }
 
     public boolean contains(JChannelGroup o) {
-        JChannelGroup[] elements = tabAt0(array);
+        JChannelGroup[] elements = tabAt2(array);
         return indexOf(o, elements, 0, elements.length) >= 0;
     }
 
     public int indexOf(JChannelGroup o) {
-        JChannelGroup[] elements = tabAt0(array);
+        JChannelGroup[] elements = tabAt2(array);
         return indexOf(o, elements, 0, elements.length);
     }
 
     public int indexOf(JChannelGroup o, int index) {
-        JChannelGroup[] elements = tabAt0(array);
+        JChannelGroup[] elements = tabAt2(array);
         return indexOf(o, elements, index, elements.length);
     }
 
     public JChannelGroup[] toArray() {
-        JChannelGroup[] elements = tabAt0(array);
+        JChannelGroup[] elements = tabAt2(array);
         return Arrays.copyOf(elements, elements.length);
     }
 
@@ -135,7 +192,7 @@ public class CopyOnWriteGroupList {
     }
 
     public JChannelGroup get(int index) {
-        return get(tabAt0(array), index);
+        return get(tabAt2(array), index);
     }
 
     /**
@@ -152,7 +209,7 @@ public class CopyOnWriteGroupList {
      * @return {@code true} if this list contained the specified element
      */
     public boolean remove(JChannelGroup o) {
-        JChannelGroup[] snapshot = tabAt0(array);
+        JChannelGroup[] snapshot = tabAt2(array);
         int index = indexOf(o, snapshot, 0, snapshot.length);
         return (index >= 0) && remove(o, snapshot, index);
     }
@@ -165,7 +222,7 @@ public class CopyOnWriteGroupList {
         final ReentrantLock lock = this.lock;
         lock.lock();
         try {
-            JChannelGroup[] current = tabAt0(array);
+            JChannelGroup[] current = tabAt2(array);
             int len = current.length;
             if (snapshot != current) findIndex: {
                 int prefix = Math.min(index, len);
@@ -189,7 +246,7 @@ public class CopyOnWriteGroupList {
             JChannelGroup[] newElements = new JChannelGroup[len - 1];
             System.arraycopy(current, 0, newElements, 0, index);
             System.arraycopy(current, index + 1, newElements, index, len - index - 1);
-            setArray(newElements, null);
+            setGroups(newElements);
             parent.decrementRefCount(o); // reference count -1
             return true;
         } finally {
@@ -204,7 +261,7 @@ public class CopyOnWriteGroupList {
      * @return {@code true} if the element was added
      */
     public boolean addIfAbsent(JChannelGroup o) {
-        JChannelGroup[] snapshot = tabAt0(array);
+        JChannelGroup[] snapshot = tabAt2(array);
         return indexOf(o, snapshot, 0, snapshot.length) < 0 && addIfAbsent(o, snapshot);
     }
 
@@ -216,7 +273,7 @@ public class CopyOnWriteGroupList {
         final ReentrantLock lock = this.lock;
         lock.lock();
         try {
-            JChannelGroup[] current = tabAt0(array);
+            JChannelGroup[] current = tabAt2(array);
             int len = current.length;
             if (snapshot != current) {
                 // optimize for lost race to another addXXX operation
@@ -232,7 +289,7 @@ public class CopyOnWriteGroupList {
             }
             JChannelGroup[] newElements = Arrays.copyOf(current, len + 1);
             newElements[len] = o;
-            setArray(newElements, null);
+            setGroups(newElements);
             parent.incrementRefCount(o); // reference count +1
             return true;
         } finally {
@@ -241,7 +298,7 @@ public class CopyOnWriteGroupList {
     }
 
     public boolean containsAll(Collection<? extends JChannelGroup> c) {
-        JChannelGroup[] elements = tabAt0(array);
+        JChannelGroup[] elements = tabAt2(array);
         int len = elements.length;
         for (JChannelGroup e : c) {
             if (indexOf(e, elements, 0, len) < 0) {
@@ -263,7 +320,7 @@ public class CopyOnWriteGroupList {
 
     @Override
     public String toString() {
-        return Arrays.toString(tabAt0(array));
+        return Arrays.toString(tabAt2(array));
     }
 
     @Override
@@ -277,8 +334,8 @@ public class CopyOnWriteGroupList {
 
         CopyOnWriteGroupList other = (CopyOnWriteGroupList) (o);
 
-        JChannelGroup[] elements = tabAt0(array);
-        JChannelGroup[] otherElements = tabAt0(other.array);
+        JChannelGroup[] elements = tabAt2(array);
+        JChannelGroup[] otherElements = tabAt2(other.array);
         int len = elements.length;
         int otherLen = otherElements.length;
 
@@ -298,7 +355,7 @@ public class CopyOnWriteGroupList {
     @Override
     public int hashCode() {
         int hashCode = 1;
-        JChannelGroup[] elements = tabAt0(array);
+        JChannelGroup[] elements = tabAt2(array);
         for (int i = 0, len = elements.length; i < len; i++) {
             JChannelGroup o = elements[i];
             hashCode = 31 * hashCode + (o == null ? 0 : o.hashCode());
@@ -331,6 +388,10 @@ public class CopyOnWriteGroupList {
         return (JChannelGroup[]) tabAt(array, 0);
     }
 
+    private static JChannelGroup[] tabAt2(Object[] array) {
+        return (JChannelGroup[]) tabAt(array, 2);
+    }
+
     @SuppressWarnings("unchecked")
     private static Map<String, Object> tabAt1(Object[] array) {
         return (Map<String, Object>) tabAt(array, 1);
@@ -17,6 +17,7 @@ package org.jupiter.transport.channel;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jupiter.common.util.Maps;
@@ -34,6 +35,7 @@ public class DirectoryJChannelGroup {
     private final ConcurrentMap<String, CopyOnWriteGroupList> groups = Maps.newConcurrentMap();
     // 对应服务节点(group)的引用计数
     private final GroupRefCounterMap groupRefCounter = new GroupRefCounterMap();
+    private final CopyOnWriteArrayList<GroupListener> listeners = new CopyOnWriteArrayList<>();
 
     public CopyOnWriteGroupList find(Directory directory) {
         String _directory = directory.directoryString();
@@ -48,6 +50,13 @@ public class DirectoryJChannelGroup {
         return groupList;
     }
 
+    /**
+     * 添加group的监听器, group第一次被任意服务引用以及不再被任何服务引用时回调
+     */
+    public void addListener(GroupListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
     /**
      * 获取指定group的引用计数
      */
@@ -63,7 +72,13 @@ public class DirectoryJChannelGroup {
      * 指定group的引用计数 +1
      */
     public int incrementRefCount(JChannelGroup group) {
-        return groupRefCounter.getOrCreate(group).incrementAndGet();
+        int count = groupRefCounter.getOrCreate(group).incrementAndGet();
+        if (count == 1) {
+            for (GroupListener l : listeners) {
+                l.onAdded(group);
+            }
+        }
+        return count;
     }
 
     /**
@@ -78,10 +93,20 @@ public class DirectoryJChannelGroup {
         if (count == 0) {
             // get与remove并不是原子操作, 但在当前场景是可接受的
             groupRefCounter.remove(group);
+            for (GroupListener l : listeners) {
+                l.onRemoved(group);
+            }
         }
         return count;
     }
 
+    public interface GroupListener {
+
+        void onAdded(JChannelGroup group);
+
+        void onRemoved(JChannelGroup group);
+    }
+
     static class GroupRefCounterMap extends ConcurrentHashMap<JChannelGroup, AtomicInteger> {
 
         private static final long serialVersionUID = 6590976614405397299L;
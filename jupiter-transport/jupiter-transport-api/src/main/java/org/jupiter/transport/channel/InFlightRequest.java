@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.channel;
+
+/**
+ * A request which was sent (or is going to be sent) on a {@link JChannel}
+ * and is waiting for its response, see {@link InFlightTable}.
+ *
+ * jupiter
+ * org.jupiter.transport.channel
+ *
+ * @author jiachun.fjc
+ */
+public interface InFlightRequest {
+
+    /**
+     * Returns the invoke id of this request.
+     */
+    long invokeId();
+
+    /**
+     * Be called when the owner {@link JChannel} goes inactive before the
+     * response was received.
+     */
+    void onChannelInactive(JChannel channel);
+}
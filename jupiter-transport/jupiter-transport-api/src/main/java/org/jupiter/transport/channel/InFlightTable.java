@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.channel;
+
+import java.util.List;
+
+import org.jupiter.common.util.JConstants;
+import org.jupiter.common.util.Lists;
+import org.jupiter.common.util.Pow2;
+import org.jupiter.common.util.StackTraceUtil;
+import org.jupiter.common.util.SystemPropertyUtil;
+import org.jupiter.common.util.collection.LongObjectHashMap;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+
+/**
+ * 每个 {@link JChannel} 独享一个 {@link InFlightTable}, 用于映射 <invokeId, request> 直到response返回/超时/连接断开.
+ *
+ * 以invokeId的低位分段(segment), 每个segment内部是一个开放寻址的 {@link LongObjectHashMap}, key为invokeId右移
+ * 掉段索引后的剩余位, 这样既避免了全局map的竞争, 也不需要为每次调用分配链表节点.
+ *
+ * invokeId由 {@link org.jupiter.common.util.LongSequence} 生成, 每个线程预先申请一段连续的区间, 所以低位分布均匀.
+ *
+ * 每个segment在锁内维护自己的在途请求计数(volatile写, 不共享缓存行), {@link #size()} 无锁读取各segment的计数求和,
+ * segment数量很少(默认为CPU核数), 选择channel时直接使用, 结果是近似值.
+ *
+ * jupiter
+ * org.jupiter.transport.channel
+ *
+ * @author jiachun.fjc
+ */
+public class InFlightTable {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(InFlightTable.class);
+
+    private static final int SEGMENT_COUNT = Pow2.roundToPowerOfTwo(
+            SystemPropertyUtil.getInt("jupiter.io.channel.in_flight.segments", JConstants.AVAILABLE_PROCESSORS));
+    private static final int SEGMENT_MASK = SEGMENT_COUNT - 1;
+    private static final int SEGMENT_SHIFT = Integer.numberOfTrailingZeros(SEGMENT_COUNT);
+    private static final int SEGMENT_INITIAL_CAPACITY =
+            SystemPropertyUtil.getInt("jupiter.io.channel.in_flight.segment_initial_capacity", 16);
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    // 连接断开后不再接受新的请求
+    private volatile boolean closed = false;
+
+    public InFlightTable() {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Registers an in-flight request, returns {@code false} if the table
+     * was already closed (the owner channel is inactive).
+     */
+    public boolean put(InFlightRequest request) {
+        long invokeId = request.invokeId();
+        return segmentFor(invokeId).put(invokeId >>> SEGMENT_SHIFT, request);
+    }
+
+    /**
+     * Removes and returns the in-flight request by invokeId, returns
+     * {@code null} if it is absent (already completed or timeout).
+     */
+    public InFlightRequest remove(long invokeId) {
+        return segmentFor(invokeId).remove(invokeId >>> SEGMENT_SHIFT);
+    }
+
+    /**
+     * Returns the number of in-flight requests.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment s : segments) {
+            size += s.size;
+        }
+        return size;
+    }
+
+    /**
+     * Closes this table and notifies all of the in-flight requests that
+     * the owner channel has gone inactive.
+     */
+    public void close(JChannel channel) {
+        closed = true;
+
+        List<InFlightRequest> requests = Lists.newArrayList();
+        for (Segment s : segments) {
+            s.drainTo(requests);
+        }
+
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        if (logger.isWarnEnabled()) {
+            logger.warn("{} in-flight requests failed since {} is inactive.", requests.size(), channel);
+        }
+
+        for (InFlightRequest r : requests) {
+            try {
+                r.onChannelInactive(channel);
+            } catch (Throwable t) {
+                logger.error("Notify in-flight request {} failed on {}, {}.", r, channel, StackTraceUtil.stackTrace(t));
+            }
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private Segment segmentFor(long invokeId) {
+        return segments[(int) invokeId & SEGMENT_MASK];
+    }
+
+    private final class Segment {
+
+        private final LongObjectHashMap<InFlightRequest> requests = new LongObjectHashMap<>(SEGMENT_INITIAL_CAPACITY);
+
+        // 只在锁内写, size()无锁读
+        private volatile int size;
+
+        synchronized boolean put(long key, InFlightRequest request) {
+            if (closed) {
+                return false;
+            }
+            requests.put(key, request);
+            size = requests.size();
+            return true;
+        }
+
+        synchronized InFlightRequest remove(long key) {
+            InFlightRequest request = requests.remove(key);
+            if (request != null) {
+                size = requests.size();
+            }
+            return request;
+        }
+
+        synchronized void drainTo(List<InFlightRequest> list) {
+            if (requests.isEmpty()) {
+                return;
+            }
+            list.addAll(requests.values());
+            requests.clear();
+            size = 0;
+        }
+    }
+}
@@ -128,4 +128,16 @@ public interface JChannel {
      * Allocate a {@link OutputBuf}.
      */
     OutputBuf allocOutputBuf();
+
+    /**
+     * Returns the table of the requests which are waiting for response
+     * on this channel.
+     */
+    InFlightTable inFlightTable();
+
+    /**
+     * Returns the table of the method ids assigned by the remote peer
+     * on this channel.
+     */
+    MethodIdTable methodIdTable();
 }
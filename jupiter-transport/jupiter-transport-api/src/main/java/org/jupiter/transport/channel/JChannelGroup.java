@@ -142,4 +142,30 @@ public interface JChannelGroup {
      * Deadline millis.
      */
     long deadlineMillis();
+
+    /**
+     * Records the latency of a completed request on this group.
+     */
+    void recordLatency(long latencyNanos);
+
+    /**
+     * Returns the time-decayed moving average of request latency, in nanoseconds,
+     * or {@code 0} if there is no sample yet.
+     */
+    long latency();
+
+    /**
+     * Returns the number of in-flight requests on all channels of this group.
+     */
+    int inFlight();
+
+    /**
+     * Returns the circuit breaker of this group.
+     */
+    CircuitBreaker circuitBreaker();
+
+    /**
+     * Returns the adaptive concurrency limiter of this group.
+     */
+    ConcurrencyLimiter concurrencyLimiter();
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.channel;
+
+import java.util.concurrent.ConcurrentMap;
+
+import org.jupiter.common.util.Maps;
+import org.jupiter.transport.Directory;
+
+/**
+ * 每个 {@link JChannel} 独享一个 {@link MethodIdTable}, 缓存provider为 <directory, method> 分配的方法id.
+ *
+ * 方法id只在分配它的provider进程内有效, 所以必须跟随连接, 重连之后重新学习.
+ * 同一连接上一个方法的第一次调用携带完整的service/method字符串, 由provider在响应中返回分配的id,
+ * 之后的请求只携带id和参数.
+ *
+ * jupiter
+ * org.jupiter.transport.channel
+ *
+ * @author jiachun.fjc
+ */
+public class MethodIdTable {
+
+    public static final int NONE = 0;
+
+    // directory --> (methodName --> id)
+    private final ConcurrentMap<String, ConcurrentMap<String, Integer>> ids = Maps.newConcurrentMap();
+
+    /**
+     * Returns the method id assigned by the remote peer, or {@link #NONE}
+     * if it is still unknown.
+     */
+    public int get(Directory directory, String methodName) {
+        ConcurrentMap<String, Integer> methods = ids.get(directory.directoryString());
+        if (methods == null) {
+            return NONE;
+        }
+        Integer id = methods.get(methodName);
+        return id == null ? NONE : id;
+    }
+
+    public void put(Directory directory, String methodName, int id) {
+        String key = directory.directoryString();
+        ConcurrentMap<String, Integer> methods = ids.get(key);
+        if (methods == null) {
+            ConcurrentMap<String, Integer> newMethods = Maps.newConcurrentMap();
+            methods = ids.putIfAbsent(key, newMethods);
+            if (methods == null) {
+                methods = newMethods;
+            }
+        }
+        methods.put(methodName, id);
+    }
+
+    public void clear() {
+        ids.clear();
+    }
+}
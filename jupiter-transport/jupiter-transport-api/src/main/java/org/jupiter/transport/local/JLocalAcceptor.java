@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.local;
+
+import java.net.SocketAddress;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.jupiter.common.util.Maps;
+import org.jupiter.common.util.NetUtil;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+import org.jupiter.transport.JAcceptor;
+import org.jupiter.transport.JConfigGroup;
+import org.jupiter.transport.UnresolvedAddress;
+import org.jupiter.transport.exception.ConnectFailedException;
+import org.jupiter.transport.processor.ProviderProcessor;
+
+/**
+ * 进程内的acceptor, 以端口号注册在当前JVM中, 同一进程内的 {@link JLocalConnector} 连接时
+ * 不经过网络, 直接将请求交给 {@link ProviderProcessor}.
+ *
+ * 通常与一个网络acceptor绑定相同的端口并共享同一个 {@link ProviderProcessor},
+ * 这样registry中发布的地址对于进程内外的consumer都是有效的.
+ *
+ * jupiter
+ * org.jupiter.transport.local
+ *
+ * @author jiachun.fjc
+ */
+public class JLocalAcceptor implements JAcceptor {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(JLocalAcceptor.class);
+
+    // 当前JVM中已绑定的local acceptors, key为端口号
+    private static final ConcurrentMap<Integer, JLocalAcceptor> boundAcceptors = Maps.newConcurrentMap();
+
+    private final int port;
+    private final LocalAddress localAddress;
+    private final Set<LocalChannel> channels = Collections.newSetFromMap(Maps.newConcurrentMap());
+    private final CountDownLatch unbindLatch = new CountDownLatch(1);
+
+    private ProviderProcessor processor;
+
+    public JLocalAcceptor(int port) {
+        this.port = port;
+        this.localAddress = new LocalAddress(String.valueOf(port));
+    }
+
+    /**
+     * Returns {@code true} if the address is a local address and there is
+     * a {@link JLocalAcceptor} bound on its port in current JVM.
+     */
+    public static boolean isBound(UnresolvedAddress address) {
+        return boundAcceptors.containsKey(address.getPort()) && NetUtil.isLocalAddress(address.getHost());
+    }
+
+    static LocalChannel connect(UnresolvedAddress address, String id, JLocalConnector connector) {
+        JLocalAcceptor acceptor = boundAcceptors.get(address.getPort());
+        if (acceptor == null) {
+            throw new ConnectFailedException("Connects to [" + address + "] fails, no local acceptor bound");
+        }
+
+        LocalChannel channel = LocalChannel.newPair(id, connector, acceptor);
+        LocalChannel peer = channel.peer();
+        acceptor.channels.add(peer);
+        peer.onClose(() -> acceptor.channels.remove(peer));
+        if (boundAcceptors.get(address.getPort()) != acceptor) { // unbound concurrently
+            channel.close();
+            throw new ConnectFailedException("Connects to [" + address + "] fails, no local acceptor bound");
+        }
+
+        logger.info("Connects with {} as the {}th channel.", peer, acceptor.channels.size());
+
+        return channel;
+    }
+
+    @Override
+    public Protocol protocol() {
+        return Protocol.LOCAL;
+    }
+
+    @Override
+    public SocketAddress localAddress() {
+        return localAddress;
+    }
+
+    @Override
+    public int boundPort() {
+        return port;
+    }
+
+    @Override
+    public JConfigGroup configGroup() {
+        return LocalConfig.GROUP;
+    }
+
+    @Override
+    public ProviderProcessor processor() {
+        return processor;
+    }
+
+    @Override
+    public void withProcessor(ProviderProcessor processor) {
+        this.processor = processor;
+    }
+
+    @Override
+    public void start() throws InterruptedException {
+        start(true);
+    }
+
+    /**
+     * Binds this acceptor to its port in current JVM.
+     *
+     * @throws IllegalStateException if another local acceptor was already bound on the port
+     */
+    @Override
+    public void start(boolean sync) throws InterruptedException {
+        JLocalAcceptor bound = boundAcceptors.putIfAbsent(port, this);
+        if (bound != null && bound != this) {
+            throw new IllegalStateException("port " + port + " was already bound by " + bound);
+        }
+
+        logger.info("Jupiter local acceptor bound on port {}.", port);
+
+        if (sync) {
+            // wait until the acceptor is unbound.
+            unbindLatch.await();
+        }
+    }
+
+    /**
+     * Unbinds this acceptor and closes all of the accepted channels, but
+     * does not shutdown the {@link ProviderProcessor} which may be shared
+     * with another acceptor.
+     */
+    public void unbind() {
+        boundAcceptors.remove(port, this);
+        for (LocalChannel ch : channels) {
+            ch.close();
+        }
+        unbindLatch.countDown();
+    }
+
+    @Override
+    public void shutdownGracefully() {
+        unbind();
+        if (processor != null) {
+            processor.shutdown();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "JLocalAcceptor{" +
+                "port=" + port +
+                ", channels=" + channels.size() +
+                '}';
+    }
+}
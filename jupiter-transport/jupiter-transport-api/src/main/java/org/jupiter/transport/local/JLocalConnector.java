@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.local;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.jupiter.common.util.IntSequence;
+import org.jupiter.transport.AbstractJConnector;
+import org.jupiter.transport.JConfig;
+import org.jupiter.transport.JConnection;
+import org.jupiter.transport.UnresolvedAddress;
+import org.jupiter.transport.channel.JChannelGroup;
+import org.jupiter.transport.processor.ConsumerProcessor;
+
+/**
+ * 进程内的connector, 只能连接到当前JVM中已经绑定的 {@link JLocalAcceptor}.
+ *
+ * 连接是同步建立的并且不会断线重连, acceptor解绑时连接随之关闭.
+ *
+ * jupiter
+ * org.jupiter.transport.local
+ *
+ * @author jiachun.fjc
+ */
+public class JLocalConnector extends AbstractJConnector {
+
+    private static final IntSequence idSequence = new IntSequence();
+
+    private final List<LocalChannel> channels = new CopyOnWriteArrayList<>();
+
+    private ConsumerProcessor processor;
+
+    @Override
+    public Protocol protocol() {
+        return Protocol.LOCAL;
+    }
+
+    @Override
+    public JConfig config() {
+        return LocalConfig.INSTANCE;
+    }
+
+    @Override
+    public ConsumerProcessor processor() {
+        return processor;
+    }
+
+    @Override
+    public void withProcessor(ConsumerProcessor processor) {
+        this.processor = processor;
+    }
+
+    @Override
+    public JConnection connect(UnresolvedAddress address) {
+        return connect(address, false);
+    }
+
+    /**
+     * 连接总是同步建立的, {@code async} 参数被忽略.
+     */
+    @Override
+    public JConnection connect(UnresolvedAddress address, boolean async) {
+        LocalChannel channel = JLocalAcceptor.connect(address, "local-" + idSequence.next(), this);
+
+        channels.add(channel);
+        channel.onClose(() -> channels.remove(channel));
+        group(address).add(channel);
+
+        return new JConnection(address) {
+
+            @Override
+            public void setReconnect(boolean reconnect) {
+                // local connection never reconnects
+            }
+
+            @Override
+            public void operationComplete(OperationListener operationListener) {
+                operationListener.complete(channel.isActive());
+            }
+        };
+    }
+
+    @Override
+    protected JChannelGroup channelGroup(UnresolvedAddress address) {
+        return new LocalChannelGroup(address);
+    }
+
+    /**
+     * Closes all of the channels, but does not shutdown the {@link ConsumerProcessor}
+     * which may be shared with another connector.
+     */
+    public void disconnectAll() {
+        for (LocalChannel ch : channels) {
+            ch.close();
+        }
+    }
+
+    @Override
+    public void shutdownGracefully() {
+        disconnectAll();
+        if (processor != null) {
+            processor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.local;
+
+import java.net.SocketAddress;
+
+/**
+ * Local transport 的地址, 只用于标识 {@link LocalChannel} 的两端.
+ *
+ * jupiter
+ * org.jupiter.transport.local
+ *
+ * @author jiachun.fjc
+ */
+public final class LocalAddress extends SocketAddress {
+
+    private static final long serialVersionUID = -3396478462457418312L;
+
+    private final String id;
+
+    public LocalAddress(String id) {
+        this.id = id;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        LocalAddress that = (LocalAddress) o;
+
+        return id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "local:" + id;
+    }
+}
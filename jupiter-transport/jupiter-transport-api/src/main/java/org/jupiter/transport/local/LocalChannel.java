@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.local;
+
+import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.jupiter.common.util.DeepCopier;
+import org.jupiter.common.util.StackTraceUtil;
+import org.jupiter.common.util.SystemClock;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+import org.jupiter.serialization.io.OutputBuf;
+import org.jupiter.transport.CodecConfig;
+import org.jupiter.transport.Status;
+import org.jupiter.transport.channel.InFlightTable;
+import org.jupiter.transport.channel.JChannel;
+import org.jupiter.transport.channel.JFutureListener;
+import org.jupiter.transport.channel.MethodIdTable;
+import org.jupiter.transport.payload.HeapBuf;
+import org.jupiter.transport.payload.JRequestPayload;
+import org.jupiter.transport.payload.JResponsePayload;
+import org.jupiter.transport.payload.PayloadHolder;
+import org.jupiter.transport.processor.ConsumerProcessor;
+import org.jupiter.transport.processor.ProviderProcessor;
+
+/**
+ * 进程内的 {@link JChannel}, 总是成对创建, 一端属于 {@link JLocalConnector}, 另一端属于 {@link JLocalAcceptor}.
+ *
+ * 写入的 {@link JRequestPayload}/{@link JResponsePayload} 在调用线程中直接交给对端的processor, 没有IO线程,
+ * 也没有协议的编解码; 消息体可以是序列化后的bytes/buf, 也可以是跳过序列化后深拷贝的对象,
+ * 见 {@link #writeObject(JChannel, PayloadHolder, byte, Object)}.
+ *
+ * jupiter
+ * org.jupiter.transport.local
+ *
+ * @author jiachun.fjc
+ */
+public class LocalChannel implements JChannel {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(LocalChannel.class);
+
+    private static final AtomicIntegerFieldUpdater<LocalChannel> closedUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(LocalChannel.class, "closed");
+
+    private final String id;
+    private final SocketAddress localAddress;
+    private final SocketAddress remoteAddress;
+    // consumer端的channel持有connector, provider端的channel持有acceptor
+    private final JLocalConnector connector;
+    private final JLocalAcceptor acceptor;
+
+    private final InFlightTable inFlightTable = new InFlightTable();
+    private final MethodIdTable methodIdTable = new MethodIdTable();
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+
+    private LocalChannel peer;
+
+    @SuppressWarnings("unused")
+    private volatile int closed = 0; // 0: false, 1: true
+
+    /**
+     * Creates a pair of connected channels, returns the consumer side one.
+     */
+    static LocalChannel newPair(String id, JLocalConnector connector, JLocalAcceptor acceptor) {
+        LocalAddress clientAddress = new LocalAddress(id);
+        LocalAddress serverAddress = new LocalAddress(String.valueOf(acceptor.boundPort()));
+
+        LocalChannel client = new LocalChannel(id, clientAddress, serverAddress, connector, null);
+        LocalChannel server = new LocalChannel(id, serverAddress, clientAddress, null, acceptor);
+        client.peer = server;
+        server.peer = client;
+        return client;
+    }
+
+    private LocalChannel(String id, SocketAddress localAddress, SocketAddress remoteAddress,
+                         JLocalConnector connector, JLocalAcceptor acceptor) {
+        this.id = id;
+        this.localAddress = localAddress;
+        this.remoteAddress = remoteAddress;
+        this.connector = connector;
+        this.acceptor = acceptor;
+    }
+
+    /**
+     * 如果是 {@link LocalChannel} 并且开启了跳过序列化({@code jupiter.io.local.skip_serialization}),
+     * 将消息体对象深拷贝后放入 {@code payload}, 返回 {@code false} 时调用方需要自己序列化.
+     */
+    public static boolean writeObject(JChannel channel, PayloadHolder payload, byte serializerCode, Object obj) {
+        if (!(channel instanceof LocalChannel) || !CodecConfig.isLocalSkipSerialization()) {
+            return false;
+        }
+
+        Object copy;
+        try {
+            copy = DeepCopier.copy(obj);
+        } catch (UnsupportedOperationException e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Fall back to serialization on {}, {}.", channel, e.getMessage());
+            }
+            payload.object(serializerCode, null);
+            return false;
+        }
+        payload.object(serializerCode, copy);
+        return true;
+    }
+
+    public LocalChannel peer() {
+        return peer;
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public boolean isActive() {
+        return closed == 0;
+    }
+
+    @Override
+    public boolean inIoThread() {
+        return false;
+    }
+
+    @Override
+    public SocketAddress localAddress() {
+        return localAddress;
+    }
+
+    @Override
+    public SocketAddress remoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public boolean isWritable() {
+        return isActive();
+    }
+
+    @Override
+    public boolean isMarkedReconnect() {
+        return false;
+    }
+
+    @Override
+    public boolean isAutoRead() {
+        return true;
+    }
+
+    @Override
+    public void setAutoRead(boolean autoRead) {
+        // no-op
+    }
+
+    @Override
+    public JChannel close() {
+        if (closedUpdater.compareAndSet(this, 0, 1)) {
+            logger.warn("Disconnects {}.", this);
+
+            peer.close();
+            inFlightTable.close(this);
+            for (Runnable l : closeListeners) {
+                l.run();
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public JChannel close(JFutureListener<JChannel> listener) {
+        close();
+        try {
+            listener.operationSuccess(this);
+        } catch (Throwable t) {
+            logger.error("An exception was caught: {}, on {} #close().", StackTraceUtil.stackTrace(t), this);
+        }
+        return this;
+    }
+
+    @Override
+    public JChannel write(Object msg) {
+        if (isActive()) {
+            peer.received(msg);
+        }
+        return this;
+    }
+
+    @Override
+    public JChannel write(Object msg, JFutureListener<JChannel> listener) {
+        try {
+            if (isActive()) {
+                peer.received(msg);
+                listener.operationSuccess(this);
+            } else {
+                listener.operationFailure(this, new ClosedChannelException());
+            }
+        } catch (Throwable t) {
+            logger.error("An exception was caught: {}, on {} #write().", StackTraceUtil.stackTrace(t), this);
+        }
+        return this;
+    }
+
+    /**
+     * 没有IO线程, 直接在当前线程执行.
+     */
+    @Override
+    public void addTask(Runnable task) {
+        task.run();
+    }
+
+    @Override
+    public OutputBuf allocOutputBuf() {
+        return new HeapBuf();
+    }
+
+    @Override
+    public InFlightTable inFlightTable() {
+        return inFlightTable;
+    }
+
+    @Override
+    public MethodIdTable methodIdTable() {
+        return methodIdTable;
+    }
+
+    void onClose(Runnable listener) {
+        closeListeners.add(listener);
+        if (!isActive()) {
+            listener.run();
+        }
+    }
+
+    private void received(Object msg) {
+        if (msg instanceof JRequestPayload) {
+            ProviderProcessor processor = acceptor.processor();
+            JRequestPayload request = inbound((JRequestPayload) msg);
+            try {
+                processor.handleRequest(this, request);
+            } catch (Throwable t) {
+                processor.handleException(this, request, Status.SERVER_ERROR, t);
+            }
+        } else if (msg instanceof JResponsePayload) {
+            ConsumerProcessor processor = connector.processor();
+            try {
+                processor.handleResponse(this, inbound((JResponsePayload) msg));
+            } catch (Throwable t) {
+                logger.error("An exception was caught: {}, on {} #received().", StackTraceUtil.stackTrace(t), this);
+            }
+        } else {
+            logger.warn("Unexpected message type received: {}, channel: {}.", msg.getClass(), this);
+        }
+    }
+
+    // 写入方在写成功之后可能会clear/复用payload(比如broadcast), 所以交给对端的必须是一个新的payload
+    private static JRequestPayload inbound(JRequestPayload request) {
+        JRequestPayload copy = new JRequestPayload(request.invokeId());
+        copy.timestamp(SystemClock.millisClock().now());
+        copy.deadline(request.deadline());
+        copy.priority(request.priority());
+        transfer(request, copy);
+        return copy;
+    }
+
+    private static JResponsePayload inbound(JResponsePayload response) {
+        JResponsePayload copy = new JResponsePayload(response.id());
+        copy.status(response.status());
+        transfer(response, copy);
+        return copy;
+    }
+
+    private static void transfer(PayloadHolder src, PayloadHolder dst) {
+        byte s_code = src.serializerCode();
+        Object object = src.object();
+        OutputBuf outputBuf = src.outputBuf();
+        if (object != null) {
+            dst.object(s_code, object);
+        } else if (outputBuf != null) {
+            // HeapBuf可以直接作为InputBuf读取
+            dst.inputBuf(s_code, (HeapBuf) outputBuf);
+        } else {
+            dst.bytes(s_code, src.bytes());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LocalChannel{" +
+                "id='" + id + '\'' +
+                ", localAddress=" + localAddress +
+                ", remoteAddress=" + remoteAddress +
+                ", active=" + isActive() +
+                '}';
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.local;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.jupiter.transport.JConfig;
+import org.jupiter.transport.JConfigGroup;
+import org.jupiter.transport.JOption;
+
+/**
+ * Local transport 没有任何可配置的 {@link JOption}.
+ *
+ * jupiter
+ * org.jupiter.transport.local
+ *
+ * @author jiachun.fjc
+ */
+final class LocalConfig implements JConfig {
+
+    static final LocalConfig INSTANCE = new LocalConfig();
+
+    static final JConfigGroup GROUP = new JConfigGroup() {
+
+        @Override
+        public JConfig parent() {
+            return INSTANCE;
+        }
+
+        @Override
+        public JConfig child() {
+            return INSTANCE;
+        }
+    };
+
+    @Override
+    public List<JOption<?>> getOptions() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public <T> T getOption(JOption<T> option) {
+        return null;
+    }
+
+    @Override
+    public <T> boolean setOption(JOption<T> option, T value) {
+        return false;
+    }
+
+    private LocalConfig() {}
+}
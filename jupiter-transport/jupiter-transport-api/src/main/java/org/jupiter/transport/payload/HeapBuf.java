@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.payload;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.jupiter.serialization.io.InputBuf;
+import org.jupiter.serialization.io.OutputBuf;
+
+/**
+ * 基于heap {@link ByteBuffer} 的 {@link OutputBuf}, 写完之后可以直接作为 {@link InputBuf} 读取, 不需要再拷贝一次.
+ *
+ * 用于没有 {@code ByteBuf} 的transport(local, shm).
+ *
+ * jupiter
+ * org.jupiter.transport.payload
+ *
+ * @author jiachun.fjc
+ */
+public final class HeapBuf implements OutputBuf, InputBuf {
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 256;
+
+    private ByteBuffer nioByteBuffer;
+
+    public HeapBuf() {
+        nioByteBuffer = ByteBuffer.allocate(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Wraps the first {@code size} bytes of the given array as a readable buf.
+     */
+    public HeapBuf(byte[] array, int size) {
+        nioByteBuffer = ByteBuffer.wrap(array);
+        nioByteBuffer.position(size);
+    }
+
+    /**
+     * Returns the backing array, the readable bytes are {@code [0, size())}.
+     */
+    public byte[] array() {
+        return nioByteBuffer.array();
+    }
+
+    @Override
+    public OutputStream outputStream() {
+        return new OutputStream() {
+
+            @Override
+            public void write(int b) {
+                ensureWritable(1).put((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                ensureWritable(len).put(b, off, len);
+            }
+        };
+    }
+
+    @Override
+    public ByteBuffer nioByteBuffer(int minWritableBytes) {
+        if (minWritableBytes < 0) {
+            minWritableBytes = nioByteBuffer.remaining();
+        }
+        return ensureWritable(minWritableBytes);
+    }
+
+    @Override
+    public InputStream inputStream() {
+        return new ByteArrayInputStream(nioByteBuffer.array(), 0, nioByteBuffer.position());
+    }
+
+    @Override
+    public ByteBuffer nioByteBuffer() {
+        return ByteBuffer.wrap(nioByteBuffer.array(), 0, nioByteBuffer.position());
+    }
+
+    @Override
+    public int size() {
+        return nioByteBuffer.position();
+    }
+
+    @Override
+    public boolean hasMemoryAddress() {
+        return false;
+    }
+
+    @Override
+    public Object backingObject() {
+        return nioByteBuffer;
+    }
+
+    @Override
+    public boolean release() {
+        return true; // heap buffer, nothing to release
+    }
+
+    private ByteBuffer ensureWritable(int minWritableBytes) {
+        ByteBuffer buf = nioByteBuffer;
+        if (buf.remaining() >= minWritableBytes) {
+            return buf;
+        }
+
+        int position = buf.position();
+        int newCapacity = Math.max(buf.capacity() << 1, position + minWritableBytes);
+        ByteBuffer newBuf = ByteBuffer.allocate(newCapacity);
+        newBuf.put(buf.array(), 0, position);
+        return nioByteBuffer = newBuf;
+    }
+}
@@ -16,6 +16,7 @@
 package org.jupiter.transport.payload;
 
 import org.jupiter.common.util.LongSequence;
+import org.jupiter.transport.JProtocolHeader;
 
 /**
  * 请求的消息体bytes/stream载体, 避免在IO线程中序列化/反序列化, jupiter-transport这一层不关注消息体的对象结构.
@@ -30,19 +31,26 @@ public class JRequestPayload extends PayloadHolder {
     // 请求id自增器, 用于映射 <id, request, response> 三元组
     //
     // id在 <request, response> 生命周期内保证进程内唯一即可, 在Id对应的Response被处理完成后这个id就可以再次使用了,
-    // 所以id可在 <Long.MIN_VALUE ~ Long.MAX_VALUE> 范围内从小到大循环利用, 即使溢出也是没关系的, 并且只是从理论上
-    // 才有溢出的可能, 比如一个100万qps的系统把 <0 ~ Long.MAX_VALUE> 范围内的id都使用完大概需要29万年.
+    // 所以id可在 <0 ~ 2^48 - 1> 范围内从小到大循环利用, 即使溢出也是没关系的, 比如一个100万qps的系统把
+    // <0 ~ 2^48 - 1> 范围内的id都使用完大概需要8.9年.
     //
-    // 未来jupiter可能将invokeId限制在48位, 留出高地址的16位作为扩展字段.
+    // invokeId限制在48位, 高地址的16位作为扩展字段, 详见 {@link JProtocolHeader}.
     private static final LongSequence sequence = new LongSequence();
 
     // 用于映射 <id, request, response> 三元组
     private final long invokeId;
     // jupiter-transport层会在协议解析完成后打上一个时间戳, 用于后续监控对该请求的处理时间
     private transient long timestamp;
+    // 请求的截止时间(基于 SystemClock.millisClock()), 0表示没有截止时间
+    //
+    // consumer端: 调用方设置, 编码时换算成剩余的超时时间写入协议头
+    // provider端: 协议解析完成后根据协议头中的剩余超时时间换算得到, 过期的请求可以直接丢弃
+    private transient long deadline;
+    // 请求的优先级(见 org.jupiter.transport.Priority), 通过协议头的状态位传输
+    private byte priority;
 
     public JRequestPayload() {
-        this(sequence.next());
+        this(sequence.next() & JProtocolHeader.ID_MASK);
     }
 
     public JRequestPayload(long invokeId) {
@@ -60,4 +68,37 @@ public class JRequestPayload extends PayloadHolder {
     public void timestamp(long timestamp) {
         this.timestamp = timestamp;
     }
+
+    public byte priority() {
+        return priority;
+    }
+
+    public void priority(byte priority) {
+        this.priority = priority;
+    }
+
+    public long deadline() {
+        return deadline;
+    }
+
+    public void deadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * 换算出剩余的超时时间(毫秒), 用于写入协议头.
+     *
+     * 返回0表示没有截止时间或者剩余时间超出了协议头可以表示的范围, 已经过期的请求至少返回1,
+     * 交由provider端丢弃.
+     */
+    public int timeoutBudget(long now) {
+        if (deadline == 0) {
+            return 0;
+        }
+        long budget = deadline - now;
+        if (budget > JProtocolHeader.MAX_TIMEOUT_BUDGET) {
+            return 0;
+        }
+        return budget < 1 ? 1 : (int) budget;
+    }
 }
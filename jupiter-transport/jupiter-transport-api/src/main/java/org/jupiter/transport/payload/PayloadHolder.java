@@ -41,6 +41,8 @@ public abstract class PayloadHolder {
     private byte[] bytes;
     private InputBuf inputBuf;
     private OutputBuf outputBuf;
+    // 进程内(local transport)跳过序列化时直接传递的消息体对象
+    private Object object;
 
     public byte serializerCode() {
         return serializerCode;
@@ -73,11 +75,21 @@ public abstract class PayloadHolder {
         this.outputBuf = outputBuf;
     }
 
+    public Object object() {
+        return object;
+    }
+
+    public void object(byte serializerCode, Object object) {
+        this.serializerCode = serializerCode;
+        this.object = object;
+    }
+
     // help gc
     public void clear() {
         bytes = null;
         inputBuf = null;
         outputBuf = null;
+        object = null;
     }
 
     public int size() {
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport;
+
+import org.jupiter.transport.payload.JRequestPayload;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * jupiter
+ * org.jupiter.transport
+ *
+ * @author jiachun.fjc
+ */
+public class JProtocolHeaderTest {
+
+    @Test
+    public void testId() {
+        long invokeId = JProtocolHeader.ID_MASK - 1;
+        long id = JProtocolHeader.toId(invokeId, 3000);
+        assertEquals(invokeId, JProtocolHeader.invokeId(id));
+        assertEquals(3000, JProtocolHeader.timeoutBudget(id));
+
+        id = JProtocolHeader.toId(7, JProtocolHeader.MAX_TIMEOUT_BUDGET);
+        assertEquals(7, JProtocolHeader.invokeId(id));
+        assertEquals(JProtocolHeader.MAX_TIMEOUT_BUDGET, JProtocolHeader.timeoutBudget(id));
+
+        // 旧版本consumer不携带超时时间
+        assertEquals(0, JProtocolHeader.timeoutBudget(123L));
+    }
+
+    @Test
+    public void testTimeoutBudget() {
+        JRequestPayload request = new JRequestPayload();
+        assertTrue(request.invokeId() <= JProtocolHeader.ID_MASK);
+        assertEquals(0, request.timeoutBudget(1000));
+
+        request.deadline(4000);
+        assertEquals(3000, request.timeoutBudget(1000));
+        // 已经过期
+        assertEquals(1, request.timeoutBudget(5000));
+
+        request.deadline(1000 + JProtocolHeader.MAX_TIMEOUT_BUDGET + 1);
+        assertEquals(0, request.timeoutBudget(1000));
+    }
+}
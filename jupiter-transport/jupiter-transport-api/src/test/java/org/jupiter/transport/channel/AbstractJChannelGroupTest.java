@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.channel;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import org.jupiter.serialization.io.OutputBuf;
+import org.jupiter.transport.Directory;
+import org.jupiter.transport.UnresolvedSocketAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * jupiter
+ * org.jupiter.transport.channel
+ *
+ * @author jiachun.fjc
+ */
+public class AbstractJChannelGroupTest {
+
+    @Test
+    public void testLeastInFlight() {
+        AbstractJChannelGroup group = new TestChannelGroup();
+        TestChannel busy = new TestChannel();
+        TestChannel idle = new TestChannel();
+        group.add(busy);
+        group.add(idle);
+
+        for (int i = 0; i < 10; i++) {
+            busy.inFlightTable().put(new InFlightTableTest.Request(i, null));
+        }
+
+        // 只有两个连接时, 两个候选总是不同的
+        for (int i = 0; i < 100; i++) {
+            assertSame(idle, group.next());
+        }
+    }
+
+    @Test
+    public void testSkipNonWritable() {
+        AbstractJChannelGroup group = new TestChannelGroup();
+        TestChannel blocked = new TestChannel();
+        TestChannel writable = new TestChannel();
+        blocked.writable = false;
+        group.add(blocked);
+        group.add(writable);
+
+        for (int i = 0; i < 10; i++) {
+            writable.inFlightTable().put(new InFlightTableTest.Request(i, null));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertSame(writable, group.next());
+        }
+    }
+
+    @Test
+    public void testBalance() {
+        AbstractJChannelGroup group = new TestChannelGroup();
+        TestChannel[] channels = new TestChannel[4];
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = new TestChannel();
+            group.add(channels[i]);
+        }
+
+        // 每次选中之后模拟发出一个请求, 在途请求数应该保持均衡
+        for (int i = 0; i < 400; i++) {
+            group.next().inFlightTable().put(new InFlightTableTest.Request(i, null));
+        }
+        for (TestChannel ch : channels) {
+            int size = ch.inFlightTable().size();
+            assertEquals(100, size, 10);
+        }
+    }
+
+    @Test
+    public void testLatency() {
+        AbstractJChannelGroup group = new TestChannelGroup();
+        assertEquals(0, group.latency());
+
+        long now = System.nanoTime();
+        // 变慢立即生效
+        group.recordLatency(1000, now);
+        assertEquals(1000, group.latency(now));
+        group.recordLatency(100000, now);
+        assertEquals(100000, group.latency(now));
+
+        // 变快按时间衰减
+        group.recordLatency(1000, now + TimeUnit.MILLISECONDS.toNanos(100));
+        long latency = group.latency(now + TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(latency < 100000 && latency > 1000);
+
+        TestChannel channel = new TestChannel();
+        group.add(channel);
+        channel.inFlightTable().put(new InFlightTableTest.Request(1, null));
+        assertEquals(1, group.inFlight());
+    }
+
+    @Test
+    public void testLatencyDecay() {
+        AbstractJChannelGroup penalized = new TestChannelGroup();
+        AbstractJChannelGroup healthy = new TestChannelGroup();
+
+        long now = System.nanoTime();
+        // 一次超时之后负载均衡不再选择penalized, 它没有新的样本
+        penalized.recordLatency(TimeUnit.SECONDS.toNanos(3), now);
+        healthy.recordLatency(TimeUnit.MILLISECONDS.toNanos(2), now);
+        assertTrue(penalized.latency(now) > healthy.latency(now));
+
+        // 衰减时间常数默认10秒, 3秒的峰值大约经过7.3个时间常数降到2毫秒之下, 之后会重新被选中
+        for (int i = 1; i <= 80; i++) {
+            long t = now + TimeUnit.SECONDS.toNanos(i);
+            healthy.recordLatency(TimeUnit.MILLISECONDS.toNanos(2), t);
+        }
+        long later = now + TimeUnit.SECONDS.toNanos(80);
+        assertTrue(penalized.latency(later) < healthy.latency(later));
+        // healthy持续有样本, 延迟保持不变
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(2), healthy.latency(later), 1);
+    }
+
+    @Test
+    public void testGroupListener() {
+        AbstractJChannelGroup group = new TestChannelGroup();
+        assertNotSame(group.concurrencyLimiter(), new TestChannelGroup().concurrencyLimiter());
+
+        List<String> events = new ArrayList<>();
+        DirectoryJChannelGroup directoryGroup = new DirectoryJChannelGroup();
+        directoryGroup.addListener(new DirectoryJChannelGroup.GroupListener() {
+
+            @Override
+            public void onAdded(JChannelGroup g) {
+                events.add("added");
+            }
+
+            @Override
+            public void onRemoved(JChannelGroup g) {
+                events.add("removed");
+            }
+        });
+
+        CopyOnWriteGroupList service1 = directoryGroup.find(new TestDirectory("service1"));
+        CopyOnWriteGroupList service2 = directoryGroup.find(new TestDirectory("service2"));
+        service1.addIfAbsent(group);
+        service2.addIfAbsent(group);
+        service1.remove(group);
+        assertEquals(1, events.size());
+
+        // 不再被任何服务引用
+        service2.remove(group);
+        assertEquals(2, events.size());
+        assertEquals("removed", events.get(1));
+    }
+
+    static class TestDirectory extends Directory {
+
+        private final String name;
+
+        TestDirectory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getGroup() {
+            return "test";
+        }
+
+        @Override
+        public String getServiceProviderName() {
+            return name;
+        }
+
+        @Override
+        public String getVersion() {
+            return "1.0.0";
+        }
+    }
+
+    static class TestChannelGroup extends AbstractJChannelGroup {
+
+        TestChannelGroup() {
+            super(new UnresolvedSocketAddress("127.0.0.1", 18090));
+        }
+    }
+
+    static class TestChannel implements JChannel {
+
+        private final InFlightTable inFlightTable = new InFlightTable();
+        private final MethodIdTable methodIdTable = new MethodIdTable();
+
+        volatile boolean writable = true;
+
+        @Override
+        public String id() {
+            return String.valueOf(System.identityHashCode(this));
+        }
+
+        @Override
+        public boolean isActive() {
+            return true;
+        }
+
+        @Override
+        public boolean inIoThread() {
+            return false;
+        }
+
+        @Override
+        public SocketAddress localAddress() {
+            return null;
+        }
+
+        @Override
+        public SocketAddress remoteAddress() {
+            return null;
+        }
+
+        @Override
+        public boolean isWritable() {
+            return writable;
+        }
+
+        @Override
+        public boolean isMarkedReconnect() {
+            return false;
+        }
+
+        @Override
+        public boolean isAutoRead() {
+            return true;
+        }
+
+        @Override
+        public void setAutoRead(boolean autoRead) {}
+
+        @Override
+        public JChannel close() {
+            return this;
+        }
+
+        @Override
+        public JChannel close(JFutureListener<JChannel> listener) {
+            return this;
+        }
+
+        @Override
+        public JChannel write(Object msg) {
+            return this;
+        }
+
+        @Override
+        public JChannel write(Object msg, JFutureListener<JChannel> listener) {
+            return this;
+        }
+
+        @Override
+        public void addTask(Runnable task) {
+            task.run();
+        }
+
+        @Override
+        public OutputBuf allocOutputBuf() {
+            return null;
+        }
+
+        @Override
+        public InFlightTable inFlightTable() {
+            return inFlightTable;
+        }
+
+        @Override
+        public MethodIdTable methodIdTable() {
+            return methodIdTable;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.channel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.jupiter.transport.UnresolvedSocketAddress;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * jupiter
+ * org.jupiter.transport.channel
+ *
+ * @author jiachun.fjc
+ */
+public class CircuitBreakerTest {
+
+    private static CircuitBreaker newBreaker() {
+        return new CircuitBreaker(10, 10, 50, 80, TimeUnit.SECONDS.toNanos(1), 100, 2);
+    }
+
+    @Test
+    public void testOpenOnFailureRate() {
+        CircuitBreaker breaker = newBreaker();
+        for (int i = 0; i < 9; i++) {
+            breaker.record(true, false);
+        }
+        // 调用数不足
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertEquals(100, breaker.failureRate());
+
+        int version = CircuitBreaker.version();
+        breaker.record(true, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.allowRequest());
+        assertNotEquals(version, CircuitBreaker.version());
+    }
+
+    @Test
+    public void testOpenOnSlowCallRate() {
+        CircuitBreaker breaker = newBreaker();
+        assertTrue(breaker.isSlowCall(TimeUnit.SECONDS.toNanos(2)));
+        for (int i = 0; i < 3; i++) {
+            breaker.record(false, false);
+        }
+        for (int i = 0; i < 7; i++) {
+            breaker.record(false, true);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        breaker.record(false, true); // 8/11 < 80%
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        breaker.record(false, true); // 9/12 < 80%
+        breaker.record(false, true); // 10/13 < 80%
+        breaker.record(false, true); // 11/14 < 80%
+        breaker.record(false, true); // 12/15 = 80%
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    public void testHalfOpen() throws InterruptedException {
+        CircuitBreaker breaker = open(newBreaker());
+
+        Thread.sleep(150);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+        // 只放行half_open_probes个探测请求
+        assertFalse(breaker.allowRequest());
+
+        breaker.record(false, false);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        breaker.record(false, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertEquals(0, breaker.failureRate());
+
+        open(breaker);
+        Thread.sleep(150);
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+        breaker.record(true, false);
+        breaker.record(false, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    public void testSnapshotExcludesOpenGroups() {
+        CopyOnWriteGroupList groupList = new CopyOnWriteGroupList(new DirectoryJChannelGroup());
+        JChannelGroup[] groups = new JChannelGroup[3];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = new TestChannelGroup(18090 + i);
+            groupList.addIfAbsent(groups[i]);
+        }
+        assertArrayEquals(groups, groupList.getSnapshot());
+
+        open(groups[1].circuitBreaker());
+        assertArrayEquals(new JChannelGroup[] { groups[0], groups[2] }, groupList.getSnapshot());
+        assertEquals(3, groupList.size());
+        assertTrue(groupList.contains(groups[1]));
+
+        // 全部熔断时不再排除
+        open(groups[0].circuitBreaker());
+        open(groups[2].circuitBreaker());
+        assertArrayEquals(groups, groupList.getSnapshot());
+
+        assertTrue(groupList.remove(groups[2]));
+        assertArrayEquals(new JChannelGroup[] { groups[0], groups[1] }, groupList.getSnapshot());
+    }
+
+    private static CircuitBreaker open(CircuitBreaker breaker) {
+        for (int i = 0; i < 100 && breaker.state() != CircuitBreaker.State.OPEN; i++) {
+            breaker.record(true, false);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        return breaker;
+    }
+
+    static class TestChannelGroup extends AbstractJChannelGroup {
+
+        TestChannelGroup(int port) {
+            super(new UnresolvedSocketAddress("127.0.0.1", port));
+        }
+    }
+}
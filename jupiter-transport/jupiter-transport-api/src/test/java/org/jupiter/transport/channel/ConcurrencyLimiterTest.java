@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.channel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import org.jupiter.transport.Status;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * jupiter
+ * org.jupiter.transport.channel
+ *
+ * @author jiachun.fjc
+ */
+public class ConcurrencyLimiterTest {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    public void testLimit() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 100);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.isAllowed());
+            limiter.acquire();
+        }
+        assertFalse(limiter.isAllowed());
+        assertEquals(0, limiter.headroom());
+
+        // 请求没有到达provider, 只释放不调整
+        limiter.release(RTT, Status.CLIENT_ERROR.value());
+        assertTrue(limiter.isAllowed());
+        assertEquals(10, limiter.limit());
+    }
+
+    @Test
+    public void testGrowWithStableRtt() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 100);
+        for (int i = 0; i < 200; i++) {
+            saturate(limiter);
+            limiter.release(RTT, Status.OK.value());
+        }
+        assertEquals(100, limiter.limit());
+    }
+
+    @Test
+    public void testNotGrowIfAppLimited() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 100);
+        for (int i = 0; i < 200; i++) {
+            limiter.acquire();
+            limiter.release(RTT, Status.OK.value());
+        }
+        assertEquals(10, limiter.limit());
+    }
+
+    @Test
+    public void testShrinkWithIncreasingRtt() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(50, 1, 100);
+        for (int i = 0; i < 100; i++) {
+            saturate(limiter);
+            limiter.release(RTT, Status.OK.value());
+        }
+        int limit = limiter.limit();
+
+        // provider开始排队, RTT变为原来的10倍
+        for (int i = 0; i < 50; i++) {
+            saturate(limiter);
+            limiter.release(RTT * 10, Status.OK.value());
+        }
+        assertTrue(limiter.limit() < limit / 2);
+    }
+
+    @Test
+    public void testBackoffOnDrop() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(100, 5, 100);
+        for (int i = 0; i < 500; i++) {
+            limiter.acquire();
+            limiter.release(RTT, Status.SERVER_BUSY.value());
+        }
+        assertEquals(5, limiter.limit());
+        assertEquals(0, limiter.inFlight());
+    }
+
+    private static void saturate(ConcurrencyLimiter limiter) {
+        while (limiter.isAllowed()) {
+            limiter.acquire();
+        }
+        // 保持在途请求数等于limit, 每次释放一个
+        while (limiter.inFlight() > limiter.limit()) {
+            limiter.release(0, Status.CLIENT_ERROR.value());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.channel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * jupiter
+ * org.jupiter.transport.channel
+ *
+ * @author jiachun.fjc
+ */
+public class InFlightTableTest {
+
+    @Test
+    public void testPutAndRemove() {
+        InFlightTable table = new InFlightTable();
+        int count = 10000;
+        Request[] requests = new Request[count];
+        for (int i = 0; i < count; i++) {
+            requests[i] = new Request(i * 7L, null);
+            assertTrue(table.put(requests[i]));
+        }
+        assertEquals(count, table.size());
+
+        // replace
+        requests[0] = new Request(0, null);
+        assertTrue(table.put(requests[0]));
+        assertEquals(count, table.size());
+
+        for (int i = 0; i < count; i++) {
+            assertSame(requests[i], table.remove(i * 7L));
+            assertNull(table.remove(i * 7L));
+        }
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testClose() {
+        InFlightTable table = new InFlightTable();
+        AtomicInteger inactive = new AtomicInteger();
+        for (int i = 0; i < 100; i++) {
+            table.put(new Request(i, inactive));
+        }
+
+        table.close(null);
+
+        assertEquals(100, inactive.get());
+        assertEquals(0, table.size());
+        assertTrue(table.isClosed());
+        assertFalse(table.put(new Request(101, inactive)));
+    }
+
+    static class Request implements InFlightRequest {
+
+        private final long invokeId;
+        private final AtomicInteger inactive;
+
+        Request(long invokeId, AtomicInteger inactive) {
+            this.invokeId = invokeId;
+            this.inactive = inactive;
+        }
+
+        @Override
+        public long invokeId() {
+            return invokeId;
+        }
+
+        @Override
+        public void onChannelInactive(JChannel channel) {
+            inactive.incrementAndGet();
+        }
+    }
+}
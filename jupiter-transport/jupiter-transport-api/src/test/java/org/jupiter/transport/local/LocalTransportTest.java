@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.local;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.jupiter.serialization.io.InputBuf;
+import org.jupiter.serialization.io.OutputBuf;
+import org.jupiter.transport.JConnection;
+import org.jupiter.transport.Status;
+import org.jupiter.transport.UnresolvedAddress;
+import org.jupiter.transport.UnresolvedSocketAddress;
+import org.jupiter.transport.channel.JChannel;
+import org.jupiter.transport.channel.JChannelGroup;
+import org.jupiter.transport.channel.JFutureListener;
+import org.jupiter.transport.exception.ConnectFailedException;
+import org.jupiter.transport.payload.JRequestPayload;
+import org.jupiter.transport.payload.JResponsePayload;
+import org.jupiter.transport.processor.ConsumerProcessor;
+import org.jupiter.transport.processor.ProviderProcessor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * jupiter
+ * org.jupiter.transport.local
+ *
+ * @author jiachun.fjc
+ */
+public class LocalTransportTest {
+
+    private static final int PORT = 18099;
+
+    private final BlockingQueue<JResponsePayload> responses = new ArrayBlockingQueue<>(16);
+
+    private JLocalAcceptor acceptor;
+    private JLocalConnector connector;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        acceptor = new JLocalAcceptor(PORT);
+        // echo
+        acceptor.withProcessor(new ProviderProcessor() {
+
+            @Override
+            public void handleRequest(JChannel channel, JRequestPayload request) {
+                JResponsePayload response = new JResponsePayload(request.invokeId());
+                response.status(Status.OK.value());
+                if (request.inputBuf() != null) {
+                    response.bytes(request.serializerCode(), toBytes(request.inputBuf()));
+                } else {
+                    response.bytes(request.serializerCode(), request.bytes());
+                }
+                channel.write(response);
+            }
+
+            @Override
+            public void handleException(JChannel channel, JRequestPayload request, Status status, Throwable cause) {}
+
+            @Override
+            public void shutdown() {}
+        });
+        acceptor.start(false);
+
+        connector = new JLocalConnector();
+        connector.withProcessor(new ConsumerProcessor() {
+
+            @Override
+            public void handleResponse(JChannel channel, JResponsePayload response) {
+                responses.add(response);
+            }
+
+            @Override
+            public void shutdown() {}
+        });
+    }
+
+    @After
+    public void tearDown() {
+        connector.shutdownGracefully();
+        acceptor.shutdownGracefully();
+    }
+
+    @Test
+    public void testRequestResponse() throws Exception {
+        UnresolvedAddress address = new UnresolvedSocketAddress("127.0.0.1", PORT);
+        assertTrue(JLocalAcceptor.isBound(address));
+
+        JConnection connection = connector.connect(address);
+        AtomicBoolean connected = new AtomicBoolean();
+        connection.operationComplete(connected::set);
+        assertTrue(connected.get());
+
+        JChannelGroup group = connector.group(address);
+        assertEquals(1, group.size());
+        JChannel channel = group.next();
+
+        JRequestPayload request = new JRequestPayload();
+        request.bytes((byte) 1, new byte[] { 1, 2, 3 });
+        AtomicBoolean written = new AtomicBoolean();
+        channel.write(request, new JFutureListener<JChannel>() {
+
+            @Override
+            public void operationSuccess(JChannel channel) {
+                written.set(true);
+            }
+
+            @Override
+            public void operationFailure(JChannel channel, Throwable cause) {}
+        });
+        assertTrue(written.get());
+
+        JResponsePayload response = responses.poll(1, TimeUnit.SECONDS);
+        assertNotNull(response);
+        assertEquals(request.invokeId(), response.id());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, response.bytes());
+
+        // low copy
+        OutputBuf outputBuf = channel.allocOutputBuf();
+        OutputStream out = outputBuf.outputStream();
+        for (int i = 0; i < 1024; i++) {
+            out.write(i);
+        }
+        request = new JRequestPayload();
+        request.outputBuf((byte) 1, outputBuf);
+        channel.write(request);
+
+        response = responses.poll(1, TimeUnit.SECONDS);
+        assertNotNull(response);
+        assertEquals(1024, response.bytes().length);
+        assertEquals((byte) 1023, response.bytes()[1023]);
+    }
+
+    @Test
+    public void testObject() throws Exception {
+        UnresolvedAddress address = new UnresolvedSocketAddress("127.0.0.1", PORT);
+        connector.connect(address);
+        JChannel channel = connector.group(address).next();
+
+        AtomicBoolean received = new AtomicBoolean();
+        Object obj = new Object();
+        acceptor.withProcessor(new ProviderProcessor() {
+
+            @Override
+            public void handleRequest(JChannel channel, JRequestPayload request) {
+                received.set(request.object() == obj);
+            }
+
+            @Override
+            public void handleException(JChannel channel, JRequestPayload request, Status status, Throwable cause) {}
+
+            @Override
+            public void shutdown() {}
+        });
+
+        JRequestPayload request = new JRequestPayload();
+        request.object((byte) 1, obj);
+        channel.write(request);
+        assertTrue(received.get());
+    }
+
+    @Test
+    public void testUnbind() {
+        UnresolvedAddress address = new UnresolvedSocketAddress("127.0.0.1", PORT);
+        connector.connect(address);
+        JChannelGroup group = connector.group(address);
+        JChannel channel = group.next();
+        assertTrue(channel.isActive());
+
+        acceptor.unbind();
+
+        assertFalse(channel.isActive());
+        assertTrue(group.isEmpty());
+        assertFalse(JLocalAcceptor.isBound(address));
+    }
+
+    @Test(expected = ConnectFailedException.class)
+    public void testConnectFailed() {
+        connector.connect(new UnresolvedSocketAddress("127.0.0.1", PORT + 1));
+    }
+
+    private static byte[] toBytes(InputBuf inputBuf) {
+        try (InputStream in = inputBuf.inputStream()) {
+            byte[] bytes = new byte[inputBuf.size()];
+            int n = 0;
+            while (n < bytes.length) {
+                n += in.read(bytes, n, bytes.length - n);
+            }
+            return bytes;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -36,10 +36,9 @@ import org.jupiter.transport.UnresolvedAddress;
 import org.jupiter.transport.channel.JChannelGroup;
 import org.jupiter.transport.exception.ConnectFailedException;
 import org.jupiter.transport.netty.handler.IdleStateChecker;
-import org.jupiter.transport.netty.handler.LowCopyProtocolDecoder;
 import org.jupiter.transport.netty.handler.LowCopyProtocolEncoder;
-import org.jupiter.transport.netty.handler.ProtocolDecoder;
 import org.jupiter.transport.netty.handler.ProtocolEncoder;
+import org.jupiter.transport.netty.handler.ProtocolFrameDecoder;
 import org.jupiter.transport.netty.handler.connector.ConnectionWatchdog;
 import org.jupiter.transport.netty.handler.connector.ConnectorHandler;
 import org.jupiter.transport.netty.handler.connector.ConnectorIdleStateTrigger;
@@ -151,7 +150,7 @@ public class JNettyDomainConnector extends NettyDomainConnector {
                         this,
                         new IdleStateChecker(timer, 0, JConstants.WRITER_IDLE_TIME_SECONDS, 0),
                         idleStateTrigger,
-                        CodecConfig.isCodecLowCopy() ? new LowCopyProtocolDecoder() : new ProtocolDecoder(),
+                        new ProtocolFrameDecoder(CodecConfig.isCodecLowCopy()),
                         encoder,
                         handler
                 };
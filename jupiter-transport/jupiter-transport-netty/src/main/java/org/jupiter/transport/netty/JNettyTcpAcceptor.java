@@ -30,10 +30,9 @@ import org.jupiter.transport.CodecConfig;
 import org.jupiter.transport.JConfig;
 import org.jupiter.transport.JOption;
 import org.jupiter.transport.netty.handler.IdleStateChecker;
-import org.jupiter.transport.netty.handler.LowCopyProtocolDecoder;
 import org.jupiter.transport.netty.handler.LowCopyProtocolEncoder;
-import org.jupiter.transport.netty.handler.ProtocolDecoder;
 import org.jupiter.transport.netty.handler.ProtocolEncoder;
+import org.jupiter.transport.netty.handler.ProtocolFrameDecoder;
 import org.jupiter.transport.netty.handler.acceptor.AcceptorHandler;
 import org.jupiter.transport.netty.handler.acceptor.AcceptorIdleStateTrigger;
 import org.jupiter.transport.processor.ProviderProcessor;
@@ -159,7 +158,7 @@ public class JNettyTcpAcceptor extends NettyTcpAcceptor {
                         new FlushConsolidationHandler(JConstants.EXPLICIT_FLUSH_AFTER_FLUSHES, true),
                         new IdleStateChecker(timer, JConstants.READER_IDLE_TIME_SECONDS, 0, 0),
                         idleStateTrigger,
-                        CodecConfig.isCodecLowCopy() ? new LowCopyProtocolDecoder() : new ProtocolDecoder(),
+                        new ProtocolFrameDecoder(CodecConfig.isCodecLowCopy()),
                         encoder,
                         handler);
             }
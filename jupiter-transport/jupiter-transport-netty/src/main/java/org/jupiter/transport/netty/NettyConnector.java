@@ -15,8 +15,6 @@
  */
 package org.jupiter.transport.netty;
 
-import java.util.Collection;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ThreadFactory;
 
 import io.netty.bootstrap.Bootstrap;
@@ -29,19 +27,10 @@ import io.netty.util.concurrent.DefaultThreadFactory;
 import org.jupiter.common.concurrent.NamedThreadFactory;
 import org.jupiter.common.util.ClassUtil;
 import org.jupiter.common.util.JConstants;
-import org.jupiter.common.util.Maps;
-import org.jupiter.common.util.Requires;
-import org.jupiter.common.util.internal.logging.InternalLogger;
-import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
-import org.jupiter.transport.Directory;
+import org.jupiter.transport.AbstractJConnector;
 import org.jupiter.transport.JConfig;
-import org.jupiter.transport.JConnection;
-import org.jupiter.transport.JConnectionManager;
-import org.jupiter.transport.JConnector;
 import org.jupiter.transport.JOption;
 import org.jupiter.transport.UnresolvedAddress;
-import org.jupiter.transport.channel.CopyOnWriteGroupList;
-import org.jupiter.transport.channel.DirectoryJChannelGroup;
 import org.jupiter.transport.channel.JChannelGroup;
 import org.jupiter.transport.netty.channel.NettyChannelGroup;
 import org.jupiter.transport.netty.estimator.JMessageSizeEstimator;
@@ -53,9 +42,7 @@ import org.jupiter.transport.processor.ConsumerProcessor;
  *
  * @author jiachun.fjc
  */
-public abstract class NettyConnector implements JConnector<JConnection> {
-
-    private static final InternalLogger logger = InternalLoggerFactory.getInstance(NettyConnector.class);
+public abstract class NettyConnector extends AbstractJConnector {
 
     static {
         // touch off DefaultChannelId.<clinit>
@@ -66,10 +53,6 @@ public abstract class NettyConnector implements JConnector<JConnection> {
     protected final Protocol protocol;
     protected final HashedWheelTimer timer = new HashedWheelTimer(new NamedThreadFactory("connector.timer", true));
 
-    private final ConcurrentMap<UnresolvedAddress, JChannelGroup> addressGroups = Maps.newConcurrentMap();
-    private final DirectoryJChannelGroup directoryGroup = new DirectoryJChannelGroup();
-    private final JConnectionManager connectionManager = new JConnectionManager();
-
     private Bootstrap bootstrap;
     private EventLoopGroup worker;
     private int nWorkers;
@@ -119,80 +102,9 @@ public abstract class NettyConnector implements JConnector<JConnection> {
         setProcessor(this.processor = processor);
     }
 
-    @Override
-    public JChannelGroup group(UnresolvedAddress address) {
-        Requires.requireNotNull(address, "address");
-
-        JChannelGroup group = addressGroups.get(address);
-        if (group == null) {
-            JChannelGroup newGroup = channelGroup(address);
-            group = addressGroups.putIfAbsent(address, newGroup);
-            if (group == null) {
-                group = newGroup;
-            }
-        }
-        return group;
-    }
-
-    @Override
-    public Collection<JChannelGroup> groups() {
-        return addressGroups.values();
-    }
-
-    @Override
-    public boolean addChannelGroup(Directory directory, JChannelGroup group) {
-        CopyOnWriteGroupList groups = directory(directory);
-        boolean added = groups.addIfAbsent(group);
-        if (added) {
-            if (logger.isInfoEnabled()) {
-                logger.info("Added channel group: {} to {}.", group, directory.directoryString());
-            }
-        }
-        return added;
-    }
-
-    @Override
-    public boolean removeChannelGroup(Directory directory, JChannelGroup group) {
-        CopyOnWriteGroupList groups = directory(directory);
-        boolean removed = groups.remove(group);
-        if (removed) {
-            if (logger.isWarnEnabled()) {
-                logger.warn("Removed channel group: {} in directory: {}.", group, directory.directoryString());
-            }
-        }
-        return removed;
-    }
-
-    @Override
-    public CopyOnWriteGroupList directory(Directory directory) {
-        return directoryGroup.find(directory);
-    }
-
-    @Override
-    public boolean isDirectoryAvailable(Directory directory) {
-        CopyOnWriteGroupList groups = directory(directory);
-        JChannelGroup[] snapshot = groups.getSnapshot();
-        for (JChannelGroup g : snapshot) {
-            if (g.isAvailable()) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    @Override
-    public DirectoryJChannelGroup directoryGroup() {
-        return directoryGroup;
-    }
-
-    @Override
-    public JConnectionManager connectionManager() {
-        return connectionManager;
-    }
-
     @Override
     public void shutdownGracefully() {
-        connectionManager.cancelAllAutoReconnect();
+        connectionManager().cancelAllAutoReconnect();
         worker.shutdownGracefully().syncUninterruptibly();
         timer.stop();
         if (processor != null) {
@@ -231,9 +143,7 @@ public abstract class NettyConnector implements JConnector<JConnection> {
         return worker;
     }
 
-    /**
-     * Creates the same address of the channel group.
-     */
+    @Override
     protected JChannelGroup channelGroup(UnresolvedAddress address) {
         return new NettyChannelGroup(address);
     }
@@ -19,21 +19,26 @@ import java.io.OutputStream;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.EventLoop;
 import io.netty.util.Attribute;
 import io.netty.util.AttributeKey;
 import io.netty.util.internal.PlatformDependent;
 
+import org.jupiter.common.util.SystemPropertyUtil;
 import org.jupiter.serialization.io.OutputBuf;
 import org.jupiter.transport.JProtocolHeader;
+import org.jupiter.transport.channel.InFlightTable;
 import org.jupiter.transport.channel.JChannel;
 import org.jupiter.transport.channel.JFutureListener;
+import org.jupiter.transport.channel.MethodIdTable;
 import org.jupiter.transport.netty.alloc.AdaptiveOutputBufAllocator;
 import org.jupiter.transport.netty.handler.connector.ConnectionWatchdog;
 
@@ -50,6 +55,13 @@ public class NettyChannel implements JChannel {
 
     private static final AttributeKey<NettyChannel> NETTY_CHANNEL_KEY = AttributeKey.valueOf("netty.channel");
 
+    // 每次调度最多写出的消息个数, 超出后flush一次并重新调度, 避免长时间占用IO线程
+    private static final int MAX_WRITES_PER_FLUSH =
+            SystemPropertyUtil.getInt("jupiter.io.channel.max_writes_per_flush", 1024);
+
+    private static final AtomicIntegerFieldUpdater<NettyChannel> writeScheduledUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(NettyChannel.class, "writeScheduled");
+
     /**
      * Returns the {@link NettyChannel} for given {@link Channel}, this method never return null.
      */
@@ -61,6 +73,9 @@ public class NettyChannel implements JChannel {
             nChannel = attr.setIfAbsent(newNChannel);
             if (nChannel == null) {
                 nChannel = newNChannel;
+                // 连接断开时, 未完成的请求立即失败, 不必等到超时;
+                // 只有attach成功的实例才注册监听, 竞争失败的实例不会残留在closeFuture上
+                channel.closeFuture().addListener((ChannelFutureListener) future -> newNChannel.inFlightTable.close(newNChannel));
             }
         }
         return nChannel;
@@ -72,6 +87,15 @@ public class NettyChannel implements JChannel {
     private final Queue<Runnable> taskQueue = PlatformDependent.newMpscQueue(1024);
     private final Runnable runAllTasks = this::runAllTasks;
 
+    // 所有线程的写操作先放进MPSC队列, 由event loop中的一个任务全部写出后只flush一次,
+    // 避免每次调用都向event loop提交一个任务并分配一个promise
+    private final Queue<Object> writeQueue = PlatformDependent.newMpscQueue();
+    private final Runnable writeAllPending = this::writeAllPending;
+    private volatile int writeScheduled = 0; // 0: 未调度, 1: 已调度
+
+    private final InFlightTable inFlightTable = new InFlightTable();
+    private final MethodIdTable methodIdTable = new MethodIdTable();
+
     private NettyChannel(Channel channel) {
         this.channel = channel;
     }
@@ -147,22 +171,57 @@ public class NettyChannel implements JChannel {
 
     @Override
     public JChannel write(Object msg) {
-        channel.writeAndFlush(msg, channel.voidPromise());
+        // 不关心写结果, 使用voidPromise, 不需要额外的包装对象
+        enqueueWrite(msg);
         return this;
     }
 
     @Override
     public JChannel write(Object msg, final JFutureListener<JChannel> listener) {
-        final JChannel jChannel = this;
-        channel.writeAndFlush(msg)
-                .addListener((ChannelFutureListener) future -> {
-                    if (future.isSuccess()) {
-                        listener.operationSuccess(jChannel);
-                    } else {
-                        listener.operationFailure(jChannel, future.cause());
-                    }
-                });
-        return jChannel;
+        enqueueWrite(new PendingWrite(this, msg, listener));
+        return this;
+    }
+
+    private void enqueueWrite(Object msg) {
+        writeQueue.offer(msg);
+
+        if (channel.eventLoop().inEventLoop()) {
+            // IO线程中直接写出, 保证与随后在IO线程中执行的操作(比如close)之间的顺序
+            writePending(Integer.MAX_VALUE);
+        } else if (writeScheduledUpdater.compareAndSet(this, 0, 1)) {
+            channel.eventLoop().execute(writeAllPending);
+        }
+    }
+
+    private void writeAllPending() {
+        writePending(MAX_WRITES_PER_FLUSH);
+
+        writeScheduled = 0;
+
+        // 重置标志位之后再检查一次, 避免丢失在此期间入队的消息
+        if (!writeQueue.isEmpty() && writeScheduledUpdater.compareAndSet(this, 0, 1)) {
+            channel.eventLoop().execute(writeAllPending);
+        }
+    }
+
+    private void writePending(int maxWrites) {
+        final Channel ch = channel;
+
+        int writes = 0;
+        Object msg;
+        while (writes < maxWrites && (msg = writeQueue.poll()) != null) {
+            if (msg instanceof PendingWrite) {
+                PendingWrite w = (PendingWrite) msg;
+                ch.write(w.msg, ch.newPromise().addListener(w));
+            } else {
+                ch.write(msg, ch.voidPromise());
+            }
+            writes++;
+        }
+
+        if (writes > 0) {
+            ch.flush();
+        }
     }
 
     @Override
@@ -202,6 +261,16 @@ public class NettyChannel implements JChannel {
         return new NettyOutputBuf(allocHandle, channel.alloc());
     }
 
+    @Override
+    public InFlightTable inFlightTable() {
+        return inFlightTable;
+    }
+
+    @Override
+    public MethodIdTable methodIdTable() {
+        return methodIdTable;
+    }
+
     @Override
     public boolean equals(Object obj) {
         return this == obj || (obj instanceof NettyChannel && channel.equals(((NettyChannel) obj).channel));
@@ -217,6 +286,28 @@ public class NettyChannel implements JChannel {
         return channel.toString();
     }
 
+    static final class PendingWrite implements ChannelFutureListener {
+
+        private final JChannel jChannel;
+        private final Object msg;
+        private final JFutureListener<JChannel> listener;
+
+        PendingWrite(JChannel jChannel, Object msg, JFutureListener<JChannel> listener) {
+            this.jChannel = jChannel;
+            this.msg = msg;
+            this.listener = listener;
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            if (future.isSuccess()) {
+                listener.operationSuccess(jChannel);
+            } else {
+                listener.operationFailure(jChannel, future.cause());
+            }
+        }
+    }
+
     static final class NettyOutputBuf implements OutputBuf {
 
         private final AdaptiveOutputBufAllocator.Handle allocHandle;
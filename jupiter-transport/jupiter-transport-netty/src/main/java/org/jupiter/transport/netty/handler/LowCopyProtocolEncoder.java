@@ -23,6 +23,7 @@ import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.EncoderException;
 
 import org.jupiter.common.util.Reflects;
+import org.jupiter.common.util.SystemClock;
 import org.jupiter.transport.JProtocolHeader;
 import org.jupiter.transport.payload.JRequestPayload;
 import org.jupiter.transport.payload.JResponsePayload;
@@ -44,7 +45,7 @@ import org.jupiter.transport.payload.PayloadHolder;
  * = 2 // magic = (short) 0xbabe
  * + 1 // 消息标志位, 低地址4位用来表示消息类型request/response/heartbeat等, 高地址4位用来表示序列化类型
  * + 1 // 状态位, 设置请求响应状态
- * + 8 // 消息 id, long 类型, 未来jupiter可能将id限制在48位, 留出高地址的16位作为扩展字段
+ * + 8 // 消息 id, long 类型, id限制在48位, 高地址的16位作为扩展字段
  * + 4 // 消息体 body 长度, int 类型
  * </pre>
  *
@@ -92,7 +93,9 @@ public class LowCopyProtocolEncoder extends ChannelOutboundHandlerAdapter {
 
     private ByteBuf doEncodeRequest(JRequestPayload request) {
         byte sign = JProtocolHeader.toSign(request.serializerCode(), JProtocolHeader.REQUEST);
-        long invokeId = request.invokeId();
+        // 高16位携带consumer端剩余的超时时间
+        long id = JProtocolHeader.toId(
+                request.invokeId(), request.timeoutBudget(SystemClock.millisClock().now()));
         ByteBuf byteBuf = (ByteBuf) request.outputBuf().backingObject();
         int length = byteBuf.readableBytes();
 
@@ -102,8 +105,8 @@ public class LowCopyProtocolEncoder extends ChannelOutboundHandlerAdapter {
 
         byteBuf.writeShort(JProtocolHeader.MAGIC)
                 .writeByte(sign)
-                .writeByte(0x00)
-                .writeLong(invokeId)
+                .writeByte(request.priority())
+                .writeLong(id)
                 .writeInt(length - JProtocolHeader.HEADER_SIZE);
 
         byteBuf.resetWriterIndex();
@@ -45,7 +45,7 @@ import org.jupiter.transport.payload.JResponsePayload;
  * = 2 // magic = (short) 0xbabe
  * + 1 // 消息标志位, 低地址4位用来表示消息类型request/response/heartbeat等, 高地址4位用来表示序列化类型
  * + 1 // 状态位, 设置请求响应状态
- * + 8 // 消息 id, long 类型, 未来jupiter可能将id限制在48位, 留出高地址的16位作为扩展字段
+ * + 8 // 消息 id, long 类型, id限制在48位, 高地址的16位作为扩展字段
  * + 4 // 消息体 body 长度, int 类型
  * </pre>
  *
@@ -95,42 +95,53 @@ public class ProtocolDecoder extends ReplayingDecoder<ProtocolDecoder.State> {
                 header.bodySize(in.readInt());      // 消息体长度
                 checkpoint(State.BODY);
             case BODY:
-                switch (header.messageCode()) {
-                    case JProtocolHeader.HEARTBEAT:
-                        break;
-                    case JProtocolHeader.REQUEST: {
-                        int length = checkBodySize(header.bodySize());
-                        byte[] bytes = new byte[length];
-                        in.readBytes(bytes);
-
-                        JRequestPayload request = new JRequestPayload(header.id());
-                        request.timestamp(SystemClock.millisClock().now());
-                        request.bytes(header.serializerCode(), bytes);
-
-                        out.add(request);
-
-                        break;
-                    }
-                    case JProtocolHeader.RESPONSE: {
-                        int length = checkBodySize(header.bodySize());
-                        byte[] bytes = new byte[length];
-                        in.readBytes(bytes);
-
-                        JResponsePayload response = new JResponsePayload(header.id());
-                        response.status(header.status());
-                        response.bytes(header.serializerCode(), bytes);
-
-                        out.add(response);
-
-                        break;
-                    }
-                    default:
-                        throw IoSignals.ILLEGAL_SIGN;
-                }
+                decodeBody(header, in, out);
                 checkpoint(State.MAGIC);
         }
     }
 
+    static void decodeBody(JProtocolHeader header, ByteBuf in, List<Object> out) throws Signal {
+        switch (header.messageCode()) {
+            case JProtocolHeader.HEARTBEAT:
+                break;
+            case JProtocolHeader.REQUEST: {
+                int length = checkBodySize(header.bodySize());
+                byte[] bytes = new byte[length];
+                in.readBytes(bytes);
+
+                JRequestPayload request = new JRequestPayload(JProtocolHeader.invokeId(header.id()));
+                // request的状态位携带优先级
+                request.priority(header.status());
+                long now = SystemClock.millisClock().now();
+                request.timestamp(now);
+                int timeoutBudget = JProtocolHeader.timeoutBudget(header.id());
+                if (timeoutBudget > 0) {
+                    request.deadline(now + timeoutBudget);
+                }
+                request.bytes(header.serializerCode(), bytes);
+
+                out.add(request);
+
+                break;
+            }
+            case JProtocolHeader.RESPONSE: {
+                int length = checkBodySize(header.bodySize());
+                byte[] bytes = new byte[length];
+                in.readBytes(bytes);
+
+                JResponsePayload response = new JResponsePayload(JProtocolHeader.invokeId(header.id()));
+                response.status(header.status());
+                response.bytes(header.serializerCode(), bytes);
+
+                out.add(response);
+
+                break;
+            }
+            default:
+                throw IoSignals.ILLEGAL_SIGN;
+        }
+    }
+
     private static void checkMagic(short magic) throws Signal {
         if (magic != JProtocolHeader.MAGIC) {
             throw IoSignals.ILLEGAL_MAGIC;
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.netty.handler;
+
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+
+import org.jupiter.common.util.Signal;
+import org.jupiter.common.util.SystemPropertyUtil;
+import org.jupiter.transport.JProtocolHeader;
+import org.jupiter.transport.exception.IoSignals;
+
+/**
+ * <pre>
+ * **************************************************************************************************
+ *                                          Protocol
+ *  ┌ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ┐
+ *       2   │   1   │    1   │     8     │      4      │
+ *  ├ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ┤
+ *           │       │        │           │             │
+ *  │  MAGIC   Sign    Status   Invoke Id    Body Size                    Body Content              │
+ *           │       │        │           │             │
+ *  └ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ┘
+ *
+ * 消息头16个字节定长
+ * = 2 // magic = (short) 0xbabe
+ * + 1 // 消息标志位, 低地址4位用来表示消息类型request/response/heartbeat等, 高地址4位用来表示序列化类型
+ * + 1 // 状态位, 设置请求响应状态
+ * + 8 // 消息 id, long 类型, id限制在48位, 高地址的16位作为扩展字段
+ * + 4 // 消息体 body 长度, int 类型
+ * </pre>
+ *
+ * 基于 {@link ByteToMessageDecoder} 的协议解码器, 与 {@link ProtocolDecoder}, {@link LowCopyProtocolDecoder} 协议一致.
+ *
+ * {@link io.netty.handler.codec.ReplayingDecoder} 在数据不足时通过抛出signal来回滚, 一个大的消息体被拆分成多个TCP包时
+ * 每次收到数据都会触发一次解析失败; 这里改为两个状态: 协议头(16字节)到齐后解析协议头, 消息体全部到齐后一次性slice整个
+ * 消息体, 数据不足时直接返回, 不会重复解析.
+ *
+ * 默认一次 {@link #decode} 调用会解析出当前累积的所有完整消息, 可以通过
+ * system property "jupiter.io.decoder.multi_frames" 关闭.
+ *
+ * jupiter
+ * org.jupiter.transport.netty.handler
+ *
+ * @author jiachun.fjc
+ */
+public class ProtocolFrameDecoder extends ByteToMessageDecoder {
+
+    // 协议体最大限制, 默认5M
+    private static final int MAX_BODY_SIZE = SystemPropertyUtil.getInt("jupiter.io.decoder.max.body.size", 1024 * 1024 * 5);
+
+    /**
+     * Cumulate {@link ByteBuf}s by add them to a CompositeByteBuf and so do no memory copy whenever possible.
+     * Be aware that CompositeByteBuf use a more complex indexing implementation so depending on your use-case
+     * and the decoder implementation this may be slower then just use the {@link #MERGE_CUMULATOR}.
+     */
+    private static final boolean USE_COMPOSITE_BUF = SystemPropertyUtil.getBoolean("jupiter.io.decoder.composite.buf", false);
+
+    // 一次decode调用是否解析出所有完整的消息
+    private static final boolean MULTI_FRAMES = SystemPropertyUtil.getBoolean("jupiter.io.decoder.multi_frames", true);
+
+    // low copy: 消息体以 retained slice 的方式传递给上层, 否则拷贝成 byte[]
+    private final boolean lowCopy;
+
+    // 协议头
+    private final JProtocolHeader header = new JProtocolHeader();
+
+    private State state = State.HEADER;
+
+    public ProtocolFrameDecoder(boolean lowCopy) {
+        this.lowCopy = lowCopy;
+        if (lowCopy && USE_COMPOSITE_BUF) {
+            setCumulator(COMPOSITE_CUMULATOR);
+        }
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        while (decodeFrame(in, out) && MULTI_FRAMES) {
+            // continue
+        }
+    }
+
+    private boolean decodeFrame(ByteBuf in, List<Object> out) throws Signal {
+        switch (state) {
+            case HEADER:
+                if (in.readableBytes() < JProtocolHeader.HEADER_SIZE) {
+                    return false;
+                }
+                readHeader(in, header);
+                checkBodySize(header.bodySize());
+                state = State.BODY;
+            case BODY:
+                if (in.readableBytes() < header.bodySize()) {
+                    return false;
+                }
+                decodeBody(header, in, out);
+                state = State.HEADER;
+        }
+        return true;
+    }
+
+    private void decodeBody(JProtocolHeader header, ByteBuf in, List<Object> out) throws Signal {
+        if (lowCopy) {
+            LowCopyProtocolDecoder.decodeBody(header, in, out);
+        } else {
+            ProtocolDecoder.decodeBody(header, in, out);
+        }
+    }
+
+    private static void readHeader(ByteBuf in, JProtocolHeader header) throws Signal {
+        checkMagic(in.readShort());             // MAGIC
+        header.sign(in.readByte());             // 消息标志位
+        header.status(in.readByte());           // 状态位
+        header.id(in.readLong());               // 消息id
+        header.bodySize(in.readInt());          // 消息体长度
+    }
+
+    private static void checkMagic(short magic) throws Signal {
+        if (magic != JProtocolHeader.MAGIC) {
+            throw IoSignals.ILLEGAL_MAGIC;
+        }
+    }
+
+    private static int checkBodySize(int size) throws Signal {
+        if (size < 0 || size > MAX_BODY_SIZE) {
+            throw IoSignals.BODY_TOO_LARGE;
+        }
+        return size;
+    }
+
+    enum State {
+        HEADER,
+        BODY
+    }
+}
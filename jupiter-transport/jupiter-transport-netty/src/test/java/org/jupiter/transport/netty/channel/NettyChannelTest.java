@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.netty.channel;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+
+import org.jupiter.transport.channel.JChannel;
+import org.jupiter.transport.channel.JFutureListener;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * jupiter
+ * org.jupiter.transport.netty.channel
+ *
+ * @author jiachun.fjc
+ */
+public class NettyChannelTest {
+
+    @Test
+    public void testAttachChannelRace() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel();
+        int nThreads = 8;
+        NettyChannel[] attached = new NettyChannel[nThreads];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[nThreads];
+        for (int t = 0; t < nThreads; t++) {
+            final int thread = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ignored) {}
+                attached[thread] = NettyChannel.attachChannel(ch);
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        NettyChannel channel = NettyChannel.attachChannel(ch);
+        for (NettyChannel c : attached) {
+            assertSame(channel, c);
+        }
+
+        // 连接断开时关闭的是attach成功的实例的InFlightTable
+        assertFalse(channel.inFlightTable().isClosed());
+        ch.close().sync();
+        assertTrue(channel.inFlightTable().isClosed());
+    }
+
+    @Test
+    public void testWriteFromManyThreads() throws Exception {
+        int nThreads = 8;
+        int nWrites = 10000;
+
+        EventLoopGroup group = new DefaultEventLoopGroup(2);
+        try {
+            LocalAddress address = new LocalAddress("NettyChannelTest");
+            AtomicInteger received = new AtomicInteger();
+            int[] lastSeq = new int[nThreads];
+            AtomicInteger outOfOrder = new AtomicInteger();
+            CountDownLatch receivedLatch = new CountDownLatch(nThreads * nWrites);
+
+            new ServerBootstrap()
+                    .group(group)
+                    .channel(LocalServerChannel.class)
+                    .childHandler(new ChannelInboundHandlerAdapter() {
+
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            ByteBuf buf = (ByteBuf) msg;
+                            int thread = buf.readInt();
+                            int seq = buf.readInt();
+                            // 同一个线程写入的消息保持顺序
+                            if (seq != lastSeq[thread]++) {
+                                outOfOrder.incrementAndGet();
+                            }
+                            buf.release();
+                            received.incrementAndGet();
+                            receivedLatch.countDown();
+                        }
+                    })
+                    .bind(address).sync();
+
+            Channel ch = new Bootstrap()
+                    .group(group)
+                    .channel(LocalChannel.class)
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .connect(address).sync().channel();
+            NettyChannel channel = NettyChannel.attachChannel(ch);
+
+            AtomicInteger succeed = new AtomicInteger();
+            CountDownLatch writtenLatch = new CountDownLatch(nThreads * nWrites / 2);
+            JFutureListener<JChannel> listener = new JFutureListener<JChannel>() {
+
+                @Override
+                public void operationSuccess(JChannel c) throws Exception {
+                    succeed.incrementAndGet();
+                    writtenLatch.countDown();
+                }
+
+                @Override
+                public void operationFailure(JChannel c, Throwable cause) throws Exception {
+                    writtenLatch.countDown();
+                }
+            };
+
+            Thread[] threads = new Thread[nThreads];
+            for (int t = 0; t < nThreads; t++) {
+                final int thread = t;
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < nWrites; i++) {
+                        ByteBuf buf = Unpooled.buffer(8).writeInt(thread).writeInt(i);
+                        if ((i & 1) == 0) {
+                            channel.write(buf);
+                        } else {
+                            channel.write(buf, listener);
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+
+            assertTrue(receivedLatch.await(10, TimeUnit.SECONDS));
+            assertTrue(writtenLatch.await(10, TimeUnit.SECONDS));
+            assertEquals(nThreads * nWrites, received.get());
+            assertEquals(nThreads * nWrites / 2, succeed.get());
+            assertEquals(0, outOfOrder.get());
+
+            ch.close().sync();
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.netty.handler;
+
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import org.jupiter.transport.JProtocolHeader;
+import org.jupiter.transport.payload.JResponsePayload;
+
+/**
+ * 模拟一个消息被拆分成多个TCP包(每个包 fragmentSize 字节)的情况下, 解码 16 个response的耗时.
+ *
+ * jupiter
+ * org.jupiter.transport.netty.handler
+ *
+ * @author jiachun.fjc
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ProtocolDecoderBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ProtocolDecoderBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    private static final int FRAMES = 16;
+
+    @Param({ "64", "4096", "262144" })
+    int bodySize;
+
+    @Param({ "1460" })
+    int fragmentSize;
+
+    private ByteBuf[] fragments;
+
+    private EmbeddedChannel replayingDecoder;
+    private EmbeddedChannel frameDecoder;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ByteBuf buf = Unpooled.directBuffer();
+        byte[] body = new byte[bodySize];
+        for (int i = 0; i < FRAMES; i++) {
+            buf.writeShort(JProtocolHeader.MAGIC)
+                    .writeByte(JProtocolHeader.toSign((byte) 0x01, JProtocolHeader.RESPONSE))
+                    .writeByte(0x00)
+                    .writeLong(i)
+                    .writeInt(bodySize)
+                    .writeBytes(body);
+        }
+
+        int n = (buf.readableBytes() + fragmentSize - 1) / fragmentSize;
+        fragments = new ByteBuf[n];
+        for (int i = 0; i < n; i++) {
+            fragments[i] = buf.readRetainedSlice(Math.min(fragmentSize, buf.readableBytes()));
+        }
+        buf.release();
+
+        replayingDecoder = new EmbeddedChannel(new LowCopyProtocolDecoder());
+        frameDecoder = new EmbeddedChannel(new ProtocolFrameDecoder(true));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (ByteBuf f : fragments) {
+            f.release();
+        }
+        replayingDecoder.finishAndReleaseAll();
+        frameDecoder.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public int replayingDecoder() {
+        return decode(replayingDecoder);
+    }
+
+    @Benchmark
+    public int frameDecoder() {
+        return decode(frameDecoder);
+    }
+
+    private int decode(EmbeddedChannel channel) {
+        ChannelHandler decoder = channel.pipeline().first();
+        for (ByteBuf f : fragments) {
+            channel.pipeline().fireChannelRead(f.retainedDuplicate());
+        }
+        int count = 0;
+        JResponsePayload response;
+        while ((response = channel.readInbound()) != null) {
+            response.inputBuf().release();
+            count++;
+        }
+        if (count != FRAMES) {
+            throw new IllegalStateException(decoder + " decoded " + count + " frames");
+        }
+        return count;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.netty.handler;
+
+import java.util.Random;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import org.jupiter.serialization.io.InputBuf;
+import org.jupiter.transport.JProtocolHeader;
+import org.jupiter.transport.payload.JRequestPayload;
+import org.jupiter.transport.payload.JResponsePayload;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * jupiter
+ * org.jupiter.transport.netty.handler
+ *
+ * @author jiachun.fjc
+ */
+public class ProtocolFrameDecoderTest {
+
+    @Test
+    public void testFragmented() {
+        Random random = new Random(0);
+        for (boolean lowCopy : new boolean[] { false, true }) {
+            ByteBuf frames = frames(100);
+            EmbeddedChannel channel = new EmbeddedChannel(new ProtocolFrameDecoder(lowCopy));
+            // 随机拆分成多个TCP包
+            while (frames.isReadable()) {
+                int length = Math.min(frames.readableBytes(), 1 + random.nextInt(64));
+                channel.writeInbound(frames.readRetainedSlice(length));
+            }
+            frames.release();
+
+            for (int i = 0; i < 100; i++) {
+                JResponsePayload response = channel.readInbound();
+                assertEquals(i, response.id());
+                assertEquals(i % 8, response.status());
+                assertArrayEquals(body(i), bytes(response.bytes(), response.inputBuf()));
+            }
+            assertNull(channel.readInbound());
+            assertFalse(channel.finish());
+        }
+    }
+
+    @Test
+    public void testRequestWithHeartbeat() {
+        ByteBuf buf = Unpooled.buffer();
+        // heartbeat
+        buf.writeShort(JProtocolHeader.MAGIC)
+                .writeByte(JProtocolHeader.HEARTBEAT)
+                .writeByte(0)
+                .writeLong(0)
+                .writeInt(0);
+        buf.writeShort(JProtocolHeader.MAGIC)
+                .writeByte(JProtocolHeader.toSign((byte) 0x02, JProtocolHeader.REQUEST))
+                .writeByte(0)
+                .writeLong(JProtocolHeader.toId(9, 100))
+                .writeInt(3)
+                .writeBytes(new byte[] { 1, 2, 3 });
+
+        EmbeddedChannel channel = new EmbeddedChannel(new ProtocolFrameDecoder(false));
+        channel.writeInbound(buf);
+        JRequestPayload request = channel.readInbound();
+        assertEquals(9, request.invokeId());
+        assertEquals(0x02, request.serializerCode());
+        assertEquals(request.timestamp() + 100, request.deadline());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, request.bytes());
+        assertNull(channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    static ByteBuf frames(int n) {
+        ByteBuf buf = Unpooled.buffer();
+        for (int i = 0; i < n; i++) {
+            byte[] body = body(i);
+            buf.writeShort(JProtocolHeader.MAGIC)
+                    .writeByte(JProtocolHeader.toSign((byte) 0x01, JProtocolHeader.RESPONSE))
+                    .writeByte(i % 8)
+                    .writeLong(i)
+                    .writeInt(body.length)
+                    .writeBytes(body);
+        }
+        return buf;
+    }
+
+    static byte[] body(int i) {
+        byte[] body = new byte[i * 13 % 300];
+        for (int j = 0; j < body.length; j++) {
+            body[j] = (byte) (i + j);
+        }
+        return body;
+    }
+
+    static byte[] bytes(byte[] bytes, InputBuf inputBuf) {
+        if (inputBuf == null) {
+            return bytes;
+        }
+        byte[] array = new byte[inputBuf.size()];
+        inputBuf.nioByteBuffer().get(array);
+        inputBuf.release();
+        return array;
+    }
+}
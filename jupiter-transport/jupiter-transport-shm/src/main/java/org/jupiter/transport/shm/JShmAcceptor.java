@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.SocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.jupiter.common.util.Maps;
+import org.jupiter.common.util.StackTraceUtil;
+import org.jupiter.common.util.SystemPropertyUtil;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+import org.jupiter.transport.JAcceptor;
+import org.jupiter.transport.JConfigGroup;
+import org.jupiter.transport.processor.ProviderProcessor;
+
+/**
+ * 基于共享内存的acceptor, 同一台机器上的 {@link JShmConnector} 可以不经过网络协议栈与之通信.
+ *
+ * 以端口号为名字在 {@code jupiter.io.shm.dir} 下创建一个目录, connector在该目录下为每个连接创建一个
+ * {@code *.ring} 文件, acceptor的 {@link ShmEventLoop} 定期扫描目录来接受新的连接.
+ * 目录下的 {@code .acceptor.lock} 文件锁保证同一个端口只有一个acceptor, 进程退出时锁自动释放.
+ *
+ * 通常与一个网络acceptor绑定相同的端口并共享同一个 {@link ProviderProcessor}.
+ *
+ * jupiter
+ * org.jupiter.transport.shm
+ *
+ * @author jiachun.fjc
+ */
+public class JShmAcceptor implements JAcceptor {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(JShmAcceptor.class);
+
+    static final String RING_FILE_SUFFIX = ".ring";
+    static final String ACCEPTOR_LOCK_FILE = ".acceptor.lock";
+
+    private static final File BASE_DIR = new File(SystemPropertyUtil.get("jupiter.io.shm.dir",
+            new File("/dev/shm").isDirectory()
+                    ? "/dev/shm/jupiter"
+                    : new File(SystemPropertyUtil.get("java.io.tmpdir"), "jupiter-shm").getPath()));
+
+    // 当前JVM中已绑定的端口; 关闭同一个文件的任意一个fd都会释放本进程在该文件上的所有锁(POSIX语义),
+    // 所以检查本进程内的acceptor时不能再打开锁文件
+    private static final Set<Integer> boundPorts = Collections.newSetFromMap(Maps.newConcurrentMap());
+
+    private final int port;
+    private final File dir;
+    private final ShmAddress localAddress;
+    // key为ring文件名
+    private final ConcurrentMap<String, ShmChannel> channels = Maps.newConcurrentMap();
+    private final CountDownLatch unbindLatch = new CountDownLatch(1);
+
+    private ProviderProcessor processor;
+    private ShmEventLoop loop;
+    private RandomAccessFile lockFile;
+    private FileLock lock;
+
+    public JShmAcceptor(int port) {
+        this.port = port;
+        this.dir = directory(port);
+        this.localAddress = new ShmAddress(String.valueOf(port));
+    }
+
+    /**
+     * Returns the rendezvous directory of the given port.
+     */
+    static File directory(int port) {
+        return new File(BASE_DIR, String.valueOf(port));
+    }
+
+    /**
+     * Returns {@code true} if there is a {@link JShmAcceptor} bound on
+     * the port on this host.
+     */
+    public static boolean isBound(int port) {
+        if (boundPorts.contains(port)) {
+            return true;
+        }
+        File file = new File(directory(port), ACCEPTOR_LOCK_FILE);
+        if (!file.exists()) {
+            return false;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            FileLock l = channel.tryLock();
+            if (l == null) {
+                return true;
+            }
+            l.release();
+            return false;
+        } catch (OverlappingFileLockException | IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Protocol protocol() {
+        return Protocol.SHM;
+    }
+
+    @Override
+    public SocketAddress localAddress() {
+        return localAddress;
+    }
+
+    @Override
+    public int boundPort() {
+        return port;
+    }
+
+    @Override
+    public JConfigGroup configGroup() {
+        return ShmConfig.GROUP;
+    }
+
+    @Override
+    public ProviderProcessor processor() {
+        return processor;
+    }
+
+    @Override
+    public void withProcessor(ProviderProcessor processor) {
+        this.processor = processor;
+    }
+
+    @Override
+    public void start() throws InterruptedException {
+        start(true);
+    }
+
+    /**
+     * Binds this acceptor to its port on this host.
+     *
+     * @throws IllegalStateException if another shm acceptor was already bound on the port
+     */
+    @Override
+    public synchronized void start(boolean sync) throws InterruptedException {
+        if (lock == null) {
+            bind();
+        }
+
+        if (sync) {
+            // wait until the acceptor is unbound.
+            unbindLatch.await();
+        }
+    }
+
+    /**
+     * Unbinds this acceptor and closes all of the accepted channels, but
+     * does not shutdown the {@link ProviderProcessor} which may be shared
+     * with another acceptor.
+     */
+    public synchronized void unbind() {
+        if (loop != null) {
+            loop.shutdown();
+        }
+        for (ShmChannel ch : channels.values()) {
+            ch.close();
+        }
+        if (lockFile != null) {
+            try {
+                lockFile.close(); // the lock is released as well
+            } catch (IOException e) {
+                logger.warn("Release acceptor lock failed, {}.", StackTraceUtil.stackTrace(e));
+            }
+            lockFile = null;
+            lock = null;
+            boundPorts.remove(port);
+        }
+        unbindLatch.countDown();
+    }
+
+    @Override
+    public void shutdownGracefully() {
+        unbind();
+        if (processor != null) {
+            processor.shutdown();
+        }
+    }
+
+    private void bind() {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalStateException("could not create directory: " + dir);
+        }
+
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(new File(dir, ACCEPTOR_LOCK_FILE), "rw");
+            FileLock l;
+            try {
+                l = raf.getChannel().tryLock();
+            } catch (OverlappingFileLockException e) {
+                l = null;
+            }
+            if (l == null) {
+                throw new IllegalStateException("port " + port + " was already bound by another shm acceptor");
+            }
+            lock = l;
+            lockFile = raf;
+            boundPorts.add(port);
+        } catch (IOException e) {
+            throw new IllegalStateException("bind on " + dir + " failed", e);
+        } finally {
+            if (lockFile == null && raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ignored) {}
+            }
+        }
+
+        // 删除遗留的(进程已退出的)连接文件
+        File[] stale = listRingFiles();
+        for (File f : stale) {
+            deleteIfOrphan(f);
+        }
+
+        loop = new ShmEventLoop("jupiter.shm.acceptor-" + port, this::accept);
+        loop.start();
+
+        logger.info("Jupiter shm acceptor bound on {}.", dir);
+    }
+
+    // 在event loop中执行
+    private void accept() {
+        for (File f : listRingFiles()) {
+            String name = f.getName();
+            if (channels.containsKey(name)) {
+                continue;
+            }
+
+            ShmFile file;
+            try {
+                file = ShmFile.open(f);
+            } catch (IOException e) {
+                continue; // deleted concurrently
+            }
+            if (file == null) {
+                continue; // not ready yet
+            }
+            if (!file.isPeerAlive() || (file.state() & ShmFile.ACCEPTED) != 0) {
+                closeQuietly(file);
+                deleteIfOrphan(f);
+                continue;
+            }
+
+            String id = name.substring(0, name.length() - RING_FILE_SUFFIX.length());
+            ShmChannel channel = new ShmChannel(id, file, loop, null, this);
+            channels.put(name, channel);
+            channel.onClose(() -> channels.remove(name, channel));
+            loop.register(channel);
+            file.addState(ShmFile.ACCEPTED);
+
+            logger.info("Accepts {} as the {}th channel.", channel, channels.size());
+        }
+    }
+
+    private File[] listRingFiles() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(RING_FILE_SUFFIX));
+        return files == null ? new File[0] : files;
+    }
+
+    // connector在连接建立后会删除文件, 剩下的要么还没被accept, 要么是connector进程异常退出遗留的
+    private static void deleteIfOrphan(File f) {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw");
+             FileChannel channel = raf.getChannel()) {
+            FileLock l = channel.tryLock(0, 1, false);
+            if (l != null) {
+                l.release();
+                if (f.delete()) {
+                    logger.info("Deletes orphan shm file: {}.", f);
+                }
+            }
+        } catch (OverlappingFileLockException | IOException ignored) {}
+    }
+
+    private static void closeQuietly(ShmFile file) {
+        try {
+            file.close();
+        } catch (IOException ignored) {}
+    }
+
+    @Override
+    public String toString() {
+        return "JShmAcceptor{" +
+                "port=" + port +
+                ", dir=" + dir +
+                ", channels=" + channels.size() +
+                '}';
+    }
+}
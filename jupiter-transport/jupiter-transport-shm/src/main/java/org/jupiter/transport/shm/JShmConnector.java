@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.jupiter.common.util.NetUtil;
+import org.jupiter.common.util.Pow2;
+import org.jupiter.common.util.SystemPropertyUtil;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+import org.jupiter.transport.AbstractJConnector;
+import org.jupiter.transport.JConfig;
+import org.jupiter.transport.JConnection;
+import org.jupiter.transport.UnresolvedAddress;
+import org.jupiter.transport.channel.JChannelGroup;
+import org.jupiter.transport.exception.ConnectFailedException;
+import org.jupiter.transport.processor.ConsumerProcessor;
+
+/**
+ * 基于共享内存的connector, 只能连接到同一台机器上已经绑定的 {@link JShmAcceptor}.
+ *
+ * 每个连接对应一个内存映射文件, 默认ring容量为1MB({@code jupiter.io.shm.ring_capacity}, 两个方向各一个),
+ * 单个消息(协议头 + 消息体)不能超过ring的容量.
+ * 连接是同步建立的并且不会断线重连, 对端关闭或者进程退出时连接随之关闭.
+ *
+ * jupiter
+ * org.jupiter.transport.shm
+ *
+ * @author jiachun.fjc
+ */
+public class JShmConnector extends AbstractJConnector {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(JShmConnector.class);
+
+    private static final int RING_CAPACITY = Pow2.roundToPowerOfTwo(
+            SystemPropertyUtil.getInt("jupiter.io.shm.ring_capacity", 1024 * 1024));
+    private static final long CONNECT_TIMEOUT_MILLIS =
+            SystemPropertyUtil.getLong("jupiter.io.shm.connect_timeout_millis", 3000);
+
+    private final List<ShmChannel> channels = new CopyOnWriteArrayList<>();
+
+    private ConsumerProcessor processor;
+    private volatile ShmEventLoop loop;
+
+    @Override
+    public Protocol protocol() {
+        return Protocol.SHM;
+    }
+
+    @Override
+    public JConfig config() {
+        return ShmConfig.INSTANCE;
+    }
+
+    @Override
+    public ConsumerProcessor processor() {
+        return processor;
+    }
+
+    @Override
+    public void withProcessor(ConsumerProcessor processor) {
+        this.processor = processor;
+    }
+
+    @Override
+    public JConnection connect(UnresolvedAddress address) {
+        return connect(address, false);
+    }
+
+    /**
+     * 连接总是同步建立的, {@code async} 参数被忽略.
+     */
+    @Override
+    public JConnection connect(UnresolvedAddress address, boolean async) {
+        if (!NetUtil.isLocalAddress(address.getHost()) || !JShmAcceptor.isBound(address.getPort())) {
+            throw new ConnectFailedException("Connects to [" + address + "] fails, no shm acceptor bound");
+        }
+
+        String id = UUID.randomUUID().toString();
+        File f = new File(JShmAcceptor.directory(address.getPort()), id + JShmAcceptor.RING_FILE_SUFFIX);
+        ShmFile file;
+        try {
+            file = ShmFile.create(f, RING_CAPACITY);
+        } catch (IOException e) {
+            throw new ConnectFailedException("Connects to [" + address + "] fails", e);
+        }
+
+        try {
+            awaitAccepted(file);
+        } catch (Throwable t) {
+            try {
+                file.close();
+            } catch (IOException ignored) {}
+            throw t;
+        } finally {
+            // 映射一旦建立, 文件名就没用了
+            if (!f.delete()) {
+                logger.warn("Delete shm file {} failed.", f);
+            }
+        }
+
+        ShmChannel channel = new ShmChannel(id, file, eventLoop(), this, null);
+        channels.add(channel);
+        channel.onClose(() -> channels.remove(channel));
+        eventLoop().register(channel);
+        group(address).add(channel);
+
+        logger.info("Connects with {}.", channel);
+
+        return new JConnection(address) {
+
+            @Override
+            public void setReconnect(boolean reconnect) {
+                // shm connection never reconnects
+            }
+
+            @Override
+            public void operationComplete(OperationListener operationListener) {
+                operationListener.complete(channel.isActive());
+            }
+        };
+    }
+
+    @Override
+    protected JChannelGroup channelGroup(UnresolvedAddress address) {
+        return new ShmChannelGroup(address);
+    }
+
+    /**
+     * Closes all of the channels, but does not shutdown the {@link ConsumerProcessor}
+     * which may be shared with another connector.
+     */
+    public void disconnectAll() {
+        for (ShmChannel ch : channels) {
+            ch.close();
+        }
+    }
+
+    @Override
+    public void shutdownGracefully() {
+        disconnectAll();
+        ShmEventLoop l = loop;
+        if (l != null) {
+            l.shutdown();
+        }
+        if (processor != null) {
+            processor.shutdown();
+        }
+    }
+
+    private static void awaitAccepted(ShmFile file) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CONNECT_TIMEOUT_MILLIS);
+        while ((file.state() & ShmFile.ACCEPTED) == 0) {
+            if (System.nanoTime() - deadline >= 0) {
+                throw new ConnectFailedException("Connects to " + file.file() + " timeout");
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConnectFailedException("Connects to " + file.file() + " interrupted", e);
+            }
+        }
+    }
+
+    private ShmEventLoop eventLoop() {
+        ShmEventLoop l = loop;
+        if (l == null) {
+            synchronized (this) {
+                if ((l = loop) == null) {
+                    l = new ShmEventLoop("jupiter.shm.connector", null);
+                    l.start();
+                    loop = l;
+                }
+            }
+        }
+        return l;
+    }
+}
@@ -0,0 +1,463 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.shm;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.jupiter.common.util.Reflects;
+import org.jupiter.common.util.StackTraceUtil;
+import org.jupiter.common.util.SystemClock;
+import org.jupiter.common.util.SystemPropertyUtil;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+import org.jupiter.serialization.io.OutputBuf;
+import org.jupiter.transport.CodecConfig;
+import org.jupiter.transport.JProtocolHeader;
+import org.jupiter.transport.Status;
+import org.jupiter.transport.channel.InFlightTable;
+import org.jupiter.transport.channel.JChannel;
+import org.jupiter.transport.channel.JFutureListener;
+import org.jupiter.transport.channel.MethodIdTable;
+import org.jupiter.transport.payload.HeapBuf;
+import org.jupiter.transport.payload.JRequestPayload;
+import org.jupiter.transport.payload.JResponsePayload;
+import org.jupiter.transport.payload.PayloadHolder;
+import org.jupiter.transport.processor.ConsumerProcessor;
+import org.jupiter.transport.processor.ProviderProcessor;
+
+/**
+ * 基于共享内存的 {@link JChannel}, 一端属于 {@link JShmConnector}, 另一端属于 {@link JShmAcceptor}, 通常位于不同的进程.
+ *
+ * 写: 调用线程按照与 netty encoder 相同的格式(16字节的 {@link JProtocolHeader} + 消息体)
+ * 将消息直接拷贝到outbound ring, 多个写线程之间互斥(只在拷贝期间持有锁, 不会等待).
+ * ring满时消息进入pending队列, 由 {@link ShmEventLoop} 在ring有空间时按顺序写入, 写线程
+ * (包括IO线程和响应线程)不会被阻塞; pending的字节数超过 {@code jupiter.io.shm.max_pending_bytes}
+ * 时快速失败.
+ *
+ * 读: 由 {@link ShmEventLoop} 轮询inbound ring, 解码后交给processor, 与netty的IO线程一样.
+ *
+ * jupiter
+ * org.jupiter.transport.shm
+ *
+ * @author jiachun.fjc
+ */
+public class ShmChannel implements JChannel, ShmRing.FrameHandler {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ShmChannel.class);
+
+    private static final long MAX_PENDING_BYTES =
+            SystemPropertyUtil.getLong("jupiter.io.shm.max_pending_bytes", 16 * 1024 * 1024);
+
+    private static final AtomicIntegerFieldUpdater<ShmChannel> closedUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(ShmChannel.class, "closed");
+
+    private final String id;
+    private final ShmFile file;
+    private final ShmRing inbound;
+    private final ShmRing outbound;
+    private final ShmEventLoop loop;
+    private final SocketAddress localAddress;
+    private final SocketAddress remoteAddress;
+    // consumer端的channel持有connector, provider端的channel持有acceptor
+    private final JShmConnector connector;
+    private final JShmAcceptor acceptor;
+
+    private final byte[] headerBytes = new byte[JProtocolHeader.HEADER_SIZE];
+    // ring满时等待写入的帧, 受outbound锁保护
+    private final Queue<PendingFrame> pendingFrames = new ArrayDeque<>();
+    private long pendingBytes;
+    private final InFlightTable inFlightTable = new InFlightTable();
+    private final MethodIdTable methodIdTable = new MethodIdTable();
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+
+    @SuppressWarnings("unused")
+    private volatile int closed = 0; // 0: false, 1: true
+
+    ShmChannel(String id, ShmFile file, ShmEventLoop loop, JShmConnector connector, JShmAcceptor acceptor) {
+        this.id = id;
+        this.file = file;
+        this.inbound = file.inbound();
+        this.outbound = file.outbound();
+        this.loop = loop;
+        this.connector = connector;
+        this.acceptor = acceptor;
+
+        SocketAddress clientAddress = new ShmAddress(id);
+        SocketAddress serverAddress = new ShmAddress(file.file().getParentFile().getName());
+        if (connector != null) {
+            localAddress = clientAddress;
+            remoteAddress = serverAddress;
+        } else {
+            localAddress = serverAddress;
+            remoteAddress = clientAddress;
+        }
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public boolean isActive() {
+        return closed == 0;
+    }
+
+    @Override
+    public boolean inIoThread() {
+        return loop.inEventLoop();
+    }
+
+    @Override
+    public SocketAddress localAddress() {
+        return localAddress;
+    }
+
+    @Override
+    public SocketAddress remoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public boolean isWritable() {
+        return isActive();
+    }
+
+    @Override
+    public boolean isMarkedReconnect() {
+        return false;
+    }
+
+    @Override
+    public boolean isAutoRead() {
+        return true;
+    }
+
+    @Override
+    public void setAutoRead(boolean autoRead) {
+        // no-op
+    }
+
+    @Override
+    public JChannel close() {
+        if (closedUpdater.compareAndSet(this, 0, 1)) {
+            logger.warn("Disconnects {}.", this);
+
+            loop.deregister(this);
+            synchronized (outbound) {
+                pendingFrames.clear();
+                pendingBytes = 0;
+            }
+            try {
+                file.close();
+            } catch (IOException e) {
+                logger.warn("Close {} failed, {}.", file, StackTraceUtil.stackTrace(e));
+            }
+            inFlightTable.close(this);
+            for (Runnable l : closeListeners) {
+                l.run();
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public JChannel close(JFutureListener<JChannel> listener) {
+        close();
+        try {
+            listener.operationSuccess(this);
+        } catch (Throwable t) {
+            logger.error("An exception was caught: {}, on {} #close().", StackTraceUtil.stackTrace(t), this);
+        }
+        return this;
+    }
+
+    @Override
+    public JChannel write(Object msg) {
+        try {
+            doWrite(msg);
+        } catch (Throwable t) {
+            logger.error("Write {} failed on {}, {}.", Reflects.simpleClassName(msg), this, StackTraceUtil.stackTrace(t));
+        }
+        return this;
+    }
+
+    @Override
+    public JChannel write(Object msg, JFutureListener<JChannel> listener) {
+        try {
+            doWrite(msg);
+        } catch (Throwable t) {
+            try {
+                listener.operationFailure(this, t);
+            } catch (Throwable t2) {
+                logger.error("An exception was caught: {}, on {} #write().", StackTraceUtil.stackTrace(t2), this);
+            }
+            return this;
+        }
+        try {
+            listener.operationSuccess(this);
+        } catch (Throwable t) {
+            logger.error("An exception was caught: {}, on {} #write().", StackTraceUtil.stackTrace(t), this);
+        }
+        return this;
+    }
+
+    @Override
+    public void addTask(Runnable task) {
+        if (loop.inEventLoop()) {
+            task.run();
+        } else {
+            loop.execute(task);
+        }
+    }
+
+    @Override
+    public OutputBuf allocOutputBuf() {
+        return new HeapBuf();
+    }
+
+    @Override
+    public InFlightTable inFlightTable() {
+        return inFlightTable;
+    }
+
+    @Override
+    public MethodIdTable methodIdTable() {
+        return methodIdTable;
+    }
+
+    /**
+     * Reads at most {@code limit} frames from the inbound ring, only be
+     * called by the {@link ShmEventLoop}.
+     */
+    int read(int limit) {
+        if (!isActive()) {
+            return 0;
+        }
+        try {
+            return inbound.poll(this, limit);
+        } catch (Throwable t) {
+            logger.error("Read failed on {}, {}.", this, StackTraceUtil.stackTrace(t));
+            close();
+            return 0;
+        }
+    }
+
+    /**
+     * Writes the pending frames to the outbound ring as long as there is
+     * room, only be called by the {@link ShmEventLoop}.
+     */
+    int flush() {
+        int count = 0;
+        synchronized (outbound) {
+            PendingFrame frame;
+            while ((frame = pendingFrames.peek()) != null) {
+                if (!outbound.offer(frame.header, frame.body, frame.bodyLength)) {
+                    break;
+                }
+                pendingFrames.poll();
+                pendingBytes -= frame.bodyLength;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Closes this channel if the peer has closed or its process has exited.
+     */
+    void checkPeer(boolean checkLiveness) {
+        if (file.isPeerClosed() || (checkLiveness && !file.isPeerAlive())) {
+            close();
+        }
+    }
+
+    void onClose(Runnable listener) {
+        closeListeners.add(listener);
+        if (!isActive()) {
+            listener.run();
+        }
+    }
+
+    @Override
+    public void onFrame(byte[] header, byte[] body) {
+        byte sign = header[2];
+        byte messageCode = (byte) (sign & 0x0f);
+        byte serializerCode = (byte) ((((int) sign) & 0xff) >> 4);
+        byte status = header[3];
+        long id = getLong(header, 4);
+
+        switch (messageCode) {
+            case JProtocolHeader.REQUEST: {
+                JRequestPayload request = new JRequestPayload(JProtocolHeader.invokeId(id));
+                // request的状态位携带优先级
+                request.priority(status);
+                long now = SystemClock.millisClock().now();
+                request.timestamp(now);
+                int timeoutBudget = JProtocolHeader.timeoutBudget(id);
+                if (timeoutBudget > 0) {
+                    request.deadline(now + timeoutBudget);
+                }
+                if (CodecConfig.isCodecLowCopy()) {
+                    request.inputBuf(serializerCode, new HeapBuf(body, body.length));
+                } else {
+                    request.bytes(serializerCode, body);
+                }
+
+                ProviderProcessor processor = acceptor.processor();
+                try {
+                    processor.handleRequest(this, request);
+                } catch (Throwable t) {
+                    processor.handleException(this, request, Status.SERVER_ERROR, t);
+                }
+                break;
+            }
+            case JProtocolHeader.RESPONSE: {
+                JResponsePayload response = new JResponsePayload(JProtocolHeader.invokeId(id));
+                response.status(status);
+                if (CodecConfig.isCodecLowCopy()) {
+                    response.inputBuf(serializerCode, new HeapBuf(body, body.length));
+                } else {
+                    response.bytes(serializerCode, body);
+                }
+
+                ConsumerProcessor processor = connector.processor();
+                try {
+                    processor.handleResponse(this, response);
+                } catch (Throwable t) {
+                    logger.error("An exception was caught: {}, on {} #onFrame().", StackTraceUtil.stackTrace(t), this);
+                }
+                break;
+            }
+            default:
+                logger.warn("Unexpected message code received: {}, channel: {}.", messageCode, this);
+        }
+    }
+
+    private void doWrite(Object msg) throws IOException {
+        byte sign;
+        byte status;
+        long id;
+        if (msg instanceof JRequestPayload) {
+            JRequestPayload request = (JRequestPayload) msg;
+            sign = JProtocolHeader.toSign(request.serializerCode(), JProtocolHeader.REQUEST);
+            status = request.priority();
+            // 高16位携带consumer端剩余的超时时间
+            id = JProtocolHeader.toId(request.invokeId(), request.timeoutBudget(SystemClock.millisClock().now()));
+        } else if (msg instanceof JResponsePayload) {
+            JResponsePayload response = (JResponsePayload) msg;
+            sign = JProtocolHeader.toSign(response.serializerCode(), JProtocolHeader.RESPONSE);
+            status = response.status();
+            id = response.id();
+        } else {
+            throw new IllegalArgumentException(Reflects.simpleClassName(msg));
+        }
+
+        PayloadHolder payload = (PayloadHolder) msg;
+        byte[] body;
+        int bodyLength;
+        OutputBuf outputBuf = payload.outputBuf();
+        if (outputBuf instanceof HeapBuf) {
+            body = ((HeapBuf) outputBuf).array();
+            bodyLength = outputBuf.size();
+        } else {
+            body = payload.bytes();
+            bodyLength = body.length;
+        }
+
+        synchronized (outbound) {
+            if (!isActive()) {
+                throw new ClosedChannelException();
+            }
+
+            byte[] header = headerBytes;
+            header[0] = (byte) (JProtocolHeader.MAGIC >>> 8);
+            header[1] = (byte) JProtocolHeader.MAGIC;
+            header[2] = sign;
+            header[3] = status;
+            putLong(header, 4, id);
+            putInt(header, 12, bodyLength);
+
+            // 有pending的帧时必须排在它们后面, 保证顺序
+            if (pendingFrames.isEmpty() && outbound.offer(header, body, bodyLength)) {
+                return;
+            }
+            if (pendingBytes + bodyLength > MAX_PENDING_BYTES) {
+                throw new IOException("the ring buffer is full and pending bytes exceed "
+                        + MAX_PENDING_BYTES + ": " + this);
+            }
+            // body数组属于这条消息, 不会被复用, 不需要拷贝
+            pendingFrames.add(new PendingFrame(header.clone(), body, bodyLength));
+            pendingBytes += bodyLength;
+        }
+        loop.wakeup();
+    }
+
+    private static long getLong(byte[] bytes, int index) {
+        return ((long) bytes[index] & 0xff) << 56
+                | ((long) bytes[index + 1] & 0xff) << 48
+                | ((long) bytes[index + 2] & 0xff) << 40
+                | ((long) bytes[index + 3] & 0xff) << 32
+                | ((long) bytes[index + 4] & 0xff) << 24
+                | ((long) bytes[index + 5] & 0xff) << 16
+                | ((long) bytes[index + 6] & 0xff) << 8
+                | (long) bytes[index + 7] & 0xff;
+    }
+
+    private static void putLong(byte[] bytes, int index, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[index + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static void putInt(byte[] bytes, int index, int value) {
+        bytes[index] = (byte) (value >>> 24);
+        bytes[index + 1] = (byte) (value >>> 16);
+        bytes[index + 2] = (byte) (value >>> 8);
+        bytes[index + 3] = (byte) value;
+    }
+
+    private static final class PendingFrame {
+
+        final byte[] header;
+        final byte[] body;
+        final int bodyLength;
+
+        PendingFrame(byte[] header, byte[] body, int bodyLength) {
+            this.header = header;
+            this.body = body;
+            this.bodyLength = bodyLength;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ShmChannel{" +
+                "id='" + id + '\'' +
+                ", localAddress=" + localAddress +
+                ", remoteAddress=" + remoteAddress +
+                ", active=" + isActive() +
+                '}';
+    }
+}
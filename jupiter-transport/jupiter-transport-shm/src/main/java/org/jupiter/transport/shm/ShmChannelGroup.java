@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.shm;
+
+import org.jupiter.transport.UnresolvedAddress;
+import org.jupiter.transport.channel.AbstractJChannelGroup;
+import org.jupiter.transport.channel.JChannel;
+
+/**
+ * jupiter
+ * org.jupiter.transport.shm
+ *
+ * @author jiachun.fjc
+ */
+public class ShmChannelGroup extends AbstractJChannelGroup {
+
+    public ShmChannelGroup(UnresolvedAddress address) {
+        super(address);
+    }
+
+    @Override
+    public boolean add(JChannel channel) {
+        boolean added = channel instanceof ShmChannel && super.add(channel);
+        if (added) {
+            // 连接断开时自动被移除
+            ((ShmChannel) channel).onClose(() -> remove(channel));
+        }
+        return added;
+    }
+
+    @Override
+    public boolean remove(JChannel channel) {
+        return channel instanceof ShmChannel && super.remove(channel);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.shm;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.jupiter.common.util.StackTraceUtil;
+import org.jupiter.common.util.SystemPropertyUtil;
+import org.jupiter.common.util.internal.logging.InternalLogger;
+import org.jupiter.common.util.internal.logging.InternalLoggerFactory;
+
+/**
+ * 轮询所有 {@link ShmChannel} 入站ring的单线程event loop.
+ *
+ * 跨进程没有可用的唤醒机制(Java中没有futex), 所以空闲时采用 spin -> yield -> park 的退避策略,
+ * park时间指数增长并且有上限({@code jupiter.io.shm.max_park_nanos}), 这个上限也就是空闲之后第一条消息的最大额外延迟.
+ *
+ * jupiter
+ * org.jupiter.transport.shm
+ *
+ * @author jiachun.fjc
+ */
+final class ShmEventLoop implements Runnable {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(ShmEventLoop.class);
+
+    private static final int SPINS = SystemPropertyUtil.getInt("jupiter.io.shm.spins", 100);
+    private static final int YIELDS = SystemPropertyUtil.getInt("jupiter.io.shm.yields", 10);
+    private static final long MIN_PARK_NANOS = 1000;
+    private static final long MAX_PARK_NANOS = SystemPropertyUtil.getLong("jupiter.io.shm.max_park_nanos", 100000);
+    // 每次最多读取的帧数, 避免一个channel饿死其他channel
+    private static final int READ_LIMIT = 64;
+    private static final long HOUSEKEEPING_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long LIVENESS_CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final List<ShmChannel> channels = new CopyOnWriteArrayList<>();
+    // acceptor用来扫描新的连接, 可以为null
+    private final Runnable housekeeping;
+    private final Thread thread;
+
+    private volatile boolean shutdown = false;
+
+    ShmEventLoop(String name, Runnable housekeeping) {
+        this.housekeeping = housekeeping;
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    void execute(Runnable task) {
+        tasks.add(task);
+        LockSupport.unpark(thread);
+    }
+
+    void wakeup() {
+        LockSupport.unpark(thread);
+    }
+
+    void register(ShmChannel channel) {
+        channels.add(channel);
+        LockSupport.unpark(thread);
+    }
+
+    void deregister(ShmChannel channel) {
+        channels.remove(channel);
+    }
+
+    void shutdown() {
+        shutdown = true;
+        LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void run() {
+        long nextHousekeeping = System.nanoTime();
+        long nextLivenessCheck = nextHousekeeping + LIVENESS_CHECK_INTERVAL_NANOS;
+        int idle = 0;
+
+        while (!shutdown) {
+            int work = runTasks();
+            for (ShmChannel ch : channels) {
+                work += ch.read(READ_LIMIT);
+                work += ch.flush();
+            }
+
+            long now = System.nanoTime();
+            if (now - nextHousekeeping >= 0) {
+                nextHousekeeping = now + HOUSEKEEPING_INTERVAL_NANOS;
+                boolean checkLiveness = now - nextLivenessCheck >= 0;
+                if (checkLiveness) {
+                    nextLivenessCheck = now + LIVENESS_CHECK_INTERVAL_NANOS;
+                }
+                for (ShmChannel ch : channels) {
+                    ch.checkPeer(checkLiveness);
+                }
+                if (housekeeping != null) {
+                    try {
+                        housekeeping.run();
+                    } catch (Throwable t) {
+                        logger.error("Housekeeping failed on {}, {}.", thread.getName(), StackTraceUtil.stackTrace(t));
+                    }
+                }
+            }
+
+            if (work > 0) {
+                idle = 0;
+            } else {
+                idle(++idle);
+            }
+        }
+
+        runTasks();
+    }
+
+    private int runTasks() {
+        int count = 0;
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.error("Task failed on {}, {}.", thread.getName(), StackTraceUtil.stackTrace(t));
+            }
+            count++;
+        }
+        return count;
+    }
+
+    static void idle(int idle) {
+        if (idle <= SPINS) {
+            return; // busy spin
+        }
+        if (idle <= SPINS + YIELDS) {
+            Thread.yield();
+            return;
+        }
+        int shift = Math.min(idle - SPINS - YIELDS, 20);
+        LockSupport.parkNanos(Math.min(MIN_PARK_NANOS << shift, MAX_PARK_NANOS));
+    }
+}
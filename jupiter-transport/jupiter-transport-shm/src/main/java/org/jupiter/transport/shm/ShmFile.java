@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.shm;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+import org.jupiter.common.util.internal.UnsafeUtil;
+
+/**
+ * 一个连接对应一个内存映射文件(通常在 /dev/shm 下), 包含两个方向的 {@link ShmRing}.
+ *
+ * <pre>
+ * 0      ┌──────────────────────────────────────────────┐
+ *        │ magic(4) │ capacity(4) │ state(4)           │
+ * 128    ├──────────────────────────────────────────────┤
+ *        │ ring control: connector -> acceptor           │
+ * 256    ├──────────────────────────────────────────────┤
+ *        │ ring control: acceptor -> connector           │
+ * 4096   ├──────────────────────────────────────────────┤
+ *        │ ring data: connector -> acceptor (capacity)   │
+ *        ├──────────────────────────────────────────────┤
+ *        │ ring data: acceptor -> connector (capacity)   │
+ *        └──────────────────────────────────────────────┘
+ * </pre>
+ *
+ * 两端各自持有文件第0/1个字节上的 {@link FileLock}, 进程退出时锁会被操作系统释放,
+ * 对端以此判断进程是否还活着.
+ *
+ * jupiter
+ * org.jupiter.transport.shm
+ *
+ * @author jiachun.fjc
+ */
+final class ShmFile implements Closeable {
+
+    static final int MAGIC = 0x4a53484d; // "JSHM"
+
+    // state bits
+    static final int CONNECTED = 1;
+    static final int ACCEPTED = 1 << 1;
+    static final int CONNECTOR_CLOSED = 1 << 2;
+    static final int ACCEPTOR_CLOSED = 1 << 3;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int STATE_OFFSET = 8;
+    private static final int C2S_CONTROL_OFFSET = 128;
+    private static final int S2C_CONTROL_OFFSET = C2S_CONTROL_OFFSET + ShmRing.CONTROL_SIZE;
+    private static final int DATA_OFFSET = 4096;
+
+    private static final sun.misc.Unsafe unsafe = UnsafeUtil.getUnsafeAccessor().getUnsafe();
+    // JDK9+ 不允许通过反射 setAccessible 访问 Buffer.address, 所以不能用 UnsafeUtil#addressOffset
+    private static final long BUFFER_ADDRESS_OFFSET;
+
+    static {
+        try {
+            BUFFER_ADDRESS_OFFSET = unsafe.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+        } catch (NoSuchFieldException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    // 必须持有引用, 避免被GC之后unmap
+    private final MappedByteBuffer buffer;
+    private final long address;
+    private final int capacity;
+    private final boolean connectorSide;
+
+    private FileLock lock;
+
+    private ShmFile(File file, RandomAccessFile raf, MappedByteBuffer buffer, int capacity, boolean connectorSide) {
+        this.file = file;
+        this.raf = raf;
+        this.channel = raf.getChannel();
+        this.buffer = buffer;
+        this.address = address(buffer);
+        this.capacity = capacity;
+        this.connectorSide = connectorSide;
+    }
+
+    /**
+     * Creates a new file on the connector side.
+     */
+    static ShmFile create(File file, int capacity) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            long size = DATA_OFFSET + 2L * capacity;
+            raf.setLength(size);
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            ShmFile shm = new ShmFile(file, raf, buffer, capacity, true);
+            shm.lock();
+            unsafe.putInt(null, shm.address + CAPACITY_OFFSET, capacity);
+            unsafe.putInt(null, shm.address + MAGIC_OFFSET, MAGIC);
+            shm.addState(CONNECTED);
+            return shm;
+        } catch (Throwable t) {
+            raf.close();
+            throw t;
+        }
+    }
+
+    /**
+     * Opens a file created by a connector, returns {@code null} if the
+     * file is not ready yet.
+     */
+    static ShmFile open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if (raf.length() < DATA_OFFSET) {
+                raf.close();
+                return null;
+            }
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+            long address = address(buffer);
+            int capacity = unsafe.getIntVolatile(null, address + CAPACITY_OFFSET);
+            if ((unsafe.getIntVolatile(null, address + STATE_OFFSET) & CONNECTED) == 0
+                    || unsafe.getInt(null, address + MAGIC_OFFSET) != MAGIC
+                    || raf.length() < DATA_OFFSET + 2L * capacity) {
+                raf.close();
+                return null;
+            }
+            ShmFile shm = new ShmFile(file, raf, buffer, capacity, false);
+            shm.lock();
+            return shm;
+        } catch (Throwable t) {
+            raf.close();
+            throw t;
+        }
+    }
+
+    /**
+     * Returns the memory address of a direct buffer.
+     */
+    static long address(ByteBuffer buffer) {
+        return unsafe.getLong(buffer, BUFFER_ADDRESS_OFFSET);
+    }
+
+    File file() {
+        return file;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the ring which this side writes to.
+     */
+    ShmRing outbound() {
+        return connectorSide ? c2s() : s2c();
+    }
+
+    /**
+     * Returns the ring which this side reads from.
+     */
+    ShmRing inbound() {
+        return connectorSide ? s2c() : c2s();
+    }
+
+    int state() {
+        return unsafe.getIntVolatile(null, address + STATE_OFFSET);
+    }
+
+    void addState(int bits) {
+        long stateAddress = address + STATE_OFFSET;
+        for (;;) {
+            int state = unsafe.getIntVolatile(null, stateAddress);
+            if ((state & bits) == bits || unsafe.compareAndSwapInt(null, stateAddress, state, state | bits)) {
+                return;
+            }
+        }
+    }
+
+    boolean isPeerClosed() {
+        return (state() & (connectorSide ? ACCEPTOR_CLOSED : CONNECTOR_CLOSED)) != 0;
+    }
+
+    /**
+     * Returns {@code false} if the peer process has exited (its file lock was released).
+     */
+    boolean isPeerAlive() {
+        try {
+            FileLock peerLock = channel.tryLock(connectorSide ? 1 : 0, 1, false);
+            if (peerLock == null) {
+                return true;
+            }
+            peerLock.release();
+            return false;
+        } catch (OverlappingFileLockException e) {
+            return true; // the peer is in the same JVM
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        addState(connectorSide ? CONNECTOR_CLOSED : ACCEPTOR_CLOSED);
+        // 映射的内存在buffer被GC之前一直有效, 关闭文件不影响还在读写的线程
+        raf.close();
+    }
+
+    private void lock() throws IOException {
+        lock = channel.lock(connectorSide ? 0 : 1, 1, false);
+    }
+
+    private ShmRing c2s() {
+        return new ShmRing(address + C2S_CONTROL_OFFSET, address + DATA_OFFSET, capacity);
+    }
+
+    private ShmRing s2c() {
+        return new ShmRing(address + S2C_CONTROL_OFFSET, address + DATA_OFFSET + capacity, capacity);
+    }
+
+    @Override
+    public String toString() {
+        return "ShmFile{" +
+                "file=" + file +
+                ", capacity=" + capacity +
+                ", state=" + Integer.toBinaryString(state()) +
+                '}';
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.shm;
+
+import org.jupiter.common.util.internal.UnsafeUtil;
+import org.jupiter.transport.JProtocolHeader;
+
+/**
+ * 共享内存上的单生产者/单消费者(SPSC)字节环形队列, 每条消息是一个完整的协议帧
+ * (16字节的 {@link JProtocolHeader} + 消息体), 与网络上传输的格式完全一致.
+ *
+ * <pre>
+ * 控制区:
+ * ┌───────────────────────┬───────────────────────┐
+ * │ head (8 bytes, 64对齐) │ tail (8 bytes, 64对齐) │
+ * └───────────────────────┴───────────────────────┘
+ * head只有消费者写, tail只有生产者写, 分别位于不同的cache line以避免伪共享;
+ * 生产者写完整个帧之后才以 ordered store 发布tail, 消费者以 volatile load 读取tail, 所以读到的总是完整的帧.
+ * </pre>
+ *
+ * 不同进程映射同一个文件时地址不同, 所以这里只保存各自进程内的绝对地址.
+ *
+ * jupiter
+ * org.jupiter.transport.shm
+ *
+ * @author jiachun.fjc
+ */
+final class ShmRing {
+
+    static final int HEAD_OFFSET = 0;
+    static final int TAIL_OFFSET = 64;
+    static final int CONTROL_SIZE = 128;
+
+    private static final sun.misc.Unsafe unsafe = UnsafeUtil.getUnsafeAccessor().getUnsafe();
+    private static final long BYTE_ARRAY_BASE_OFFSET = UnsafeUtil.arrayBaseOffset(byte[].class);
+
+    private final long headAddress;
+    private final long tailAddress;
+    private final long dataAddress;
+    private final int capacity;
+    private final int mask;
+
+    // producer side
+    private long tail;
+    private long cachedHead;
+
+    // consumer side
+    private long head;
+    private final byte[] headerBytes = new byte[JProtocolHeader.HEADER_SIZE];
+
+    /**
+     * @param controlAddress address of the control block ({@link #CONTROL_SIZE} bytes)
+     * @param dataAddress    address of the data area
+     * @param capacity       size of the data area, must be a power of 2
+     */
+    ShmRing(long controlAddress, long dataAddress, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of 2: " + capacity);
+        }
+        this.headAddress = controlAddress + HEAD_OFFSET;
+        this.tailAddress = controlAddress + TAIL_OFFSET;
+        this.dataAddress = dataAddress;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+
+        tail = unsafe.getLongVolatile(null, tailAddress);
+        cachedHead = head = unsafe.getLongVolatile(null, headAddress);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the max body size of one frame.
+     */
+    int maxBodySize() {
+        return capacity - JProtocolHeader.HEADER_SIZE;
+    }
+
+    /**
+     * Writes a frame, only be called by the producer.
+     *
+     * @return {@code false} if there is no enough space now
+     */
+    boolean offer(byte[] header, byte[] body, int bodyLength) {
+        int frameLength = JProtocolHeader.HEADER_SIZE + bodyLength;
+        if (frameLength > capacity) {
+            throw new IllegalArgumentException("frame too large: " + frameLength + ", ring capacity: " + capacity);
+        }
+
+        long t = tail;
+        if (t + frameLength - cachedHead > capacity) {
+            cachedHead = unsafe.getLongVolatile(null, headAddress);
+            if (t + frameLength - cachedHead > capacity) {
+                return false;
+            }
+        }
+
+        copyIn(t, header, JProtocolHeader.HEADER_SIZE);
+        copyIn(t + JProtocolHeader.HEADER_SIZE, body, bodyLength);
+
+        // publish
+        unsafe.putOrderedLong(null, tailAddress, tail = t + frameLength);
+        return true;
+    }
+
+    /**
+     * Reads at most {@code limit} frames, only be called by the consumer.
+     *
+     * @return the number of frames read
+     */
+    int poll(FrameHandler handler, int limit) {
+        long h = head;
+        long t = unsafe.getLongVolatile(null, tailAddress);
+        int count = 0;
+        while (h < t && count < limit) {
+            byte[] header = headerBytes;
+            copyOut(h, header, JProtocolHeader.HEADER_SIZE);
+            int bodyLength = bodySize(header);
+            if (bodyLength < 0 || bodyLength > t - h - JProtocolHeader.HEADER_SIZE) {
+                throw new IllegalStateException("corrupted frame, body size: " + bodyLength);
+            }
+            byte[] body = new byte[bodyLength];
+            copyOut(h + JProtocolHeader.HEADER_SIZE, body, bodyLength);
+
+            h += JProtocolHeader.HEADER_SIZE + bodyLength;
+            // 先释放空间再处理消息, handler中可能会写对端(同一进程的另一个方向)
+            unsafe.putOrderedLong(null, headAddress, head = h);
+            count++;
+
+            handler.onFrame(header, body);
+        }
+        return count;
+    }
+
+    boolean isEmpty() {
+        return head == unsafe.getLongVolatile(null, tailAddress);
+    }
+
+    private void copyIn(long position, byte[] src, int length) {
+        int index = (int) (position & mask);
+        int first = Math.min(length, capacity - index);
+        unsafe.copyMemory(src, BYTE_ARRAY_BASE_OFFSET, null, dataAddress + index, first);
+        if (first < length) {
+            unsafe.copyMemory(src, BYTE_ARRAY_BASE_OFFSET + first, null, dataAddress, length - first);
+        }
+    }
+
+    private void copyOut(long position, byte[] dst, int length) {
+        int index = (int) (position & mask);
+        int first = Math.min(length, capacity - index);
+        unsafe.copyMemory(null, dataAddress + index, dst, BYTE_ARRAY_BASE_OFFSET, first);
+        if (first < length) {
+            unsafe.copyMemory(null, dataAddress, dst, BYTE_ARRAY_BASE_OFFSET + first, length - first);
+        }
+    }
+
+    // 协议头最后4个字节是body size, big-endian
+    private static int bodySize(byte[] header) {
+        return ((header[12] & 0xff) << 24)
+                | ((header[13] & 0xff) << 16)
+                | ((header[14] & 0xff) << 8)
+                | (header[15] & 0xff);
+    }
+
+    interface FrameHandler {
+
+        /**
+         * The header array is reused, do not hold it.
+         */
+        void onFrame(byte[] header, byte[] body);
+    }
+}
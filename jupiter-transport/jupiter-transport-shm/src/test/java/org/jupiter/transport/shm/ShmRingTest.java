@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.shm;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.jupiter.transport.JProtocolHeader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * jupiter
+ * org.jupiter.transport.shm
+ *
+ * @author jiachun.fjc
+ */
+public class ShmRingTest {
+
+    private static final int CAPACITY = 256;
+
+    @Test
+    public void testOfferAndPollWrapAround() {
+        ByteBuffer buf = ByteBuffer.allocateDirect(ShmRing.CONTROL_SIZE + CAPACITY);
+        long address = ShmFile.address(buf);
+        ShmRing producer = new ShmRing(address, address + ShmRing.CONTROL_SIZE, CAPACITY);
+        ShmRing consumer = new ShmRing(address, address + ShmRing.CONTROL_SIZE, CAPACITY);
+
+        List<byte[]> received = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            byte[] body = body(i, 1 + i % 50);
+            assertTrue(producer.offer(header(body.length), body, body.length));
+            assertEquals(1, consumer.poll((header, b) -> received.add(b), 16));
+            assertArrayEquals(body, received.get(i));
+        }
+        assertTrue(consumer.isEmpty());
+    }
+
+    @Test
+    public void testFull() {
+        ByteBuffer buf = ByteBuffer.allocateDirect(ShmRing.CONTROL_SIZE + CAPACITY);
+        long address = ShmFile.address(buf);
+        ShmRing producer = new ShmRing(address, address + ShmRing.CONTROL_SIZE, CAPACITY);
+        ShmRing consumer = new ShmRing(address, address + ShmRing.CONTROL_SIZE, CAPACITY);
+
+        byte[] body = body(1, 100);
+        assertTrue(producer.offer(header(body.length), body, body.length));
+        assertTrue(producer.offer(header(body.length), body, body.length));
+        assertFalse(producer.offer(header(body.length), body, body.length));
+
+        List<byte[]> received = new ArrayList<>();
+        assertEquals(1, consumer.poll((header, b) -> received.add(b), 1));
+        assertTrue(producer.offer(header(body.length), body, body.length));
+        assertEquals(2, consumer.poll((header, b) -> received.add(b), 16));
+        assertEquals(3, received.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFrameTooLarge() {
+        ByteBuffer buf = ByteBuffer.allocateDirect(ShmRing.CONTROL_SIZE + CAPACITY);
+        long address = ShmFile.address(buf);
+        ShmRing producer = new ShmRing(address, address + ShmRing.CONTROL_SIZE, CAPACITY);
+
+        byte[] body = new byte[producer.maxBodySize() + 1];
+        producer.offer(header(body.length), body, body.length);
+    }
+
+    private static byte[] header(int bodyLength) {
+        ByteBuffer header = ByteBuffer.allocate(JProtocolHeader.HEADER_SIZE);
+        header.putShort(JProtocolHeader.MAGIC)
+                .put(JProtocolHeader.toSign((byte) 1, JProtocolHeader.REQUEST))
+                .put((byte) 0)
+                .putLong(1)
+                .putInt(bodyLength);
+        return header.array();
+    }
+
+    private static byte[] body(int seed, int length) {
+        byte[] body = new byte[length];
+        for (int i = 0; i < length; i++) {
+            body[i] = (byte) (seed + i);
+        }
+        return body;
+    }
+}
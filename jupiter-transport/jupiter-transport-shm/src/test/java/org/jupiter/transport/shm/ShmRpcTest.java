@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.shm;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.jupiter.rpc.DefaultClient;
+import org.jupiter.rpc.DefaultServer;
+import org.jupiter.rpc.JClient;
+import org.jupiter.rpc.JServer;
+import org.jupiter.rpc.ServiceProvider;
+import org.jupiter.rpc.consumer.GenericProxyFactory;
+import org.jupiter.rpc.consumer.invoker.GenericInvoker;
+import org.jupiter.serialization.SerializerType;
+import org.jupiter.transport.CodecConfig;
+import org.jupiter.transport.UnresolvedAddress;
+import org.jupiter.transport.UnresolvedSocketAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 真实的provider/consumer通过shm往返, 使用默认的codec配置(low copy).
+ *
+ * jupiter
+ * org.jupiter.transport.shm
+ *
+ * @author jiachun.fjc
+ */
+public class ShmRpcTest {
+
+    private static final int PORT = 18198;
+
+    static {
+        System.setProperty("jupiter.io.shm.dir",
+                new File(System.getProperty("java.io.tmpdir"), "jupiter-shm-test").getPath());
+        // 与ShmTransportTest相同, 先加载的测试决定ring的容量
+        System.setProperty("jupiter.io.shm.ring_capacity", "4096");
+    }
+
+    private JServer server;
+    private JClient client;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        server = new DefaultServer().withAcceptor(new JShmAcceptor(PORT));
+        server.serviceRegistry()
+                .provider(new EchoServiceImpl())
+                .version("1.0.0")
+                .register();
+        server.start(false);
+
+        client = new DefaultClient().withConnector(new JShmConnector());
+    }
+
+    @After
+    public void tearDown() {
+        client.shutdownGracefully();
+        server.shutdownGracefully();
+    }
+
+    @Test
+    public void testRoundTrip() throws Throwable {
+        assertTrue(CodecConfig.isCodecLowCopy());
+
+        UnresolvedAddress address = new UnresolvedSocketAddress("127.0.0.1", PORT);
+        client.connector().connect(address);
+
+        // 泛化调用不需要生成代理类
+        GenericInvoker invoker = GenericProxyFactory.factory()
+                .group("test")
+                .providerName("shmEchoService")
+                .version("1.0.0")
+                .client(client)
+                .serializerType(SerializerType.JAVA)
+                .addProviderAddress(address)
+                .newProxyInstance();
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("echo-" + i, invoker.$invoke("echo", "echo-" + i));
+        }
+
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            buf.append((char) ('a' + i % 26));
+        }
+        assertEquals(buf.toString(), invoker.$invoke("echo", buf.toString()));
+    }
+
+    @ServiceProvider(group = "test", name = "shmEchoService")
+    public interface EchoService {
+
+        String echo(String message);
+    }
+
+    public static class EchoServiceImpl implements EchoService {
+
+        @Override
+        public String echo(String message) {
+            return message;
+        }
+    }
+}
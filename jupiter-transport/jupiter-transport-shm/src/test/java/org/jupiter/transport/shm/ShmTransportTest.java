@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2015 The Jupiter Project
+ *
+ * Licensed under the Apache License, version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jupiter.transport.shm;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.jupiter.serialization.io.OutputBuf;
+import org.jupiter.transport.Status;
+import org.jupiter.transport.UnresolvedAddress;
+import org.jupiter.transport.UnresolvedSocketAddress;
+import org.jupiter.transport.channel.JChannel;
+import org.jupiter.transport.channel.JChannelGroup;
+import org.jupiter.transport.channel.JFutureListener;
+import org.jupiter.transport.exception.ConnectFailedException;
+import org.jupiter.transport.payload.JRequestPayload;
+import org.jupiter.transport.payload.HeapBuf;
+import org.jupiter.transport.payload.JResponsePayload;
+import org.jupiter.transport.payload.PayloadHolder;
+import org.jupiter.transport.processor.ConsumerProcessor;
+import org.jupiter.transport.processor.ProviderProcessor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * jupiter
+ * org.jupiter.transport.shm
+ *
+ * @author jiachun.fjc
+ */
+public class ShmTransportTest {
+
+    private static final int PORT = 18199;
+
+    static {
+        System.setProperty("jupiter.io.shm.dir",
+                new File(System.getProperty("java.io.tmpdir"), "jupiter-shm-test").getPath());
+        // 小容量的ring, 测试回绕以及写满时的pending队列
+        System.setProperty("jupiter.io.shm.ring_capacity", "4096");
+    }
+
+    private final BlockingQueue<JResponsePayload> responses = new LinkedBlockingQueue<>();
+
+    private JShmAcceptor acceptor;
+    private JShmConnector connector;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        acceptor = new JShmAcceptor(PORT);
+        // echo
+        acceptor.withProcessor(new ProviderProcessor() {
+
+            @Override
+            public void handleRequest(JChannel channel, JRequestPayload request) {
+                JResponsePayload response = new JResponsePayload(request.invokeId());
+                response.status(Status.OK.value());
+                response.bytes(request.serializerCode(), bytes(request));
+                channel.write(response);
+            }
+
+            @Override
+            public void handleException(JChannel channel, JRequestPayload request, Status status, Throwable cause) {}
+
+            @Override
+            public void shutdown() {}
+        });
+        acceptor.start(false);
+
+        connector = new JShmConnector();
+        connector.withProcessor(new ConsumerProcessor() {
+
+            @Override
+            public void handleResponse(JChannel channel, JResponsePayload response) {
+                responses.add(response);
+            }
+
+            @Override
+            public void shutdown() {}
+        });
+    }
+
+    @After
+    public void tearDown() {
+        connector.shutdownGracefully();
+        acceptor.shutdownGracefully();
+    }
+
+    @Test
+    public void testRequestResponse() throws Exception {
+        UnresolvedAddress address = new UnresolvedSocketAddress("127.0.0.1", PORT);
+        assertTrue(JShmAcceptor.isBound(PORT));
+
+        connector.connect(address);
+        JChannelGroup group = connector.group(address);
+        assertEquals(1, group.size());
+        JChannel channel = group.next();
+
+        JRequestPayload request = new JRequestPayload();
+        request.bytes((byte) 1, new byte[] { 1, 2, 3 });
+        CountDownLatch written = new CountDownLatch(1);
+        channel.write(request, new JFutureListener<JChannel>() {
+
+            @Override
+            public void operationSuccess(JChannel channel) {
+                written.countDown();
+            }
+
+            @Override
+            public void operationFailure(JChannel channel, Throwable cause) {}
+        });
+        assertTrue(written.await(1, TimeUnit.SECONDS));
+
+        JResponsePayload response = responses.poll(1, TimeUnit.SECONDS);
+        assertNotNull(response);
+        assertEquals(request.invokeId(), response.id());
+        assertEquals(Status.OK.value(), response.status());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, bytes(response));
+
+        // output buf
+        OutputBuf outputBuf = channel.allocOutputBuf();
+        OutputStream out = outputBuf.outputStream();
+        for (int i = 0; i < 1024; i++) {
+            out.write(i);
+        }
+        request = new JRequestPayload();
+        request.outputBuf((byte) 1, outputBuf);
+        channel.write(request);
+
+        response = responses.poll(1, TimeUnit.SECONDS);
+        assertNotNull(response);
+        assertEquals(1024, bytes(response).length);
+        assertEquals((byte) 1023, bytes(response)[1023]);
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        UnresolvedAddress address = new UnresolvedSocketAddress("127.0.0.1", PORT);
+        connector.connect(address);
+        JChannel channel = connector.group(address).next();
+
+        int threads = 4;
+        int count = 500;
+        AtomicInteger failures = new AtomicInteger();
+        Thread[] writers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < count; i++) {
+                    byte[] body = new byte[1000];
+                    body[0] = (byte) i;
+                    body[999] = (byte) i;
+                    JRequestPayload request = new JRequestPayload();
+                    request.bytes((byte) 1, body);
+                    channel.write(request, new JFutureListener<JChannel>() {
+
+                        @Override
+                        public void operationSuccess(JChannel channel) {}
+
+                        @Override
+                        public void operationFailure(JChannel channel, Throwable cause) {
+                            failures.incrementAndGet();
+                        }
+                    });
+                }
+            });
+            writers[t].start();
+        }
+
+        for (int i = 0; i < threads * count; i++) {
+            JResponsePayload response = responses.poll(5, TimeUnit.SECONDS);
+            assertNotNull(response);
+            byte[] body = bytes(response);
+            assertEquals(1000, body.length);
+            assertEquals(body[0], body[999]);
+        }
+        for (Thread w : writers) {
+            w.join();
+        }
+        assertEquals(0, failures.get());
+    }
+
+    @Test
+    public void testFrameTooLarge() throws Exception {
+        UnresolvedAddress address = new UnresolvedSocketAddress("127.0.0.1", PORT);
+        connector.connect(address);
+        JChannel channel = connector.group(address).next();
+
+        JRequestPayload request = new JRequestPayload();
+        request.bytes((byte) 1, new byte[8192]);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        channel.write(request, new JFutureListener<JChannel>() {
+
+            @Override
+            public void operationSuccess(JChannel channel) {}
+
+            @Override
+            public void operationFailure(JChannel channel, Throwable cause) {
+                failure.set(cause);
+            }
+        });
+        assertTrue(failure.get() instanceof IllegalArgumentException);
+        assertTrue(channel.isActive());
+    }
+
+    @Test
+    public void testPeerClosed() throws Exception {
+        UnresolvedAddress address = new UnresolvedSocketAddress("127.0.0.1", PORT);
+        connector.connect(address);
+        JChannelGroup group = connector.group(address);
+        JChannel channel = group.next();
+        AtomicBoolean inactive = new AtomicBoolean();
+        ((ShmChannel) channel).onClose(() -> inactive.set(true));
+
+        acceptor.unbind();
+        assertFalse(JShmAcceptor.isBound(PORT));
+
+        long deadline = System.currentTimeMillis() + 3000;
+        while (!inactive.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(channel.isActive());
+        assertTrue(group.isEmpty());
+    }
+
+    @Test(expected = ConnectFailedException.class)
+    public void testConnectFailed() {
+        connector.connect(new UnresolvedSocketAddress("127.0.0.1", PORT + 1));
+    }
+
+    // low copy模式下读到的是inputBuf
+    private static byte[] bytes(PayloadHolder payload) {
+        if (payload.inputBuf() == null) {
+            return payload.bytes();
+        }
+        HeapBuf buf = (HeapBuf) payload.inputBuf();
+        return Arrays.copyOf(buf.array(), buf.size());
+    }
+}